@@ -1,26 +1,66 @@
 package com.pkrete.xrd4j.client;
 
+import com.pkrete.xrd4j.client.balancer.CircuitBreaker;
+import com.pkrete.xrd4j.client.balancer.CircuitBreakerConfig;
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.EndpointSelector;
+import com.pkrete.xrd4j.client.balancer.HedgingPolicy;
+import com.pkrete.xrd4j.client.balancer.LoadBalancingStrategy;
+import com.pkrete.xrd4j.client.balancer.RoundRobinStrategy;
 import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
 import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
 import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class represents a round-robin load balanced SOAP client that can be
- * used for sending SOAPMessage and ServiceRequest objects to multiple SOAP
- * endpoints. This class holds a list of server URLs and going down the list of
- * security servers in the group, the round-robin load balancer forwards a
- * client request to each server in turn. However, this class does not provide
- * high availability features - if a request fails, it is not sent again to
- * another endpoint. In addition, repeatedly failing endpoints are not removed
- * from the list and they keep on receiving requests.
+ * This class represents a load balanced SOAP client that can be used for
+ * sending SOAPMessage and ServiceRequest objects to multiple SOAP endpoints.
+ * This class holds a list of server URLs and a LoadBalancingStrategy that
+ * chooses the server where each request is sent. By default the round-robin
+ * strategy is used: going down the list of security servers in the group, the
+ * load balancer forwards a client request to each server in turn. The number
+ * of requests in flight and the latency of each endpoint are tracked, so that
+ * load-aware strategies can be used as well.
+ *
+ * Each endpoint has a circuit breaker. Repeatedly failing endpoints are
+ * ejected and the strategy chooses from the remaining endpoints only. An
+ * ejected endpoint receives probe requests after the open duration of the
+ * circuit breaker and it's restored if a probe succeeds. The list of
+ * available endpoints is rebuilt only when the state of a circuit breaker
+ * changes, so ejected endpoints don't add any cost to sending a request. If
+ * all the endpoints have been ejected, requests are sent to all of them. If
+ * the available endpoints are half open and their probe requests are in
+ * progress, an IllegalStateException is thrown. In addition, an active health
+ * check that calls listClients meta service can be started. However, if a request fails, it is not sent again to another
+ * endpoint.
+ *
+ * Requests to idempotent services can be hedged using a HedgingPolicy: if the
+ * primary endpoint hasn't answered within the hedging delay, the same
+ * serialized request is sent to another endpoint, the first successful
+ * response is used and the other request is cancelled. If the requests are
+ * sent using SOAPClientImpl, the request is serialized only once. Other
+ * SOAPClient implementations, e.g. CachingSOAPClient, serialize the request
+ * separately for each endpoint and cancelling their requests depends on the
+ * implementation. Requests are hedged only if the sendAsync method of the
+ * SOAPClient returns without waiting for the response.
  *
  * @author Petteri Kivimäki
  */
@@ -28,8 +68,9 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
 
     private static final Logger logger = LoggerFactory.getLogger(LoadBalancedSOAPClientImpl.class);
     private final SOAPClient soapClient;
-    private final List<String> endpointUrls;
-    private int nextTarget;
+    private final EndpointSelector selector;
+    private ScheduledExecutorService healthCheckExecutor;
+    private volatile HedgingPolicy hedgingPolicy;
 
     /**
      * Constructs and initializes a new LoadBalancedSOAPClientImpl object.
@@ -39,15 +80,149 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      * @throws SOAPException if there's an error
      */
     public LoadBalancedSOAPClientImpl(List<String> endpointUrls) throws SOAPException {
-        this.endpointUrls = endpointUrls;
-        this.soapClient = new SOAPClientImpl();
-        this.nextTarget = 0;
+        this(endpointUrls, new SOAPClientImpl());
+    }
+
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * uses the given SOAPClient for sending the requests.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * sent
+     * @param soapClient SOAPClient used for sending the requests
+     */
+    public LoadBalancedSOAPClientImpl(List<String> endpointUrls, SOAPClient soapClient) {
+        this(endpointUrls, soapClient, new RoundRobinStrategy());
+    }
+
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * uses the given SOAPClient for sending the requests and the given
+     * strategy for choosing the endpoint of each request.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * sent
+     * @param soapClient SOAPClient used for sending the requests
+     * @param strategy LoadBalancingStrategy used for choosing the endpoints
+     */
+    public LoadBalancedSOAPClientImpl(List<String> endpointUrls, SOAPClient soapClient, LoadBalancingStrategy strategy) {
+        this(endpointUrls, soapClient, strategy, new CircuitBreakerConfig());
+    }
+
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * uses the given SOAPClient for sending the requests, the given strategy
+     * for choosing the endpoint of each request and the given configuration
+     * for the circuit breakers of the endpoints.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * sent
+     * @param soapClient SOAPClient used for sending the requests
+     * @param strategy LoadBalancingStrategy used for choosing the endpoints
+     * @param circuitBreakerConfig configuration of the circuit breakers
+     */
+    public LoadBalancedSOAPClientImpl(List<String> endpointUrls, SOAPClient soapClient, LoadBalancingStrategy strategy, CircuitBreakerConfig circuitBreakerConfig) {
+        List<Endpoint> list = new ArrayList<>(endpointUrls.size());
+        for (String url : endpointUrls) {
+            list.add(new Endpoint(url, Endpoint.DEFAULT_DECAY_TIME, circuitBreakerConfig));
+        }
+        this.selector = new EndpointSelector(list, strategy);
+        this.soapClient = soapClient;
         logger.debug("Create new LoadBalancedSOAPClientImpl with {} endpoint URLs", endpointUrls.size());
-        for (String url : this.endpointUrls) {
+        for (String url : endpointUrls) {
             logger.debug("Found URL: \"{}\"", url);
         }
     }
 
+    /**
+     * Returns the endpoints of this client. The statistics of each endpoint
+     * can be read from the returned objects.
+     *
+     * @return unmodifiable list of endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.selector.getEndpoints();
+    }
+
+    /**
+     * Returns the endpoints that are currently available, i.e. the endpoints
+     * whose circuit breaker is not open.
+     *
+     * @return unmodifiable list of available endpoints
+     */
+    public List<Endpoint> getAvailableEndpoints() {
+        return this.selector.getAvailableEndpoints();
+    }
+
+    /**
+     * Returns the hedging policy of this client or null, if hedging is not
+     * enabled.
+     *
+     * @return hedging policy or null
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging policy of this client. Null disables hedging. Hedging
+     * has no effect if the sendAsync method of the underlying SOAPClient
+     * blocks until the response has been received, which is what the default
+     * implementation of SOAPClient does.
+     *
+     * @param hedgingPolicy new value
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Starts an active health check that calls listClients meta service of
+     * every endpoint at the given interval. Failed checks are recorded in the
+     * circuit breaker of the endpoint and a successful check of an ejected
+     * endpoint allows probe requests immediately. If the health check is
+     * already running, it's restarted with the new interval.
+     *
+     * @param interval interval of the health check
+     * @param unit time unit of the interval
+     */
+    public synchronized void startHealthCheck(long interval, TimeUnit unit) {
+        this.stopHealthCheck();
+        this.healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "xrd4j-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.healthCheckExecutor.scheduleWithFixedDelay(this::checkHealth, interval, interval, unit);
+        logger.debug("Health check started. Interval : {} {}", interval, unit);
+    }
+
+    /**
+     * Stops the active health check if it's running.
+     */
+    public synchronized void stopHealthCheck() {
+        if (this.healthCheckExecutor != null) {
+            this.healthCheckExecutor.shutdownNow();
+            this.healthCheckExecutor = null;
+            logger.debug("Health check stopped.");
+        }
+    }
+
+    private void checkHealth() {
+        for (Endpoint endpoint : this.selector.getEndpoints()) {
+            CircuitBreaker breaker = endpoint.getCircuitBreaker();
+            try {
+                if (this.soapClient.listClients(endpoint.getUrl()) != null) {
+                    breaker.onHealthCheckSuccess();
+                    continue;
+                }
+            } catch (RuntimeException ex) {
+                logger.debug("Health check of \"{}\" failed : {}", endpoint.getUrl(), ex.getMessage());
+            }
+            breaker.onFailure();
+        }
+    }
+
     /**
      * Sends the given message to one of the defined endpoints and blocks until
      * it has returned the response. Null is returned if sending the message
@@ -60,7 +235,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public SOAPMessage send(final SOAPMessage request) throws SOAPException {
-        return this.soapClient.send(request, this.getTargetUrl());
+        return this.execute(url -> this.soapClient.send(request, url));
     }
 
     /**
@@ -80,7 +255,44 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse send(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) throws SOAPException {
-        return this.soapClient.send(request, this.getTargetUrl(), serializer, deserializer);
+        if (this.isHedged(request)) {
+            return join(this.sendHedged(request, serializer, deserializer));
+        }
+        return this.execute(url -> this.soapClient.send(request, url, serializer, deserializer));
+    }
+
+    /**
+     * Sends the given message to one of the defined endpoints and returns
+     * immediately without waiting for the response.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    @Override
+    public CompletableFuture<SOAPMessage> sendAsync(final SOAPMessage request) {
+        return this.executeAsync(url -> this.soapClient.sendAsync(request, url));
+    }
+
+    /**
+     * Sends the given message to one of the defined endpoints and returns
+     * immediately without waiting for the response. Serialization and
+     * deserialization from/to SOAPMessage is done asynchronously.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the ServiceResponse object that is
+     * the response to the message that was sent
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> sendAsync(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) {
+        if (this.isHedged(request)) {
+            return this.sendHedged(request, serializer, deserializer);
+        }
+        return this.executeAsync(url -> this.soapClient.sendAsync(request, url, serializer, deserializer));
     }
 
     /**
@@ -92,7 +304,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public List<ConsumerMember> listClients() {
-        return this.soapClient.listClients(this.getTargetUrl());
+        return this.execute(url -> this.soapClient.listClients(url));
     }
 
     /**
@@ -104,7 +316,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public List<ProducerMember> listCentralServices() {
-        return this.soapClient.listCentralServices(this.getTargetUrl());
+        return this.execute(url -> this.soapClient.listCentralServices(url));
     }
 
     /**
@@ -118,7 +330,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse listMethods(final ServiceRequest request) throws SOAPException {
-        return this.soapClient.listMethods(request, this.getTargetUrl());
+        return this.execute(url -> this.soapClient.listMethods(request, url));
     }
 
     /**
@@ -133,7 +345,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse allowedMethods(final ServiceRequest request) throws SOAPException {
-        return this.soapClient.allowedMethods(request, this.getTargetUrl());
+        return this.execute(url -> this.soapClient.allowedMethods(request, url));
     }
 
     /**
@@ -148,22 +360,321 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse getSecurityServerMetrics(final ServiceRequest request, final String url) throws SOAPException {
-        return this.soapClient.getSecurityServerMetrics(request, this.getTargetUrl());
+        return this.execute(target -> this.soapClient.getSecurityServerMetrics(request, target));
     }
 
     /**
-     * Returns the next target URL in turn and updates the pointer holding the
-     * value of the next target.
+     * Returns the URL of the next target chosen by the load balancing
+     * strategy. Requests sent to the returned URL are not included in the
+     * statistics of the endpoint.
      *
      * @return target URL
+     * @throws IndexOutOfBoundsException if no endpoints are defined
      */
     protected String getTargetUrl() {
-        // Get the next target URL
-        String target = this.endpointUrls.get(this.nextTarget);
-        logger.trace("Current nextTarget: \"{}\", targetUrl: \"{}\"", this.nextTarget, target);
-        // Update next pointer
-        this.nextTarget = this.nextTarget == this.endpointUrls.size() - 1 ? 0 : this.nextTarget + 1;
-        logger.trace("New nextTarget: \"{}\"", this.nextTarget);
+        return this.selectEndpoint().getUrl();
+    }
+
+    /**
+     * Chooses the endpoint of the next request using the load balancing
+     * strategy.
+     *
+     * @return chosen endpoint
+     * @throws IndexOutOfBoundsException if no endpoints are defined
+     * @throws IllegalStateException if no endpoint can receive the request
+     */
+    private Endpoint selectEndpoint() {
+        Endpoint target = this.selector.select();
+        if (target == null) {
+            throw new IllegalStateException("No endpoint available. The probe requests of all the available endpoints are in progress.");
+        }
+        logger.trace("Target URL: \"{}\"", target.getUrl());
         return target;
     }
+
+    /**
+     * Sends a request to the endpoint chosen by the load balancing strategy
+     * and updates the statistics of the endpoint.
+     *
+     * @param call call that sends the request to the given URL
+     * @return response of the call
+     * @throws E if the call fails
+     */
+    private <T, E extends Exception> T execute(EndpointCall<T, E> call) throws E {
+        Endpoint endpoint = this.selectEndpoint();
+        long start = endpoint.requestStarted();
+        boolean success = false;
+        try {
+            T result = call.call(endpoint.getUrl());
+            success = true;
+            return result;
+        } finally {
+            endpoint.requestCompleted(start, success);
+        }
+    }
+
+    /**
+     * Sends an asynchronous request to the endpoint chosen by the load
+     * balancing strategy and updates the statistics of the endpoint when the
+     * request has been completed.
+     *
+     * @param call call that sends the request to the given URL
+     * @return future that's completed with the response
+     */
+    private <T> CompletableFuture<T> executeAsync(EndpointCall<CompletableFuture<T>, RuntimeException> call) {
+        Endpoint endpoint = this.selectEndpoint();
+        long start = endpoint.requestStarted();
+        CompletableFuture<T> future;
+        try {
+            future = call.call(endpoint.getUrl());
+        } catch (RuntimeException ex) {
+            endpoint.requestCompleted(start, false);
+            throw ex;
+        }
+        return future.whenComplete((result, throwable) -> endpoint.requestCompleted(start, throwable == null));
+    }
+
+    /**
+     * Call that sends a request to the given URL.
+     *
+     * @param <T> type of the response
+     * @param <E> type of the exception
+     */
+    private interface EndpointCall<T, E extends Exception> {
+
+        T call(String url) throws E;
+    }
+
+    /**
+     * Checks if the given request should be hedged.
+     *
+     * @param request ServiceRequest to be checked
+     * @return true if the request should be hedged, otherwise false
+     */
+    private boolean isHedged(final ServiceRequest request) {
+        HedgingPolicy policy = this.hedgingPolicy;
+        return policy != null && this.selector.getEndpoints().size() > 1 && policy.isHedged(request);
+    }
+
+    /**
+     * Sends the given request using hedging. If the underlying client is a
+     * SOAPClientImpl, the request is serialized only once and the same bytes
+     * are sent to both endpoints. Otherwise the request is passed to the
+     * underlying client for each endpoint.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the first successful response
+     */
+    private CompletableFuture<ServiceResponse> sendHedged(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) {
+        HedgingPolicy policy = this.hedgingPolicy;
+        if (!(this.soapClient instanceof SOAPClientImpl)) {
+            return new HedgedCall<ServiceResponse>(policy, request, url -> this.soapClient.sendAsync(request, url, serializer, deserializer), response -> response).start();
+        }
+        SOAPClientImpl client = (SOAPClientImpl) this.soapClient;
+        return client.serializeAsync(request, serializer)
+                .thenCompose(serialized -> new HedgedCall<SOAPMessage>(policy, request, url -> client.sendAsync(serialized, url),
+                        soapResponse -> client.deserialize(request, serialized, soapResponse, deserializer)).start());
+    }
+
+    /**
+     * Waits for the given future to complete and returns its result.
+     *
+     * @param future future to wait for
+     * @return result of the future
+     * @throws SOAPException if the future was completed exceptionally
+     */
+    private static <T> T join(final CompletableFuture<T> future) throws SOAPException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SOAPException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SOAPException) {
+                throw (SOAPException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SOAPException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Holder of the scheduler that's used for starting hedged requests. The
+     * scheduler is created when it's used for the first time.
+     */
+    private static class HedgeScheduler {
+
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "xrd4j-hedge-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Converts the result of a request to a ServiceResponse.
+     *
+     * @param <T> type of the result
+     */
+    @FunctionalInterface
+    private interface ResponseConverter<T> {
+
+        ServiceResponse convert(T result) throws SOAPException;
+    }
+
+    /**
+     * A single hedged call. The request is sent to the primary endpoint and,
+     * if it hasn't answered within the hedging delay, to another endpoint. The
+     * first successful response completes the call and the other request is
+     * cancelled. The call fails only if all the requests that were sent
+     * fail.
+     *
+     * The hedge slot is released exactly once: either by the timer, which
+     * sends the hedged request, or by the primary request if it fails before
+     * the timer. The owner of the slot is decided using a compare-and-set on
+     * the state of the hedge.
+     *
+     * @param <T> type of the result of a single request
+     */
+    private class HedgedCall<T> {
+
+        private static final int HEDGE_WAITING = 0;
+        private static final int HEDGE_STARTED = 1;
+        private static final int PRIMARY_FAILED = 2;
+        private final HedgingPolicy policy;
+        private final ServiceRequest request;
+        private final Function<String, CompletableFuture<T>> sender;
+        private final ResponseConverter<T> converter;
+        private final CompletableFuture<ServiceResponse> result;
+        private final AtomicInteger pending;
+        private final AtomicInteger hedgeState;
+        private final AtomicBoolean won;
+        private Endpoint primaryEndpoint;
+        private volatile CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> hedge;
+        private volatile ScheduledFuture<?> timer;
+        private volatile Throwable lastError;
+
+        HedgedCall(HedgingPolicy policy, ServiceRequest request, Function<String, CompletableFuture<T>> sender, ResponseConverter<T> converter) {
+            this.policy = policy;
+            this.request = request;
+            this.sender = sender;
+            this.converter = converter;
+            this.result = new CompletableFuture<>();
+            this.pending = new AtomicInteger(2);
+            this.hedgeState = new AtomicInteger(HEDGE_WAITING);
+            this.won = new AtomicBoolean();
+        }
+
+        CompletableFuture<ServiceResponse> start() {
+            this.policy.requestStarted();
+            this.primaryEndpoint = selectEndpoint();
+            // Cancel the outstanding requests when the call is completed
+            this.result.whenComplete((response, throwable) -> this.cancelOutstanding());
+            this.primary = this.send(this.primaryEndpoint, false);
+            // If the primary request has already failed, it has released the
+            // hedge slot and the timer does nothing
+            if (this.hedgeState.get() == HEDGE_WAITING && !this.result.isDone()) {
+                this.timer = HedgeScheduler.INSTANCE.schedule(this::hedge, this.policy.getCurrentDelay(), TimeUnit.NANOSECONDS);
+            }
+            return this.result;
+        }
+
+        private void hedge() {
+            if (!this.hedgeState.compareAndSet(HEDGE_WAITING, HEDGE_STARTED)) {
+                // The primary request failed and released the slot
+                return;
+            }
+            Endpoint other = null;
+            if (!this.result.isDone()) {
+                other = selector.selectOther(this.primaryEndpoint);
+            }
+            if (other == null || !this.policy.tryAcquireBudget()) {
+                this.release();
+                return;
+            }
+            logger.debug("Primary endpoint \"{}\" didn't answer in time. Hedge request to \"{}\". Request id : \"{}\"",
+                    this.primaryEndpoint.getUrl(), other.getUrl(), this.request.getId());
+            this.hedge = this.send(other, true);
+        }
+
+        /**
+         * Releases a slot of the call. Each call has two slots: the primary
+         * request and the hedged request. The call fails when both slots have
+         * been released without a successful response.
+         */
+        private void release() {
+            if (this.pending.decrementAndGet() == 0) {
+                this.result.completeExceptionally(this.lastError);
+            }
+        }
+
+        private CompletableFuture<T> send(Endpoint endpoint, boolean isHedge) {
+            long start = endpoint.requestStarted();
+            CompletableFuture<T> future;
+            try {
+                future = this.sender.apply(endpoint.getUrl());
+            } catch (RuntimeException ex) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(ex);
+            }
+            future.whenComplete((response, throwable) -> this.completed(endpoint, start, isHedge, response, throwable));
+            return future;
+        }
+
+        private void completed(Endpoint endpoint, long start, boolean isHedge, T response, Throwable throwable) {
+            if (throwable != null) {
+                if (throwable instanceof CancellationException) {
+                    endpoint.requestCancelled();
+                } else {
+                    endpoint.requestCompleted(start, false);
+                }
+                this.lastError = throwable;
+                if (!isHedge && this.hedgeState.compareAndSet(HEDGE_WAITING, PRIMARY_FAILED)) {
+                    // The primary request failed before the hedging delay,
+                    // so the hedged request is not sent
+                    ScheduledFuture<?> currentTimer = this.timer;
+                    if (currentTimer != null) {
+                        currentTimer.cancel(false);
+                    }
+                    this.release();
+                }
+                this.release();
+                return;
+            }
+            endpoint.requestCompleted(start, true);
+            this.policy.recordLatency(System.nanoTime() - start);
+            if (!this.won.compareAndSet(false, true)) {
+                return;
+            }
+            if (isHedge) {
+                this.policy.hedgeWon();
+            }
+            try {
+                this.result.complete(this.converter.convert(response));
+            } catch (SOAPException | RuntimeException ex) {
+                this.result.completeExceptionally(ex);
+            }
+        }
+
+        private void cancelOutstanding() {
+            ScheduledFuture<?> currentTimer = this.timer;
+            if (currentTimer != null) {
+                currentTimer.cancel(false);
+            }
+            cancel(this.primary);
+            cancel(this.hedge);
+        }
+
+        private void cancel(CompletableFuture<T> future) {
+            if (future != null && !future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.pkrete.xrd4j.client;
 
+import com.pkrete.xrd4j.client.bulk.BulkExecution;
+import com.pkrete.xrd4j.client.bulk.BulkRequest;
 import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
@@ -7,6 +9,8 @@ import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
 import com.pkrete.xrd4j.common.member.ProducerMember;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 
@@ -49,6 +53,94 @@ public interface SOAPClient {
      */
     ServiceResponse send(ServiceRequest request, String url, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer) throws SOAPException;
 
+    /**
+     * Sends the given message to the specified endpoint and returns
+     * immediately without waiting for the response. The returned future is
+     * completed with the response, or exceptionally if sending the message
+     * fails.
+     *
+     * This default implementation sends the message synchronously in the
+     * calling thread and returns a completed future. Implementations that
+     * have a non-blocking transport should override it.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    default CompletableFuture<SOAPMessage> sendAsync(SOAPMessage request, String url) {
+        CompletableFuture<SOAPMessage> result = new CompletableFuture<>();
+        try {
+            result.complete(this.send(request, url));
+        } catch (SOAPException | RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the given message to the specified endpoint and returns
+     * immediately without waiting for the response. Serialization and
+     * deserialization from/to SOAPMessage is done asynchronously. The returned
+     * future is completed with the response, or exceptionally if
+     * serialization, sending the message or deserialization fails.
+     *
+     * This default implementation sends the message synchronously in the
+     * calling thread and returns a completed future.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the ServiceResponse object that is
+     * the response to the message that was sent
+     */
+    default CompletableFuture<ServiceResponse> sendAsync(ServiceRequest request, String url, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer) {
+        CompletableFuture<ServiceResponse> result = new CompletableFuture<>();
+        try {
+            result.complete(this.send(request, url, serializer, deserializer));
+        } catch (SOAPException | RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the given requests to the specified endpoint asynchronously so
+     * that at most maxConcurrency requests are outstanding at the same time.
+     * The requests are read lazily and the results can be read from the
+     * returned BulkExecution object in request or completion order as they
+     * complete. Errors of individual requests are captured in the results.
+     *
+     * @param requests requests to be sent
+     * @param url URL that identifies where the messages should be sent
+     * @param maxConcurrency maximum number of outstanding requests
+     * @param timeout timeout of a single request in milliseconds, zero means
+     * no timeout
+     * @return BulkExecution object that holds the results
+     */
+    default BulkExecution sendAll(Iterable<BulkRequest> requests, String url, int maxConcurrency, long timeout) {
+        return new BulkExecution(requests.iterator(), request -> this.sendAsync(request.getRequest(), url, request.getSerializer(), request.getDeserializer()), maxConcurrency, timeout);
+    }
+
+    /**
+     * Sends the requests of the given stream to the specified endpoint
+     * asynchronously so that at most maxConcurrency requests are outstanding
+     * at the same time. The stream is consumed lazily.
+     *
+     * @param requests requests to be sent
+     * @param url URL that identifies where the messages should be sent
+     * @param maxConcurrency maximum number of outstanding requests
+     * @param timeout timeout of a single request in milliseconds, zero means
+     * no timeout
+     * @return BulkExecution object that holds the results
+     */
+    default BulkExecution sendAll(Stream<BulkRequest> requests, String url, int maxConcurrency, long timeout) {
+        return new BulkExecution(requests.iterator(), request -> this.sendAsync(request.getRequest(), url, request.getSerializer(), request.getDeserializer()), maxConcurrency, timeout);
+    }
+
     /**
      * Calls listClients meta service and retrieves list of all the potential
      * service providers (i.e., members and subsystems) of an X-Road instance.
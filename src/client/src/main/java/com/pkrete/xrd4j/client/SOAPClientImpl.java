@@ -1,11 +1,19 @@
 package com.pkrete.xrd4j.client;
 
+import com.pkrete.xrd4j.client.deserializer.AbstractStreamingResponseDeserializer;
 import com.pkrete.xrd4j.client.deserializer.ListCentralServicesResponseDeserializer;
 import com.pkrete.xrd4j.client.deserializer.ListClientsResponseDeserializer;
 import com.pkrete.xrd4j.client.deserializer.ListServicesResponseDeserializer;
 import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
 import com.pkrete.xrd4j.client.deserializer.GetSecurityServerMetricsResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.AbstractServiceRequestSerializer;
 import com.pkrete.xrd4j.client.serializer.DefaultServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.AsyncHttpSOAPTransport;
+import com.pkrete.xrd4j.client.transport.AsyncSOAPTransport;
+import com.pkrete.xrd4j.client.transport.HttpSOAPTransport;
+import com.pkrete.xrd4j.client.transport.ResponseStreamHandler;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
+import com.pkrete.xrd4j.client.transport.StreamingSOAPTransport;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
 import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
@@ -13,15 +21,26 @@ import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
 import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.MessageHelper;
 import com.pkrete.xrd4j.common.util.SOAPHelper;
 import com.pkrete.xrd4j.rest.ClientResponse;
 import com.pkrete.xrd4j.rest.client.RESTClient;
 import com.pkrete.xrd4j.rest.client.RESTClientFactory;
+import com.pkrete.xrd4j.common.util.HashingOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.List;
-import javax.xml.soap.SOAPConnection;
-import javax.xml.soap.SOAPConnectionFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import org.slf4j.Logger;
@@ -36,15 +55,175 @@ import org.slf4j.LoggerFactory;
 public class SOAPClientImpl implements SOAPClient {
 
     private static final Logger logger = LoggerFactory.getLogger(SOAPClientImpl.class);
-    private final SOAPConnectionFactory connectionFactory;
+    private static final ThreadLocal<ReusableOutputStream> BUFFERS = ThreadLocal.withInitial(ReusableOutputStream::new);
+    private static volatile SOAPTransport defaultTransport;
+    private static volatile AsyncSOAPTransport defaultAsyncTransport;
+    private final SOAPTransport transport;
+    private final AsyncSOAPTransport asyncTransport;
+    private final RESTClient restClient;
+    private Executor executor;
+    private boolean verifyRequestHash;
+    private String requestHashAlgorithm;
 
     /**
-     * Constructs and initializes a new SOAPClientImpl.
+     * Constructs and initializes a new SOAPClientImpl that uses the shared
+     * default transport. The default transport keeps a pool of persistent
+     * connections that's shared by all the SOAPClientImpl objects created
+     * using this constructor. The shared default non-blocking transport is
+     * created when an asynchronous method is called for the first time.
      *
      * @throws SOAPException if there's a SOAP error
      */
     public SOAPClientImpl() throws SOAPException {
-        this.connectionFactory = SOAPConnectionFactory.newInstance();
+        this(getDefaultTransport(), null);
+    }
+
+    /**
+     * Constructs and initializes a new SOAPClientImpl that uses the given
+     * transport for sending messages. Asynchronous methods use the shared
+     * default non-blocking transport.
+     *
+     * @param transport SOAPTransport used for sending messages
+     */
+    public SOAPClientImpl(SOAPTransport transport) {
+        this(transport, null);
+    }
+
+    /**
+     * Constructs and initializes a new SOAPClientImpl that uses the given
+     * transports for sending messages. If the non-blocking transport is null,
+     * the shared default non-blocking transport is used.
+     *
+     * @param transport SOAPTransport used for sending messages
+     * @param asyncTransport AsyncSOAPTransport used for sending messages
+     * asynchronously
+     */
+    public SOAPClientImpl(SOAPTransport transport, AsyncSOAPTransport asyncTransport) {
+        this.transport = transport;
+        this.asyncTransport = asyncTransport;
+        this.restClient = RESTClientFactory.createRESTClient("get");
+        this.executor = ForkJoinPool.commonPool();
+        this.requestHashAlgorithm = "SHA-512";
+    }
+
+    /**
+     * Returns the shared default transport and creates it if it doesn't exist
+     * yet.
+     *
+     * @return shared default transport
+     * @throws SOAPException if there's a SOAP error
+     */
+    private static SOAPTransport getDefaultTransport() throws SOAPException {
+        SOAPTransport result = defaultTransport;
+        if (result == null) {
+            synchronized (SOAPClientImpl.class) {
+                result = defaultTransport;
+                if (result == null) {
+                    result = new HttpSOAPTransport();
+                    defaultTransport = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shared default non-blocking transport and creates it if it
+     * doesn't exist yet.
+     *
+     * @return shared default non-blocking transport
+     * @throws SOAPException if there's a SOAP error
+     */
+    private static AsyncSOAPTransport getDefaultAsyncTransport() throws SOAPException {
+        AsyncSOAPTransport result = defaultAsyncTransport;
+        if (result == null) {
+            synchronized (SOAPClientImpl.class) {
+                result = defaultAsyncTransport;
+                if (result == null) {
+                    result = new AsyncHttpSOAPTransport();
+                    defaultAsyncTransport = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the transport that's used for sending messages.
+     *
+     * @return SOAPTransport used for sending messages
+     */
+    public SOAPTransport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Returns the executor that's used for serialization and deserialization
+     * of asynchronously sent messages. Default is the common ForkJoinPool.
+     *
+     * @return executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor that's used for serialization and deserialization of
+     * asynchronously sent messages.
+     *
+     * @param executor new value
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a boolean value that indicates if the requestHash header of
+     * ServiceResponse objects is verified against the hash of the request that
+     * was sent.
+     *
+     * @return true or false
+     */
+    public boolean isVerifyRequestHash() {
+        return verifyRequestHash;
+    }
+
+    /**
+     * Sets the boolean value that indicates if the requestHash header of
+     * ServiceResponse objects is verified against the hash of the request that
+     * was sent. If the verification fails, SOAPException is thrown. Messages
+     * with attachments are not verified.
+     *
+     * @param verifyRequestHash new value
+     */
+    public void setVerifyRequestHash(boolean verifyRequestHash) {
+        this.verifyRequestHash = verifyRequestHash;
+    }
+
+    /**
+     * Returns the name of the hash algorithm that's used for calculating the
+     * hash of the request that's sent. Default is "SHA-512".
+     *
+     * @return name of the hash algorithm
+     */
+    public String getRequestHashAlgorithm() {
+        return requestHashAlgorithm;
+    }
+
+    /**
+     * Sets the name of the hash algorithm that's used for calculating the hash
+     * of the request that's sent. The algorithm should match the algorithm
+     * used by the security server. The name is converted to the standard
+     * name of the algorithm, e.g. "sha512" to "SHA-512".
+     *
+     * @param requestHashAlgorithm new value, not null
+     * @throws IllegalArgumentException if the algorithm is null or not known
+     */
+    public void setRequestHashAlgorithm(String requestHashAlgorithm) {
+        if (requestHashAlgorithm == null) {
+            throw new IllegalArgumentException("Request hash algorithm can't be null.");
+        }
+        this.requestHashAlgorithm = MessageHelper.getHashAlgorithm(requestHashAlgorithm);
     }
 
     /**
@@ -60,20 +239,33 @@ public class SOAPClientImpl implements SOAPClient {
      */
     @Override
     public SOAPMessage send(final SOAPMessage request, final String url) throws SOAPException {
-        URL client;
-        try {
-            client = new URL(url);
-        } catch (MalformedURLException ex) {
-            logger.error(ex.getMessage(), ex);
-            throw new XRd4JRuntimeException(ex.getMessage());
-        }
-        SOAPConnection connection = connectionFactory.createConnection();
+        return this.send(request, url, null);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using the transport
+     * of this client. If a MessageDigest object is given, it's updated with
+     * the bytes of the request while they're written to the wire.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent.
+     * @throws SOAPException if there's a SOAP error
+     */
+    private SOAPMessage send(final SOAPMessage request, final String url, final MessageDigest requestDigest) throws SOAPException {
+        validateUrl(url);
         logger.debug("Send SOAP message to \"{}\".", url);
-        logger.trace("Outgoing SOAP request : \"{}\".", SOAPHelper.toString(request));
-        SOAPMessage response = connection.call(request, client);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Outgoing SOAP request : \"{}\".", SOAPHelper.toString(request));
+        }
+        SOAPMessage response = this.transport.send(request, url, requestDigest);
         logger.debug("SOAP response received.");
-        logger.trace("Incoming SOAP response : \"{}\".", SOAPHelper.toString(response));
-        connection.close();
+        if (logger.isTraceEnabled()) {
+            logger.trace("Incoming SOAP response : \"{}\".", SOAPHelper.toString(response));
+        }
         return response;
     }
 
@@ -99,13 +291,371 @@ public class SOAPClientImpl implements SOAPClient {
         logger.info("Send ServiceRequest to \"{}\". Request id : \"{}\"", url, request.getId());
         logger.debug("Consumer : {}", request.getConsumer().toString());
         logger.debug("Producer : {}", request.getProducer().toString());
-        SOAPMessage soapResponse = this.send(soapRequest, url);
+        String requestHash = null;
+        SOAPMessage soapResponse;
+        if (this.verifyRequestHash && !SOAPHelper.hasAttachments(soapRequest)) {
+            // The hash is calculated while the request is written to the wire
+            MessageDigest digest = this.borrowRequestDigest();
+            try {
+                soapResponse = this.send(soapRequest, url, digest);
+                requestHash = Base64.getEncoder().encodeToString(digest.digest());
+            } finally {
+                MessageHelper.releaseMessageDigest(digest);
+            }
+        } else {
+            soapResponse = this.send(soapRequest, url);
+        }
+        return this.deserialize(request, soapResponse, deserializer, requestHash);
+    }
+
+    /**
+     * Sends the given ServiceRequest to the specified endpoint and reads the
+     * response as a stream. The items of the response are passed to the
+     * given callback one at a time as they're read from the connection, so
+     * the whole response is never held in memory. If the transport of this
+     * client doesn't support streaming, the response is first received as a
+     * SOAPMessage object. Responses with attachments are not supported.
+     *
+     * @param <T> runtime type of the items of the response
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the AbstractStreamingResponseDeserializer object that
+     * deserializes the response items
+     * @param callback callback that receives the items
+     * @return the ServiceResponse object that holds the SOAP header and the
+     * possible error message of the response
+     * @throws SOAPException if there's a SOAP error
+     */
+    public <T> ServiceResponse send(final ServiceRequest request, final String url, final ServiceRequestSerializer serializer,
+            final AbstractStreamingResponseDeserializer<T> deserializer, final Consumer<? super T> callback) throws SOAPException {
+        validateUrl(url);
+        SOAPMessage soapRequest = serializer.serialize(request);
+        logger.info("Send ServiceRequest to \"{}\". The response is streamed. Request id : \"{}\"", url, request.getId());
+        String producerNamespaceURI = request.getProducer().getNamespaceUrl() == null || request.getProducer().getNamespaceUrl().isEmpty() ? "*" : request.getProducer().getNamespaceUrl();
+        ResponseStreamHandler<ServiceResponse> handler = (in, contentType) -> {
+            if (contentType != null && contentType.toLowerCase().startsWith("multipart/")) {
+                throw new SOAPException("Responses with attachments can't be streamed.");
+            }
+            return deserializer.deserialize(in, producerNamespaceURI, request.isProcessingWrappers(), callback);
+        };
+        String requestHash = null;
+        MessageDigest digest = this.verifyRequestHash && !SOAPHelper.hasAttachments(soapRequest) ? this.borrowRequestDigest() : null;
+        ServiceResponse response;
+        try {
+            if (this.transport instanceof StreamingSOAPTransport) {
+                response = ((StreamingSOAPTransport) this.transport).send(soapRequest, url, digest, handler);
+            } else {
+                SOAPMessage soapResponse = this.send(soapRequest, url, digest);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                soapResponse.writeTo(out);
+                response = handler.handle(new ByteArrayInputStream(out.toByteArray()), null);
+            }
+            if (digest != null) {
+                requestHash = Base64.getEncoder().encodeToString(digest.digest());
+            }
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        } finally {
+            if (digest != null) {
+                MessageHelper.releaseMessageDigest(digest);
+            }
+        }
+        logger.info("ServiceResponse received. Request id : \"{}\"", request.getId());
+        if (requestHash != null) {
+            this.verifyRequestHash(response, requestHash);
+        }
+        return response;
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using the non-blocking
+     * transport of this client and returns immediately. The message is
+     * serialized using the executor of this client.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    @Override
+    public CompletableFuture<SOAPMessage> sendAsync(final SOAPMessage request, final String url) {
+        validateUrl(url);
+        logger.debug("Send SOAP message to \"{}\" asynchronously.", url);
+        return CompletableFuture.supplyAsync(() -> toBytes(request, null), this.executor)
+                .thenCompose(bytes -> this.sendAsync(bytes, request, url));
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using the non-blocking
+     * transport of this client and returns immediately. Serialization and
+     * deserialization are done using the executor of this client. If the
+     * verification of the request hash fails, the returned future is completed
+     * exceptionally with SOAPException.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the ServiceResponse object that is
+     * the response to the message that was sent
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> sendAsync(final ServiceRequest request, final String url, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) {
+        validateUrl(url);
+        return this.serializeAsync(request, serializer).thenCompose(serialized -> this.sendAsync(serialized, url)
+                // The response is parsed using the executor, so deserialization
+                // is done in the same thread
+                .thenApply(soapResponse -> {
+                    try {
+                        return this.deserialize(request, serialized, soapResponse, deserializer);
+                    } catch (SOAPException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }));
+    }
+
+    /**
+     * Serializes the given request to bytes using the executor of this client.
+     * If the verification of the request hash is enabled, the hash of the
+     * request is calculated at the same time. Requests of
+     * AbstractServiceRequestSerializer subclasses are written directly to
+     * bytes using a cached header template. The serialized request can be
+     * sent to one or more endpoints using the sendAsync method.
+     *
+     * @param request the ServiceRequest object to be serialized
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @return future that's completed with the serialized request
+     */
+    public CompletableFuture<SerializedRequest> serializeAsync(final ServiceRequest request, final ServiceRequestSerializer serializer) {
+        return CompletableFuture.supplyAsync(() -> {
+            logger.info("Send ServiceRequest asynchronously. Request id : \"{}\"", request.getId());
+            if (serializer instanceof AbstractServiceRequestSerializer) {
+                return this.serializeWithTemplate(request, (AbstractServiceRequestSerializer) serializer);
+            }
+            SOAPMessage soapRequest = serializer.serialize(request);
+            MessageDigest digest = null;
+            if (this.verifyRequestHash && !SOAPHelper.hasAttachments(soapRequest)) {
+                try {
+                    digest = this.borrowRequestDigest();
+                } catch (SOAPException ex) {
+                    throw new CompletionException(ex);
+                }
+            }
+            try {
+                byte[] bytes = toBytes(soapRequest, digest);
+                String requestHash = digest == null ? null : Base64.getEncoder().encodeToString(digest.digest());
+                return new SerializedRequest(soapRequest, bytes, requestHash);
+            } finally {
+                if (digest != null) {
+                    MessageHelper.releaseMessageDigest(digest);
+                }
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Serializes the given ServiceRequest directly to bytes so that the SOAP
+     * header is written from a cached template. The hash of the request is
+     * calculated while the bytes are written.
+     *
+     * @param request the ServiceRequest object to be serialized
+     * @param serializer serializer that writes the request
+     * @return SerializedRequest object
+     * @throws CompletionException if serialization fails
+     */
+    private SerializedRequest serializeWithTemplate(final ServiceRequest request, final AbstractServiceRequestSerializer serializer) {
+        ReusableOutputStream out = BUFFERS.get();
+        MessageDigest digest = null;
+        try {
+            digest = this.verifyRequestHash ? this.borrowRequestDigest() : null;
+            SOAPMessage soapRequest = serializer.serialize(request, digest == null ? out : new HashingOutputStream(out, digest));
+            // The hash is not verified for requests with attachments
+            String requestHash = digest == null || SOAPHelper.hasAttachments(soapRequest) ? null : Base64.getEncoder().encodeToString(digest.digest());
+            return new SerializedRequest(soapRequest, out.toByteArray(), requestHash);
+        } catch (SOAPException | IOException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new CompletionException(ex);
+        } finally {
+            out.release();
+            if (digest != null) {
+                MessageHelper.releaseMessageDigest(digest);
+            }
+        }
+    }
+
+    /**
+     * Sends the given serialized request to the specified endpoint using the
+     * non-blocking transport of this client and returns immediately. The same
+     * serialized request can be sent to multiple endpoints. Cancelling the
+     * returned future aborts the request.
+     *
+     * @param request serialized request
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    public CompletableFuture<SOAPMessage> sendAsync(final SerializedRequest request, final String url) {
+        validateUrl(url);
+        return this.sendAsync(request.getBytes(), request.getMessage(), url);
+    }
+
+    /**
+     * Sends the given serialized message using the non-blocking transport.
+     *
+     * @param bytes serialized message
+     * @param message the SOAPMessage object that was serialized
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the response
+     */
+    private CompletableFuture<SOAPMessage> sendAsync(final byte[] bytes, final SOAPMessage message, final String url) {
+        AsyncSOAPTransport transportToUse = this.asyncTransport;
+        if (transportToUse == null) {
+            try {
+                transportToUse = getDefaultAsyncTransport();
+            } catch (SOAPException ex) {
+                CompletableFuture<SOAPMessage> result = new CompletableFuture<>();
+                result.completeExceptionally(ex);
+                return result;
+            }
+        }
+        return transportToUse.sendAsync(bytes, message.getMimeHeaders(), url, this.executor);
+    }
+
+    /**
+     * Deserializes the response to the given serialized request and verifies
+     * the request hash if it was calculated.
+     *
+     * @param request the ServiceRequest object that was sent
+     * @param serialized the serialized request that was sent
+     * @param soapResponse the SOAPMessage object that was received
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return the ServiceResponse object
+     * @throws SOAPException if the request hash verification fails
+     */
+    public ServiceResponse deserialize(final ServiceRequest request, final SerializedRequest serialized, final SOAPMessage soapResponse, final ServiceResponseDeserializer deserializer) throws SOAPException {
+        return this.deserialize(request, soapResponse, deserializer, serialized.getRequestHash());
+    }
+
+    /**
+     * Deserializes the given SOAP response and verifies the request hash if
+     * it's given.
+     *
+     * @param request the ServiceRequest object that was sent
+     * @param soapResponse the SOAPMessage object that was received
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @param requestHash Base64 encoded hash of the request or null
+     * @return the ServiceResponse object
+     * @throws SOAPException if the request hash verification fails
+     */
+    private ServiceResponse deserialize(final ServiceRequest request, final SOAPMessage soapResponse, final ServiceResponseDeserializer deserializer, final String requestHash) throws SOAPException {
         String producerNamespaceURI = request.getProducer().getNamespaceUrl() == null || request.getProducer().getNamespaceUrl().isEmpty() ? "*" : request.getProducer().getNamespaceUrl();
         ServiceResponse response = deserializer.deserialize(soapResponse, producerNamespaceURI, request.isProcessingWrappers());
         logger.info("ServiceResponse received. Request id : \"{}\"", request.getId());
+        if (requestHash != null) {
+            this.verifyRequestHash(response, requestHash);
+        }
         return response;
     }
 
+    /**
+     * Serializes the given SOAPMessage to bytes. If a MessageDigest object is
+     * given, it's updated with the bytes of the message.
+     *
+     * @param message the SOAPMessage object to be serialized
+     * @param digest MessageDigest object or null
+     * @return serialized message
+     * @throws CompletionException if serialization fails
+     */
+    private static byte[] toBytes(final SOAPMessage message, final MessageDigest digest) {
+        try {
+            if (message.saveRequired()) {
+                message.saveChanges();
+            }
+            // The buffer of the thread is reused, so serializing a batch of
+            // requests doesn't grow a new buffer for each of them
+            ReusableOutputStream out = BUFFERS.get();
+            try {
+                message.writeTo(digest == null ? out : new HashingOutputStream(out, digest));
+                return out.toByteArray();
+            } finally {
+                out.release();
+            }
+        } catch (SOAPException | IOException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Checks that the given URL is valid.
+     *
+     * @param url URL to be checked
+     * @throws XRd4JRuntimeException if the URL is malformed
+     */
+    private static void validateUrl(final String url) {
+        try {
+            new URL(url);
+        } catch (MalformedURLException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new XRd4JRuntimeException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Borrows a MessageDigest object for calculating the hash of the request.
+     *
+     * @return MessageDigest object
+     * @throws SOAPException if the hash algorithm is not available
+     */
+    private MessageDigest borrowRequestDigest() throws SOAPException {
+        try {
+            return MessageHelper.borrowMessageDigest(this.requestHashAlgorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Verifies the requestHash header of the given response against the hash
+     * of the request that was sent. Verification is skipped if the response
+     * doesn't contain requestHash header or if the hash was calculated using
+     * a different algorithm.
+     *
+     * @param response ServiceResponse to be verified
+     * @param requestHash Base64 encoded hash of the request that was sent
+     * @throws SOAPException if the hashes don't match
+     */
+    private void verifyRequestHash(final ServiceResponse response, final String requestHash) throws SOAPException {
+        if (response == null || response.getRequestHash() == null) {
+            logger.debug("No request hash found from the response. Skip verification.");
+            return;
+        }
+        String algorithm;
+        try {
+            algorithm = MessageHelper.getHashAlgorithm(response.getRequestHashAlgorithm());
+        } catch (IllegalArgumentException ex) {
+            logger.error("Request hash verification failed. Request id : \"{}\"", response.getId());
+            throw new SOAPException("Request hash verification failed. " + ex.getMessage(), ex);
+        }
+        if (algorithm != null && !algorithm.equalsIgnoreCase(this.requestHashAlgorithm)) {
+            logger.warn("Request hash algorithm \"{}\" doesn't match \"{}\". Skip verification.", algorithm, this.requestHashAlgorithm);
+            return;
+        }
+        if (!requestHash.equals(response.getRequestHash().trim())) {
+            logger.error("Request hash verification failed. Request id : \"{}\"", response.getId());
+            throw new SOAPException("Request hash verification failed. The response doesn't match the request that was sent.");
+        }
+        logger.debug("Request hash was succesfully verified.");
+    }
+
     /**
      * Calls listClients meta service and retrieves list of all the potential
      * service providers (i.e., members and subsystems) of an X-Road instance.
@@ -121,8 +671,7 @@ public class SOAPClientImpl implements SOAPClient {
             url += "/";
         }
         logger.debug("Send SOAP message to \"{}\".", url);
-        RESTClient client = RESTClientFactory.createRESTClient("get");
-        ClientResponse response = client.send(url + Constants.META_SERVICE_LIST_CLIENTS, null, null, null);
+        ClientResponse response = this.restClient.send(url + Constants.META_SERVICE_LIST_CLIENTS, null, null, null);
         List<ConsumerMember> list = new ListClientsResponseDeserializer().deserializeConsumerList(response.getData());
         logger.debug("Received \"{}\" clients from the security server.", list.size());
         return list;
@@ -143,8 +692,7 @@ public class SOAPClientImpl implements SOAPClient {
             url += "/";
         }
         logger.debug("Send SOAP message to \"{}\".", url);
-        RESTClient client = RESTClientFactory.createRESTClient("get");
-        ClientResponse response = client.send(url + Constants.META_SERVICE_LIST_CENTRAL_SERVICES, null, null, null);
+        ClientResponse response = this.restClient.send(url + Constants.META_SERVICE_LIST_CENTRAL_SERVICES, null, null, null);
         List<ProducerMember> list = new ListCentralServicesResponseDeserializer().deserializeProducerList(response.getData());
         logger.debug("Received \"{}\" clients from the security server.", list.size());
         return list;
@@ -235,4 +783,25 @@ public class SOAPClientImpl implements SOAPClient {
         // Return response
         return this.send(request, url, serializer, deserializer);
     }
+
+    /**
+     * Per-thread output stream whose buffer is reused for serializing
+     * requests. Buffers that have grown over 1 MB are not kept.
+     */
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+
+        private static final int INITIAL_SIZE = 2048;
+        private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+        ReusableOutputStream() {
+            super(INITIAL_SIZE);
+        }
+
+        void release() {
+            if (this.buf.length > MAX_RETAINED_SIZE) {
+                this.buf = new byte[INITIAL_SIZE];
+            }
+            this.count = 0;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.pkrete.xrd4j.client;
+
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class represents a request that has been serialized to bytes and that
+ * can be sent to one or more endpoints without serializing it again. In
+ * addition to the bytes, the class holds the SOAPMessage object that was
+ * serialized and the hash of the request, if it was calculated.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SerializedRequest {
+
+    private final SOAPMessage message;
+    private final byte[] bytes;
+    private final String requestHash;
+
+    /**
+     * Constructs and initializes a new SerializedRequest object.
+     *
+     * @param message the SOAPMessage object that was serialized
+     * @param bytes serialized message
+     * @param requestHash Base64 encoded hash of the request or null
+     */
+    public SerializedRequest(SOAPMessage message, byte[] bytes, String requestHash) {
+        this.message = message;
+        this.bytes = bytes;
+        this.requestHash = requestHash;
+    }
+
+    /**
+     * Returns the SOAPMessage object that was serialized.
+     *
+     * @return SOAPMessage object
+     */
+    public SOAPMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the serialized message. The returned array must not be
+     * modified.
+     *
+     * @return serialized message
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the Base64 encoded hash of the request or null, if the hash was
+     * not calculated.
+     *
+     * @return hash of the request or null
+     */
+    public String getRequestHash() {
+        return requestHash;
+    }
+}
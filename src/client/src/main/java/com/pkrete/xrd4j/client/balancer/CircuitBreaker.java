@@ -0,0 +1,225 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a circuit breaker of a single endpoint. The circuit
+ * breaker has three states:
+ *
+ * CLOSED: requests are sent normally. The breaker is opened when the number
+ * of consecutive failures or the error rate reaches the threshold.
+ *
+ * OPEN: the endpoint is ejected and no requests are sent to it. After the
+ * open duration has elapsed, the breaker moves to half open state.
+ *
+ * HALF_OPEN: a limited number of probe requests are sent to the endpoint. If
+ * a probe succeeds the breaker is closed, if it fails or doesn't complete
+ * within the probe timeout the breaker is opened again.
+ *
+ * State changes are done using compare-and-set and the listener is notified
+ * after every change.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of the circuit breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final long REQUEST = 1L << 32;
+    private static final long FAILURE = 1L;
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final AtomicReference<State> state;
+    private final AtomicInteger consecutiveFailures;
+    // Number of requests in the high 32 bits and failures in the low 32 bits
+    private final AtomicLong window;
+    private final AtomicInteger probes;
+    private volatile long retryTime;
+    private volatile long probeDeadline;
+    private volatile Runnable listener;
+
+    /**
+     * Constructs and initializes a new CircuitBreaker object.
+     *
+     * @param name name of the circuit breaker used in log messages
+     * @param config configuration of the circuit breaker
+     */
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.state = new AtomicReference<>(State.CLOSED);
+        this.consecutiveFailures = new AtomicInteger();
+        this.window = new AtomicLong();
+        this.probes = new AtomicInteger();
+    }
+
+    /**
+     * Returns the current state of the circuit breaker.
+     *
+     * @return current state
+     */
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Returns the time when the open circuit breaker allows probe requests.
+     * The value is comparable with System.nanoTime().
+     *
+     * @return time in nanoseconds
+     */
+    public long getRetryTime() {
+        return this.retryTime;
+    }
+
+    /**
+     * Sets the listener that's called after every state change.
+     *
+     * @param listener listener to be called
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Moves an open circuit breaker to half open state, if the open duration
+     * has elapsed. Returns true if the state was changed.
+     *
+     * @param now current time from System.nanoTime()
+     * @return true if the state was changed, otherwise false
+     */
+    public boolean tryHalfOpen(long now) {
+        if (this.state.get() == State.OPEN && now - this.retryTime >= 0) {
+            return this.halfOpen();
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a request can be sent through this circuit breaker. In half
+     * open state only a limited number of probe requests are allowed. If the
+     * probes are used up and the probe timeout has elapsed, the breaker is
+     * opened again.
+     *
+     * @return true if the request can be sent, otherwise false
+     */
+    public boolean tryAcquirePermission() {
+        State current = this.state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (current == State.OPEN && !this.tryHalfOpen(now)) {
+            return false;
+        }
+        if (this.probes.getAndDecrement() > 0) {
+            return true;
+        }
+        if (this.config.getProbeTimeout() > 0 && now - this.probeDeadline >= 0 && this.state.get() == State.HALF_OPEN) {
+            logger.warn("Probe request of \"{}\" timed out.", this.name);
+            this.open(State.HALF_OPEN);
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful request.
+     */
+    public void onSuccess() {
+        this.consecutiveFailures.set(0);
+        if (this.state.get() == State.HALF_OPEN) {
+            if (this.transition(State.HALF_OPEN, State.CLOSED)) {
+                this.window.set(0);
+            }
+            return;
+        }
+        this.record(0);
+    }
+
+    /**
+     * Records a failed request.
+     */
+    public void onFailure() {
+        if (!this.config.isEnabled()) {
+            return;
+        }
+        State current = this.state.get();
+        if (current == State.HALF_OPEN) {
+            this.open(State.HALF_OPEN);
+            return;
+        }
+        if (current == State.OPEN) {
+            return;
+        }
+        int failures = this.consecutiveFailures.incrementAndGet();
+        long counts = this.record(FAILURE);
+        int requests = (int) (counts >>> 32);
+        int windowFailures = (int) counts;
+        if (failures >= this.config.getConsecutiveFailureThreshold()
+                || requests >= this.config.getMinimumRequests()
+                && windowFailures >= this.config.getErrorRateThreshold() * requests) {
+            this.open(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records a successful active health check. An open circuit breaker is
+     * moved to half open state immediately, so that the next request probes
+     * the endpoint.
+     */
+    public void onHealthCheckSuccess() {
+        if (this.state.get() == State.OPEN) {
+            this.halfOpen();
+        }
+    }
+
+    private long record(long failure) {
+        long counts = this.window.addAndGet(REQUEST + failure);
+        if ((counts >>> 32) >= this.config.getWindowSize()) {
+            // Start a new window, a concurrent update may be lost
+            this.window.compareAndSet(counts, 0);
+        }
+        return counts;
+    }
+
+    private void open(State from) {
+        this.retryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.config.getOpenDuration());
+        if (this.transition(from, State.OPEN)) {
+            logger.warn("Circuit breaker of \"{}\" opened.", this.name);
+        }
+    }
+
+    private boolean halfOpen() {
+        this.probes.set(this.config.getHalfOpenProbes());
+        this.probeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.config.getProbeTimeout());
+        return this.transition(State.OPEN, State.HALF_OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        if (!this.state.compareAndSet(from, to)) {
+            return false;
+        }
+        if (to == State.CLOSED) {
+            this.consecutiveFailures.set(0);
+            logger.info("Circuit breaker of \"{}\" closed.", this.name);
+        }
+        logger.debug("Circuit breaker of \"{}\" : {} -> {}", this.name, from, to);
+        Runnable current = this.listener;
+        if (current != null) {
+            current.run();
+        }
+        return true;
+    }
+}
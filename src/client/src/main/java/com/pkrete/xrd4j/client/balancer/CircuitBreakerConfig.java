@@ -0,0 +1,199 @@
+package com.pkrete.xrd4j.client.balancer;
+
+/**
+ * This class represents the configuration of the circuit breakers of load
+ * balanced clients. A circuit breaker is opened when the number of
+ * consecutive failures reaches the threshold or when the error rate of the
+ * current window of requests reaches the threshold.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CircuitBreakerConfig {
+
+    private boolean enabled;
+    private int consecutiveFailureThreshold;
+    private double errorRateThreshold;
+    private int windowSize;
+    private int minimumRequests;
+    private long openDuration;
+    private int halfOpenProbes;
+    private long probeTimeout;
+
+    /**
+     * Constructs and initializes a new CircuitBreakerConfig object with
+     * default values: circuit breaker is enabled, it's opened after 5
+     * consecutive failures or when at least 50 % of the requests of a window
+     * of 100 requests have failed (after at least 20 requests), it stays open
+     * for 30 seconds and one probe request is allowed in half open state.
+     * If the probe hasn't completed in 30 seconds, the breaker is opened
+     * again.
+     */
+    public CircuitBreakerConfig() {
+        this.enabled = true;
+        this.consecutiveFailureThreshold = 5;
+        this.errorRateThreshold = 0.5;
+        this.windowSize = 100;
+        this.minimumRequests = 20;
+        this.openDuration = 30000;
+        this.halfOpenProbes = 1;
+        this.probeTimeout = 30000;
+    }
+
+    /**
+     * Returns a boolean value that indicates if the circuit breaker is
+     * enabled. A disabled circuit breaker is never opened.
+     *
+     * @return true or false
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the boolean value that indicates if the circuit breaker is
+     * enabled.
+     *
+     * @param enabled new value
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the number of consecutive failures that opens the circuit
+     * breaker.
+     *
+     * @return number of consecutive failures
+     */
+    public int getConsecutiveFailureThreshold() {
+        return consecutiveFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures that opens the circuit breaker.
+     *
+     * @param consecutiveFailureThreshold new value
+     */
+    public void setConsecutiveFailureThreshold(int consecutiveFailureThreshold) {
+        this.consecutiveFailureThreshold = consecutiveFailureThreshold;
+    }
+
+    /**
+     * Returns the error rate between 0 and 1 that opens the circuit breaker.
+     *
+     * @return error rate threshold
+     */
+    public double getErrorRateThreshold() {
+        return errorRateThreshold;
+    }
+
+    /**
+     * Sets the error rate between 0 and 1 that opens the circuit breaker.
+     *
+     * @param errorRateThreshold new value
+     */
+    public void setErrorRateThreshold(double errorRateThreshold) {
+        this.errorRateThreshold = errorRateThreshold;
+    }
+
+    /**
+     * Returns the number of requests in a window that's used for calculating
+     * the error rate. The counters are reset when the window is full.
+     *
+     * @return size of the window
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Sets the number of requests in a window that's used for calculating the
+     * error rate.
+     *
+     * @param windowSize new value
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns the minimum number of requests in the current window before the
+     * error rate is checked.
+     *
+     * @return minimum number of requests
+     */
+    public int getMinimumRequests() {
+        return minimumRequests;
+    }
+
+    /**
+     * Sets the minimum number of requests in the current window before the
+     * error rate is checked.
+     *
+     * @param minimumRequests new value
+     */
+    public void setMinimumRequests(int minimumRequests) {
+        this.minimumRequests = minimumRequests;
+    }
+
+    /**
+     * Returns the time how long the circuit breaker stays open before probe
+     * requests are allowed.
+     *
+     * @return open duration in milliseconds
+     */
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    /**
+     * Sets the time how long the circuit breaker stays open before probe
+     * requests are allowed.
+     *
+     * @param openDuration new value in milliseconds
+     */
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Returns the number of probe requests that are allowed in half open
+     * state.
+     *
+     * @return number of probe requests
+     */
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    /**
+     * Sets the number of probe requests that are allowed in half open state.
+     *
+     * @param halfOpenProbes new value
+     */
+    public void setHalfOpenProbes(int halfOpenProbes) {
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Returns the time how long the probe requests of a half open circuit
+     * breaker may take. If the probes haven't completed when the time has
+     * elapsed, the breaker is opened again, so that a hung probe doesn't hold
+     * the breaker in half open state. Zero means that there's no timeout.
+     *
+     * @return probe timeout in milliseconds
+     */
+    public long getProbeTimeout() {
+        return probeTimeout;
+    }
+
+    /**
+     * Sets the time how long the probe requests of a half open circuit
+     * breaker may take. Zero means that there's no timeout.
+     *
+     * @param probeTimeout new value in milliseconds
+     */
+    public void setProbeTimeout(long probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+}
@@ -0,0 +1,197 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a single security server endpoint of a load balanced
+ * client and holds the statistics of the requests sent to it. Load balancing
+ * strategies use the statistics for choosing the endpoint of the next
+ * request.
+ *
+ * All the statistics are updated without locks: request and failure counters
+ * are striped LongAdders, the number of requests in flight is an atomic
+ * integer and the latency estimate is updated using compare-and-set.
+ *
+ * The latency estimate is a peak EWMA (exponentially weighted moving average)
+ * of the response times of successful requests: a response time that's higher
+ * than the current estimate replaces the estimate immediately, lower response
+ * times decay the estimate gradually. The decay depends on the time elapsed
+ * since the previous update.
+ *
+ * Each endpoint has a circuit breaker that's updated with the result of every
+ * completed request.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Endpoint {
+
+    /**
+     * Default decay time of the latency estimate in milliseconds.
+     */
+    public static final long DEFAULT_DECAY_TIME = 10000;
+
+    private final String url;
+    private final double decayTimeNanos;
+    private final AtomicInteger inFlight;
+    private final LongAdder requests;
+    private final LongAdder failures;
+    // Bits of the latency estimate in nanoseconds
+    private final AtomicLong latencyEstimate;
+    private final AtomicLong lastUpdate;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Constructs and initializes a new Endpoint object with the default decay
+     * time and circuit breaker configuration.
+     *
+     * @param url URL of the endpoint
+     */
+    public Endpoint(String url) {
+        this(url, DEFAULT_DECAY_TIME);
+    }
+
+    /**
+     * Constructs and initializes a new Endpoint object.
+     *
+     * @param url URL of the endpoint
+     * @param decayTime decay time of the latency estimate in milliseconds
+     */
+    public Endpoint(String url, long decayTime) {
+        this(url, decayTime, new CircuitBreakerConfig());
+    }
+
+    /**
+     * Constructs and initializes a new Endpoint object.
+     *
+     * @param url URL of the endpoint
+     * @param decayTime decay time of the latency estimate in milliseconds
+     * @param circuitBreakerConfig configuration of the circuit breaker
+     */
+    public Endpoint(String url, long decayTime, CircuitBreakerConfig circuitBreakerConfig) {
+        this.url = url;
+        this.decayTimeNanos = TimeUnit.MILLISECONDS.toNanos(decayTime);
+        this.inFlight = new AtomicInteger();
+        this.requests = new LongAdder();
+        this.failures = new LongAdder();
+        this.latencyEstimate = new AtomicLong(Double.doubleToLongBits(0));
+        this.lastUpdate = new AtomicLong(System.nanoTime());
+        this.circuitBreaker = new CircuitBreaker(url, circuitBreakerConfig);
+    }
+
+    /**
+     * Returns the URL of the endpoint.
+     *
+     * @return URL of the endpoint
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Returns the circuit breaker of the endpoint.
+     *
+     * @return circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Returns the number of requests that have been sent to the endpoint, but
+     * that have not been completed yet.
+     *
+     * @return number of requests in flight
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests sent to the endpoint.
+     *
+     * @return number of requests
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Returns the number of failed requests.
+     *
+     * @return number of failed requests
+     */
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+    /**
+     * Returns the current latency estimate in nanoseconds. Zero means that no
+     * requests have been completed yet.
+     *
+     * @return latency estimate in nanoseconds
+     */
+    public double getLatencyEstimate() {
+        return Double.longBitsToDouble(this.latencyEstimate.get());
+    }
+
+    /**
+     * Marks the start of a new request. The returned value must be given to
+     * the requestCompleted method when the request has been completed.
+     *
+     * @return start time of the request in nanoseconds
+     */
+    public long requestStarted() {
+        this.inFlight.incrementAndGet();
+        this.requests.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the completion of a request and updates the statistics and the
+     * circuit breaker.
+     *
+     * @param startTime start time of the request returned by requestStarted
+     * @param success true if the request was successful, otherwise false
+     */
+    public void requestCompleted(long startTime, boolean success) {
+        this.inFlight.decrementAndGet();
+        if (!success) {
+            this.failures.increment();
+            this.circuitBreaker.onFailure();
+            return;
+        }
+        long now = System.nanoTime();
+        this.updateLatency(now - startTime, now);
+        this.circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Marks a request as cancelled. Cancelled requests are removed from the
+     * requests in flight, but they don't affect the latency estimate or the
+     * circuit breaker.
+     */
+    public void requestCancelled() {
+        this.inFlight.decrementAndGet();
+    }
+
+    private void updateLatency(double sample, long now) {
+        long previous = this.lastUpdate.getAndSet(now);
+        double weight = Math.exp(-Math.max(0, now - previous) / this.decayTimeNanos);
+        while (true) {
+            long currentBits = this.latencyEstimate.get();
+            double current = Double.longBitsToDouble(currentBits);
+            double updated = sample > current ? sample : current * weight + sample * (1 - weight);
+            if (this.latencyEstimate.compareAndSet(currentBits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.url;
+    }
+}
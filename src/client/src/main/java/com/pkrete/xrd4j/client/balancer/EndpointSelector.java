@@ -0,0 +1,167 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class chooses the endpoint of each request using a load balancing
+ * strategy and the circuit breakers of the endpoints. The list of available
+ * endpoints, i.e. the endpoints whose circuit breaker is not open, is rebuilt
+ * only when the state of a circuit breaker changes, so ejected endpoints don't
+ * add any cost to choosing an endpoint.
+ *
+ * When the open duration of an ejected endpoint has elapsed, the next request
+ * is sent to that endpoint as a probe. Only the endpoint that receives the
+ * probe is moved to half open state. If all the endpoints have been ejected,
+ * the strategy chooses from all of them. If the chosen endpoint is half open
+ * and it has no probes left, the first closed endpoint is chosen instead,
+ * and if there's none, no endpoint is chosen.
+ *
+ * The selector registers itself as the listener of the circuit breakers of
+ * the endpoints. Instances of this class are thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EndpointSelector {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndpointSelector.class);
+    private final List<Endpoint> endpoints;
+    private final LoadBalancingStrategy strategy;
+    private volatile List<Endpoint> availableEndpoints;
+    private volatile long nextRetryTime;
+
+    /**
+     * Constructs and initializes a new EndpointSelector object.
+     *
+     * @param endpoints list of endpoints
+     * @param strategy LoadBalancingStrategy used for choosing the endpoints
+     */
+    public EndpointSelector(List<Endpoint> endpoints, LoadBalancingStrategy strategy) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.strategy = strategy;
+        this.availableEndpoints = this.endpoints;
+        this.nextRetryTime = Long.MAX_VALUE;
+        for (Endpoint endpoint : this.endpoints) {
+            endpoint.getCircuitBreaker().setListener(this::updateAvailableEndpoints);
+        }
+    }
+
+    /**
+     * Returns all the endpoints of this selector.
+     *
+     * @return unmodifiable list of endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * Returns the endpoints that are currently available, i.e. the endpoints
+     * whose circuit breaker is not open.
+     *
+     * @return unmodifiable list of available endpoints
+     */
+    public List<Endpoint> getAvailableEndpoints() {
+        return this.availableEndpoints;
+    }
+
+    /**
+     * Chooses the endpoint of the next request. The permission of the
+     * circuit breaker of the returned endpoint has been acquired, unless all
+     * the endpoints have been ejected.
+     *
+     * @return chosen endpoint or null, if no endpoint can receive the request
+     * @throws IndexOutOfBoundsException if there are no endpoints
+     */
+    public Endpoint select() {
+        if (this.endpoints.isEmpty()) {
+            throw new IndexOutOfBoundsException("No endpoint URLs defined.");
+        }
+        if (this.nextRetryTime != Long.MAX_VALUE) {
+            Endpoint probe = this.selectProbe();
+            if (probe != null) {
+                logger.trace("Probe URL: \"{}\"", probe.getUrl());
+                return probe;
+            }
+        }
+        List<Endpoint> available = this.availableEndpoints;
+        if (available.isEmpty()) {
+            // All the endpoints have been ejected
+            return this.strategy.select(this.endpoints);
+        }
+        Endpoint target = this.strategy.select(available);
+        if (target.getCircuitBreaker().tryAcquirePermission()) {
+            return target;
+        }
+        // No probes left, use the first endpoint that's closed
+        for (Endpoint endpoint : available) {
+            if (endpoint.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chooses a closed endpoint that's different from the given endpoint.
+     * Half open endpoints are not chosen, so that their probes are not used
+     * up by additional requests.
+     *
+     * @param excluded endpoint that must not be chosen
+     * @return chosen endpoint or null, if there's no other endpoint available
+     */
+    public Endpoint selectOther(Endpoint excluded) {
+        List<Endpoint> others = new ArrayList<>(this.availableEndpoints.size());
+        for (Endpoint endpoint : this.availableEndpoints) {
+            if (endpoint != excluded && endpoint.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED) {
+                others.add(endpoint);
+            }
+        }
+        return others.isEmpty() ? null : this.strategy.select(others);
+    }
+
+    /**
+     * Returns an ejected endpoint whose open duration has elapsed, if its
+     * circuit breaker gives a permission for a probe request.
+     *
+     * @return endpoint that receives a probe request or null
+     */
+    private Endpoint selectProbe() {
+        long now = System.nanoTime();
+        if (now - this.nextRetryTime < 0) {
+            return null;
+        }
+        for (Endpoint endpoint : this.endpoints) {
+            CircuitBreaker breaker = endpoint.getCircuitBreaker();
+            if (breaker.getState() == CircuitBreaker.State.OPEN && now - breaker.getRetryTime() >= 0) {
+                // The state change rebuilds the list of available endpoints.
+                // If another thread was first, its request is the probe.
+                return breaker.tryAcquirePermission() ? endpoint : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rebuilds the list of available endpoints. This method is called when
+     * the state of a circuit breaker changes.
+     */
+    private synchronized void updateAvailableEndpoints() {
+        List<Endpoint> list = new ArrayList<>(this.endpoints.size());
+        long retry = Long.MAX_VALUE;
+        for (Endpoint endpoint : this.endpoints) {
+            CircuitBreaker breaker = endpoint.getCircuitBreaker();
+            if (breaker.getState() == CircuitBreaker.State.OPEN) {
+                retry = Math.min(retry, breaker.getRetryTime());
+            } else {
+                list.add(endpoint);
+            }
+        }
+        this.nextRetryTime = retry;
+        this.availableEndpoints = list.size() == this.endpoints.size() ? this.endpoints : Collections.unmodifiableList(list);
+        logger.debug("{} of {} endpoints available.", list.size(), this.endpoints.size());
+    }
+}
@@ -0,0 +1,270 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents the hedging policy of a load balanced client. If the
+ * primary endpoint hasn't answered within the hedging delay, the same request
+ * is sent to another endpoint and the first successful response is used.
+ * Hedging is opt-in: only the requests to the services whose service code
+ * has been added to the policy are hedged, so only idempotent services should
+ * be added.
+ *
+ * The delay is either fixed or a percentile of the recent response times.
+ * The percentile is calculated from a ring buffer of recent response times
+ * and it's recalculated after every 64 new samples. Until enough samples have
+ * been collected, the fixed delay is used.
+ *
+ * The extra load caused by hedging is limited by a budget: every request adds
+ * a fraction of a token to the budget and every hedged request consumes one
+ * token. For example, budget 0.1 allows hedging at most 10 % of the requests.
+ *
+ * Hedging requires a SOAPClient whose sendAsync method returns before the
+ * response has been received, e.g. SOAPClientImpl. The default sendAsync
+ * method of SOAPClient sends the request synchronously, so with such clients
+ * the primary request has completed before the hedging delay starts and no
+ * requests are hedged.
+ *
+ * The settings of the policy can be changed while it's in use.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HedgingPolicy {
+
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 64;
+    private static final int RECALCULATE_INTERVAL = 64;
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private final Set<String> serviceCodes;
+    private final AtomicLongArray samples;
+    private final AtomicLong sampleCount;
+    private final AtomicLong tokens;
+    private final LongAdder requests;
+    private final LongAdder hedges;
+    private final LongAdder hedgesWon;
+    private final LongAdder budgetExceeded;
+    private volatile long percentileDelay;
+    private volatile long delay;
+    private volatile double percentile;
+    private volatile double budget;
+
+    /**
+     * Constructs and initializes a new HedgingPolicy object with 100 ms fixed
+     * delay and 10 % budget.
+     */
+    public HedgingPolicy() {
+        this.serviceCodes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.samples = new AtomicLongArray(SAMPLES);
+        this.sampleCount = new AtomicLong();
+        this.tokens = new AtomicLong(MAX_TOKENS);
+        this.requests = new LongAdder();
+        this.hedges = new LongAdder();
+        this.hedgesWon = new LongAdder();
+        this.budgetExceeded = new LongAdder();
+        this.percentileDelay = -1;
+        this.delay = 100;
+        this.budget = 0.1;
+    }
+
+    /**
+     * Adds the given service codes to the set of services whose requests are
+     * hedged.
+     *
+     * @param codes service codes of idempotent services
+     */
+    public void addServices(String... codes) {
+        this.serviceCodes.addAll(Arrays.asList(codes));
+    }
+
+    /**
+     * Checks if the given request should be hedged.
+     *
+     * @param request ServiceRequest to be checked
+     * @return true if the request should be hedged, otherwise false
+     */
+    public boolean isHedged(ServiceRequest request) {
+        return request.getProducer() != null && request.getProducer().getServiceCode() != null
+                && this.serviceCodes.contains(request.getProducer().getServiceCode());
+    }
+
+    /**
+     * Returns the fixed hedging delay.
+     *
+     * @return delay in milliseconds
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Sets the fixed hedging delay. The fixed delay is used if the percentile
+     * is not set or if there are not enough samples yet.
+     *
+     * @param delay new value in milliseconds
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Returns the percentile of recent response times that's used as the
+     * hedging delay. Zero means that the fixed delay is used.
+     *
+     * @return percentile between 0 and 1
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Sets the percentile of recent response times that's used as the
+     * hedging delay, e.g. 0.95. Zero means that the fixed delay is used.
+     *
+     * @param percentile new value between 0 and 1
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * Returns the maximum fraction of the requests that can be hedged.
+     *
+     * @return budget between 0 and 1
+     */
+    public double getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the maximum fraction of the requests that can be hedged, e.g. 0.1.
+     *
+     * @param budget new value between 0 and 1
+     */
+    public void setBudget(double budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the current hedging delay in nanoseconds.
+     *
+     * @return delay in nanoseconds
+     */
+    public long getCurrentDelay() {
+        long current = this.percentileDelay;
+        if (this.percentile > 0 && current >= 0) {
+            return current;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(this.delay);
+    }
+
+    /**
+     * Records the start of a hedged request and adds tokens to the budget.
+     */
+    public void requestStarted() {
+        this.requests.increment();
+        long add = (long) (this.budget * TOKEN);
+        long current;
+        do {
+            current = this.tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+        } while (!this.tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + add)));
+    }
+
+    /**
+     * Records the response time of a successful request.
+     *
+     * @param latency response time in nanoseconds
+     */
+    public void recordLatency(long latency) {
+        long count = this.sampleCount.getAndIncrement();
+        this.samples.set((int) (count % SAMPLES), latency);
+        if (this.percentile > 0 && count + 1 >= MIN_SAMPLES && (count + 1) % RECALCULATE_INTERVAL == 0) {
+            this.recalculate(Math.min(count + 1, SAMPLES));
+        }
+    }
+
+    private void recalculate(long size) {
+        long[] copy = new long[(int) size];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = this.samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.min(copy.length - 1, Math.ceil(this.percentile * copy.length) - 1);
+        this.percentileDelay = copy[Math.max(0, index)];
+    }
+
+    /**
+     * Tries to consume a token from the budget for a hedged request.
+     *
+     * @return true if the request can be hedged, otherwise false
+     */
+    public boolean tryAcquireBudget() {
+        long current;
+        do {
+            current = this.tokens.get();
+            if (current < TOKEN) {
+                this.budgetExceeded.increment();
+                return false;
+            }
+        } while (!this.tokens.compareAndSet(current, current - TOKEN));
+        this.hedges.increment();
+        return true;
+    }
+
+    /**
+     * Records that the hedged request returned the first successful response.
+     */
+    public void hedgeWon() {
+        this.hedgesWon.increment();
+    }
+
+    /**
+     * Returns the number of requests that have been eligible for hedging.
+     *
+     * @return number of requests
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Returns the number of hedged requests that have been sent.
+     *
+     * @return number of hedged requests
+     */
+    public long getHedges() {
+        return this.hedges.sum();
+    }
+
+    /**
+     * Returns the number of hedged requests that returned the first
+     * successful response.
+     *
+     * @return number of hedged requests that won
+     */
+    public long getHedgesWon() {
+        return this.hedgesWon.sum();
+    }
+
+    /**
+     * Returns the number of hedged requests that were not sent, because the
+     * budget was exceeded.
+     *
+     * @return number of hedged requests not sent
+     */
+    public long getBudgetExceeded() {
+        return this.budgetExceeded.sum();
+    }
+}
@@ -0,0 +1,40 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a load balancing strategy that sends the request to
+ * the endpoint that has the smallest number of requests in flight. If several
+ * endpoints have the same number of requests in flight, they're used in turn.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LeastOutstandingRequestsStrategy implements LoadBalancingStrategy {
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    /**
+     * Returns the endpoint that has the smallest number of requests in flight.
+     *
+     * @param endpoints list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+        int size = endpoints.size();
+        // Start from a rotating position so that ties are spread evenly
+        int start = Math.floorMod(this.offset.getAndIncrement(), size);
+        Endpoint selected = endpoints.get(start);
+        int min = selected.getInFlight();
+        for (int i = 1; i < size && min > 0; i++) {
+            Endpoint candidate = endpoints.get((start + i) % size);
+            int inFlight = candidate.getInFlight();
+            if (inFlight < min) {
+                selected = candidate;
+                min = inFlight;
+            }
+        }
+        return selected;
+    }
+}
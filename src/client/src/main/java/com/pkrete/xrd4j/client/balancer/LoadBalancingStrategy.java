@@ -0,0 +1,22 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+
+/**
+ * This class defines an interface for load balancing strategies that choose
+ * the endpoint where the next request is sent. Implementations must be thread
+ * safe and they should not block.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface LoadBalancingStrategy {
+
+    /**
+     * Chooses the endpoint where the next request is sent from the given list
+     * of endpoints. The list is never empty.
+     *
+     * @param endpoints list of available endpoints
+     * @return chosen endpoint
+     */
+    Endpoint select(List<Endpoint> endpoints);
+}
@@ -0,0 +1,54 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class implements a load balancing strategy that combines peak EWMA
+ * latency estimates with the power of two choices: two endpoints are picked
+ * at random and the request is sent to the one that has the lower cost. The
+ * cost of an endpoint is its latency estimate multiplied by the number of
+ * requests in flight plus one. Endpoints that don't have a latency estimate
+ * yet are compared by the number of requests in flight only, so they receive
+ * requests until they have one.
+ *
+ * Comparing two random endpoints instead of all of them avoids sending all
+ * the requests to the same endpoint between the updates of the statistics.
+ *
+ * @author Petteri Kivimäki
+ */
+public class PeakEwmaStrategy implements LoadBalancingStrategy {
+
+    /**
+     * Returns the cheaper one of two randomly picked endpoints.
+     *
+     * @param endpoints list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+        int size = endpoints.size();
+        if (size == 1) {
+            return endpoints.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // Pick a second endpoint that's different from the first one
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = endpoints.get(first);
+        Endpoint b = endpoints.get(second);
+        return cost(b) < cost(a) ? b : a;
+    }
+
+    private static double cost(Endpoint endpoint) {
+        double latency = endpoint.getLatencyEstimate();
+        int inFlight = endpoint.getInFlight();
+        if (latency == 0) {
+            return inFlight;
+        }
+        return latency * (inFlight + 1);
+    }
+}
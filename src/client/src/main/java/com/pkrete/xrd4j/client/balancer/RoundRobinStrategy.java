@@ -0,0 +1,28 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a round-robin load balancing strategy. Going down
+ * the list of endpoints, each endpoint receives a request in turn. The
+ * position of the next endpoint is kept in an atomic counter, so the strategy
+ * can be shared between threads without locks.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+
+    private final AtomicInteger nextTarget = new AtomicInteger();
+
+    /**
+     * Returns the next endpoint in turn.
+     *
+     * @param endpoints list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+        return endpoints.get(Math.floorMod(this.nextTarget.getAndIncrement(), endpoints.size()));
+    }
+}
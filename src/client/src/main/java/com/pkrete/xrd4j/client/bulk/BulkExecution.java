@@ -0,0 +1,297 @@
+package com.pkrete.xrd4j.client.bulk;
+
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a bulk send that's in progress. The requests are
+ * read lazily from the given iterator and sent asynchronously so that at
+ * most the given number of requests are outstanding at the same time. A
+ * request is outstanding from the moment it's sent until its result has been
+ * consumed, so results that the caller hasn't read yet hold back new
+ * requests and the memory used by the bulk doesn't depend on the number of
+ * requests.
+ *
+ * The results can be read either in the order of the requests using the
+ * iterator returned by ordered method, or in the order in which they
+ * complete using the iterator returned by unordered method. Only one of the
+ * iterators can be used per bulk. Errors of individual requests are captured
+ * in the results and they don't stop the bulk.
+ *
+ * If a request doesn't complete within the timeout, its result is completed
+ * with a TimeoutException. The underlying HTTP request is not aborted, it's
+ * left to the timeouts of the transport.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BulkExecution {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkExecution.class);
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "xrd4j-bulk-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Iterator<BulkRequest> source;
+    private final Function<BulkRequest, CompletableFuture<ServiceResponse>> sender;
+    private final int maxConcurrency;
+    private final long timeout;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final Map<Integer, BulkResult> completed;
+    private final Map<Integer, CompletableFuture<ServiceResponse>> inFlight;
+    private int dispatched;
+    private int consumed;
+    private boolean exhausted;
+    private boolean cancelled;
+    private boolean claimed;
+
+    /**
+     * Constructs and initializes a new BulkExecution object and starts sending
+     * the requests.
+     *
+     * @param source requests to be sent
+     * @param sender function that sends a request asynchronously
+     * @param maxConcurrency maximum number of outstanding requests
+     * @param timeout timeout of a single request in milliseconds, zero means
+     * no timeout
+     */
+    public BulkExecution(Iterator<BulkRequest> source, Function<BulkRequest, CompletableFuture<ServiceResponse>> sender, int maxConcurrency, long timeout) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be greater than zero.");
+        }
+        this.source = source;
+        this.sender = sender;
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = timeout;
+        this.lock = new ReentrantLock();
+        this.changed = this.lock.newCondition();
+        this.completed = new LinkedHashMap<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.dispatch();
+    }
+
+    /**
+     * Returns an iterator that returns the results in the order of the
+     * requests. The iterator blocks until the next result is available.
+     *
+     * @return iterator of the results in request order
+     * @throws IllegalStateException if the results are already being read
+     */
+    public Iterator<BulkResult> ordered() {
+        return new ResultIterator(true);
+    }
+
+    /**
+     * Returns an iterator that returns the results in the order in which
+     * they complete. The iterator blocks until the next result is available.
+     *
+     * @return iterator of the results in completion order
+     * @throws IllegalStateException if the results are already being read
+     */
+    public Iterator<BulkResult> unordered() {
+        return new ResultIterator(false);
+    }
+
+    /**
+     * Waits until all the requests have completed and returns the results in
+     * the order of the requests.
+     *
+     * @return list of the results
+     * @throws IllegalStateException if the results are already being read
+     */
+    public List<BulkResult> toList() {
+        List<BulkResult> results = new ArrayList<>();
+        for (Iterator<BulkResult> it = this.ordered(); it.hasNext();) {
+            results.add(it.next());
+        }
+        return results;
+    }
+
+    /**
+     * Stops sending new requests and cancels the requests that are in
+     * progress. The results of the cancelled requests are completed with a
+     * CancellationException.
+     */
+    public void cancel() {
+        this.lock.lock();
+        try {
+            this.cancelled = true;
+        } finally {
+            this.lock.unlock();
+        }
+        for (CompletableFuture<ServiceResponse> future : this.inFlight.values()) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Sends new requests until the maximum number of outstanding requests is
+     * reached or there are no more requests.
+     */
+    private void dispatch() {
+        while (true) {
+            BulkRequest request;
+            int index;
+            this.lock.lock();
+            try {
+                if (this.cancelled || this.exhausted || this.dispatched - this.consumed >= this.maxConcurrency) {
+                    return;
+                }
+                if (!this.source.hasNext()) {
+                    this.exhausted = true;
+                    this.changed.signalAll();
+                    return;
+                }
+                request = this.source.next();
+                index = this.dispatched++;
+            } finally {
+                this.lock.unlock();
+            }
+            this.send(index, request);
+        }
+    }
+
+    private void send(final int index, final BulkRequest request) {
+        CompletableFuture<ServiceResponse> future;
+        try {
+            future = this.sender.apply(request);
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+        final CompletableFuture<ServiceResponse> pending = future;
+        this.inFlight.put(index, pending);
+        final ScheduledFuture<?> timer = this.timeout > 0 && !pending.isDone()
+                ? TIMER.schedule(() -> pending.completeExceptionally(new TimeoutException("Request " + index + " timed out after " + this.timeout + " ms.")), this.timeout, TimeUnit.MILLISECONDS)
+                : null;
+        pending.whenComplete((response, error) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            this.inFlight.remove(index);
+            this.complete(new BulkResult(index, request, error == null ? response : null, unwrap(error)));
+        });
+    }
+
+    private void complete(final BulkResult result) {
+        if (!result.isSuccess()) {
+            logger.debug("Request {} of the bulk failed : {}", result.getIndex(), result.getError().getMessage());
+        }
+        this.lock.lock();
+        try {
+            this.completed.put(result.getIndex(), result);
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Iterator that hands out the results and releases a slot for a new
+     * request for each result.
+     */
+    private class ResultIterator implements Iterator<BulkResult> {
+
+        private final boolean ordered;
+
+        ResultIterator(boolean ordered) {
+            lock.lock();
+            try {
+                if (claimed) {
+                    throw new IllegalStateException("The results are already being read.");
+                }
+                claimed = true;
+            } finally {
+                lock.unlock();
+            }
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean hasNext() {
+            lock.lock();
+            try {
+                while (consumed == dispatched && !exhausted && !cancelled) {
+                    // Dispatching has not caught up yet
+                    this.await();
+                }
+                return consumed < dispatched;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public BulkResult next() {
+            BulkResult result;
+            lock.lock();
+            try {
+                while (true) {
+                    result = this.take();
+                    if (result != null) {
+                        break;
+                    }
+                    if (consumed == dispatched && (exhausted || cancelled)) {
+                        throw new NoSuchElementException();
+                    }
+                    this.await();
+                }
+                consumed++;
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+            return result;
+        }
+
+        private BulkResult take() {
+            if (this.ordered) {
+                return completed.remove(consumed);
+            }
+            Iterator<BulkResult> it = completed.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            BulkResult result = it.next();
+            it.remove();
+            return result;
+        }
+
+        private void await() {
+            try {
+                changed.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new XRd4JRuntimeException("Interrupted while waiting for the results of the bulk.");
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.pkrete.xrd4j.client.bulk;
+
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+
+/**
+ * This class represents a single request of a bulk send: the ServiceRequest
+ * object to be sent and the serializer and deserializer that are used for
+ * converting it from/to SOAPMessage.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BulkRequest {
+
+    private final ServiceRequest request;
+    private final ServiceRequestSerializer serializer;
+    private final ServiceResponseDeserializer deserializer;
+
+    /**
+     * Constructs and initializes a new BulkRequest object.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     */
+    public BulkRequest(ServiceRequest request, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer) {
+        this.request = request;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    /**
+     * Returns the ServiceRequest object to be sent.
+     *
+     * @return ServiceRequest object
+     */
+    public ServiceRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the serializer of the request.
+     *
+     * @return ServiceRequestSerializer object
+     */
+    public ServiceRequestSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Returns the deserializer of the response.
+     *
+     * @return ServiceResponseDeserializer object
+     */
+    public ServiceResponseDeserializer getDeserializer() {
+        return deserializer;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pkrete.xrd4j.client.bulk;
+
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+
+/**
+ * This class represents the result of a single request of a bulk send. The
+ * result holds either the response or the error that occurred while sending
+ * the request.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BulkResult {
+
+    private final int index;
+    private final BulkRequest request;
+    private final ServiceResponse response;
+    private final Throwable error;
+
+    /**
+     * Constructs and initializes a new BulkResult object.
+     *
+     * @param index position of the request in the bulk
+     * @param request the request
+     * @param response the response or null
+     * @param error the error or null
+     */
+    public BulkResult(int index, BulkRequest request, ServiceResponse response, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * Returns the position of the request in the bulk starting from zero.
+     *
+     * @return position of the request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the request.
+     *
+     * @return the request
+     */
+    public BulkRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the response of the request. Null is returned if sending the
+     * request failed.
+     *
+     * @return the response or null
+     */
+    public ServiceResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the error that occurred while sending the request, e.g.
+     * SOAPException, TimeoutException or CancellationException. Null is
+     * returned if the request succeeded.
+     *
+     * @return the error or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns true if the request succeeded.
+     *
+     * @return true if the request succeeded, otherwise false
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.pkrete.xrd4j.client.cache;
+
+import com.pkrete.xrd4j.client.LoadBalancedSOAPClient;
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class is a LoadBalancedSOAPClient decorator that serves the responses
+ * of ServiceRequests from a ResponseCache. Only the methods that take a
+ * ServiceRequest and a serializer use the cache, the other methods are passed
+ * to the underlying client as such.
+ *
+ * On a miss the request is sent using the ServiceRequest methods of the
+ * underlying client, so the client verifies the hash of the request and
+ * applies its own policies. A cached response is the response of an earlier
+ * request, so it contains the id and userId of that request and the hash of
+ * the request is not verified.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CachingLoadBalancedSOAPClient implements LoadBalancedSOAPClient {
+
+    private final LoadBalancedSOAPClient client;
+    private final ResponseCache cache;
+
+    /**
+     * Constructs and initializes a new CachingLoadBalancedSOAPClient object.
+     *
+     * @param client the underlying client
+     * @param cache cache of the responses
+     */
+    public CachingLoadBalancedSOAPClient(LoadBalancedSOAPClient client, ResponseCache cache) {
+        this.client = client;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache of the responses.
+     *
+     * @return ResponseCache object
+     */
+    public ResponseCache getCache() {
+        return this.cache;
+    }
+
+    @Override
+    public SOAPMessage send(final SOAPMessage request) throws SOAPException {
+        return this.client.send(request);
+    }
+
+    @Override
+    public ServiceResponse send(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) throws SOAPException {
+        return this.cache.send(request, serializer, deserializer, serialized -> this.client.send(request, serialized, deserializer));
+    }
+
+    @Override
+    public CompletableFuture<SOAPMessage> sendAsync(final SOAPMessage request) {
+        return this.client.sendAsync(request);
+    }
+
+    @Override
+    public CompletableFuture<ServiceResponse> sendAsync(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) {
+        return this.cache.sendAsync(request, serializer, deserializer, serialized -> this.client.sendAsync(request, serialized, deserializer));
+    }
+
+    @Override
+    public List<ConsumerMember> listClients() {
+        return this.client.listClients();
+    }
+
+    @Override
+    public List<ProducerMember> listCentralServices() {
+        return this.client.listCentralServices();
+    }
+
+    @Override
+    public ServiceResponse listMethods(final ServiceRequest request) throws SOAPException {
+        return this.client.listMethods(request);
+    }
+
+    @Override
+    public ServiceResponse allowedMethods(final ServiceRequest request) throws SOAPException {
+        return this.client.allowedMethods(request);
+    }
+
+    @Override
+    public ServiceResponse getSecurityServerMetrics(final ServiceRequest request, final String url) throws SOAPException {
+        return this.client.getSecurityServerMetrics(request, url);
+    }
+}
@@ -0,0 +1,582 @@
+package com.pkrete.xrd4j.client.cache;
+
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.MessageHelper;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a cache of SOAP responses. The responses are stored
+ * as raw bytes and they're parsed again when they're read from the cache.
+ * The cache key consists of the client, the service and a hash of the SOAP
+ * body of the request, which means that the requests that differ only by
+ * the id or userId header fields share the same cached response.
+ *
+ * Responses are cached only for the services that have a TTL. The TTL can be
+ * defined by service code or by the full service identifier, e.g.
+ * "FI.GOV.1234.subsystem.getRandom.v1". The default TTL applies to the other
+ * services and by default it's zero, which means that nothing is cached.
+ *
+ * The total size of the responses held in memory is bounded and the least
+ * recently used responses are evicted first. If a directory is given, the
+ * responses are also written to disk and read from there when they're not
+ * found from memory. The disk storage is not bounded, but expired entries
+ * are removed when they're read.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String KEY_ALGORITHM = "SHA-256";
+    private final long maxBytes;
+    private final File directory;
+    private final Map<String, Entry> entries;
+    private final Map<String, Long> ttls;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private long size;
+    private volatile long defaultTtl;
+
+    /**
+     * Constructs and initializes a new ResponseCache object that holds the
+     * responses in memory only.
+     *
+     * @param maxBytes maximum total size of the responses held in memory
+     */
+    public ResponseCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Constructs and initializes a new ResponseCache object that holds the
+     * responses in memory and writes them to the given directory.
+     *
+     * @param maxBytes maximum total size of the responses held in memory
+     * @param directory directory where the responses are written, null means
+     * no disk storage
+     */
+    public ResponseCache(long maxBytes, File directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create directory \"" + directory + "\".");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.ttls = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the TTL of the services that don't have their own TTL.
+     *
+     * @return default TTL in milliseconds
+     */
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    /**
+     * Sets the TTL of the services that don't have their own TTL. Zero means
+     * that the responses are not cached.
+     *
+     * @param defaultTtl new value in milliseconds
+     */
+    public void setDefaultTtl(long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * Sets the TTL of the given service. The service is identified either by
+     * its service code or by its full identifier, e.g.
+     * "FI.GOV.1234.subsystem.getRandom.v1". Zero means that the responses of
+     * the service are not cached.
+     *
+     * @param service service code or identifier of the service
+     * @param ttl TTL in milliseconds
+     */
+    public void setTtl(String service, long ttl) {
+        this.ttls.put(service, ttl);
+    }
+
+    /**
+     * Returns the TTL of the given service.
+     *
+     * @param producer service
+     * @return TTL in milliseconds
+     */
+    public long getTtl(ProducerMember producer) {
+        Long ttl = this.ttls.get(producer.toString());
+        if (ttl == null) {
+            ttl = this.ttls.get(producer.getServiceCode());
+        }
+        return ttl == null ? this.defaultTtl : ttl;
+    }
+
+    /**
+     * Returns the number of requests that were served from the cache.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that were not found from the cache.
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the number of responses that were evicted from memory because
+     * of the size limit.
+     *
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to all the lookups.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = this.hits.sum();
+        long total = hitCount + this.misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the total size of the responses held in memory.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of responses held in memory.
+     *
+     * @return number of responses
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Creates the cache key of the given request. The key consists of the
+     * client, the service and a hash of the SOAP body of the serialized
+     * request.
+     *
+     * @param request the ServiceRequest object
+     * @param soapRequest serialized request
+     * @return cache key
+     * @throws SOAPException if serializing the request fails
+     */
+    public String createKey(final ServiceRequest request, final SOAPMessage soapRequest) throws SOAPException {
+        byte[] bytes = toBytes(soapRequest);
+        String prefix = soapRequest.getSOAPPart().getEnvelope().getPrefix();
+        byte[] marker = ("<" + (prefix == null || prefix.isEmpty() ? "" : prefix + ":") + "Body").getBytes(StandardCharsets.UTF_8);
+        int bodyStart = Math.max(0, indexOf(bytes, marker));
+        MessageDigest digest;
+        try {
+            digest = MessageHelper.borrowMessageDigest(KEY_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        try {
+            digest.update(bytes, bodyStart, bytes.length - bodyStart);
+            return request.getConsumer() + "|" + request.getProducer() + "|" + Base64.getEncoder().encodeToString(digest.digest());
+        } finally {
+            MessageHelper.releaseMessageDigest(digest);
+        }
+    }
+
+    /**
+     * Returns the cached response that matches the given key. Null is
+     * returned if the response is not found or it has expired.
+     *
+     * @param key cache key
+     * @return SOAPMessage object parsed from the cached response or null
+     */
+    public SOAPMessage get(final String key) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null && entry.expires <= now) {
+                this.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null && this.directory != null) {
+            entry = this.readFromDisk(key, now);
+            if (entry != null) {
+                this.store(key, entry);
+            }
+        }
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+        try {
+            SOAPMessage message = entry.toMessage();
+            this.hits.increment();
+            logger.debug("Response found from the cache. Key : \"{}\"", key);
+            return message;
+        } catch (SOAPException | IOException ex) {
+            logger.warn("Parsing cached response failed : {}", ex.getMessage());
+            this.invalidate(key);
+            this.misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given response to the cache.
+     *
+     * @param key cache key
+     * @param ttl TTL of the response in milliseconds
+     * @param response the response to be stored
+     */
+    public void put(final String key, final long ttl, final SOAPMessage response) {
+        Entry entry;
+        try {
+            String[] contentType = response.getMimeHeaders().getHeader("Content-Type");
+            entry = new Entry(toBytes(response), contentType == null ? null : contentType[0], System.currentTimeMillis() + ttl);
+        } catch (SOAPException ex) {
+            logger.warn("Serializing the response failed. The response is not cached : {}", ex.getMessage());
+            return;
+        }
+        this.store(key, entry);
+        if (this.directory != null) {
+            this.writeToDisk(key, entry);
+        }
+    }
+
+    /**
+     * Removes the response that matches the given key.
+     *
+     * @param key cache key
+     */
+    public void invalidate(final String key) {
+        synchronized (this) {
+            this.remove(key);
+        }
+        if (this.directory != null && !this.fileOf(key).delete()) {
+            logger.trace("No cached response on disk. Key : \"{}\"", key);
+        }
+    }
+
+    /**
+     * Removes all the responses from memory and from disk.
+     */
+    public void clear() {
+        synchronized (this) {
+            this.entries.clear();
+            this.size = 0;
+        }
+        if (this.directory != null) {
+            File[] files = this.directory.listFiles((dir, name) -> name.endsWith(".cache"));
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        logger.warn("Unable to delete \"{}\".", file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached response of the given request if it's found.
+     * Otherwise the request is sent using the given sender and the response
+     * is stored to the cache unless it contains an error. The request is
+     * serialized only once: on a miss the sender gets a serializer that
+     * returns the request that was serialized for the cache key. Requests of
+     * services without a TTL are passed to the sender with the given
+     * serializer and requests with attachments are not cached.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer serializer of the request
+     * @param deserializer deserializer of the response
+     * @param sender sends the request using the given serializer
+     * @return ServiceResponse object
+     * @throws SOAPException if there's a SOAP error
+     */
+    ServiceResponse send(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer,
+            final Sender sender) throws SOAPException {
+        long ttl = this.getTtl(request.getProducer());
+        if (ttl <= 0) {
+            return sender.send(serializer);
+        }
+        SOAPMessage soapRequest = serializer.serialize(request);
+        if (SOAPHelper.hasAttachments(soapRequest)) {
+            return sender.send(serialized(soapRequest));
+        }
+        String key = this.createKey(request, soapRequest);
+        SOAPMessage cached = this.get(key);
+        if (cached != null) {
+            return deserialize(request, cached, deserializer);
+        }
+        ServiceResponse response = sender.send(serialized(soapRequest));
+        this.putIfValid(key, ttl, response);
+        return response;
+    }
+
+    /**
+     * Asynchronous version of the send method. A cached response is returned
+     * as a completed future.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer serializer of the request
+     * @param deserializer deserializer of the response
+     * @param sender sends the request asynchronously using the given
+     * serializer
+     * @return future that's completed with the ServiceResponse object
+     */
+    CompletableFuture<ServiceResponse> sendAsync(final ServiceRequest request, final ServiceRequestSerializer serializer,
+            final ServiceResponseDeserializer deserializer, final Function<ServiceRequestSerializer, CompletableFuture<ServiceResponse>> sender) {
+        long ttl = this.getTtl(request.getProducer());
+        if (ttl <= 0) {
+            return sender.apply(serializer);
+        }
+        String key;
+        SOAPMessage soapRequest;
+        try {
+            soapRequest = serializer.serialize(request);
+            if (SOAPHelper.hasAttachments(soapRequest)) {
+                return sender.apply(serialized(soapRequest));
+            }
+            key = this.createKey(request, soapRequest);
+            SOAPMessage cached = this.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(deserialize(request, cached, deserializer));
+            }
+        } catch (SOAPException | RuntimeException ex) {
+            CompletableFuture<ServiceResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+        return sender.apply(serialized(soapRequest)).thenApply(response -> {
+            this.putIfValid(key, ttl, response);
+            return response;
+        });
+    }
+
+    /**
+     * Returns a serializer that returns the given serialized request.
+     *
+     * @param soapRequest serialized request
+     * @return serializer of the request
+     */
+    private static ServiceRequestSerializer serialized(final SOAPMessage soapRequest) {
+        return request -> soapRequest;
+    }
+
+    private void putIfValid(final String key, final long ttl, final ServiceResponse response) {
+        // The deserializer sets the SOAPMessage of the response
+        if (response != null && !response.hasError() && response.getSoapMessage() != null) {
+            this.put(key, ttl, response.getSoapMessage());
+        }
+    }
+
+    /**
+     * Deserializes the given response in the same way as SOAPClientImpl.
+     *
+     * @param request the ServiceRequest object that was sent
+     * @param soapResponse the response
+     * @param deserializer deserializer of the response
+     * @return ServiceResponse object
+     */
+    static ServiceResponse deserialize(final ServiceRequest request, final SOAPMessage soapResponse, final ServiceResponseDeserializer deserializer) {
+        String namespaceUrl = request.getProducer().getNamespaceUrl();
+        String producerNamespaceURI = namespaceUrl == null || namespaceUrl.isEmpty() ? "*" : namespaceUrl;
+        return deserializer.deserialize(soapResponse, producerNamespaceURI, request.isProcessingWrappers());
+    }
+
+    private synchronized void store(final String key, final Entry entry) {
+        this.remove(key);
+        if (entry.bytes.length > this.maxBytes) {
+            return;
+        }
+        this.entries.put(key, entry);
+        this.size += entry.bytes.length;
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (this.size > this.maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            this.size -= eldest.bytes.length;
+            this.evictions.increment();
+        }
+    }
+
+    private void remove(final String key) {
+        Entry old = this.entries.remove(key);
+        if (old != null) {
+            this.size -= old.bytes.length;
+        }
+    }
+
+    private Entry readFromDisk(final String key, final long now) {
+        File file = this.fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long expires = in.readLong();
+            String storedKey = in.readUTF();
+            String contentType = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            if (!key.equals(storedKey)) {
+                return null;
+            }
+            if (expires <= now) {
+                in.close();
+                if (!file.delete()) {
+                    logger.warn("Unable to delete \"{}\".", file);
+                }
+                return null;
+            }
+            return new Entry(bytes, contentType.isEmpty() ? null : contentType, expires);
+        } catch (IOException ex) {
+            logger.warn("Reading cached response from \"{}\" failed : {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(final String key, final Entry entry) {
+        File file = this.fileOf(key);
+        File temp = new File(this.directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeLong(entry.expires);
+            out.writeUTF(key);
+            out.writeUTF(entry.contentType == null ? "" : entry.contentType);
+            out.writeInt(entry.bytes.length);
+            out.write(entry.bytes);
+        } catch (IOException ex) {
+            logger.warn("Writing cached response to \"{}\" failed : {}", file, ex.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            logger.warn("Unable to rename \"{}\".", temp);
+        }
+    }
+
+    private File fileOf(final String key) {
+        try {
+            MessageDigest digest = MessageHelper.borrowMessageDigest(KEY_ALGORITHM);
+            try {
+                byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+                StringBuilder name = new StringBuilder(hash.length * 2 + 6);
+                for (byte b : hash) {
+                    name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                return new File(this.directory, name.append(".cache").toString());
+            } finally {
+                MessageHelper.releaseMessageDigest(digest);
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] toBytes(final SOAPMessage message) throws SOAPException {
+        try {
+            if (message.saveRequired()) {
+                message.saveChanges();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+            message.writeTo(out);
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Sends a request using the given serializer and returns the
+     * deserialized response.
+     */
+    @FunctionalInterface
+    interface Sender {
+
+        ServiceResponse send(ServiceRequestSerializer serializer) throws SOAPException;
+    }
+
+    /**
+     * Cached response.
+     */
+    private static class Entry {
+
+        private final byte[] bytes;
+        private final String contentType;
+        private final long expires;
+
+        Entry(byte[] bytes, String contentType, long expires) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+            this.expires = expires;
+        }
+
+        SOAPMessage toMessage() throws SOAPException, IOException {
+            MimeHeaders headers = new MimeHeaders();
+            headers.addHeader("Content-Type", this.contentType == null ? "text/xml; charset=utf-8" : this.contentType);
+            SOAPMessage message = MessageFactory.newInstance().createMessage(headers, new ByteArrayInputStream(this.bytes));
+            message.getSOAPPart().getEnvelope();
+            return message;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.pkrete.xrd4j.client.catalog;
+
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * This class represents an immutable snapshot of the X-Road service catalog.
+ * The services are indexed by X-Road instance, member class, member,
+ * subsystem and service code using hash indexes, and by the full identifier
+ * of the service using a sorted prefix index. All the lookups are done in
+ * memory and they don't need any locks.
+ *
+ * The identifiers used by the indexes consist of the parts of the service
+ * identifier separated by '/': instance/memberClass/memberCode/subsystemCode/
+ * serviceCode/serviceVersion. Missing parts are left empty, e.g. the
+ * identifier of a service without a subsystem is
+ * "FI/GOV/1234//getRandom/v1", so the identifiers are never ambiguous.
+ *
+ * The ProducerMember objects returned by the snapshot are shared and they
+ * must not be modified.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CatalogSnapshot {
+
+    private static final char SEPARATOR = '/';
+    private final long created;
+    private final List<ConsumerMember> clients;
+    private final List<ProducerMember> services;
+    private final Map<String, List<ProducerMember>> byInstance;
+    private final Map<String, List<ProducerMember>> byMemberClass;
+    private final Map<String, List<ProducerMember>> byMember;
+    private final Map<String, List<ProducerMember>> bySubsystem;
+    private final Map<String, List<ProducerMember>> byServiceCode;
+    private final NavigableMap<String, ProducerMember> byId;
+
+    /**
+     * Constructs and initializes a new CatalogSnapshot object and builds the
+     * indexes of the given services.
+     *
+     * @param clients clients of the security server
+     * @param services services offered by the clients
+     */
+    public CatalogSnapshot(List<ConsumerMember> clients, List<ProducerMember> services) {
+        this.created = System.currentTimeMillis();
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.services = Collections.unmodifiableList(new ArrayList<>(services));
+        Map<String, List<ProducerMember>> instances = new HashMap<>();
+        Map<String, List<ProducerMember>> memberClasses = new HashMap<>();
+        Map<String, List<ProducerMember>> members = new HashMap<>();
+        Map<String, List<ProducerMember>> subsystems = new HashMap<>();
+        Map<String, List<ProducerMember>> serviceCodes = new HashMap<>();
+        TreeMap<String, ProducerMember> ids = new TreeMap<>();
+        for (ProducerMember service : this.services) {
+            add(instances, key(service.getXRoadInstance()), service);
+            add(memberClasses, key(service.getXRoadInstance(), service.getMemberClass()), service);
+            add(members, key(service.getXRoadInstance(), service.getMemberClass(), service.getMemberCode()), service);
+            if (service.getSubsystemCode() != null) {
+                add(subsystems, key(service.getXRoadInstance(), service.getMemberClass(), service.getMemberCode(), service.getSubsystemCode()), service);
+            }
+            add(serviceCodes, service.getServiceCode(), service);
+            ids.put(id(service), service);
+        }
+        this.byInstance = freeze(instances);
+        this.byMemberClass = freeze(memberClasses);
+        this.byMember = freeze(members);
+        this.bySubsystem = freeze(subsystems);
+        this.byServiceCode = freeze(serviceCodes);
+        this.byId = Collections.unmodifiableNavigableMap(ids);
+    }
+
+    /**
+     * Returns the time when the snapshot was created.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Returns all the clients of the catalog.
+     *
+     * @return unmodifiable list of clients
+     */
+    public List<ConsumerMember> getClients() {
+        return this.clients;
+    }
+
+    /**
+     * Returns all the services of the catalog.
+     *
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> getServices() {
+        return this.services;
+    }
+
+    /**
+     * Returns the services of the given X-Road instance.
+     *
+     * @param instance X-Road instance
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findByInstance(String instance) {
+        return get(this.byInstance, key(instance));
+    }
+
+    /**
+     * Returns the services of the given member class.
+     *
+     * @param instance X-Road instance
+     * @param memberClass member class
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findByMemberClass(String instance, String memberClass) {
+        return get(this.byMemberClass, key(instance, memberClass));
+    }
+
+    /**
+     * Returns the services of the given member including the services of its
+     * subsystems.
+     *
+     * @param instance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findByMember(String instance, String memberClass, String memberCode) {
+        return get(this.byMember, key(instance, memberClass, memberCode));
+    }
+
+    /**
+     * Returns the services of the given subsystem.
+     *
+     * @param instance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @param subsystemCode subsystem code
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findBySubsystem(String instance, String memberClass, String memberCode, String subsystemCode) {
+        return get(this.bySubsystem, key(instance, memberClass, memberCode, subsystemCode));
+    }
+
+    /**
+     * Returns all the services that have the given service code, e.g. to find
+     * out which subsystems expose the service.
+     *
+     * @param serviceCode service code
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findByServiceCode(String serviceCode) {
+        return get(this.byServiceCode, serviceCode);
+    }
+
+    /**
+     * Returns all the services whose identifier starts with the given prefix,
+     * e.g. "FI/GOV/" or "FI/GOV/1234". The prefix is matched on whole parts
+     * of the identifier, so "FI/GOV/1234" doesn't match "FI/GOV/12345".
+     *
+     * @param prefix prefix of the identifier
+     * @return unmodifiable list of services
+     */
+    public List<ProducerMember> findByPrefix(String prefix) {
+        List<ProducerMember> result = new ArrayList<>();
+        String start = prefix;
+        if (prefix.isEmpty() || prefix.charAt(prefix.length() - 1) != SEPARATOR) {
+            ProducerMember service = this.byId.get(prefix);
+            if (service != null) {
+                result.add(service);
+            }
+            start = prefix + SEPARATOR;
+        }
+        result.addAll(this.byId.subMap(start, true, start + Character.MAX_VALUE, false).values());
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the service that has the given identifier, e.g.
+     * "FI/GOV/1234/subsystem/getRandom/v1" or "FI/GOV/1234//getRandom/v1".
+     * Null is returned if the service is not found.
+     *
+     * @param id identifier of the service
+     * @return service or null
+     */
+    public ProducerMember findById(String id) {
+        return this.byId.get(id);
+    }
+
+    /**
+     * Checks if the given version of the given service is available.
+     *
+     * @param instance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @param subsystemCode subsystem code, can be null
+     * @param serviceCode service code
+     * @param serviceVersion service version, can be null
+     * @return true if the service is available, otherwise false
+     */
+    public boolean isAvailable(String instance, String memberClass, String memberCode, String subsystemCode, String serviceCode, String serviceVersion) {
+        return this.byId.containsKey(key(instance, memberClass, memberCode, subsystemCode, serviceCode, serviceVersion));
+    }
+
+    /**
+     * Returns the identifier of the given service.
+     *
+     * @param service service
+     * @return identifier of the service
+     */
+    public static String id(ProducerMember service) {
+        return key(service.getXRoadInstance(), service.getMemberClass(), service.getMemberCode(),
+                service.getSubsystemCode(), service.getServiceCode(), service.getServiceVersion());
+    }
+
+    private static String key(String... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            // Missing parts are left empty so that the position of each part
+            // is fixed
+            if (parts[i] != null) {
+                builder.append(parts[i]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void add(Map<String, List<ProducerMember>> index, String key, ProducerMember service) {
+        List<ProducerMember> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            index.put(key, list);
+        }
+        list.add(service);
+    }
+
+    private static Map<String, List<ProducerMember>> freeze(Map<String, List<ProducerMember>> index) {
+        Map<String, List<ProducerMember>> result = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<ProducerMember>> entry : index.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static List<ProducerMember> get(Map<String, List<ProducerMember>> index, String key) {
+        List<ProducerMember> list = index.get(key);
+        return list == null ? Collections.<ProducerMember>emptyList() : list;
+    }
+}
@@ -0,0 +1,215 @@
+package com.pkrete.xrd4j.client.catalog;
+
+import com.pkrete.xrd4j.client.SOAPClient;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.soap.SOAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents an in-memory catalog of the services that are
+ * available through the given security server. The catalog is populated by
+ * calling listClients meta service and then listMethods or allowedMethods
+ * meta service for all the clients in parallel.
+ *
+ * The content of the catalog is held in an immutable CatalogSnapshot object
+ * that's replaced atomically when the catalog is refreshed. Readers never
+ * block and they always see a consistent snapshot. If listing the services of
+ * a client fails during a refresh, the services of the client are copied from
+ * the previous snapshot. If listing the clients fails, the previous snapshot
+ * is kept.
+ *
+ * The meta services are called using a thread pool that's shared by all the
+ * refreshes of the catalog. The threads of the pool are stopped when they've
+ * been idle for a minute.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServiceCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceCatalog.class);
+    private final SOAPClient soapClient;
+    private final String url;
+    private final ConsumerMember consumer;
+    private final AtomicReference<CatalogSnapshot> snapshot;
+    private final ThreadPoolExecutor executor;
+    private boolean allowedMethods;
+    private volatile int parallelism;
+
+    /**
+     * Constructs and initializes a new ServiceCatalog object. The catalog is
+     * empty until it's refreshed for the first time. By default the services
+     * are listed using listMethods meta service and 8 clients are crawled in
+     * parallel.
+     *
+     * @param soapClient SOAPClient used for calling the meta services
+     * @param url URL of X-Road security server
+     * @param consumer client that calls the meta services
+     */
+    public ServiceCatalog(SOAPClient soapClient, String url, ConsumerMember consumer) {
+        this.soapClient = soapClient;
+        this.url = url;
+        this.consumer = consumer;
+        this.snapshot = new AtomicReference<>(new CatalogSnapshot(Collections.<ConsumerMember>emptyList(), Collections.<ProducerMember>emptyList()));
+        this.parallelism = 8;
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "xrd4j-service-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns true if the services are listed using allowedMethods meta
+     * service instead of listMethods.
+     *
+     * @return true if allowedMethods is used, otherwise false
+     */
+    public boolean isAllowedMethods() {
+        return allowedMethods;
+    }
+
+    /**
+     * Sets whether the services are listed using allowedMethods meta service
+     * instead of listMethods. If true, only the services that the consumer
+     * has permission to invoke are included.
+     *
+     * @param allowedMethods new value
+     */
+    public void setAllowedMethods(boolean allowedMethods) {
+        this.allowedMethods = allowedMethods;
+    }
+
+    /**
+     * Returns the maximum number of clients that are crawled in parallel.
+     *
+     * @return maximum number of parallel meta service calls
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of clients that are crawled in parallel.
+     *
+     * @param parallelism new value, must be greater than zero
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero.");
+        }
+        // The maximum pool size can't be smaller than the core pool size
+        if (parallelism > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(parallelism);
+            this.executor.setCorePoolSize(parallelism);
+        } else {
+            this.executor.setCorePoolSize(parallelism);
+            this.executor.setMaximumPoolSize(parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the current snapshot of the catalog. The returned snapshot
+     * doesn't change, so several lookups can be made against the same
+     * consistent view of the catalog.
+     *
+     * @return current snapshot
+     */
+    public CatalogSnapshot getSnapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * Rebuilds the catalog by crawling the meta services and replaces the
+     * current snapshot with the new one. The calling thread waits until the
+     * crawl has completed.
+     *
+     * @return the new snapshot, or the previous snapshot if listing the
+     * clients failed
+     */
+    public CatalogSnapshot refresh() {
+        CatalogSnapshot previous = this.snapshot.get();
+        List<ConsumerMember> clients;
+        try {
+            clients = this.soapClient.listClients(this.url);
+        } catch (RuntimeException ex) {
+            logger.error("Listing the clients failed. The previous catalog is kept : {}", ex.getMessage());
+            return previous;
+        }
+        if (clients == null) {
+            logger.warn("Listing the clients failed. The previous catalog is kept.");
+            return previous;
+        }
+        List<ProducerMember> services = this.crawl(clients, previous);
+        CatalogSnapshot created = new CatalogSnapshot(clients, services);
+        this.snapshot.set(created);
+        logger.debug("Service catalog refreshed. {} clients and {} services found.", clients.size(), services.size());
+        return created;
+    }
+
+    private List<ProducerMember> crawl(final List<ConsumerMember> clients, final CatalogSnapshot previous) {
+        List<CompletableFuture<List<ProducerMember>>> futures = new ArrayList<>(clients.size());
+        for (final ConsumerMember client : clients) {
+            futures.add(CompletableFuture.supplyAsync(() -> this.listServices(client, previous), this.executor));
+        }
+        List<ProducerMember> services = new ArrayList<>();
+        for (CompletableFuture<List<ProducerMember>> future : futures) {
+            services.addAll(future.join());
+        }
+        return services;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProducerMember> listServices(final ConsumerMember client, final CatalogSnapshot previous) {
+        String serviceCode = this.allowedMethods ? Constants.META_SERVICE_ALLOWED_METHODS : Constants.META_SERVICE_LIST_METHODS;
+        try {
+            ServiceRequest<?> request = new ServiceRequest<>(this.consumer, toProducer(client, serviceCode));
+            ServiceResponse response = this.allowedMethods
+                    ? this.soapClient.allowedMethods(request, this.url) : this.soapClient.listMethods(request, this.url);
+            if (response.hasError() || response.getResponseData() == null) {
+                String reason = response.hasError() ? response.getErrorMessage().getFaultString() : "no response data";
+                logger.warn("Listing the services of \"{}\" failed. The previous services are kept : {}", client, reason);
+                return previousServices(client, previous);
+            }
+            return (List<ProducerMember>) response.getResponseData();
+        } catch (SOAPException | XRd4JException | RuntimeException ex) {
+            logger.warn("Listing the services of \"{}\" failed. The previous services are kept : {}", client, ex.getMessage());
+            return previousServices(client, previous);
+        }
+    }
+
+    private static List<ProducerMember> previousServices(final ConsumerMember client, final CatalogSnapshot previous) {
+        if (client.getSubsystemCode() != null) {
+            return previous.findBySubsystem(client.getXRoadInstance(), client.getMemberClass(), client.getMemberCode(), client.getSubsystemCode());
+        }
+        List<ProducerMember> result = new ArrayList<>();
+        for (ProducerMember service : previous.findByMember(client.getXRoadInstance(), client.getMemberClass(), client.getMemberCode())) {
+            if (service.getSubsystemCode() == null) {
+                result.add(service);
+            }
+        }
+        return result;
+    }
+
+    private static ProducerMember toProducer(final ConsumerMember provider, final String serviceCode) throws XRd4JException {
+        if (provider.getSubsystemCode() == null) {
+            return new ProducerMember(provider.getXRoadInstance(), provider.getMemberClass(), provider.getMemberCode(), serviceCode);
+        }
+        return new ProducerMember(provider.getXRoadInstance(), provider.getMemberClass(), provider.getMemberCode(), provider.getSubsystemCode(), serviceCode);
+    }
+}
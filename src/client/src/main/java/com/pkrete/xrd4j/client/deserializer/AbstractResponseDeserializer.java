@@ -138,7 +138,7 @@ public abstract class AbstractResponseDeserializer<T1, T2> extends AbstractHeade
      * @throws SOAPException if there's a SOAP error
      * @throws XRd4JException if there's a XRd4J exception
      */
-    private ServiceResponse deserializeHeader(final SOAPHeader header) throws SOAPException, XRd4JException {
+    final ServiceResponse deserializeHeader(final SOAPHeader header) throws SOAPException, XRd4JException {
 
         logger.debug("Deserialize SOAP header.");
         // Check that SOAP header exists
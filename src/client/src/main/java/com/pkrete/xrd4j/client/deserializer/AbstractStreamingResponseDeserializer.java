@@ -0,0 +1,377 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.xml.XMLConstants;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This abstract class serves as a base class for response deserializers that
+ * read the response directly from a stream instead of a SOAPMessage object.
+ * The SOAP header is deserialized in the same way as by
+ * AbstractResponseDeserializer, but the child elements of the response
+ * element are handed out one at a time, so the memory used doesn't depend
+ * on the size of the response. Subclasses implement deserializeItem method
+ * that converts one child element to an application specific object.
+ *
+ * Standard SOAP faults and non-technical errors ("faultCode" and
+ * "faultString" elements inside the response element) are deserialized to
+ * the ErrorMessage of the ServiceResponse. A non-technical error is
+ * available after all the items have been read. Responses with attachments
+ * are not supported.
+ *
+ * @param <T> runtime type of the items of the response
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractStreamingResponseDeserializer<T> {
+
+    /**
+     * This boolean value tells if the response is from X-Road meta service.
+     */
+    protected boolean isMetaServiceResponse = false;
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStreamingResponseDeserializer.class);
+    private static final HeaderDeserializer HEADER_DESERIALIZER = new HeaderDeserializer();
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Deserializes one child element of the response element. When this
+     * method is called, the reader is positioned at the START_ELEMENT event
+     * of the child and the method must leave the reader at the matching
+     * END_ELEMENT event.
+     *
+     * @param reader XMLStreamReader positioned at the start of the element
+     * @return application specific object representing the element
+     * @throws XMLStreamException if reading the element fails
+     * @throws SOAPException if there's a SOAP error
+     */
+    protected abstract T deserializeItem(XMLStreamReader reader) throws XMLStreamException, SOAPException;
+
+    /**
+     * Opens the response that's read from the given stream. The SOAP header
+     * and the start of the body are read before this method returns, and the
+     * items can be read using the returned StreamingResponse object. The
+     * caller must close the returned object. Value "*" of the producer
+     * namespace URI means that the namespace is ignored.
+     *
+     * @param in stream that contains the SOAP response
+     * @param producerNamespaceURI service producer's namespace URI
+     * @param processingWrappers Indicates if "request" and "response" wrappers
+     * should be processed
+     * @return StreamingResponse object that hands out the items
+     * @throws SOAPException if reading the response fails
+     */
+    public final StreamingResponse<T> open(final InputStream in, final String producerNamespaceURI, final boolean processingWrappers) throws SOAPException {
+        logger.debug("Open streaming SOAP response. Producer namespace URI \"{}\".", producerNamespaceURI);
+        XMLStreamReader reader;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        StreamingResponse<T> response = new StreamingResponse<>(this, reader);
+        try {
+            this.readStart(response, reader, producerNamespaceURI, processingWrappers);
+        } catch (XMLStreamException | XRd4JException | RuntimeException ex) {
+            response.close();
+            throw new SOAPException(ex.getMessage(), ex);
+        } catch (SOAPException ex) {
+            response.close();
+            throw ex;
+        }
+        return response;
+    }
+
+    /**
+     * Deserializes the response that's read from the given stream and passes
+     * the items to the given callback in document order. Value "*" of the
+     * producer namespace URI means that the namespace is ignored.
+     *
+     * @param in stream that contains the SOAP response
+     * @param producerNamespaceURI service producer's namespace URI
+     * @param processingWrappers Indicates if "request" and "response" wrappers
+     * should be processed
+     * @param callback callback that receives the items
+     * @return ServiceResponse object that represents the SOAP header and the
+     * possible error message; the items are not stored in it
+     * @throws SOAPException if reading the response fails
+     */
+    public final ServiceResponse deserialize(final InputStream in, final String producerNamespaceURI, final boolean processingWrappers, final Consumer<? super T> callback) throws SOAPException {
+        try (StreamingResponse<T> response = this.open(in, producerNamespaceURI, processingWrappers)) {
+            while (response.advance()) {
+                callback.accept(response.read());
+            }
+            logger.debug("Streaming SOAP response was succesfully deserialized. {} items found.", response.getCount());
+            return response.getResponse();
+        }
+    }
+
+    /**
+     * Deserializes fault detail element as String. If detail element has child
+     * elements all the content of the children is presented as one concatenated
+     * String. If detail element has children, this method can be overridden.
+     *
+     * @param detailNode detail element
+     * @return detail element's value as string. If detail element is not found,
+     * null is returned
+     */
+    protected Object deserializeFaultDetail(final Node detailNode) {
+        if (detailNode == null) {
+            return null;
+        }
+        return detailNode.getTextContent();
+    }
+
+    /**
+     * Skips the element at the current position of the reader. The reader
+     * must be positioned at the START_ELEMENT event and it's left at the
+     * matching END_ELEMENT event.
+     *
+     * @param reader XMLStreamReader positioned at the start of the element
+     * @throws XMLStreamException if reading fails
+     */
+    protected static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads the SOAP header and moves the reader to the start of the items.
+     */
+    private void readStart(final StreamingResponse<T> response, final XMLStreamReader reader, final String producerNamespaceURI, final boolean processingWrappers)
+            throws XMLStreamException, SOAPException, XRd4JException {
+        // Envelope
+        nextElement(reader);
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+        SOAPHeader header = null;
+        boolean body = false;
+        while (!body && nextElement(reader)) {
+            if ("Header".equals(reader.getLocalName())) {
+                header = message.getSOAPHeader();
+                copyChildren(reader, header);
+            } else if ("Body".equals(reader.getLocalName())) {
+                body = true;
+            } else {
+                skipElement(reader);
+            }
+        }
+        ServiceResponse serviceResponse;
+        if (header == null || !header.hasChildNodes()) {
+            logger.warn("No SOAP header or an empty SOAP header was found.");
+            serviceResponse = new ServiceResponse();
+        } else {
+            serviceResponse = HEADER_DESERIALIZER.deserializeHeader(header);
+        }
+        serviceResponse.setProcessingWrappers(processingWrappers);
+        response.setResponse(serviceResponse);
+        if (!body) {
+            logger.warn("SOAP body was not found.");
+            return;
+        }
+        String serviceResponseName = serviceResponse.getProducer() == null ? null : serviceResponse.getProducer().getServiceCode() + "Response";
+        while (nextElement(reader)) {
+            if ("Fault".equals(reader.getLocalName())) {
+                this.readSOAPFault(serviceResponse, reader, message);
+                logger.warn("Standard SOAP error message found inside SOAP Body.");
+                return;
+            }
+            if (reader.getLocalName().equals(serviceResponseName) && matches(producerNamespaceURI, reader.getNamespaceURI())) {
+                logger.debug("Found service response element.");
+                serviceResponse.getProducer().setNamespaceUrl(reader.getNamespaceURI());
+                serviceResponse.getProducer().setNamespacePrefix(reader.getPrefix());
+                if (!processingWrappers || this.moveToResponseWrapper(reader)) {
+                    response.setItemsOpen(true);
+                }
+                return;
+            }
+            skipElement(reader);
+        }
+        logger.warn("Service response element was not deserialized.");
+    }
+
+    /**
+     * Moves the reader inside the "response" wrapper. The "request" wrapper
+     * is skipped.
+     */
+    private boolean moveToResponseWrapper(final XMLStreamReader reader) throws XMLStreamException {
+        logger.debug("Processing \"request\" and \"response\" wrappers in response message.");
+        while (nextElement(reader)) {
+            if ("response".equals(reader.getLocalName())) {
+                return true;
+            }
+            skipElement(reader);
+        }
+        logger.warn("\"response\" wrapper was not found.");
+        return false;
+    }
+
+    /**
+     * Moves the reader to the start of the next item. Non-technical error
+     * elements are read on the way. Returns false when the end of the
+     * response element is reached.
+     */
+    boolean nextItem(final StreamingResponse<T> response, final XMLStreamReader reader) throws XMLStreamException {
+        while (nextElement(reader)) {
+            String name = reader.getLocalName();
+            if (!this.isMetaServiceResponse && "faultcode".equalsIgnoreCase(name)) {
+                logger.trace("FaultCode found.");
+                response.setFaultCode(reader.getElementText());
+            } else if (!this.isMetaServiceResponse && "faultstring".equalsIgnoreCase(name)) {
+                logger.trace("FaultString found.");
+                response.setFaultString(reader.getElementText());
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deserializes the item at the current position of the reader and checks
+     * that the whole item was consumed.
+     */
+    T readItem(final XMLStreamReader reader) throws XMLStreamException, SOAPException {
+        T item = this.deserializeItem(reader);
+        if (reader.getEventType() != XMLStreamConstants.END_ELEMENT) {
+            throw new XMLStreamException("deserializeItem must leave the reader at the end of the element.");
+        }
+        return item;
+    }
+
+    private void readSOAPFault(final ServiceResponse response, final XMLStreamReader reader, final SOAPMessage message) throws XMLStreamException, SOAPException {
+        Element fault = copyElement(reader, message.getSOAPBody());
+        Map<String, String> values = SOAPHelper.nodesToMap(fault.getChildNodes(), true);
+        Object detail = this.deserializeFaultDetail(SOAPHelper.getNode((Node) fault, "detail"));
+        response.setErrorMessage(new ErrorMessage(values.get("FAULTCODE"), values.get("FAULTSTRING"), values.get("FAULTACTOR"), detail));
+        logger.info("SOAP fault was succesfully deserialized.");
+    }
+
+    /**
+     * Moves the reader to the next child element of the current element.
+     * Returns false if the end of the current element is reached first.
+     */
+    private static boolean nextElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(final String expected, final String namespaceURI) {
+        return expected == null || "*".equals(expected) || expected.equals(namespaceURI == null ? "" : namespaceURI);
+    }
+
+    /**
+     * Copies the children of the element at the current position of the
+     * reader to the given DOM element. The reader is left at the end of the
+     * element.
+     */
+    private static void copyChildren(final XMLStreamReader reader, final Element target) throws XMLStreamException {
+        Document document = target.getOwnerDocument();
+        Element current = target;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                Element child = createElement(reader, document);
+                current.appendChild(child);
+                current = child;
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth > 0) {
+                    current = (Element) current.getParentNode();
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (current != target) {
+                    current.appendChild(document.createTextNode(reader.getText()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the element at the current position of the reader under the
+     * given DOM element and returns the copy.
+     */
+    private static Element copyElement(final XMLStreamReader reader, final Element parent) throws XMLStreamException {
+        Element element = createElement(reader, parent.getOwnerDocument());
+        parent.appendChild(element);
+        copyChildren(reader, element);
+        return element;
+    }
+
+    private static Element createElement(final XMLStreamReader reader, final Document document) {
+        String prefix = reader.getPrefix();
+        String qualifiedName = prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+        String namespaceURI = reader.getNamespaceURI();
+        Element element = document.createElementNS(namespaceURI == null || namespaceURI.isEmpty() ? null : namespaceURI, qualifiedName);
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = reader.getNamespacePrefix(i);
+            String name = nsPrefix == null || nsPrefix.isEmpty() ? "xmlns" : "xmlns:" + nsPrefix;
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, reader.getNamespaceURI(i));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attrPrefix = reader.getAttributePrefix(i);
+            String attrNamespace = reader.getAttributeNamespace(i);
+            String name = attrPrefix == null || attrPrefix.isEmpty() ? reader.getAttributeLocalName(i) : attrPrefix + ":" + reader.getAttributeLocalName(i);
+            element.setAttributeNS(attrNamespace == null || attrNamespace.isEmpty() ? null : attrNamespace, name, reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Response deserializer that's used only for deserializing the SOAP
+     * header.
+     */
+    private static class HeaderDeserializer extends AbstractResponseDeserializer<Object, Object> {
+
+        @Override
+        protected Object deserializeRequestData(final Node requestNode) throws SOAPException {
+            return null;
+        }
+
+        @Override
+        protected Object deserializeResponseData(final Node responseNode, final SOAPMessage message) throws SOAPException {
+            return null;
+        }
+    }
+}
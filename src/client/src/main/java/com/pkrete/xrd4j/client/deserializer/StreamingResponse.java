@@ -0,0 +1,170 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.xml.soap.SOAPException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a SOAP response that's being read from a stream by
+ * AbstractStreamingResponseDeserializer. The ServiceResponse object that
+ * holds the deserialized SOAP header is available right away, and the items
+ * of the response are read one at a time using the iterator methods. A
+ * non-technical error message is set to the ServiceResponse object when the
+ * end of the items has been reached.
+ *
+ * The object must be closed when it's no longer needed. Closing it doesn't
+ * close the underlying stream. Instances are not thread safe.
+ *
+ * @param <T> runtime type of the items of the response
+ * @author Petteri Kivimäki
+ */
+public class StreamingResponse<T> implements Iterator<T>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingResponse.class);
+    private final AbstractStreamingResponseDeserializer<T> deserializer;
+    private final XMLStreamReader reader;
+    private ServiceResponse response;
+    private boolean itemsOpen;
+    private boolean positioned;
+    private long count;
+    private String faultCode;
+    private String faultString;
+
+    StreamingResponse(AbstractStreamingResponseDeserializer<T> deserializer, XMLStreamReader reader) {
+        this.deserializer = deserializer;
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the ServiceResponse object that holds the SOAP header and the
+     * possible error message of the response.
+     *
+     * @return ServiceResponse object
+     */
+    public ServiceResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the number of items read so far.
+     *
+     * @return number of items read
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns true if the response has more items.
+     *
+     * @return true if there are more items, otherwise false
+     * @throws XRd4JRuntimeException if reading the response fails
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            return this.advance();
+        } catch (SOAPException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new XRd4JRuntimeException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads and returns the next item of the response.
+     *
+     * @return next item
+     * @throws NoSuchElementException if there are no more items
+     * @throws XRd4JRuntimeException if reading the response fails
+     */
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return this.read();
+        } catch (SOAPException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new XRd4JRuntimeException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Closes the XML reader.
+     */
+    @Override
+    public void close() {
+        this.itemsOpen = false;
+        try {
+            this.reader.close();
+        } catch (XMLStreamException ex) {
+            logger.warn(ex.getMessage());
+        }
+    }
+
+    /**
+     * Moves to the start of the next item, unless already there.
+     */
+    boolean advance() throws SOAPException {
+        if (this.positioned) {
+            return true;
+        }
+        if (!this.itemsOpen) {
+            return false;
+        }
+        try {
+            this.positioned = this.deserializer.nextItem(this, this.reader);
+        } catch (XMLStreamException | RuntimeException ex) {
+            this.close();
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        if (!this.positioned) {
+            this.itemsOpen = false;
+            if (this.faultCode != null || this.faultString != null) {
+                this.response.setErrorMessage(new ErrorMessage(this.faultCode, this.faultString));
+                logger.warn("A non-technical SOAP error message was found instead of response.");
+            }
+        }
+        return this.positioned;
+    }
+
+    /**
+     * Reads the item at the current position.
+     */
+    T read() throws SOAPException {
+        this.positioned = false;
+        try {
+            T item = this.deserializer.readItem(this.reader);
+            this.count++;
+            return item;
+        } catch (XMLStreamException | RuntimeException ex) {
+            this.close();
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    void setResponse(ServiceResponse response) {
+        this.response = response;
+    }
+
+    void setItemsOpen(boolean itemsOpen) {
+        this.itemsOpen = itemsOpen;
+    }
+
+    void setFaultCode(String faultCode) {
+        this.faultCode = faultCode;
+    }
+
+    void setFaultString(String faultString) {
+        this.faultString = faultString;
+    }
+}
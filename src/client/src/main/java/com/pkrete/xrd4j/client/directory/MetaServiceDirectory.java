@@ -0,0 +1,429 @@
+package com.pkrete.xrd4j.client.directory;
+
+import com.pkrete.xrd4j.client.SOAPClient;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.xml.soap.SOAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a caching directory of the results of listClients,
+ * listCentralServices, listMethods and allowedMethods meta services. The
+ * results are cached per security server URL (and per client for
+ * listMethods and allowedMethods) and they can be queried in memory.
+ *
+ * A cached result is fresh until the refresh-ahead time has elapsed. After
+ * that the cached result is still returned, but it's refreshed in the
+ * background. After the TTL has expired the result is stale: it's returned
+ * while it's being refreshed until the stale time has also elapsed. After
+ * that the caller has to wait for a new result. If a background refresh
+ * fails, the old result is kept.
+ *
+ * Concurrent requests for a result that's not cached are collapsed into a
+ * single meta service call.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MetaServiceDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetaServiceDirectory.class);
+    private final SOAPClient soapClient;
+    private final ConcurrentMap<String, Entry> entries;
+    private final ConcurrentMap<String, CompletableFuture<List<?>>> loading;
+    private long ttl;
+    private double refreshAhead;
+    private long staleTime;
+    private Executor executor;
+
+    /**
+     * Constructs and initializes a new MetaServiceDirectory object that uses
+     * the given SOAPClient for calling the meta services. By default results
+     * are cached for 5 minutes, they're refreshed in the background after 80
+     * % of the TTL and stale results are returned while revalidating for 1
+     * hour after the TTL has expired.
+     *
+     * @param soapClient SOAPClient used for calling the meta services
+     */
+    public MetaServiceDirectory(SOAPClient soapClient) {
+        this.soapClient = soapClient;
+        this.entries = new ConcurrentHashMap<>();
+        this.loading = new ConcurrentHashMap<>();
+        this.ttl = TimeUnit.MINUTES.toMillis(5);
+        this.refreshAhead = 0.8;
+        this.staleTime = TimeUnit.HOURS.toMillis(1);
+        this.executor = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Returns the time to live of the cached results.
+     *
+     * @return TTL in milliseconds
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Sets the time to live of the cached results.
+     *
+     * @param ttl new value in milliseconds
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the fraction of the TTL after which the cached results are
+     * refreshed in the background.
+     *
+     * @return fraction between 0 and 1
+     */
+    public double getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * Sets the fraction of the TTL after which the cached results are
+     * refreshed in the background.
+     *
+     * @param refreshAhead new value between 0 and 1
+     */
+    public void setRefreshAhead(double refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Returns the time after the TTL during which stale results are returned
+     * while they're being refreshed.
+     *
+     * @return stale time in milliseconds
+     */
+    public long getStaleTime() {
+        return staleTime;
+    }
+
+    /**
+     * Sets the time after the TTL during which stale results are returned
+     * while they're being refreshed.
+     *
+     * @param staleTime new value in milliseconds
+     */
+    public void setStaleTime(long staleTime) {
+        this.staleTime = staleTime;
+    }
+
+    /**
+     * Returns the executor that's used for calling the meta services.
+     *
+     * @return executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor that's used for calling the meta services.
+     *
+     * @param executor new value
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the list of clients of the given security server. The result
+     * of listClients meta service is cached.
+     *
+     * @param url URL of X-Road security server
+     * @return list of ConsumerMembers
+     */
+    public List<ConsumerMember> getClients(final String url) {
+        return this.uncheckedGet(Constants.META_SERVICE_LIST_CLIENTS + "|" + url, () -> this.soapClient.listClients(url));
+    }
+
+    /**
+     * Returns the list of central services of the given security server. The
+     * result of listCentralServices meta service is cached.
+     *
+     * @param url URL of X-Road security server
+     * @return list of ProducerMembers
+     */
+    public List<ProducerMember> getCentralServices(final String url) {
+        return this.uncheckedGet(Constants.META_SERVICE_LIST_CENTRAL_SERVICES + "|" + url, () -> this.soapClient.listCentralServices(url));
+    }
+
+    /**
+     * Returns the list of services offered by the given service provider. The
+     * result of listMethods meta service is cached.
+     *
+     * @param url URL of X-Road security server
+     * @param consumer client that calls the meta service
+     * @param provider service provider whose services are listed
+     * @return list of ProducerMembers
+     * @throws SOAPException if calling the meta service fails
+     */
+    public List<ProducerMember> getMethods(final String url, final ConsumerMember consumer, final ConsumerMember provider) throws SOAPException {
+        return this.getServices(Constants.META_SERVICE_LIST_METHODS, url, consumer, provider);
+    }
+
+    /**
+     * Returns the list of services offered by the given service provider that
+     * the consumer has permission to invoke. The result of allowedMethods meta
+     * service is cached.
+     *
+     * @param url URL of X-Road security server
+     * @param consumer client that calls the meta service
+     * @param provider service provider whose services are listed
+     * @return list of ProducerMembers
+     * @throws SOAPException if calling the meta service fails
+     */
+    public List<ProducerMember> getAllowedMethods(final String url, final ConsumerMember consumer, final ConsumerMember provider) throws SOAPException {
+        return this.getServices(Constants.META_SERVICE_ALLOWED_METHODS, url, consumer, provider);
+    }
+
+    /**
+     * Returns the cached list of clients of the given security server without
+     * calling the meta service. Null is returned if the list is not cached.
+     *
+     * @param url URL of X-Road security server
+     * @return cached list of ConsumerMembers or null
+     */
+    public List<ConsumerMember> getCachedClients(final String url) {
+        return this.getCached(Constants.META_SERVICE_LIST_CLIENTS + "|" + url);
+    }
+
+    /**
+     * Returns the cached list of central services of the given security
+     * server without calling the meta service. Null is returned if the list is
+     * not cached.
+     *
+     * @param url URL of X-Road security server
+     * @return cached list of ProducerMembers or null
+     */
+    public List<ProducerMember> getCachedCentralServices(final String url) {
+        return this.getCached(Constants.META_SERVICE_LIST_CENTRAL_SERVICES + "|" + url);
+    }
+
+    /**
+     * Returns the cached list of services offered by the given service
+     * provider without calling the meta service. Null is returned if the list
+     * is not cached.
+     *
+     * @param url URL of X-Road security server
+     * @param consumer client that calls the meta service
+     * @param provider service provider whose services are listed
+     * @return cached list of ProducerMembers or null
+     */
+    public List<ProducerMember> getCachedMethods(final String url, final ConsumerMember consumer, final ConsumerMember provider) {
+        return this.getCached(servicesKey(Constants.META_SERVICE_LIST_METHODS, url, consumer, provider));
+    }
+
+    /**
+     * Returns the cached list of services offered by the given service
+     * provider that the consumer has permission to invoke without calling the
+     * meta service. Null is returned if the list is not cached.
+     *
+     * @param url URL of X-Road security server
+     * @param consumer client that calls the meta service
+     * @param provider service provider whose services are listed
+     * @return cached list of ProducerMembers or null
+     */
+    public List<ProducerMember> getCachedAllowedMethods(final String url, final ConsumerMember consumer, final ConsumerMember provider) {
+        return this.getCached(servicesKey(Constants.META_SERVICE_ALLOWED_METHODS, url, consumer, provider));
+    }
+
+    /**
+     * Checks if the given client is found from the cached list of clients of
+     * the given security server. The list is fetched if it's not cached.
+     *
+     * @param url URL of X-Road security server
+     * @param client client to be checked
+     * @return true if the client is found, otherwise false
+     */
+    public boolean containsClient(final String url, final ConsumerMember client) {
+        return this.getClients(url).contains(client);
+    }
+
+    /**
+     * Removes all the cached results of the given security server.
+     *
+     * @param url URL of X-Road security server
+     */
+    public void invalidate(final String url) {
+        String suffix = "|" + url;
+        this.entries.keySet().removeIf(key -> key.endsWith(suffix) || key.contains(suffix + "|"));
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProducerMember> getServices(final String serviceCode, final String url, final ConsumerMember consumer, final ConsumerMember provider) throws SOAPException {
+        try {
+            return this.get(servicesKey(serviceCode, url, consumer, provider), () -> {
+                try {
+                    ServiceRequest<?> request = new ServiceRequest<>(consumer, toProducer(provider, serviceCode));
+                    ServiceResponse response = Constants.META_SERVICE_LIST_METHODS.equals(serviceCode)
+                            ? this.soapClient.listMethods(request, url) : this.soapClient.allowedMethods(request, url);
+                    // A fault must not replace the cached services with an
+                    // empty list
+                    if (response.hasError() || response.getResponseData() == null) {
+                        throw new SOAPException(getErrorMessage(response));
+                    }
+                    return (List<ProducerMember>) response.getResponseData();
+                } catch (SOAPException | XRd4JException ex) {
+                    throw new CompletionException(ex);
+                }
+            });
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SOAPException) {
+                throw (SOAPException) ex.getCause();
+            }
+            throw new SOAPException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    private static String getErrorMessage(final ServiceResponse response) {
+        if (!response.hasError()) {
+            return "Meta service response doesn't contain any data.";
+        }
+        return response.getErrorMessage().getFaultCode() + " : " + response.getErrorMessage().getFaultString();
+    }
+
+    private <T> List<T> uncheckedGet(final String key, final Loader<T> loader) {
+        try {
+            return this.get(key, loader);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new CompletionException(ex.getCause());
+        }
+    }
+
+    /**
+     * Returns the cached result matching the given key. The result is loaded
+     * or refreshed as needed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> get(final String key, final Loader<T> loader) throws ExecutionException {
+        Entry entry = this.entries.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < this.ttl * this.refreshAhead) {
+                return (List<T>) entry.value;
+            }
+            if (age < this.ttl + this.staleTime) {
+                logger.debug("Refresh \"{}\" in the background.", key);
+                this.load(key, loader);
+                return (List<T>) entry.value;
+            }
+        }
+        logger.debug("\"{}\" not found from the directory. Load it.", key);
+        try {
+            return (List<T>) this.load(key, loader).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getCached(final String key) {
+        Entry entry = this.entries.get(key);
+        return entry == null ? null : (List<T>) entry.value;
+    }
+
+    /**
+     * Loads the result matching the given key. If the result is already being
+     * loaded, the pending load is returned.
+     */
+    private CompletableFuture<List<?>> load(final String key, final Loader<?> loader) {
+        CompletableFuture<List<?>> created = new CompletableFuture<>();
+        CompletableFuture<List<?>> existing = this.loading.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            this.executor.execute(() -> {
+                // The pending load is removed before it's completed, so that
+                // a caller woken up by a failure doesn't get the same failure
+                // again
+                try {
+                    List<?> value = loader.load();
+                    List<?> result = value == null ? Collections.emptyList() : Collections.unmodifiableList(value);
+                    this.entries.put(key, new Entry(result, System.currentTimeMillis()));
+                    this.loading.remove(key, created);
+                    created.complete(result);
+                } catch (CompletionException ex) {
+                    logger.warn("Loading \"{}\" failed : {}", key, ex.getMessage());
+                    this.loading.remove(key, created);
+                    created.completeExceptionally(ex.getCause() != null ? ex.getCause() : ex);
+                } catch (RuntimeException ex) {
+                    logger.warn("Loading \"{}\" failed : {}", key, ex.getMessage());
+                    this.loading.remove(key, created);
+                    created.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            this.loading.remove(key, created);
+            created.completeExceptionally(ex);
+        }
+        return created;
+    }
+
+    private static String servicesKey(final String serviceCode, final String url, final ConsumerMember consumer, final ConsumerMember provider) {
+        return serviceCode + "|" + url + "|" + consumer + "|" + provider;
+    }
+
+    private static ProducerMember toProducer(final ConsumerMember provider, final String serviceCode) throws XRd4JException {
+        if (provider.getSubsystemCode() == null) {
+            return new ProducerMember(provider.getXRoadInstance(), provider.getMemberClass(), provider.getMemberCode(), serviceCode);
+        }
+        return new ProducerMember(provider.getXRoadInstance(), provider.getMemberClass(), provider.getMemberCode(), provider.getSubsystemCode(), serviceCode);
+    }
+
+    /**
+     * Loads a result by calling a meta service.
+     *
+     * @param <T> type of the items of the result
+     */
+    private interface Loader<T> {
+
+        List<T> load();
+    }
+
+    /**
+     * Cached result and the time when it was loaded.
+     */
+    private static class Entry {
+
+        private final List<?> value;
+        private final long loadedAt;
+
+        Entry(List<?> value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.pkrete.xrd4j.client.relay;
+
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+
+/**
+ * This class defines an interface for listeners that are notified after each
+ * message relayed by SOAPRelay. Listeners can be used for collecting metrics
+ * per client or per service. Listeners are called in the thread that relayed
+ * the message and they should not block.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface RelayListener {
+
+    /**
+     * Called after a message has been relayed.
+     *
+     * @param header X-Road header of the message or null, if the header was
+     * not read
+     * @param endpoint endpoint where the message was sent
+     * @param duration duration of the request in nanoseconds
+     * @param success true if the response was received, otherwise false
+     */
+    void messageRelayed(ServiceRequest<?> header, Endpoint endpoint, long duration, boolean success);
+}
@@ -0,0 +1,226 @@
+package com.pkrete.xrd4j.client.relay;
+
+import com.pkrete.xrd4j.client.balancer.CircuitBreakerConfig;
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.EndpointSelector;
+import com.pkrete.xrd4j.client.balancer.LoadBalancingStrategy;
+import com.pkrete.xrd4j.client.balancer.RoundRobinStrategy;
+import com.pkrete.xrd4j.client.transport.HttpSOAPTransport;
+import com.pkrete.xrd4j.client.transport.ResponseStreamHandler;
+import com.pkrete.xrd4j.common.deserializer.StreamingHeaderDeserializer;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.RecordingInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.xml.soap.SOAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class relays SOAP messages to security servers without parsing them
+ * to SOAPMessage objects. Only the X-Road header of a request is read using
+ * StAX, the header is used for access checks and metrics, and then the
+ * original bytes of the request are streamed to the endpoint chosen by the
+ * load balancing strategy. The response is passed to a ResponseStreamHandler
+ * as a stream, so it can be copied back to the original client unchanged.
+ *
+ * The endpoints have circuit breakers in the same way as in
+ * LoadBalancedSOAPClientImpl, but a relayed request can't be sent again, so
+ * failed requests are not retried. The header of a multipart request is read
+ * from its SOAP part, which must be the first part of the message.
+ *
+ * The relay must be closed when it's no longer needed so that the pooled
+ * connections of the transport are released.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SOAPRelay implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SOAPRelay.class);
+    private final HttpSOAPTransport transport;
+    private final EndpointSelector selector;
+    private final StreamingHeaderDeserializer headerDeserializer;
+    private volatile Predicate<ServiceRequest<?>> accessFilter;
+    private volatile RelayListener listener;
+
+    /**
+     * Constructs and initializes a new SOAPRelay object that uses the
+     * round-robin strategy.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * relayed
+     * @param transport transport used for relaying the requests
+     */
+    public SOAPRelay(List<String> endpointUrls, HttpSOAPTransport transport) {
+        this(endpointUrls, transport, new RoundRobinStrategy());
+    }
+
+    /**
+     * Constructs and initializes a new SOAPRelay object.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * relayed
+     * @param transport transport used for relaying the requests
+     * @param strategy LoadBalancingStrategy used for choosing the endpoints
+     */
+    public SOAPRelay(List<String> endpointUrls, HttpSOAPTransport transport, LoadBalancingStrategy strategy) {
+        this(endpointUrls, transport, strategy, new CircuitBreakerConfig());
+    }
+
+    /**
+     * Constructs and initializes a new SOAPRelay object.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * relayed
+     * @param transport transport used for relaying the requests
+     * @param strategy LoadBalancingStrategy used for choosing the endpoints
+     * @param circuitBreakerConfig configuration of the circuit breakers
+     */
+    public SOAPRelay(List<String> endpointUrls, HttpSOAPTransport transport, LoadBalancingStrategy strategy, CircuitBreakerConfig circuitBreakerConfig) {
+        if (endpointUrls.isEmpty()) {
+            throw new IllegalArgumentException("No endpoint URLs defined.");
+        }
+        List<Endpoint> list = new ArrayList<>(endpointUrls.size());
+        for (String url : endpointUrls) {
+            list.add(new Endpoint(url, Endpoint.DEFAULT_DECAY_TIME, circuitBreakerConfig));
+        }
+        this.selector = new EndpointSelector(list, strategy);
+        this.transport = transport;
+        this.headerDeserializer = new StreamingHeaderDeserializer();
+    }
+
+    /**
+     * Returns the endpoints of this relay. The statistics of each endpoint
+     * can be read from the returned objects.
+     *
+     * @return unmodifiable list of endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.selector.getEndpoints();
+    }
+
+    /**
+     * Returns the access filter of this relay or null, if all the requests
+     * are relayed.
+     *
+     * @return access filter or null
+     */
+    public Predicate<ServiceRequest<?>> getAccessFilter() {
+        return accessFilter;
+    }
+
+    /**
+     * Sets the access filter that's tested against the header of each
+     * request. Requests that don't pass the filter are not relayed. Null
+     * means that all the requests are relayed.
+     *
+     * @param accessFilter new value
+     */
+    public void setAccessFilter(Predicate<ServiceRequest<?>> accessFilter) {
+        this.accessFilter = accessFilter;
+    }
+
+    /**
+     * Sets the listener that's called after each relayed request.
+     *
+     * @param listener new value, null removes the listener
+     */
+    public void setListener(RelayListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the X-Road header of the given request and relays the request to
+     * one of the endpoints. The response is passed to the given handler.
+     *
+     * @param <T> type of the result of the handler
+     * @param request stream that contains the whole request message
+     * @param contentType content type of the request
+     * @param soapAction value of SOAPAction header, can be null
+     * @param handler handler that reads the response body
+     * @return result of the handler
+     * @throws SOAPException if the header is invalid, the request is not
+     * allowed or relaying the request fails
+     */
+    public <T> T relay(InputStream request, String contentType, String soapAction, ResponseStreamHandler<T> handler) throws SOAPException {
+        boolean multipart = contentType != null && contentType.toLowerCase().startsWith(Constants.MULTIPART_RELATED);
+        RecordingInputStream recording = new RecordingInputStream(request);
+        ServiceRequest<?> header = readHeader(this.headerDeserializer, recording, multipart);
+        return this.relay(header, recording.replay(), contentType, soapAction, handler);
+    }
+
+    /**
+     * Relays the given request to one of the endpoints and passes the
+     * response to the given handler. The header must have been read from the
+     * request already, e.g. using StreamingHeaderDeserializer, and the stream
+     * must contain the whole request.
+     *
+     * @param <T> type of the result of the handler
+     * @param header X-Road header of the request, can be null
+     * @param request stream that contains the whole request message
+     * @param contentType content type of the request
+     * @param soapAction value of SOAPAction header, can be null
+     * @param handler handler that reads the response body
+     * @return result of the handler
+     * @throws SOAPException if the request is not allowed or relaying the
+     * request fails
+     */
+    public <T> T relay(ServiceRequest<?> header, InputStream request, String contentType, String soapAction, ResponseStreamHandler<T> handler) throws SOAPException {
+        Predicate<ServiceRequest<?>> filter = this.accessFilter;
+        if (filter != null && (header == null || !filter.test(header))) {
+            logger.warn("Request is not allowed. Request id : \"{}\"", header == null ? null : header.getId());
+            throw new SOAPException("Access denied.");
+        }
+        Endpoint endpoint = this.selector.select();
+        if (endpoint == null) {
+            throw new SOAPException("No endpoint available. The probe requests of all the available endpoints are in progress.");
+        }
+        long start = endpoint.requestStarted();
+        boolean success = false;
+        try {
+            T result = this.transport.relay(request, contentType, soapAction, endpoint.getUrl(), handler);
+            success = true;
+            return result;
+        } finally {
+            endpoint.requestCompleted(start, success);
+            RelayListener current = this.listener;
+            if (current != null) {
+                current.messageRelayed(header, endpoint, System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    /**
+     * Reads the X-Road header from the given stream.
+     *
+     * @param deserializer deserializer of the header
+     * @param in stream that contains the request
+     * @param multipart true if the request is a multipart message
+     * @return header of the request
+     * @throws SOAPException if the header is invalid
+     */
+    private static ServiceRequest<?> readHeader(StreamingHeaderDeserializer deserializer, InputStream in, boolean multipart) throws SOAPException {
+        try {
+            return multipart ? deserializer.deserializeMultipart(in) : deserializer.deserialize(in);
+        } catch (XRd4JException | XRd4JMissingMemberException ex) {
+            throw new SOAPException("Invalid X-Road SOAP message : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Closes the transport of this relay.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.transport.close();
+    }
+}
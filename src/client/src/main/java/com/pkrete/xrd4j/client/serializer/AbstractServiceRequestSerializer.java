@@ -1,9 +1,15 @@
 package com.pkrete.xrd4j.client.serializer;
 
 import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.serializer.AbstractHeaderSerializer;
+import com.pkrete.xrd4j.common.serializer.HeaderTemplate;
+import com.pkrete.xrd4j.common.util.Constants;
 import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import javax.xml.soap.MessageFactory;
 import javax.xml.soap.Name;
 import javax.xml.soap.SOAPBody;
@@ -12,8 +18,16 @@ import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 /**
  * This abstract class serves as base class for serializer classes that
@@ -27,6 +41,8 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractServiceRequestSerializer extends AbstractHeaderSerializer implements ServiceRequestSerializer {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractServiceRequestSerializer.class);
+    private static volatile MessageFactory messageFactory;
+    private static volatile TransformerFactory transformerFactory;
 
     /**
      * Serializes the application specific request part to SOAP body's request
@@ -53,8 +69,7 @@ public abstract class AbstractServiceRequestSerializer extends AbstractHeaderSer
     public final SOAPMessage serialize(final ServiceRequest request) {
         try {
             logger.debug("Serialize ServiceRequest message to SOAP.");
-            MessageFactory myMsgFct = MessageFactory.newInstance();
-            SOAPMessage message = myMsgFct.createMessage();
+            SOAPMessage message = getMessageFactory().createMessage();
 
             request.setSoapMessage(message);
 
@@ -73,6 +88,153 @@ public abstract class AbstractServiceRequestSerializer extends AbstractHeaderSer
         return null;
     }
 
+    /**
+     * Serializes the given ServiceRequest and writes it to the given stream.
+     * Only the body is built as a SAAJ object. The start of the envelope and
+     * the SOAP header, which is rendered from a cached HeaderTemplate, are
+     * written directly to the stream and the body is written after them.
+     *
+     * The returned SOAPMessage object, which is also set to the request,
+     * holds the body and the MIME headers of the request, but it doesn't
+     * have a SOAP header. If the request has attachments, if it contains a
+     * standard SOAP error or if the character set of the message is not
+     * UTF-8, the whole message including the header is built and written
+     * normally.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param out stream where the serialized request is written
+     * @return SOAPMessage holding the body of the given ServiceRequest
+     * @throws SOAPException if there's a SOAP error
+     * @throws IOException if writing the request fails
+     */
+    public final SOAPMessage serialize(final ServiceRequest request, final OutputStream out) throws SOAPException, IOException {
+        logger.debug("Serialize ServiceRequest message to stream.");
+        SOAPMessage message = getMessageFactory().createMessage();
+        request.setSoapMessage(message);
+        SOAPEnvelope envelope = message.getSOAPPart().getEnvelope();
+        envelope.addNamespaceDeclaration(Constants.NS_ID_PREFIX, Constants.NS_ID_URL);
+        envelope.addNamespaceDeclaration(Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL);
+        boolean standardError = request.hasError() && request.getErrorMessage().getErrorMessageType() == ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE;
+        envelope.getHeader().detachNode();
+        try {
+            this.serializeBody(request);
+        } catch (XRd4JException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        Object charset = message.getProperty(SOAPMessage.CHARACTER_SET_ENCODING);
+        boolean utf8 = charset == null || StandardCharsets.UTF_8.name().equalsIgnoreCase(charset.toString());
+        if (standardError || !utf8 || SOAPHelper.hasAttachments(message)) {
+            logger.debug("Generate SOAP header without template.");
+            envelope.addHeader();
+            super.serializeHeader(request, envelope);
+            message.saveChanges();
+            message.writeTo(out);
+            return message;
+        }
+        if (message.saveRequired()) {
+            message.saveChanges();
+        }
+        // The start tags are written using the namespace declarations of the
+        // SAAJ elements, so the children of the body are written without
+        // redeclaring the namespaces of the envelope
+        SOAPBody body = message.getSOAPBody();
+        StringBuilder builder = new StringBuilder(2048);
+        startTag(builder, envelope);
+        String prefix = envelope.getPrefix() == null || envelope.getPrefix().isEmpty() ? "" : envelope.getPrefix() + ":";
+        builder.append('<').append(prefix).append("Header>");
+        HeaderTemplate.of(request).render(request, builder);
+        builder.append("</").append(prefix).append("Header>");
+        startTag(builder, body);
+        out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+        for (Node child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child, out);
+        }
+        out.write(("</" + body.getNodeName() + "></" + envelope.getNodeName() + ">").getBytes(StandardCharsets.UTF_8));
+        logger.debug("ServiceRequest message was serialized succesfully.");
+        return message;
+    }
+
+    /**
+     * Returns the shared MessageFactory and creates it if it doesn't exist
+     * yet.
+     *
+     * @return shared MessageFactory
+     * @throws SOAPException if creating the MessageFactory fails
+     */
+    private static MessageFactory getMessageFactory() throws SOAPException {
+        MessageFactory result = messageFactory;
+        if (result == null) {
+            result = MessageFactory.newInstance();
+            messageFactory = result;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given node to the given stream using UTF-8 encoding and
+     * without XML declaration.
+     *
+     * @param node node to be written
+     * @param out stream where the node is written
+     * @throws SOAPException if writing the node fails
+     */
+    private static void writeNode(final Node node, final OutputStream out) throws SOAPException {
+        try {
+            Transformer transformer = getTransformerFactory().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+            transformer.transform(new DOMSource(node), new StreamResult(out));
+        } catch (TransformerException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    private static void startTag(final StringBuilder builder, final Node element) {
+        builder.append('<').append(element.getNodeName());
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            builder.append(' ').append(attribute.getNodeName()).append("=\"");
+            escapeAttribute(builder, attribute.getNodeValue());
+            builder.append('"');
+        }
+        builder.append('>');
+    }
+
+    private static void escapeAttribute(final StringBuilder builder, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Returns the shared TransformerFactory and creates it if it doesn't
+     * exist yet.
+     *
+     * @return shared TransformerFactory
+     */
+    private static TransformerFactory getTransformerFactory() {
+        TransformerFactory result = transformerFactory;
+        if (result == null) {
+            result = TransformerFactory.newInstance();
+            transformerFactory = result;
+        }
+        return result;
+    }
+
     /**
      * Generates SOAP body, including the request element.
      *
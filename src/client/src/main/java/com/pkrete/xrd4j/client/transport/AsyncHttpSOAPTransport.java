@@ -0,0 +1,209 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements an AsyncSOAPTransport that uses non-blocking I/O. A
+ * small number of I/O threads handle all the connections, so the number of
+ * requests in flight is not limited by the number of threads. Persistent
+ * connections are pooled per security server endpoint in the same way as in
+ * HttpSOAPTransport.
+ *
+ * TLS connections use the SSLContext and HostnameVerifier of the
+ * TransportConfig. If they're not set, the SSLContext installed using
+ * ClientUtil or the default SSLContext and the default HostnameVerifier of
+ * HttpsURLConnection are used in the same way as in HttpSOAPTransport.
+ *
+ * The transport must be closed when it's no longer needed so that the I/O
+ * threads and the pooled connections are released.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AsyncHttpSOAPTransport implements AsyncSOAPTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncHttpSOAPTransport.class);
+    private final TransportConfig config;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final MessageFactory messageFactory;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Constructs and initializes a new AsyncHttpSOAPTransport object with the
+     * default configuration.
+     *
+     * @throws SOAPException if creating the transport fails
+     */
+    public AsyncHttpSOAPTransport() throws SOAPException {
+        this(new TransportConfig());
+    }
+
+    /**
+     * Constructs and initializes a new AsyncHttpSOAPTransport object with the
+     * given configuration. Changes made to the configuration after the
+     * transport has been created have no effect.
+     *
+     * @param config configuration of the transport
+     * @throws SOAPException if creating the transport fails
+     */
+    public AsyncHttpSOAPTransport(TransportConfig config) throws SOAPException {
+        this.config = config;
+        this.messageFactory = MessageFactory.newInstance();
+        Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", DefaultTLSSettings.createIOSessionStrategy(config))
+                .build();
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(config.getConnectTimeout())
+                .setSoTimeout(config.getReadTimeout())
+                .build();
+        try {
+            this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig), registry);
+        } catch (IOReactorException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeout())
+                .setSocketTimeout(config.getReadTimeout())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+                .build();
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .build();
+        this.httpClient.start();
+        if (config.getIdleConnectionTimeout() > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "xrd4j-async-transport-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getIdleConnectionTimeout();
+            this.evictor.scheduleWithFixedDelay(() -> {
+                this.connectionManager.closeExpiredConnections();
+                this.connectionManager.closeIdleConnections(interval, TimeUnit.MILLISECONDS);
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+        logger.debug("AsyncHttpSOAPTransport created. Max connections per route : {}, max connections total : {}.",
+                config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal());
+    }
+
+    /**
+     * Returns the configuration of this transport.
+     *
+     * @return configuration of this transport
+     */
+    public TransportConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Sends the given serialized message to the given endpoint and returns
+     * immediately. HTTP responses with status code 500 are parsed as SOAP
+     * faults. Other non 2xx responses complete the future exceptionally with
+     * SOAPException.
+     *
+     * @param request serialized SOAP message to be sent
+     * @param headers MIME headers of the message, must contain Content-Type
+     * @param url URL that identifies where the message should be sent
+     * @param executor executor that's used for parsing the response
+     * @return future that's completed with the response
+     */
+    @Override
+    public CompletableFuture<SOAPMessage> sendAsync(byte[] request, MimeHeaders headers, String url, Executor executor) {
+        CompletableFuture<SOAPMessage> result = new CompletableFuture<>();
+        HttpPost post;
+        try {
+            post = new HttpPost(url);
+        } catch (IllegalArgumentException ex) {
+            result.completeExceptionally(new SOAPException(ex.getMessage(), ex));
+            return result;
+        }
+        ByteArrayEntity entity = new ByteArrayEntity(request);
+        HttpSOAPTransport.copyHeaders(headers, post, entity);
+        post.setEntity(entity);
+        logger.trace("Send SOAP message to \"{}\" asynchronously.", url);
+        Future<HttpResponse> future = this.httpClient.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    executor.execute(() -> {
+                        try {
+                            result.complete(HttpSOAPTransport.parseResponse(messageFactory, response, url));
+                        } catch (SOAPException | IOException | RuntimeException ex) {
+                            result.completeExceptionally(ex);
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    result.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.completeExceptionally(new SOAPException(ex.getMessage(), ex));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        // Abort the request if the caller cancels the future
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Closes the transport, the I/O threads and all the pooled connections.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.evictor != null) {
+            this.evictor.shutdownNow();
+        }
+        this.httpClient.close();
+    }
+}
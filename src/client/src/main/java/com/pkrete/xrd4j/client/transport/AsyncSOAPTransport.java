@@ -0,0 +1,37 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class defines an interface for non-blocking transports that deliver
+ * serialized SOAP messages to SOAP endpoints. The calling thread is never
+ * blocked while waiting for the response. Implementations must be thread
+ * safe.
+ *
+ * The request is given as bytes, which means that the same serialized request
+ * can be sent to multiple endpoints without serializing it again.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface AsyncSOAPTransport extends Closeable {
+
+    /**
+     * Sends the given serialized message to the given endpoint and returns
+     * immediately. The returned future is completed with the response when it
+     * has been received and parsed. Parsing of the response is done using the
+     * given executor. If sending the message or parsing the response fails,
+     * the future is completed exceptionally. Cancelling the returned future
+     * aborts the request.
+     *
+     * @param request serialized SOAP message to be sent
+     * @param headers MIME headers of the message, must contain Content-Type
+     * @param url URL that identifies where the message should be sent
+     * @param executor executor that's used for parsing the response
+     * @return future that's completed with the response
+     */
+    CompletableFuture<SOAPMessage> sendAsync(byte[] request, MimeHeaders headers, String url, Executor executor);
+}
@@ -0,0 +1,171 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.client.util.ClientUtil;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.NoSuchAlgorithmException;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * This class resolves the TLS settings of the transports when they're not
+ * defined in TransportConfig. The settings are read when a connection is
+ * opened, so the settings done using ClientUtil apply to both the blocking
+ * and the non-blocking transport also after the transport has been created.
+ *
+ * The blocking transport uses the default SSLSocketFactory of
+ * HttpsURLConnection, which is the socket factory of the SSLContext that's
+ * installed by ClientUtil. The non-blocking transport needs an SSLContext,
+ * so it uses the SSLContext installed by ClientUtil or the default
+ * SSLContext of the JVM. Both use the default HostnameVerifier of
+ * HttpsURLConnection, except that the built-in verifier of JDK is replaced
+ * with the verifier of HttpClient.
+ *
+ * @author Petteri Kivimäki
+ */
+final class DefaultTLSSettings {
+
+    private static final String JDK_DEFAULT_VERIFIER = "javax.net.ssl.HttpsURLConnection$DefaultHostnameVerifier";
+
+    /**
+     * Constructs and initializes a new DefaultTLSSettings object. Should never
+     * be used.
+     */
+    private DefaultTLSSettings() {
+    }
+
+    /**
+     * Returns a socket factory for the blocking transport.
+     *
+     * @param config configuration of the transport
+     * @return socket factory for TLS connections
+     */
+    static LayeredConnectionSocketFactory createSocketFactory(TransportConfig config) {
+        if (config.getSslContext() == null) {
+            return new DefaultSSLConnectionSocketFactory();
+        }
+        HostnameVerifier verifier = config.getHostnameVerifier() != null ? config.getHostnameVerifier() : new DefaultHostnameVerifier();
+        return new SSLConnectionSocketFactory(config.getSslContext(), verifier);
+    }
+
+    /**
+     * Returns a session strategy for the non-blocking transport.
+     *
+     * @param config configuration of the transport
+     * @return session strategy for TLS connections
+     */
+    static SchemeIOSessionStrategy createIOSessionStrategy(TransportConfig config) {
+        if (config.getSslContext() == null) {
+            return new DefaultSSLIOSessionStrategy();
+        }
+        HostnameVerifier verifier = config.getHostnameVerifier() != null ? config.getHostnameVerifier() : new DefaultHostnameVerifier();
+        return new SSLIOSessionStrategy(config.getSslContext(), verifier);
+    }
+
+    private static HostnameVerifier getHostnameVerifier(HostnameVerifier current) {
+        // The default verifier of JDK rejects all the hosts that don't pass
+        // the built-in check, so use the verifier of HttpClient instead
+        return JDK_DEFAULT_VERIFIER.equals(current.getClass().getName()) ? new DefaultHostnameVerifier() : current;
+    }
+
+    private static SSLContext getSSLContext() throws IOException {
+        SSLContext context = ClientUtil.getSSLContext();
+        if (context != null) {
+            return context;
+        }
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Socket factory that creates TLS connections using the current default
+     * SSLSocketFactory and HostnameVerifier of HttpsURLConnection. The
+     * delegate is re-created only if the defaults change, so TLS sessions are
+     * resumed from the session cache of the same SSLSocketFactory.
+     */
+    private static class DefaultSSLConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+        private volatile SSLSocketFactory socketFactory;
+        private volatile HostnameVerifier hostnameVerifier;
+        private volatile SSLConnectionSocketFactory delegate;
+
+        private SSLConnectionSocketFactory getDelegate() {
+            SSLSocketFactory currentFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+            HostnameVerifier currentVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+            SSLConnectionSocketFactory current = this.delegate;
+            if (current == null || currentFactory != this.socketFactory || currentVerifier != this.hostnameVerifier) {
+                current = new SSLConnectionSocketFactory(currentFactory, getHostnameVerifier(currentVerifier));
+                this.socketFactory = currentFactory;
+                this.hostnameVerifier = currentVerifier;
+                this.delegate = current;
+            }
+            return current;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return this.getDelegate().createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return this.getDelegate().connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            return this.getDelegate().createLayeredSocket(socket, target, port, context);
+        }
+    }
+
+    /**
+     * Session strategy that upgrades connections to TLS using the SSLContext
+     * installed by ClientUtil or the default SSLContext, and the current
+     * default HostnameVerifier of HttpsURLConnection. The delegate is
+     * re-created only if the settings change.
+     */
+    private static class DefaultSSLIOSessionStrategy implements SchemeIOSessionStrategy {
+
+        private volatile SSLContext sslContext;
+        private volatile HostnameVerifier hostnameVerifier;
+        private volatile SSLIOSessionStrategy delegate;
+
+        private SSLIOSessionStrategy getDelegate() throws IOException {
+            SSLContext currentContext = getSSLContext();
+            HostnameVerifier currentVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+            SSLIOSessionStrategy current = this.delegate;
+            if (current == null || currentContext != this.sslContext || currentVerifier != this.hostnameVerifier) {
+                current = new SSLIOSessionStrategy(currentContext, getHostnameVerifier(currentVerifier));
+                this.sslContext = currentContext;
+                this.hostnameVerifier = currentVerifier;
+                this.delegate = current;
+            }
+            return current;
+        }
+
+        @Override
+        public IOSession upgrade(HttpHost host, IOSession session) throws IOException {
+            return this.getDelegate().upgrade(host, session);
+        }
+
+        @Override
+        public boolean isLayeringRequired() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.common.util.HashingOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProxySelector;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeader;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a SOAPTransport that keeps a pool of persistent HTTP
+ * connections per security server endpoint. Connections are reused between
+ * requests, so TCP connection setup and TLS handshakes are done only when a
+ * new connection is needed. The request is written directly to the
+ * connection from the SOAPMessage object without buffering it first.
+ *
+ * TLS connections use the SSLContext and HostnameVerifier of the
+ * TransportConfig. If they're not set, the current default SSLSocketFactory
+ * and HostnameVerifier of HttpsURLConnection are used, which means that the
+ * settings done using ClientUtil apply to this transport as well. Proxy settings are read
+ * from the default ProxySelector.
+ *
+ * The transport must be closed when it's no longer needed so that the pooled
+ * connections are released.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HttpSOAPTransport implements StreamingSOAPTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpSOAPTransport.class);
+    private final TransportConfig config;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final MessageFactory messageFactory;
+
+    /**
+     * Constructs and initializes a new HttpSOAPTransport object with the
+     * default configuration.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public HttpSOAPTransport() throws SOAPException {
+        this(new TransportConfig());
+    }
+
+    /**
+     * Constructs and initializes a new HttpSOAPTransport object with the
+     * given configuration. Changes made to the configuration after the
+     * transport has been created have no effect.
+     *
+     * @param config configuration of the transport
+     * @throws SOAPException if there's a SOAP error
+     */
+    public HttpSOAPTransport(TransportConfig config) throws SOAPException {
+        this.config = config;
+        this.messageFactory = MessageFactory.newInstance();
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", DefaultTLSSettings.createSocketFactory(config))
+                .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+        this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeout())
+                .setSocketTimeout(config.getReadTimeout())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+                .build();
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .disableContentCompression()
+                .disableRedirectHandling()
+                .disableAutomaticRetries();
+        if (config.getIdleConnectionTimeout() > 0) {
+            builder.evictExpiredConnections().evictIdleConnections(config.getIdleConnectionTimeout(), TimeUnit.MILLISECONDS);
+        }
+        this.httpClient = builder.build();
+        logger.debug("HttpSOAPTransport created. Max connections per route : {}, max connections total : {}.",
+                config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal());
+    }
+
+    /**
+     * Returns the configuration of this transport.
+     *
+     * @return configuration of this transport
+     */
+    public TransportConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Sends the given message to the given endpoint using a pooled
+     * connection and blocks until the response has been received. HTTP
+     * responses with status code 500 are parsed as SOAP faults. Other non 2xx
+     * responses cause a SOAPException.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if sending the message or parsing the response
+     * fails
+     */
+    @Override
+    public SOAPMessage send(SOAPMessage request, String url, MessageDigest requestDigest) throws SOAPException {
+        HttpPost post = createPost(request, url, requestDigest);
+        logger.trace("Send SOAP message to \"{}\" using pooled connection.", url);
+        try (CloseableHttpResponse response = this.httpClient.execute(post)) {
+            return parseResponse(this.messageFactory, response, url);
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Sends the given message to the given endpoint using a pooled
+     * connection and passes the body of the response to the given handler.
+     * Status codes are handled in the same way as by the send method that
+     * returns a SOAPMessage. The rest of the body is consumed after the
+     * handler returns, so the connection can be returned to the pool.
+     *
+     * @param <T> type of the result of the handler
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @param handler handler that reads the response body
+     * @return result of the handler
+     * @throws SOAPException if sending the message or handling the response
+     * fails
+     */
+    @Override
+    public <T> T send(SOAPMessage request, String url, MessageDigest requestDigest, ResponseStreamHandler<T> handler) throws SOAPException {
+        HttpPost post = createPost(request, url, requestDigest);
+        logger.trace("Send SOAP message to \"{}\" using pooled connection. The response is streamed.", url);
+        try (CloseableHttpResponse response = this.httpClient.execute(post)) {
+            HttpEntity entity = checkResponse(response, url);
+            T result;
+            try (InputStream in = entity.getContent()) {
+                result = handler.handle(in, entity.getContentType() == null ? null : entity.getContentType().getValue());
+            }
+            EntityUtils.consume(entity);
+            return result;
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Sends the bytes of the given stream to the given endpoint as such and
+     * passes the body of the response to the given handler. The request is
+     * not parsed, so it can be any SOAP message including a multipart
+     * message with attachments. Status codes are handled in the same way as
+     * by the send method that returns a SOAPMessage.
+     *
+     * @param <T> type of the result of the handler
+     * @param request stream that contains the whole request message
+     * @param contentType content type of the request
+     * @param soapAction value of SOAPAction header, can be null
+     * @param url URL that identifies where the message should be sent
+     * @param handler handler that reads the response body
+     * @return result of the handler
+     * @throws SOAPException if sending the message or handling the response
+     * fails
+     */
+    public <T> T relay(InputStream request, String contentType, String soapAction, String url, ResponseStreamHandler<T> handler) throws SOAPException {
+        HttpPost post;
+        try {
+            post = new HttpPost(url);
+        } catch (IllegalArgumentException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        InputStreamEntity entity = new InputStreamEntity(request, -1);
+        entity.setChunked(true);
+        entity.setContentType(contentType == null ? "text/xml; charset=utf-8" : contentType);
+        post.setEntity(entity);
+        if (soapAction != null) {
+            post.addHeader("SOAPAction", soapAction);
+        }
+        logger.trace("Relay SOAP message to \"{}\" using pooled connection.", url);
+        try (CloseableHttpResponse response = this.httpClient.execute(post)) {
+            HttpEntity responseEntity = checkResponse(response, url);
+            T result;
+            try (InputStream in = responseEntity.getContent()) {
+                result = handler.handle(in, responseEntity.getContentType() == null ? null : responseEntity.getContentType().getValue());
+            }
+            EntityUtils.consume(responseEntity);
+            return result;
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+    }
+
+    private static HttpPost createPost(SOAPMessage request, String url, MessageDigest requestDigest) throws SOAPException {
+        if (request.saveRequired()) {
+            request.saveChanges();
+        }
+        HttpPost post;
+        try {
+            post = new HttpPost(url);
+        } catch (IllegalArgumentException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        SOAPMessageEntity entity = new SOAPMessageEntity(request, requestDigest);
+        copyHeaders(request.getMimeHeaders(), post, entity);
+        post.setEntity(entity);
+        return post;
+    }
+
+    /**
+     * Copies the given MIME headers to the given HTTP request. Content-Type
+     * header is set to the entity and Content-Length header is skipped,
+     * because it's defined by the entity.
+     *
+     * @param headers MIME headers of the SOAP message
+     * @param post HTTP request
+     * @param entity entity of the HTTP request
+     */
+    static void copyHeaders(MimeHeaders headers, HttpPost post, AbstractHttpEntity entity) {
+        Iterator<?> it = headers.getAllHeaders();
+        while (it.hasNext()) {
+            MimeHeader header = (MimeHeader) it.next();
+            if ("Content-Type".equalsIgnoreCase(header.getName())) {
+                entity.setContentType(header.getValue());
+            } else if (!"Content-Length".equalsIgnoreCase(header.getName())) {
+                post.addHeader(header.getName(), header.getValue());
+            }
+        }
+        if (entity.getContentType() == null) {
+            entity.setContentType("text/xml; charset=utf-8");
+        }
+    }
+
+    /**
+     * Parses the given HTTP response to a SOAPMessage object. HTTP responses
+     * with status code 500 are parsed as SOAP faults. Other non 2xx responses
+     * cause a SOAPException. The SOAP part of the message is parsed and the
+     * entity is consumed before returning, because SAAJ implementations may
+     * read the stream lazily and the connection can be returned to the pool
+     * only after the whole response has been read.
+     *
+     * @param messageFactory MessageFactory used for creating the message
+     * @param response HTTP response
+     * @param url URL where the request was sent
+     * @return SOAPMessage object
+     * @throws IOException if reading the response fails
+     * @throws SOAPException if the status code is invalid or parsing the
+     * response fails
+     */
+    static SOAPMessage parseResponse(MessageFactory messageFactory, HttpResponse response, String url) throws IOException, SOAPException {
+        HttpEntity entity = checkResponse(response, url);
+        MimeHeaders headers = new MimeHeaders();
+        for (Header header : response.getAllHeaders()) {
+            headers.addHeader(header.getName(), header.getValue());
+        }
+        if (headers.getHeader("Content-Type") == null && entity.getContentType() != null) {
+            headers.addHeader("Content-Type", entity.getContentType().getValue());
+        }
+        try (InputStream in = entity.getContent()) {
+            SOAPMessage message = messageFactory.createMessage(headers, in);
+            message.getSOAPPart().getEnvelope();
+            EntityUtils.consume(entity);
+            return message;
+        }
+    }
+
+    /**
+     * Checks the status code of the given HTTP response and returns its
+     * entity. Status codes 2xx and 500 are accepted.
+     *
+     * @param response HTTP response
+     * @param url URL where the request was sent
+     * @return entity of the response
+     * @throws SOAPException if the status code is invalid or the response has
+     * no entity
+     */
+    static HttpEntity checkResponse(HttpResponse response, String url) throws SOAPException {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if ((status < 200 || status >= 300) && status != 500 || entity == null) {
+            EntityUtils.consumeQuietly(entity);
+            throw new SOAPException("Invalid response received from \"" + url + "\": " + response.getStatusLine());
+        }
+        return entity;
+    }
+
+    /**
+     * Closes the transport and all the pooled connections.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        this.httpClient.close();
+        this.connectionManager.shutdown();
+    }
+
+    /**
+     * HTTP entity that writes the SOAPMessage directly to the connection. The
+     * length of the message is not known, so chunked transfer encoding is
+     * used.
+     */
+    private static class SOAPMessageEntity extends AbstractHttpEntity {
+
+        private final SOAPMessage message;
+        private final MessageDigest digest;
+
+        SOAPMessageEntity(SOAPMessage message, MessageDigest digest) {
+            this.message = message;
+            this.digest = digest;
+            this.setChunked(true);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() {
+            throw new UnsupportedOperationException("SOAPMessageEntity can only be written to an output stream.");
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                if (this.digest == null) {
+                    this.message.writeTo(out);
+                } else {
+                    this.message.writeTo(new HashingOutputStream(out, this.digest));
+                }
+            } catch (SOAPException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.soap.SOAPException;
+
+/**
+ * This class defines an interface for handlers that read the body of a SOAP
+ * response directly from the connection without building a SOAPMessage
+ * object first.
+ *
+ * @param <T> type of the result of the handler
+ * @author Petteri Kivimäki
+ */
+public interface ResponseStreamHandler<T> {
+
+    /**
+     * Reads the response body from the given stream. The stream is closed
+     * and the connection is released after this method returns.
+     *
+     * @param in stream that contains the response body
+     * @param contentType value of the Content-Type header or null
+     * @return result of the handler
+     * @throws SOAPException if there's a SOAP error
+     * @throws IOException if reading the stream fails
+     */
+    T handle(InputStream in, String contentType) throws SOAPException, IOException;
+}
@@ -0,0 +1,209 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.common.util.HashingOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import javax.activation.DataHandler;
+import javax.xml.soap.AttachmentPart;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPBody;
+import javax.xml.soap.SOAPConnection;
+import javax.xml.soap.SOAPConnectionFactory;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.soap.SOAPPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a SOAPTransport that uses SAAJ SOAPConnection for
+ * sending messages. A new connection is created for every message and it's
+ * closed after the response has been received. Whether HTTP connections are
+ * reused or not depends on the SAAJ implementation.
+ *
+ * SAAJ writes the request to the connection, so if a MessageDigest is given,
+ * the request is wrapped in a message that updates the digest while SAAJ
+ * writes it. The request is serialized only once.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SAAJTransport implements SOAPTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(SAAJTransport.class);
+    private final SOAPConnectionFactory connectionFactory;
+
+    /**
+     * Constructs and initializes a new SAAJTransport object.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public SAAJTransport() throws SOAPException {
+        this.connectionFactory = SOAPConnectionFactory.newInstance();
+    }
+
+    /**
+     * Sends the given message to the given endpoint using a new SAAJ
+     * SOAPConnection and blocks until the response has been received.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public SOAPMessage send(SOAPMessage request, String url, MessageDigest requestDigest) throws SOAPException {
+        URL endpoint;
+        try {
+            endpoint = new URL(url);
+        } catch (MalformedURLException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        SOAPMessage message = requestDigest == null ? request : new DigestingSOAPMessage(request, requestDigest);
+        SOAPConnection connection = this.connectionFactory.createConnection();
+        try {
+            logger.trace("Send SOAP message to \"{}\" using SAAJ connection.", url);
+            return connection.call(message, endpoint);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * SAAJTransport doesn't hold any resources, so this method does nothing.
+     */
+    @Override
+    public void close() {
+        // Connections are closed after each request
+    }
+
+    /**
+     * SOAPMessage that delegates to another message and updates the given
+     * MessageDigest with the bytes that are written by the writeTo method.
+     */
+    private static class DigestingSOAPMessage extends SOAPMessage {
+
+        private final SOAPMessage message;
+        private final MessageDigest digest;
+
+        DigestingSOAPMessage(SOAPMessage message, MessageDigest digest) {
+            this.message = message;
+            this.digest = digest;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws SOAPException, IOException {
+            HashingOutputStream hashing = new HashingOutputStream(out, this.digest);
+            this.message.writeTo(hashing);
+            hashing.flush();
+        }
+
+        @Override
+        public void setContentDescription(String description) {
+            this.message.setContentDescription(description);
+        }
+
+        @Override
+        public String getContentDescription() {
+            return this.message.getContentDescription();
+        }
+
+        @Override
+        public SOAPPart getSOAPPart() {
+            return this.message.getSOAPPart();
+        }
+
+        @Override
+        public SOAPBody getSOAPBody() throws SOAPException {
+            return this.message.getSOAPBody();
+        }
+
+        @Override
+        public SOAPHeader getSOAPHeader() throws SOAPException {
+            return this.message.getSOAPHeader();
+        }
+
+        @Override
+        public void removeAllAttachments() {
+            this.message.removeAllAttachments();
+        }
+
+        @Override
+        public int countAttachments() {
+            return this.message.countAttachments();
+        }
+
+        @Override
+        public Iterator getAttachments() {
+            return this.message.getAttachments();
+        }
+
+        @Override
+        public Iterator getAttachments(MimeHeaders headers) {
+            return this.message.getAttachments(headers);
+        }
+
+        @Override
+        public void removeAttachments(MimeHeaders headers) {
+            this.message.removeAttachments(headers);
+        }
+
+        @Override
+        public AttachmentPart getAttachment(SOAPElement element) throws SOAPException {
+            return this.message.getAttachment(element);
+        }
+
+        @Override
+        public void addAttachmentPart(AttachmentPart attachment) {
+            this.message.addAttachmentPart(attachment);
+        }
+
+        @Override
+        public AttachmentPart createAttachmentPart() {
+            return this.message.createAttachmentPart();
+        }
+
+        @Override
+        public AttachmentPart createAttachmentPart(DataHandler dataHandler) {
+            return this.message.createAttachmentPart(dataHandler);
+        }
+
+        @Override
+        public AttachmentPart createAttachmentPart(Object content, String contentType) {
+            return this.message.createAttachmentPart(content, contentType);
+        }
+
+        @Override
+        public MimeHeaders getMimeHeaders() {
+            return this.message.getMimeHeaders();
+        }
+
+        @Override
+        public void saveChanges() throws SOAPException {
+            this.message.saveChanges();
+        }
+
+        @Override
+        public boolean saveRequired() {
+            return this.message.saveRequired();
+        }
+
+        @Override
+        public void setProperty(String property, Object value) throws SOAPException {
+            this.message.setProperty(property, value);
+        }
+
+        @Override
+        public Object getProperty(String property) throws SOAPException {
+            return this.message.getProperty(property);
+        }
+    }
+}
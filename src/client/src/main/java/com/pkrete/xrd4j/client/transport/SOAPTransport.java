@@ -0,0 +1,35 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.Closeable;
+import java.security.MessageDigest;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class defines an interface for transports that deliver SOAPMessage
+ * objects to SOAP endpoints and return the responses. SOAPClientImpl uses a
+ * SOAPTransport for all the network traffic, which means that the transport
+ * decides how connections are created, reused and closed. Implementations
+ * must be thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface SOAPTransport extends Closeable {
+
+    /**
+     * Sends the given message to the given endpoint and blocks until the
+     * response has been received. If a MessageDigest object is given, it's
+     * updated with all the bytes of the request as they're written to the
+     * wire.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if sending the message or parsing the response
+     * fails
+     */
+    SOAPMessage send(SOAPMessage request, String url, MessageDigest requestDigest) throws SOAPException;
+}
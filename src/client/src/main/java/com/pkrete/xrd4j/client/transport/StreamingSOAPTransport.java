@@ -0,0 +1,34 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.security.MessageDigest;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class defines an interface for transports that can hand the body of
+ * a response to a ResponseStreamHandler as it's read from the connection.
+ * This makes it possible to process responses that are too large to be held
+ * in memory as a SOAPMessage object.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface StreamingSOAPTransport extends SOAPTransport {
+
+    /**
+     * Sends the given message to the given endpoint and passes the body of
+     * the response to the given handler. If a MessageDigest object is given,
+     * it's updated with all the bytes of the request as they're written to
+     * the wire.
+     *
+     * @param <T> type of the result of the handler
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param requestDigest MessageDigest object that's updated with the bytes
+     * of the request, can be null
+     * @param handler handler that reads the response body
+     * @return result of the handler
+     * @throws SOAPException if sending the message or handling the response
+     * fails
+     */
+    <T> T send(SOAPMessage request, String url, MessageDigest requestDigest, ResponseStreamHandler<T> handler) throws SOAPException;
+}
@@ -0,0 +1,192 @@
+package com.pkrete.xrd4j.client.transport;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+/**
+ * This class represents the configuration of HttpSOAPTransport: the limits of
+ * the connection pool, timeouts and idle connection eviction. All the
+ * timeouts are in milliseconds and zero means that there's no timeout.
+ *
+ * @author Petteri Kivimäki
+ */
+public class TransportConfig {
+
+    private int maxConnectionsPerRoute;
+    private int maxConnectionsTotal;
+    private int connectTimeout;
+    private int readTimeout;
+    private int connectionRequestTimeout;
+    private long idleConnectionTimeout;
+    private SSLContext sslContext;
+    private HostnameVerifier hostnameVerifier;
+
+    /**
+     * Constructs and initializes a new TransportConfig object with default
+     * values: 20 connections per route, 200 connections in total, 30 seconds
+     * connect timeout, no read timeout, no connection request timeout and
+     * connections that have been idle for 30 seconds are evicted.
+     */
+    public TransportConfig() {
+        this.maxConnectionsPerRoute = 20;
+        this.maxConnectionsTotal = 200;
+        this.connectTimeout = 30000;
+        this.readTimeout = 0;
+        this.connectionRequestTimeout = 0;
+        this.idleConnectionTimeout = 30000;
+    }
+
+    /**
+     * Returns the maximum number of persistent connections per security
+     * server endpoint.
+     *
+     * @return maximum number of connections per route
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of persistent connections per security server
+     * endpoint.
+     *
+     * @param maxConnectionsPerRoute new value
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Returns the maximum number of persistent connections in total.
+     *
+     * @return maximum number of connections
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Sets the maximum number of persistent connections in total.
+     *
+     * @param maxConnectionsTotal new value
+     */
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    /**
+     * Returns the timeout for establishing a connection.
+     *
+     * @return connect timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the timeout for establishing a connection.
+     *
+     * @param connectTimeout new value in milliseconds
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Returns the maximum period of inactivity between two consecutive data
+     * packets when reading the response.
+     *
+     * @return read timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the maximum period of inactivity between two consecutive data
+     * packets when reading the response.
+     *
+     * @param readTimeout new value in milliseconds
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the timeout for leasing a connection from the pool.
+     *
+     * @return connection request timeout in milliseconds
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * Sets the timeout for leasing a connection from the pool.
+     *
+     * @param connectionRequestTimeout new value in milliseconds
+     */
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * Returns the time after which idle connections are evicted from the
+     * pool. Zero means that idle connections are not evicted.
+     *
+     * @return idle connection timeout in milliseconds
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Sets the time after which idle connections are evicted from the pool.
+     * Zero means that idle connections are not evicted.
+     *
+     * @param idleConnectionTimeout new value in milliseconds
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    /**
+     * Returns the SSLContext that's used for TLS connections. If null, the
+     * default of the transport is used.
+     *
+     * @return SSLContext or null
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Sets the SSLContext that's used for TLS connections. If null, the
+     * default of the transport is used.
+     *
+     * @param sslContext new value
+     */
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Returns the HostnameVerifier that's used for TLS connections. If null,
+     * the default of the transport is used.
+     *
+     * @return HostnameVerifier or null
+     */
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    /**
+     * Sets the HostnameVerifier that's used for TLS connections. If null, the
+     * default of the transport is used.
+     *
+     * @param hostnameVerifier new value
+     */
+    public void setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+        this.hostnameVerifier = hostnameVerifier;
+    }
+}
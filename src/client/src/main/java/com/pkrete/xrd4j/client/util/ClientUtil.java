@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 public class ClientUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(ClientUtil.class);
+    private static volatile SSLContext sslContext;
 
     /**
      * Constructs and initializes a new ClientUtil object. Should never be used.
@@ -69,6 +70,8 @@ public class ClientUtil {
             SSLContext sc = SSLContext.getInstance("SSL");
             sc.init(null, trustAllCerts, new SecureRandom());
             HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+            // The non-blocking transport needs the context itself
+            sslContext = sc;
             HostnameVerifier hv = (String urlHostName, SSLSession session) -> {
                 if (!urlHostName.equalsIgnoreCase(session.getPeerHost())) {
                     logger.warn("Warning: URL host \"{}\" is different to SSLSession host \"{}\".", urlHostName, session.getPeerHost());
@@ -86,6 +89,17 @@ public class ClientUtil {
 
     }
 
+    /**
+     * Returns the SSLContext that's installed by doTrustToCertificates method
+     * or null, if it hasn't been called. The transports use this context
+     * when TLS settings are not defined in their configuration.
+     *
+     * @return installed SSLContext or null
+     */
+    public static SSLContext getSSLContext() {
+        return sslContext;
+    }
+
     /**
      * This methods overrides the default host name verifier that can cause
      * problems with self signed or untrusted SSL certificates. The problem
@@ -0,0 +1,57 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.List;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * SOAPClient for test cases. All the methods throw
+ * UnsupportedOperationException, so test cases override only the methods
+ * they need. The asynchronous methods use the default implementations of
+ * SOAPClient.
+ *
+ * @author Petteri Kivimäki
+ */
+public class FakeSOAPClient implements SOAPClient {
+
+    @Override
+    public SOAPMessage send(SOAPMessage request, String url) throws SOAPException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceResponse send(ServiceRequest request, String url, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer) throws SOAPException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<ConsumerMember> listClients(String url) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<ProducerMember> listCentralServices(String url) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceResponse listMethods(ServiceRequest request, String url) throws SOAPException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceResponse allowedMethods(ServiceRequest request, String url) throws SOAPException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceResponse getSecurityServerMetrics(ServiceRequest request, String url) throws SOAPException {
+        throw new UnsupportedOperationException();
+    }
+}
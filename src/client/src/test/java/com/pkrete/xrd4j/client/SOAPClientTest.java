@@ -109,6 +109,37 @@ public class SOAPClientTest extends TestCase {
         }
     }
 
+    /**
+     * Request hash algorithm can't be set to null.
+     *
+     * @throws SOAPException
+     */
+    public void testNullRequestHashAlgorithm() throws SOAPException {
+        SOAPClientImpl client = new SOAPClientImpl();
+        try {
+            client.setRequestHashAlgorithm(null);
+            fail("Should not reach this");
+        } catch (IllegalArgumentException ex) {
+            // OK
+        }
+        assertEquals("SHA-512", client.getRequestHashAlgorithm());
+    }
+
+    /**
+     * Invalid URL. Asynchronous send fails immediately.
+     *
+     * @throws SOAPException
+     */
+    public void testExceptionAsync() throws SOAPException {
+        try {
+            SOAPClient client = new SOAPClientImpl();
+            client.sendAsync(request, "test.com", serializer, deserializer);
+            fail("Should not reach this");
+        } catch (RuntimeException ex) {
+            // OK
+        }
+    }
+
     /**
      * Sending message fails.
      *
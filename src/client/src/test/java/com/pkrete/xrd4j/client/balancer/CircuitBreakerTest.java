@@ -0,0 +1,116 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import com.pkrete.xrd4j.client.LoadBalancedSOAPClientImpl;
+import com.pkrete.xrd4j.client.SOAPClientImpl;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for CircuitBreaker class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CircuitBreakerTest extends TestCase {
+
+    /**
+     * Consecutive failures open the circuit breaker.
+     */
+    public void testConsecutiveFailures() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(3);
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    /**
+     * Error rate opens the circuit breaker.
+     */
+    public void testErrorRate() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(100);
+        config.setMinimumRequests(10);
+        config.setErrorRateThreshold(0.5);
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * Half open circuit breaker allows a limited number of probes and it's
+     * closed when a probe succeeds.
+     */
+    public void testHalfOpen() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(1);
+        config.setOpenDuration(0);
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Half open circuit breaker is opened again when the probe hasn't
+     * completed within the probe timeout.
+     *
+     * @throws Exception
+     */
+    public void testProbeTimeout() throws Exception {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(1);
+        config.setOpenDuration(0);
+        config.setProbeTimeout(10);
+        CircuitBreaker breaker = new CircuitBreaker("test", config);
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Thread.sleep(20);
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Ejected endpoints are skipped by the load balanced client.
+     *
+     * @throws Exception
+     */
+    public void testEjectedEndpoint() throws Exception {
+        List<String> urls = new ArrayList<>();
+        urls.add("http://server1.myhost.com");
+        urls.add("http://server2.myhost.com");
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(1);
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(urls, new SOAPClientImpl(), new RoundRobinStrategy(), config);
+        Endpoint endpoint = client.getEndpoints().get(0);
+        endpoint.requestCompleted(endpoint.requestStarted(), false);
+        assertEquals(1, client.getAvailableEndpoints().size());
+        assertEquals("http://server2.myhost.com", client.getAvailableEndpoints().get(0).getUrl());
+    }
+}
@@ -0,0 +1,76 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for EndpointSelector class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EndpointSelectorTest extends TestCase {
+
+    private List<Endpoint> endpoints;
+    private EndpointSelector selector;
+
+    /**
+     * Set up instance variables used in test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setConsecutiveFailureThreshold(1);
+        config.setOpenDuration(0);
+        this.endpoints = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            this.endpoints.add(new Endpoint("http://server" + i + ".myhost.com", Endpoint.DEFAULT_DECAY_TIME, config));
+        }
+        this.selector = new EndpointSelector(this.endpoints, new RoundRobinStrategy());
+    }
+
+    /**
+     * Only the ejected endpoint that receives the probe is moved to half
+     * open state.
+     */
+    public void testProbe() {
+        this.eject(0);
+        this.eject(1);
+        assertEquals(1, this.selector.getAvailableEndpoints().size());
+        Endpoint probe = this.selector.select();
+        assertSame(this.endpoints.get(0), probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, probe.getCircuitBreaker().getState());
+        assertEquals(CircuitBreaker.State.OPEN, this.endpoints.get(1).getCircuitBreaker().getState());
+        assertEquals(2, this.selector.getAvailableEndpoints().size());
+    }
+
+    /**
+     * A half open endpoint without probes is not returned.
+     */
+    public void testNoPermission() {
+        EndpointSelector single = new EndpointSelector(this.endpoints.subList(0, 1), new RoundRobinStrategy());
+        this.eject(0);
+        assertSame(this.endpoints.get(0), single.select());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, this.endpoints.get(0).getCircuitBreaker().getState());
+        assertNull(single.select());
+    }
+
+    /**
+     * Half open endpoints are not used for additional requests.
+     */
+    public void testSelectOther() {
+        this.eject(1);
+        assertSame(this.endpoints.get(1), this.selector.select());
+        assertSame(this.endpoints.get(2), this.selector.selectOther(this.endpoints.get(0)));
+        assertSame(this.endpoints.get(2), this.selector.selectOther(this.endpoints.get(0)));
+        assertNull(new EndpointSelector(this.endpoints.subList(0, 1), new RoundRobinStrategy()).selectOther(this.endpoints.get(0)));
+    }
+
+    private void eject(int index) {
+        Endpoint endpoint = this.endpoints.get(index);
+        endpoint.requestCompleted(endpoint.requestStarted(), false);
+    }
+}
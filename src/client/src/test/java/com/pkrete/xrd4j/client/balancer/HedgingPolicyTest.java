@@ -0,0 +1,266 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import com.pkrete.xrd4j.client.FakeSOAPClient;
+import com.pkrete.xrd4j.client.LoadBalancedSOAPClientImpl;
+import com.pkrete.xrd4j.client.SOAPClient;
+import com.pkrete.xrd4j.client.SOAPClientImpl;
+import com.pkrete.xrd4j.client.deserializer.AbstractResponseDeserializer;
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.AbstractServiceRequestSerializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.SAAJTransport;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HedgingPolicy class and hedged requests.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HedgingPolicyTest extends TestCase {
+
+    /**
+     * Only the requests to the added services are hedged.
+     *
+     * @throws XRd4JException
+     */
+    public void testIsHedged() throws XRd4JException {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.addServices("getRandom");
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        assertTrue(policy.isHedged(new ServiceRequest<String>(consumer, producer, "1")));
+        producer.setServiceCode("update");
+        assertFalse(policy.isHedged(new ServiceRequest<String>(consumer, producer, "2")));
+    }
+
+    /**
+     * The budget limits the number of hedged requests.
+     */
+    public void testBudget() {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setBudget(0.1);
+        int hedged = 0;
+        for (int i = 0; i < 1000; i++) {
+            policy.requestStarted();
+            if (policy.tryAcquireBudget()) {
+                hedged++;
+            }
+        }
+        // Initial tokens allow a small burst
+        assertTrue(hedged <= 110);
+        assertTrue(hedged >= 100);
+        assertEquals(1000 - hedged, policy.getBudgetExceeded());
+    }
+
+    /**
+     * The delay is calculated from the recent response times.
+     */
+    public void testPercentileDelay() {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setDelay(1);
+        policy.setPercentile(0.9);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), policy.getCurrentDelay());
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency(i);
+        }
+        assertEquals(58, policy.getCurrentDelay());
+        for (int i = 101; i <= 128; i++) {
+            policy.recordLatency(i);
+        }
+        assertEquals(116, policy.getCurrentDelay());
+    }
+
+    /**
+     * Slow primary endpoint is hedged and the response of the other endpoint
+     * is used.
+     *
+     * @throws Exception
+     */
+    public void testHedgedRequest() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", (HttpExchange exchange) -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            echo(exchange);
+        });
+        server.createContext("/fast", HedgingPolicyTest::echo);
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort();
+            List<String> urls = new ArrayList<>();
+            urls.add(url + "/slow");
+            urls.add(url + "/fast");
+            LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(urls, new SOAPClientImpl(new SAAJTransport()), new RoundRobinStrategy());
+            HedgingPolicy policy = new HedgingPolicy();
+            policy.setDelay(50);
+            policy.addServices("getRandom");
+            client.setHedgingPolicy(policy);
+
+            ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+            ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+            producer.setNamespacePrefix("ns1");
+            producer.setNamespaceUrl("http://consumer.x-road.ee");
+            ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "1234567890");
+            request.setRequestData("data");
+            long start = System.nanoTime();
+            ServiceResponse response = client.send(request, new TestRequestSerializer(), new TestResponseDeserializer());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+            assertEquals("1234567890", response.getId());
+            assertEquals(1, policy.getHedges());
+            assertEquals(1, policy.getHedgesWon());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Requests sent using another SOAPClient implementation than
+     * SOAPClientImpl are hedged too.
+     *
+     * @throws Exception
+     */
+    public void testHedgedRequestWrappedClient() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setDelay(50);
+        policy.addServices("getRandom");
+        LoadBalancedSOAPClientImpl client = createClient(new TestSOAPClient(), policy);
+        long start = System.nanoTime();
+        ServiceResponse response = client.send(createRequest(), new TestRequestSerializer(), new TestResponseDeserializer());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals("1234567890", response.getId());
+        assertEquals(1, policy.getHedges());
+        assertEquals(1, policy.getHedgesWon());
+    }
+
+    /**
+     * Hedged request is not sent if the primary request fails before the
+     * hedging delay.
+     *
+     * @throws Exception
+     */
+    public void testPrimaryFailure() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setDelay(50);
+        policy.addServices("getRandom");
+        TestSOAPClient soapClient = new TestSOAPClient();
+        soapClient.failing = true;
+        LoadBalancedSOAPClientImpl client = createClient(soapClient, policy);
+        try {
+            client.send(createRequest(), new TestRequestSerializer(), new TestResponseDeserializer());
+            fail("SOAPException expected");
+        } catch (SOAPException ex) {
+            // Expected
+        }
+        Thread.sleep(200);
+        assertEquals(0, policy.getHedges());
+        assertEquals(1, soapClient.requests.get());
+    }
+
+    private static LoadBalancedSOAPClientImpl createClient(SOAPClient soapClient, HedgingPolicy policy) {
+        List<String> urls = new ArrayList<>();
+        urls.add("http://127.0.0.1/slow");
+        urls.add("http://127.0.0.1/fast");
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(urls, soapClient, new RoundRobinStrategy());
+        client.setHedgingPolicy(policy);
+        return client;
+    }
+
+    private static ServiceRequest<String> createRequest() throws XRd4JException {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "1234567890");
+        request.setRequestData("data");
+        return request;
+    }
+
+    private static void echo(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static class TestRequestSerializer extends AbstractServiceRequestSerializer {
+
+        @Override
+        protected void serializeRequest(ServiceRequest request, SOAPElement soapRequest, SOAPEnvelope envelope) throws SOAPException {
+            SOAPElement data = soapRequest.addChildElement(envelope.createName("data"));
+            data.addTextNode((String) request.getRequestData());
+        }
+    }
+
+    private static class TestResponseDeserializer extends AbstractResponseDeserializer<String, String> {
+
+        @Override
+        protected String deserializeRequestData(Node requestNode) throws SOAPException {
+            return null;
+        }
+
+        @Override
+        protected String deserializeResponseData(Node responseNode, SOAPMessage message) throws SOAPException {
+            return null;
+        }
+    }
+
+    /**
+     * SOAPClient that never answers to the requests sent to the slow
+     * endpoint and fails all the requests if failing is set.
+     */
+    private static class TestSOAPClient extends FakeSOAPClient {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile boolean failing;
+
+        @Override
+        public CompletableFuture<ServiceResponse> sendAsync(ServiceRequest request, String url, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer) {
+            this.requests.incrementAndGet();
+            CompletableFuture<ServiceResponse> future = new CompletableFuture<>();
+            if (this.failing) {
+                future.completeExceptionally(new SOAPException("Failed"));
+            } else if (url.endsWith("/fast")) {
+                try {
+                    future.complete(new ServiceResponse(request.getConsumer(), request.getProducer(), request.getId()));
+                } catch (XRd4JException ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+            return future;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for LoadBalancingStrategy implementations.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LoadBalancingStrategyTest extends TestCase {
+
+    private List<Endpoint> endpoints;
+
+    /**
+     * Initializes instance variables for test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.endpoints = new ArrayList<>();
+        this.endpoints.add(new Endpoint("http://server1.myhost.com"));
+        this.endpoints.add(new Endpoint("http://server2.myhost.com"));
+        this.endpoints.add(new Endpoint("http://server3.myhost.com"));
+    }
+
+    /**
+     * Round-robin strategy returns the endpoints in turn.
+     */
+    public void testRoundRobin() {
+        LoadBalancingStrategy strategy = new RoundRobinStrategy();
+        for (int i = 0; i < 7; i++) {
+            assertSame(this.endpoints.get(i % 3), strategy.select(this.endpoints));
+        }
+    }
+
+    /**
+     * Least outstanding requests strategy returns the endpoint with the
+     * smallest number of requests in flight.
+     */
+    public void testLeastOutstandingRequests() {
+        LoadBalancingStrategy strategy = new LeastOutstandingRequestsStrategy();
+        this.endpoints.get(0).requestStarted();
+        this.endpoints.get(0).requestStarted();
+        this.endpoints.get(1).requestStarted();
+        for (int i = 0; i < 5; i++) {
+            assertSame(this.endpoints.get(2), strategy.select(this.endpoints));
+        }
+        long start = this.endpoints.get(0).requestStarted();
+        this.endpoints.get(2).requestStarted();
+        this.endpoints.get(2).requestStarted();
+        this.endpoints.get(0).requestCompleted(start, true);
+        assertSame(this.endpoints.get(1), strategy.select(this.endpoints));
+    }
+
+    /**
+     * Peak EWMA strategy prefers the endpoint with the lower latency.
+     *
+     * @throws Exception
+     */
+    public void testPeakEwma() throws Exception {
+        List<Endpoint> list = this.endpoints.subList(0, 2);
+        Endpoint slow = list.get(0);
+        Endpoint fast = list.get(1);
+        long start = slow.requestStarted();
+        Thread.sleep(20);
+        slow.requestCompleted(start, true);
+        fast.requestCompleted(fast.requestStarted(), true);
+        assertTrue(slow.getLatencyEstimate() > fast.getLatencyEstimate());
+        LoadBalancingStrategy strategy = new PeakEwmaStrategy();
+        for (int i = 0; i < 10; i++) {
+            assertSame(fast, strategy.select(list));
+        }
+    }
+
+    /**
+     * Endpoint statistics are updated.
+     */
+    public void testEndpointStatistics() {
+        Endpoint endpoint = this.endpoints.get(0);
+        long start = endpoint.requestStarted();
+        assertEquals(1, endpoint.getInFlight());
+        endpoint.requestCompleted(start, false);
+        endpoint.requestCompleted(endpoint.requestStarted(), true);
+        assertEquals(0, endpoint.getInFlight());
+        assertEquals(2, endpoint.getRequests());
+        assertEquals(1, endpoint.getFailures());
+    }
+}
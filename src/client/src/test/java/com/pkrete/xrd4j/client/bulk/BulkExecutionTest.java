@@ -0,0 +1,165 @@
+package com.pkrete.xrd4j.client.bulk;
+
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.xml.soap.SOAPException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for BulkExecution class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BulkExecutionTest extends TestCase {
+
+    private ScheduledExecutorService pool;
+    private AtomicInteger outstanding;
+    private AtomicInteger maxOutstanding;
+
+    /**
+     * Initializes instance variables for test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.pool = Executors.newScheduledThreadPool(4);
+        this.outstanding = new AtomicInteger();
+        this.maxOutstanding = new AtomicInteger();
+    }
+
+    /**
+     * Shuts down the pool.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.pool.shutdownNow();
+        super.tearDown();
+    }
+
+    /**
+     * Results are returned in request order and concurrency is bounded.
+     *
+     * @throws Exception
+     */
+    public void testOrdered() throws Exception {
+        BulkExecution bulk = new BulkExecution(requests(50).iterator(), this.sender(false), 5, 0);
+        List<BulkResult> results = bulk.toList();
+        assertEquals(50, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BulkResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertTrue(result.isSuccess());
+            assertEquals(result.getRequest().getRequest().getId(), result.getResponse().getId());
+        }
+        assertTrue(this.maxOutstanding.get() <= 5);
+    }
+
+    /**
+     * All the results are returned in completion order and errors are
+     * captured per request.
+     *
+     * @throws Exception
+     */
+    public void testUnorderedWithErrors() throws Exception {
+        BulkExecution bulk = new BulkExecution(requests(30).stream().iterator(), this.sender(true), 4, 0);
+        Set<Integer> indexes = new HashSet<>();
+        int errors = 0;
+        for (Iterator<BulkResult> it = bulk.unordered(); it.hasNext();) {
+            BulkResult result = it.next();
+            indexes.add(result.getIndex());
+            if (!result.isSuccess()) {
+                assertTrue(result.getError() instanceof SOAPException);
+                assertNull(result.getResponse());
+                errors++;
+            }
+        }
+        assertEquals(30, indexes.size());
+        assertEquals(10, errors);
+        assertTrue(this.maxOutstanding.get() <= 4);
+        try {
+            bulk.ordered();
+            fail("Results can be read only once.");
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Requests that don't complete in time fail with TimeoutException and
+     * cancelled requests with CancellationException.
+     *
+     * @throws Exception
+     */
+    public void testTimeoutAndCancel() throws Exception {
+        Function<BulkRequest, CompletableFuture<ServiceResponse>> never = request -> new CompletableFuture<>();
+        List<BulkResult> results = new BulkExecution(requests(3).iterator(), never, 2, 50).toList();
+        assertEquals(3, results.size());
+        for (BulkResult result : results) {
+            assertTrue(result.getError() instanceof TimeoutException);
+        }
+        BulkExecution bulk = new BulkExecution(requests(10).iterator(), never, 2, 0);
+        bulk.cancel();
+        results = bulk.toList();
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getError() instanceof CancellationException);
+    }
+
+    /**
+     * Empty bulk has no results.
+     */
+    public void testEmpty() {
+        assertFalse(new BulkExecution(new ArrayList<BulkRequest>().iterator(), this.sender(false), 1, 0).ordered().hasNext());
+    }
+
+    private Function<BulkRequest, CompletableFuture<ServiceResponse>> sender(final boolean failSome) {
+        return request -> {
+            int current = this.outstanding.incrementAndGet();
+            this.maxOutstanding.accumulateAndGet(current, Math::max);
+            CompletableFuture<ServiceResponse> future = new CompletableFuture<>();
+            this.pool.schedule(() -> {
+                this.outstanding.decrementAndGet();
+                ServiceRequest serviceRequest = request.getRequest();
+                if (failSome && Integer.parseInt(serviceRequest.getId()) % 3 == 0) {
+                    future.completeExceptionally(new SOAPException("Failed"));
+                    return;
+                }
+                try {
+                    future.complete(new ServiceResponse(serviceRequest.getConsumer(), serviceRequest.getProducer(), serviceRequest.getId()));
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+            }, ThreadLocalRandom.current().nextInt(10), TimeUnit.MILLISECONDS);
+            return future;
+        };
+    }
+
+    private static List<BulkRequest> requests(int count) throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "1234", "client");
+        ProducerMember producer = new ProducerMember("FI", "GOV", "5678", "service", "getRandom");
+        List<BulkRequest> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new BulkRequest(new ServiceRequest<>(consumer, producer, Integer.toString(i)), null, null));
+        }
+        return list;
+    }
+}
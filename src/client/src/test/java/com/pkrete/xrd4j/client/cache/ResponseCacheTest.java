@@ -0,0 +1,307 @@
+package com.pkrete.xrd4j.client.cache;
+
+import com.pkrete.xrd4j.client.SOAPClientImpl;
+import com.pkrete.xrd4j.client.deserializer.AbstractResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.AbstractServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.AsyncSOAPTransport;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ResponseCache and CachingSOAPClient classes.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ResponseCacheTest extends TestCase {
+
+    private static final String URL = "http://security-server.myhost.com";
+    private EchoTransport echo;
+    private SOAPClientImpl soapClient;
+    private ResponseCache cache;
+    private CachingSOAPClient client;
+
+    /**
+     * Initializes instance variables for test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.echo = new EchoTransport();
+        this.soapClient = new SOAPClientImpl(this.echo, this.echo);
+        this.cache = new ResponseCache(1024 * 1024);
+        this.client = new CachingSOAPClient(this.soapClient, this.cache);
+    }
+
+    /**
+     * Requests that differ only by id share the cached response and requests
+     * with different data don't.
+     *
+     * @throws Exception
+     */
+    public void testHitIgnoresId() throws Exception {
+        this.cache.setTtl("getRandom", 60000);
+        ServiceResponse first = this.send("1", "data");
+        assertEquals("1", first.getId());
+        ServiceResponse second = this.send("2", "data");
+        // Cached response contains the id of the first request
+        assertEquals("1", second.getId());
+        assertEquals(1, this.echo.calls.get());
+        assertEquals(1, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+        assertEquals(0.5, this.cache.getHitRate(), 0.001);
+
+        assertEquals("3", this.send("3", "other").getId());
+        assertEquals(2, this.echo.calls.get());
+        assertEquals(2, this.cache.getEntryCount());
+    }
+
+    /**
+     * A miss is sent using the ServiceRequest method of the underlying
+     * client, so the request is serialized only once and the client verifies
+     * the hash of the request.
+     *
+     * @throws Exception
+     */
+    public void testMiss() throws Exception {
+        this.cache.setTtl("getRandom", 60000);
+        int serialized = TestRequestSerializer.SERIALIZED.get();
+        this.send("1", "data");
+        assertEquals(serialized + 1, TestRequestSerializer.SERIALIZED.get());
+        this.soapClient.setVerifyRequestHash(true);
+        this.echo.requestHash = "invalid";
+        try {
+            this.send("2", "other");
+            fail("SOAPException expected");
+        } catch (SOAPException ex) {
+            assertTrue(ex.getMessage().contains("Request hash verification failed"));
+        }
+        assertEquals(1, this.cache.getEntryCount());
+    }
+
+    /**
+     * Responses of services without a TTL are not cached.
+     *
+     * @throws Exception
+     */
+    public void testNoTtl() throws Exception {
+        this.cache.setTtl("FI.COM.MEMBER2.subsystem.getRandom.v1", 0);
+        this.cache.setDefaultTtl(60000);
+        this.send("1", "data");
+        this.send("2", "data");
+        assertEquals(2, this.echo.calls.get());
+        assertEquals(0, this.cache.getHits() + this.cache.getMisses());
+    }
+
+    /**
+     * Expired response is not returned.
+     *
+     * @throws Exception
+     */
+    public void testExpired() throws Exception {
+        String key = "key";
+        this.cache.put(key, 1, this.createMessage("data"));
+        Thread.sleep(10);
+        assertNull(this.cache.get(key));
+        assertEquals(0, this.cache.getEntryCount());
+        assertEquals(0, this.cache.getSize());
+    }
+
+    /**
+     * The least recently used responses are evicted when the size limit is
+     * exceeded.
+     *
+     * @throws Exception
+     */
+    public void testEviction() throws Exception {
+        SOAPMessage message = this.createMessage("data");
+        ResponseCache small = new ResponseCache(1);
+        small.put("a", 60000, message);
+        assertEquals(0, small.getEntryCount());
+
+        ResponseCache probe = new ResponseCache(1024 * 1024);
+        probe.put("a", 60000, message);
+        long entrySize = probe.getSize();
+        small = new ResponseCache(entrySize * 2);
+        small.put("a", 60000, message);
+        small.put("b", 60000, message);
+        assertNotNull(small.get("a"));
+        small.put("c", 60000, message);
+        assertEquals(2, small.getEntryCount());
+        assertEquals(1, small.getEvictions());
+        assertNull(small.get("b"));
+        assertNotNull(small.get("a"));
+        assertNotNull(small.get("c"));
+    }
+
+    /**
+     * Responses written to disk are found by another cache instance.
+     *
+     * @throws Exception
+     */
+    public void testDisk() throws Exception {
+        File dir = Files.createTempDirectory("xrd4j-cache").toFile();
+        try {
+            ResponseCache disk = new ResponseCache(1024 * 1024, dir);
+            disk.put("key", 60000, this.createMessage("data"));
+            ResponseCache other = new ResponseCache(1024 * 1024, dir);
+            SOAPMessage cached = other.get("key");
+            assertNotNull(cached);
+            assertEquals("data", cached.getSOAPBody().getTextContent().trim());
+            assertEquals(1, other.getEntryCount());
+            other.clear();
+            assertNull(new ResponseCache(1024 * 1024, dir).get("key"));
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Asynchronous requests use the same cache.
+     *
+     * @throws Exception
+     */
+    public void testAsync() throws Exception {
+        this.cache.setDefaultTtl(60000);
+        this.send("1", "data");
+        ServiceResponse response = this.client.sendAsync(this.createRequest("2", "data"), URL, new TestRequestSerializer(), new TestResponseDeserializer())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals("1", response.getId());
+        assertEquals(1, this.echo.calls.get());
+        response = this.client.sendAsync(this.createRequest("3", "other"), URL, new TestRequestSerializer(), new TestResponseDeserializer())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals("3", response.getId());
+        assertEquals(2, this.echo.calls.get());
+    }
+
+    private ServiceResponse send(String id, String data) throws Exception {
+        return this.client.send(this.createRequest(id, data), URL, new TestRequestSerializer(), new TestResponseDeserializer());
+    }
+
+    private ServiceRequest<String> createRequest(String id, String data) throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        producer.setNamespacePrefix("ns1");
+        producer.setNamespaceUrl("http://consumer.x-road.ee");
+        ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, id);
+        request.setUserId("user" + id);
+        request.setRequestData(data);
+        return request;
+    }
+
+    private SOAPMessage createMessage(String data) throws SOAPException {
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+        message.getSOAPBody().addTextNode(data);
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * Blocking and non-blocking transport that returns the request as the
+     * response. If a request hash is given, it's added to the header of the
+     * response.
+     */
+    private static class EchoTransport implements SOAPTransport, AsyncSOAPTransport {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String requestHash;
+
+        @Override
+        public SOAPMessage send(SOAPMessage request, String url, MessageDigest requestDigest) throws SOAPException {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                request.writeTo(out);
+                if (requestDigest != null) {
+                    requestDigest.update(out.toByteArray());
+                }
+                return this.echo(out.toByteArray());
+            } catch (IOException ex) {
+                throw new SOAPException(ex);
+            }
+        }
+
+        @Override
+        public CompletableFuture<SOAPMessage> sendAsync(byte[] request, MimeHeaders headers, String url, Executor executor) {
+            CompletableFuture<SOAPMessage> result = new CompletableFuture<>();
+            try {
+                result.complete(this.echo(request));
+            } catch (SOAPException | IOException ex) {
+                result.completeExceptionally(ex);
+            }
+            return result;
+        }
+
+        private SOAPMessage echo(byte[] request) throws SOAPException, IOException {
+            this.calls.incrementAndGet();
+            MimeHeaders headers = new MimeHeaders();
+            headers.addHeader("Content-Type", "text/xml; charset=utf-8");
+            SOAPMessage response = MessageFactory.newInstance().createMessage(headers, new ByteArrayInputStream(request));
+            if (this.requestHash != null) {
+                SOAPElement hash = response.getSOAPHeader().addChildElement(Constants.NS_XRD_ELEM_REQUEST_HASH, Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL);
+                hash.addAttribute(response.getSOAPPart().getEnvelope().createName(Constants.ATTR_ALGORITHM_ID), "http://www.w3.org/2001/04/xmlenc#sha512");
+                hash.addTextNode(this.requestHash);
+                response.saveChanges();
+            }
+            return response;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    private static class TestRequestSerializer extends AbstractServiceRequestSerializer {
+
+        private static final AtomicInteger SERIALIZED = new AtomicInteger();
+
+        @Override
+        protected void serializeRequest(ServiceRequest request, SOAPElement soapRequest, SOAPEnvelope envelope) throws SOAPException {
+            SERIALIZED.incrementAndGet();
+            SOAPElement data = soapRequest.addChildElement(envelope.createName("data"));
+            data.addTextNode((String) request.getRequestData());
+        }
+    }
+
+    private static class TestResponseDeserializer extends AbstractResponseDeserializer<String, String> {
+
+        @Override
+        protected String deserializeRequestData(Node requestNode) throws SOAPException {
+            return null;
+        }
+
+        @Override
+        protected String deserializeResponseData(Node responseNode, SOAPMessage message) throws SOAPException {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.pkrete.xrd4j.client.catalog;
+
+import com.pkrete.xrd4j.client.FakeSOAPClient;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.soap.SOAPException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ServiceCatalog class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServiceCatalogTest extends TestCase {
+
+    private static final String URL = "http://security-server.myhost.com";
+    private TestSOAPClient client;
+    private ServiceCatalog catalog;
+
+    /**
+     * Initializes instance variables for test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.client = new TestSOAPClient();
+        this.catalog = new ServiceCatalog(this.client, URL, new ConsumerMember("FI", "GOV", "CONSUMER", "client"));
+    }
+
+    /**
+     * Services are found using the hash and prefix indexes.
+     */
+    public void testIndexes() {
+        assertTrue(this.catalog.getSnapshot().getServices().isEmpty());
+        CatalogSnapshot snapshot = this.catalog.refresh();
+        assertSame(snapshot, this.catalog.getSnapshot());
+        assertEquals(3, snapshot.getClients().size());
+        assertEquals(5, snapshot.getServices().size());
+        assertEquals(5, snapshot.findByInstance("FI").size());
+        assertEquals(4, snapshot.findByMemberClass("FI", "GOV").size());
+        assertEquals(1, snapshot.findByMemberClass("FI", "COM").size());
+        assertEquals(4, snapshot.findByMember("FI", "GOV", "1234").size());
+        assertEquals(2, snapshot.findBySubsystem("FI", "GOV", "1234", "sub1").size());
+        assertEquals(3, snapshot.findByServiceCode("getRandom").size());
+        assertEquals(0, snapshot.findByServiceCode("unknown").size());
+        assertEquals(4, snapshot.findByPrefix("FI/GOV/").size());
+        assertEquals(2, snapshot.findByPrefix("FI/GOV/1234/sub2/").size());
+        assertEquals(4, snapshot.findByPrefix("FI/GOV/1234").size());
+        assertEquals(0, snapshot.findByPrefix("FI/GOV/123").size());
+        assertEquals(0, snapshot.findByPrefix("FI/GOV/12345").size());
+        assertEquals(1, snapshot.findByPrefix("FI/GOV/1234/sub2/getRandom/v2").size());
+        assertNotNull(snapshot.findById("FI/COM/5678//getRandom/v1"));
+        assertNull(snapshot.findById("FI/COM/5678/getRandom/v1"));
+        assertTrue(snapshot.isAvailable("FI", "GOV", "1234", "sub2", "getRandom", "v2"));
+        assertFalse(snapshot.isAvailable("FI", "GOV", "1234", "sub2", "getRandom", "v3"));
+        assertEquals(3, this.client.methods.size());
+    }
+
+    /**
+     * Services of a failed client or a client that returns a SOAP fault are
+     * kept from the previous snapshot and the old snapshot is not modified
+     * by a refresh.
+     */
+    public void testRefreshFailure() {
+        CatalogSnapshot first = this.catalog.refresh();
+        this.client.failing.add("sub2");
+        CatalogSnapshot second = this.catalog.refresh();
+        assertNotSame(first, second);
+        assertEquals(5, second.getServices().size());
+        assertEquals(2, second.findBySubsystem("FI", "GOV", "1234", "sub2").size());
+        this.client.failing.clear();
+        this.client.faulty.add("sub1");
+        CatalogSnapshot third = this.catalog.refresh();
+        assertEquals(5, third.getServices().size());
+        assertEquals(2, third.findBySubsystem("FI", "GOV", "1234", "sub1").size());
+        this.client.failClients = true;
+        assertSame(third, this.catalog.refresh());
+        assertEquals(5, first.getServices().size());
+    }
+
+    /**
+     * Identifiers of services with missing parts don't collide with the
+     * identifiers of other services.
+     *
+     * @throws XRd4JException
+     */
+    public void testUnambiguousIds() throws XRd4JException {
+        ProducerMember member = new ProducerMember("FI", "GOV", "1234", "getRandom");
+        member.setServiceVersion("v1");
+        ProducerMember subsystem = new ProducerMember("FI", "GOV", "1234", "getRandom", "v1");
+        List<ProducerMember> services = new ArrayList<>();
+        services.add(member);
+        services.add(subsystem);
+        CatalogSnapshot snapshot = new CatalogSnapshot(new ArrayList<ConsumerMember>(), services);
+        assertFalse(CatalogSnapshot.id(member).equals(CatalogSnapshot.id(subsystem)));
+        assertSame(member, snapshot.findById(CatalogSnapshot.id(member)));
+        assertSame(subsystem, snapshot.findById(CatalogSnapshot.id(subsystem)));
+        assertTrue(snapshot.isAvailable("FI", "GOV", "1234", null, "getRandom", "v1"));
+        assertFalse(snapshot.isAvailable("FI", "GOV", "1234", "getRandom", "v1", "v1"));
+    }
+
+    /**
+     * allowedMethods is used when it's enabled.
+     */
+    public void testAllowedMethods() {
+        this.catalog.setAllowedMethods(true);
+        this.catalog.setParallelism(1);
+        assertEquals(5, this.catalog.refresh().getServices().size());
+        assertEquals(3, this.client.allowed.get());
+    }
+
+    /**
+     * SOAPClient that returns fixed meta service responses.
+     */
+    private static class TestSOAPClient extends FakeSOAPClient {
+
+        private final Set<String> methods = ConcurrentHashMap.newKeySet();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final Set<String> faulty = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger allowed = new AtomicInteger();
+        private volatile boolean failClients;
+
+        @Override
+        public List<ConsumerMember> listClients(String url) {
+            if (this.failClients) {
+                throw new XRd4JRuntimeException("Failed");
+            }
+            List<ConsumerMember> list = new ArrayList<>();
+            try {
+                list.add(new ConsumerMember("FI", "GOV", "1234", "sub1"));
+                list.add(new ConsumerMember("FI", "GOV", "1234", "sub2"));
+                list.add(new ConsumerMember("FI", "COM", "5678"));
+            } catch (XRd4JException ex) {
+                throw new XRd4JRuntimeException(ex.getMessage());
+            }
+            return list;
+        }
+
+        @Override
+        public ServiceResponse listMethods(ServiceRequest request, String url) throws SOAPException {
+            return this.services(request);
+        }
+
+        @Override
+        public ServiceResponse allowedMethods(ServiceRequest request, String url) throws SOAPException {
+            this.allowed.incrementAndGet();
+            return this.services(request);
+        }
+
+        private ServiceResponse services(ServiceRequest request) throws SOAPException {
+            ProducerMember provider = request.getProducer();
+            String subsystem = provider.getSubsystemCode();
+            if (subsystem != null && this.failing.contains(subsystem)) {
+                throw new SOAPException("Failed");
+            }
+            this.methods.add(String.valueOf(subsystem));
+            List<ProducerMember> list = new ArrayList<>();
+            try {
+                String instance = provider.getXRoadInstance();
+                String memberClass = provider.getMemberClass();
+                String code = provider.getMemberCode();
+                if (subsystem == null) {
+                    ProducerMember service = new ProducerMember(instance, memberClass, code, "getRandom");
+                    service.setServiceVersion("v1");
+                    list.add(service);
+                } else if ("sub1".equals(subsystem)) {
+                    list.add(new ProducerMember(instance, memberClass, code, subsystem, "helloService", "v1"));
+                    list.add(new ProducerMember(instance, memberClass, code, subsystem, "getRandom", "v1"));
+                } else {
+                    list.add(new ProducerMember(instance, memberClass, code, subsystem, "getRandom", "v2"));
+                    list.add(new ProducerMember(instance, memberClass, code, subsystem, "listPeople", "v1"));
+                }
+                ServiceResponse<String, List<ProducerMember>> response = new ServiceResponse<>(request.getConsumer(), provider, "id");
+                if (subsystem != null && this.faulty.contains(subsystem)) {
+                    response.setErrorMessage(new ErrorMessage("Server.ServerProxy", "Service unavailable"));
+                } else {
+                    response.setResponseData(list);
+                }
+                return response;
+            } catch (XRd4JException ex) {
+                throw new SOAPException(ex);
+            }
+        }
+    }
+}
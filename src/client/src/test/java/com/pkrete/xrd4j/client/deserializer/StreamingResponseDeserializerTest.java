@@ -0,0 +1,139 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.soap.SOAPException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AbstractStreamingResponseDeserializer class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingResponseDeserializerTest extends TestCase {
+
+    private static final String HEADER = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header>";
+
+    /**
+     * Items are passed to the callback in document order and the header is
+     * deserialized.
+     *
+     * @throws SOAPException
+     */
+    public void testCallback() throws SOAPException {
+        String soapString = HEADER + "<SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1</data></request><response>\n<item>first</item><item><![CDATA[second]]></item>\n<item>third</item></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        List<String> items = new ArrayList<>();
+        ServiceResponse response = new TestDeserializer().deserialize(toStream(soapString), "http://producer.x-road.ee", true, items::add);
+        assertEquals(3, items.size());
+        assertEquals("first", items.get(0));
+        assertEquals("second", items.get(1));
+        assertEquals("third", items.get(2));
+        assertEquals("MEMBER1", response.getConsumer().getMemberCode());
+        assertEquals("getRandom", response.getProducer().getServiceCode());
+        assertEquals("http://producer.x-road.ee", response.getProducer().getNamespaceUrl());
+        assertEquals("ns1", response.getProducer().getNamespacePrefix());
+        assertEquals("ID-1234567890", response.getId());
+        assertEquals("EE1234567890", response.getUserId());
+        assertEquals(false, response.hasError());
+    }
+
+    /**
+     * Items are read using the iterator and the wrappers are not processed.
+     *
+     * @throws SOAPException
+     */
+    public void testIteratorWithoutWrappers() throws SOAPException {
+        String soapString = HEADER + "<SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><item>a</item><item>b</item></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        try (StreamingResponse<String> response = new TestDeserializer().open(toStream(soapString), "*", false)) {
+            assertEquals("MEMBER2", response.getResponse().getProducer().getMemberCode());
+            assertTrue(response.hasNext());
+            assertTrue(response.hasNext());
+            assertEquals("a", response.next());
+            assertEquals("b", response.next());
+            assertFalse(response.hasNext());
+            assertEquals(2, response.getCount());
+        }
+    }
+
+    /**
+     * Standard SOAP fault is deserialized.
+     *
+     * @throws SOAPException
+     */
+    public void testSOAPFault() throws SOAPException {
+        String soapString = HEADER + "<SOAP-ENV:Body><SOAP-ENV:Fault><faultcode>fault code</faultcode><faultstring>fault string</faultstring><faultactor>fault actor</faultactor><detail>fault details</detail></SOAP-ENV:Fault></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        List<String> items = new ArrayList<>();
+        ServiceResponse response = new TestDeserializer().deserialize(toStream(soapString), "*", true, items::add);
+        assertTrue(items.isEmpty());
+        assertEquals(true, response.hasError());
+        assertEquals("fault code", response.getErrorMessage().getFaultCode());
+        assertEquals("fault string", response.getErrorMessage().getFaultString());
+        assertEquals("fault actor", response.getErrorMessage().getFaultActor());
+        assertEquals("fault details", response.getErrorMessage().getDetail());
+        assertEquals(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE, response.getErrorMessage().getErrorMessageType());
+    }
+
+    /**
+     * Non-technical error inside the response element is deserialized.
+     *
+     * @throws SOAPException
+     */
+    public void testNonTechnicalError() throws SOAPException {
+        String soapString = HEADER + "<SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1</data></request><response><faultCode>fault code</faultCode><faultString>fault string</faultString></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        List<String> items = new ArrayList<>();
+        ServiceResponse response = new TestDeserializer().deserialize(toStream(soapString), "*", true, items::add);
+        assertTrue(items.isEmpty());
+        assertEquals(true, response.hasError());
+        assertEquals("fault code", response.getErrorMessage().getFaultCode());
+        assertEquals("fault string", response.getErrorMessage().getFaultString());
+        assertEquals(ErrorMessageType.NON_TECHNICAL_SOAP_ERROR_MESSAGE, response.getErrorMessage().getErrorMessageType());
+    }
+
+    /**
+     * Response element with a wrong namespace is not deserialized.
+     *
+     * @throws SOAPException
+     */
+    public void testWrongNamespace() throws SOAPException {
+        String soapString = HEADER + "<SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><item>a</item></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        List<String> items = new ArrayList<>();
+        new TestDeserializer().deserialize(toStream(soapString), "http://other.x-road.ee", false, items::add);
+        assertTrue(items.isEmpty());
+    }
+
+    /**
+     * Invalid XML causes a SOAPException.
+     */
+    public void testInvalidXml() {
+        String soapString = HEADER + "<SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><item>a</item><item>b";
+        List<String> items = new ArrayList<>();
+        try {
+            new TestDeserializer().deserialize(toStream(soapString), "*", false, items::add);
+            fail("SOAPException was expected.");
+        } catch (SOAPException ex) {
+            assertEquals(1, items.size());
+        }
+    }
+
+    private static InputStream toStream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deserializer that reads the text content of each item.
+     */
+    private static class TestDeserializer extends AbstractStreamingResponseDeserializer<String> {
+
+        @Override
+        protected String deserializeItem(XMLStreamReader reader) throws XMLStreamException {
+            return reader.getElementText();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.pkrete.xrd4j.client.directory;
+
+import com.pkrete.xrd4j.client.FakeSOAPClient;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.soap.SOAPException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for MetaServiceDirectory class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MetaServiceDirectoryTest extends TestCase {
+
+    private static final String URL = "http://security-server.myhost.com";
+    private TestSOAPClient client;
+    private MetaServiceDirectory directory;
+
+    /**
+     * Initializes instance variables for test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.client = new TestSOAPClient();
+        this.directory = new MetaServiceDirectory(this.client);
+    }
+
+    /**
+     * Cached result is returned without calling the meta service again.
+     */
+    public void testCachedClients() {
+        assertNull(this.directory.getCachedClients(URL));
+        assertEquals(1, this.directory.getClients(URL).size());
+        assertEquals(1, this.directory.getClients(URL).size());
+        assertEquals(1, this.client.calls.get());
+        assertEquals(1, this.directory.getCachedClients(URL).size());
+        this.directory.invalidate(URL);
+        assertNull(this.directory.getCachedClients(URL));
+    }
+
+    /**
+     * Concurrent misses are collapsed into a single call.
+     *
+     * @throws Exception
+     */
+    public void testCollapsedMisses() throws Exception {
+        this.client.delay = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            List<Future<List<ConsumerMember>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> {
+                    latch.await();
+                    return this.directory.getClients(URL);
+                }));
+            }
+            latch.countDown();
+            for (Future<List<ConsumerMember>> future : futures) {
+                assertEquals(1, future.get(5, TimeUnit.SECONDS).size());
+            }
+            assertEquals(1, this.client.calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Stale result is returned while it's refreshed and it's kept if the
+     * refresh fails.
+     *
+     * @throws Exception
+     */
+    public void testStaleWhileRevalidate() throws Exception {
+        this.directory.setTtl(0);
+        this.directory.setExecutor(Runnable::run);
+        List<ConsumerMember> first = this.directory.getClients(URL);
+        this.client.fail = true;
+        assertSame(first, this.directory.getClients(URL));
+        assertEquals(2, this.client.calls.get());
+        this.client.fail = false;
+        List<ConsumerMember> refreshed = this.directory.getClients(URL);
+        assertSame(first, refreshed);
+        assertNotSame(first, this.directory.getCachedClients(URL));
+    }
+
+    /**
+     * SOAP fault fails the load and the previous services are kept.
+     *
+     * @throws Exception
+     */
+    public void testFault() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ConsumerMember provider = new ConsumerMember("FI", "COM", "MEMBER2", "subsystem");
+        this.client.fault = true;
+        try {
+            this.directory.getMethods(URL, consumer, provider);
+            fail("SOAPException expected");
+        } catch (SOAPException ex) {
+            assertTrue(ex.getMessage().contains("Server.ServerProxy"));
+        }
+        assertNull(this.directory.getCachedMethods(URL, consumer, provider));
+        this.client.fault = false;
+        List<ProducerMember> first = this.directory.getMethods(URL, consumer, provider);
+        assertEquals(1, first.size());
+        this.directory.setTtl(0);
+        this.directory.setExecutor(Runnable::run);
+        this.client.fault = true;
+        assertSame(first, this.directory.getMethods(URL, consumer, provider));
+        assertSame(first, this.directory.getCachedMethods(URL, consumer, provider));
+    }
+
+    /**
+     * SOAPClient that counts listClients calls and returns a SOAP fault from
+     * listMethods, if requested.
+     */
+    private static class TestSOAPClient extends FakeSOAPClient {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long delay;
+        private volatile boolean fail;
+        private volatile boolean fault;
+
+        @Override
+        public ServiceResponse listMethods(ServiceRequest request, String url) throws SOAPException {
+            try {
+                ServiceResponse<String, List<ProducerMember>> response = new ServiceResponse<>(request.getConsumer(), request.getProducer(), "id");
+                if (this.fault) {
+                    response.setErrorMessage(new ErrorMessage("Server.ServerProxy", "Service unavailable"));
+                } else {
+                    List<ProducerMember> list = new ArrayList<>();
+                    list.add(new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1"));
+                    response.setResponseData(list);
+                }
+                return response;
+            } catch (XRd4JException ex) {
+                throw new SOAPException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public List<ConsumerMember> listClients(String url) {
+            this.calls.incrementAndGet();
+            try {
+                Thread.sleep(this.delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.fail) {
+                throw new XRd4JRuntimeException("Failed");
+            }
+            List<ConsumerMember> list = new ArrayList<>();
+            try {
+                list.add(new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem"));
+            } catch (Exception ex) {
+                throw new XRd4JRuntimeException(ex.getMessage());
+            }
+            return list;
+        }
+    }
+}
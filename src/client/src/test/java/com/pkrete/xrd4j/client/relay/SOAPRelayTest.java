@@ -0,0 +1,136 @@
+package com.pkrete.xrd4j.client.relay;
+
+import com.pkrete.xrd4j.client.transport.HttpSOAPTransport;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.soap.SOAPException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for SOAPRelay class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SOAPRelayTest extends TestCase {
+
+    private static final String REQUEST = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID11234</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandom xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request></ns1:getRandom></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private HttpServer server;
+    private SOAPRelay relay;
+
+    /**
+     * Starts a server that echoes the requests.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", SOAPRelayTest::echo);
+        this.server.start();
+        List<String> urls = new ArrayList<>();
+        urls.add("http://127.0.0.1:" + this.server.getAddress().getPort() + "/");
+        this.relay = new SOAPRelay(urls, new HttpSOAPTransport());
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.relay.close();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * The request is relayed unchanged and the header is passed to the
+     * listener.
+     *
+     * @throws Exception
+     */
+    public void testRelay() throws Exception {
+        AtomicReference<ServiceRequest<?>> relayed = new AtomicReference<>();
+        this.relay.setListener((header, endpoint, duration, success) -> {
+            assertTrue(success);
+            relayed.set(header);
+        });
+        String response = this.relay.relay(new ByteArrayInputStream(REQUEST.getBytes(StandardCharsets.UTF_8)), "text/xml; charset=utf-8", null,
+                (in, contentType) -> {
+                    assertTrue(contentType.startsWith("text/xml"));
+                    return new String(readAll(in), StandardCharsets.UTF_8);
+                });
+        assertEquals(REQUEST, response);
+        assertEquals("ID11234", relayed.get().getId());
+        assertEquals(1, this.relay.getEndpoints().get(0).getRequests());
+    }
+
+    /**
+     * Requests that don't pass the access filter are not relayed.
+     *
+     * @throws Exception
+     */
+    public void testAccessDenied() throws Exception {
+        this.relay.setAccessFilter(header -> "update".equals(header.getProducer().getServiceCode()));
+        try {
+            this.relay.relay(new ByteArrayInputStream(REQUEST.getBytes(StandardCharsets.UTF_8)), "text/xml; charset=utf-8", null, (in, contentType) -> null);
+            fail("SOAPException expected");
+        } catch (SOAPException ex) {
+            assertEquals("Access denied.", ex.getMessage());
+        }
+        assertEquals(0, this.relay.getEndpoints().get(0).getRequests());
+    }
+
+    /**
+     * The header of a multipart request is read from its SOAP part, so the
+     * request can pass the access filter.
+     *
+     * @throws Exception
+     */
+    public void testMultipart() throws Exception {
+        this.relay.setAccessFilter(header -> "getRandom".equals(header.getProducer().getServiceCode()));
+        String multipart = "--MIME_boundary\r\nContent-Type: text/xml; charset=UTF-8\r\n\r\n" + REQUEST
+                + "\r\n--MIME_boundary\r\nContent-Type: text/plain\r\n\r\nattachment\r\n--MIME_boundary--\r\n";
+        String contentType = "multipart/related; type=\"text/xml\"; boundary=MIME_boundary";
+        String response = this.relay.relay(new ByteArrayInputStream(multipart.getBytes(StandardCharsets.UTF_8)), contentType, null,
+                (in, type) -> new String(readAll(in), StandardCharsets.UTF_8));
+        assertEquals(multipart, response);
+        assertEquals(1, this.relay.getEndpoints().get(0).getRequests());
+    }
+
+    private static void echo(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = readAll(in);
+        }
+        exchange.getResponseHeaders().add("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -6,6 +6,8 @@ import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.member.SecurityServer;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
@@ -469,6 +471,105 @@ public class ServiceRequestSerializerTest extends TestCase {
 
         assertEquals(correctRequest, SOAPHelper.toString(msg));
     }
+
+    /**
+     * Request written using the header template is identical to the request
+     * built using SAAJ. The same template is reused for the second request.
+     *
+     * @throws Exception
+     */
+    public void testHeaderTemplate() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        producer.setNamespacePrefix("ts");
+        producer.setNamespaceUrl("http://producer.x-road.ee");
+        SecurityServer securityServer = new SecurityServer("FI", "COM", "MEMBER2", "server1");
+        AbstractServiceRequestSerializer serializer = new TestRequestSerializer1();
+        for (int i = 0; i < 2; i++) {
+            ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "id-" + i);
+            request.setSecurityServer(securityServer);
+            request.setUserId(i == 0 ? "EE1234567890" : null);
+            request.setIssue(i == 0 ? null : "<issue> & \"1\"");
+            request.setRequestData("1234567890");
+            String expected = SOAPHelper.toString(serializer.serialize(request));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SOAPMessage msg = serializer.serialize(request, out);
+            assertEquals(expected, SOAPHelper.toString(SOAPHelper.toSOAP(new String(out.toByteArray(), StandardCharsets.UTF_8))));
+            assertNull(msg.getSOAPHeader());
+        }
+    }
+
+    /**
+     * Member level service without version and without security server.
+     *
+     * @throws Exception
+     */
+    public void testHeaderTemplateMember() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "getRandom");
+        producer.setNamespacePrefix("");
+        producer.setNamespaceUrl("http://consumer.x-road.ee");
+        ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "1234567890");
+        request.setRequestData("1234567890");
+        AbstractServiceRequestSerializer serializer = new TestRequestSerializer();
+        String expected = SOAPHelper.toString(serializer.serialize(request));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(request, out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Service whose version is the string "null" doesn't reuse the template
+     * of the same service without version.
+     *
+     * @throws Exception
+     */
+    public void testHeaderTemplateNullVersion() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1");
+        AbstractServiceRequestSerializer serializer = new TestRequestSerializer();
+        for (String version : new String[]{null, "null"}) {
+            ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom");
+            producer.setServiceVersion(version);
+            producer.setNamespacePrefix("");
+            producer.setNamespaceUrl("http://consumer.x-road.ee");
+            ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "1234567890");
+            request.setRequestData("1234567890");
+            String expected = SOAPHelper.toString(serializer.serialize(request));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            serializer.serialize(request, out);
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Request whose character set is not UTF-8 is written with the header
+     * built using SAAJ and it's encoded using the character set of the
+     * message.
+     *
+     * @throws Exception
+     */
+    public void testHeaderTemplateCharset() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        producer.setNamespacePrefix("ts");
+        producer.setNamespaceUrl("http://producer.x-road.ee");
+        ServiceRequest<String> request = new ServiceRequest<String>(consumer, producer, "1234567890");
+        request.setRequestData("\u00e4\u00f6");
+        AbstractServiceRequestSerializer serializer = new AbstractServiceRequestSerializer() {
+            @Override
+            protected void serializeRequest(ServiceRequest request, SOAPElement soapRequest, SOAPEnvelope envelope) throws SOAPException {
+                request.getSoapMessage().setProperty(SOAPMessage.CHARACTER_SET_ENCODING, "ISO-8859-1");
+                soapRequest.addChildElement("data", "ts").addTextNode((String) request.getRequestData());
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SOAPMessage msg = serializer.serialize(request, out);
+        assertNotNull(msg.getSOAPHeader());
+        String xml = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(xml.contains("<ts:data>\u00e4\u00f6</ts:data>"));
+        assertTrue(xml.contains("<id:memberCode>MEMBER1</id:memberCode>"));
+    }
+
     private class TestRequestSerializer extends AbstractServiceRequestSerializer {
 
         protected void serializeRequest(ServiceRequest request, SOAPElement soapRequest, SOAPEnvelope envelope) throws SOAPException {
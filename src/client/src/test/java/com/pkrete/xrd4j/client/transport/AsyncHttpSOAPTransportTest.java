@@ -0,0 +1,147 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.client.SOAPClientImpl;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AsyncHttpSOAPTransport class. The test cases use a local HTTP
+ * server that returns the request as the response.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AsyncHttpSOAPTransportTest extends TestCase {
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<SOAP-ENV:Header/><SOAP-ENV:Body><ns1:test xmlns:ns1=\"http://test.com\">value</ns1:test>"
+            + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private HttpServer server;
+    private AsyncHttpSOAPTransport transport;
+    private String url;
+
+    /**
+     * Starts the local HTTP server and creates the transport.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/echo", this::echo);
+        this.server.createContext("/missing", (HttpExchange exchange) -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.transport = new AsyncHttpSOAPTransport();
+    }
+
+    /**
+     * Stops the local HTTP server and closes the transport.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.transport.close();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    private void echo(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static MimeHeaders headers() {
+        MimeHeaders headers = new MimeHeaders();
+        headers.addHeader("Content-Type", "text/xml; charset=utf-8");
+        return headers;
+    }
+
+    /**
+     * Send serialized message asynchronously.
+     *
+     * @throws Exception
+     */
+    public void testSendAsync() throws Exception {
+        CompletableFuture<SOAPMessage> future = this.transport.sendAsync(MESSAGE.getBytes(StandardCharsets.UTF_8),
+                headers(), this.url + "/echo", ForkJoinPool.commonPool());
+        SOAPMessage response = future.get(10, TimeUnit.SECONDS);
+        assertEquals("value", response.getSOAPBody().getElementsByTagNameNS("http://test.com", "test").item(0).getTextContent());
+    }
+
+    /**
+     * Status code 404 completes the future exceptionally with SOAPException.
+     *
+     * @throws Exception
+     */
+    public void testSendAsyncNotFound() throws Exception {
+        CompletableFuture<SOAPMessage> future = this.transport.sendAsync(MESSAGE.getBytes(StandardCharsets.UTF_8),
+                headers(), this.url + "/missing", ForkJoinPool.commonPool());
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Should not reach this");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SOAPException);
+        }
+    }
+
+    /**
+     * Send SOAPMessage asynchronously using SOAPClientImpl.
+     *
+     * @throws Exception
+     */
+    public void testClientSendAsync() throws Exception {
+        SOAPClientImpl client = new SOAPClientImpl(new SAAJTransport(), this.transport);
+        SOAPMessage response = client.sendAsync(SOAPHelper.toSOAP(MESSAGE), this.url + "/echo").get(10, TimeUnit.SECONDS);
+        assertEquals("value", response.getSOAPBody().getElementsByTagNameNS("http://test.com", "test").item(0).getTextContent());
+    }
+
+    /**
+     * Both transports follow the default TLS settings when TLS is not
+     * configured and use the configured SSLContext otherwise.
+     *
+     * @throws Exception
+     */
+    public void testDefaultTLSSettings() throws Exception {
+        TransportConfig config = new TransportConfig();
+        assertFalse(DefaultTLSSettings.createIOSessionStrategy(config) instanceof SSLIOSessionStrategy);
+        assertFalse(DefaultTLSSettings.createSocketFactory(config) instanceof SSLConnectionSocketFactory);
+        config.setSslContext(SSLContext.getDefault());
+        assertTrue(DefaultTLSSettings.createIOSessionStrategy(config) instanceof SSLIOSessionStrategy);
+        assertTrue(DefaultTLSSettings.createSocketFactory(config) instanceof SSLConnectionSocketFactory);
+        assertTrue(DefaultTLSSettings.createIOSessionStrategy(new TransportConfig()).isLayeringRequired());
+    }
+}
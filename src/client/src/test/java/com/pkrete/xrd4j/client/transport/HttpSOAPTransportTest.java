@@ -0,0 +1,148 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.common.util.MessageHelper;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HttpSOAPTransport class. The test cases use a local HTTP
+ * server that returns the request as the response.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HttpSOAPTransportTest extends TestCase {
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<SOAP-ENV:Header/><SOAP-ENV:Body><ns1:test xmlns:ns1=\"http://test.com\">value</ns1:test>"
+            + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private HttpServer server;
+    private HttpSOAPTransport transport;
+    private Set<Integer> clientPorts;
+    private String url;
+
+    /**
+     * Starts the local HTTP server and creates the transport.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/echo", this::echo);
+        this.server.createContext("/missing", (HttpExchange exchange) -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.transport = new HttpSOAPTransport();
+    }
+
+    /**
+     * Stops the local HTTP server and closes the transport.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.transport.close();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    private void echo(HttpExchange exchange) throws IOException {
+        this.clientPorts.add(exchange.getRemoteAddress().getPort());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * Send two messages. The same connection should be used for both.
+     *
+     * @throws Exception
+     */
+    public void testSend() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            SOAPMessage request = SOAPHelper.toSOAP(MESSAGE);
+            SOAPMessage response = this.transport.send(request, this.url + "/echo", null);
+            assertEquals("value", response.getSOAPBody().getElementsByTagNameNS("http://test.com", "test").item(0).getTextContent());
+        }
+        assertEquals(1, this.clientPorts.size());
+    }
+
+    /**
+     * The digest is updated with the bytes of the request.
+     *
+     * @throws Exception
+     */
+    public void testSendDigest() throws Exception {
+        SOAPMessage request = SOAPHelper.toSOAP(MESSAGE);
+        MessageDigest digest = MessageDigest.getInstance("SHA-512");
+        this.transport.send(request, this.url + "/echo", digest);
+        assertEquals(MessageHelper.calculateHash(request, "SHA-512"), Base64.getEncoder().encodeToString(digest.digest()));
+    }
+
+    /**
+     * The response body is passed to the handler and the connection is
+     * reused after that.
+     *
+     * @throws Exception
+     */
+    public void testSendStreaming() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            String response = this.transport.send(SOAPHelper.toSOAP(MESSAGE), this.url + "/echo", null, (in, contentType) -> {
+                assertTrue(contentType.startsWith("text/xml"));
+                byte[] bytes = new byte[MESSAGE.length()];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += in.read(bytes, read, bytes.length - read);
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            });
+            assertTrue(response.startsWith("<SOAP-ENV:Envelope"));
+        }
+        assertEquals(1, this.clientPorts.size());
+    }
+
+    /**
+     * Status code 404 causes SOAPException.
+     *
+     * @throws Exception
+     */
+    public void testSendNotFound() throws Exception {
+        try {
+            this.transport.send(SOAPHelper.toSOAP(MESSAGE), this.url + "/missing", null);
+            fail("Should not reach this");
+        } catch (SOAPException ex) {
+            // OK
+        }
+    }
+}
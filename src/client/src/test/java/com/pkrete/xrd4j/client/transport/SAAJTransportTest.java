@@ -0,0 +1,87 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for SAAJTransport class. The test cases use a local HTTP server
+ * that returns the request as the response.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SAAJTransportTest extends TestCase {
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<SOAP-ENV:Header/><SOAP-ENV:Body><ns1:test xmlns:ns1=\"http://test.com\">value</ns1:test>"
+            + "</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private final AtomicReference<byte[]> received = new AtomicReference<>();
+    private HttpServer server;
+    private String url;
+
+    /**
+     * Starts the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/echo", this::echo);
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/echo";
+    }
+
+    /**
+     * Stops the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    private void echo(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        this.received.set(body.toByteArray());
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * The digest is updated with the bytes that were sent.
+     *
+     * @throws Exception
+     */
+    public void testSendDigest() throws Exception {
+        SOAPMessage request = SOAPHelper.toSOAP(MESSAGE);
+        MessageDigest digest = MessageDigest.getInstance("SHA-512");
+        SOAPMessage response = new SAAJTransport().send(request, this.url, digest);
+        assertEquals("value", response.getSOAPBody().getElementsByTagNameNS("http://test.com", "test").item(0).getTextContent());
+        byte[] expected = MessageDigest.getInstance("SHA-512").digest(this.received.get());
+        assertTrue(Arrays.equals(expected, digest.digest()));
+    }
+}
@@ -0,0 +1,250 @@
+package com.pkrete.xrd4j.common.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
+import com.pkrete.xrd4j.common.member.ObjectType;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class deserializes the X-Road header of a SOAP message using StAX
+ * without building a DOM of the message. The message is read only until the
+ * end of the header, so the body is never parsed. The header is returned as
+ * a ServiceRequest object without request data, which is useful when the
+ * message is only routed or checked and then passed on as such. The header
+ * of a multipart message is read from its SOAP part.
+ *
+ * Instances of this class are thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingHeaderDeserializer extends AbstractHeaderDeserializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingHeaderDeserializer.class);
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final String ELEM_HEADER = "Header";
+    private static final String ELEM_BODY = "Body";
+
+    /**
+     * Reads the X-Road header from the given stream. The stream is read until
+     * the end of the header and it's left open, but the parser may have read
+     * some bytes past the header.
+     *
+     * @param in stream that contains a SOAP message
+     * @return ServiceRequest object that holds the header fields
+     * @throws XRd4JException if the message is not valid XML or the header is
+     * invalid
+     * @throws XRd4JMissingMemberException if client or service element is
+     * missing
+     */
+    public ServiceRequest<?> deserialize(final InputStream in) throws XRd4JException, XRd4JMissingMemberException {
+        HeaderFields fields = new HeaderFields();
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(in);
+            this.readHeader(reader, fields);
+        } catch (XMLStreamException ex) {
+            logger.warn("Reading SOAP header failed : {}", ex.getMessage());
+            throw new XRd4JException("Invalid SOAP message : " + ex.getMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+        if (fields.consumer == null) {
+            throw new XRd4JMissingMemberException("Client element is missing from SOAP header.");
+        }
+        if (fields.producer == null) {
+            throw new XRd4JMissingMemberException("Service element is missing from SOAP header.");
+        }
+        ServiceRequest<?> request = new ServiceRequest<>(this.getConsumerMember(fields.consumer, fields.consumerType),
+                this.getProducerMember(fields.producer, fields.producerType), fields.id);
+        if (fields.securityServer != null) {
+            request.setSecurityServer(this.getSecurityServer(fields.securityServer));
+        }
+        request.setUserId(fields.userId);
+        request.setIssue(fields.issue);
+        request.setProtocolVersion(fields.protocolVersion);
+        logger.debug("SOAP header was read. Request id : \"{}\"", fields.id);
+        return request;
+    }
+
+    /**
+     * Reads the X-Road header from the SOAP part of the given multipart
+     * message. The SOAP part must be the first part of the message. The
+     * stream is read until the end of the header and it's left open, but the
+     * parser may have read some bytes past the header.
+     *
+     * @param in stream that contains a multipart message
+     * @return ServiceRequest object that holds the header fields
+     * @throws XRd4JException if the message is not a multipart message, the
+     * SOAP part is not valid XML or the header is invalid
+     * @throws XRd4JMissingMemberException if client or service element is
+     * missing
+     */
+    public ServiceRequest<?> deserializeMultipart(final InputStream in) throws XRd4JException, XRd4JMissingMemberException {
+        try {
+            skipToFirstPart(in);
+        } catch (IOException ex) {
+            logger.warn("Reading multipart message failed : {}", ex.getMessage());
+            throw new XRd4JException("Invalid multipart message : " + ex.getMessage());
+        }
+        return this.deserialize(in);
+    }
+
+    /**
+     * Reads the given stream until the content of the first part of a
+     * multipart message, i.e. past the first boundary and the headers of the
+     * part. The lines are not stored, only their first two characters are
+     * checked.
+     *
+     * @param in stream that contains a multipart message
+     * @throws IOException if reading fails
+     * @throws XRd4JException if the stream ends before the first part
+     */
+    private static void skipToFirstPart(final InputStream in) throws IOException, XRd4JException {
+        boolean boundary = false;
+        boolean dashes = false;
+        int first = -1;
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                if (boundary && length == 0) {
+                    // Empty line ends the headers of the part
+                    return;
+                }
+                boundary |= dashes;
+                dashes = false;
+                length = 0;
+            } else if (b != '\r') {
+                if (length == 0) {
+                    first = b;
+                } else if (length == 1) {
+                    dashes = first == '-' && b == '-';
+                }
+                length++;
+            }
+        }
+        throw new XRd4JException("SOAP part is missing from the multipart message.");
+    }
+
+    private void readHeader(final XMLStreamReader reader, final HeaderFields fields) throws XMLStreamException, XRd4JException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && ELEM_HEADER.equals(reader.getLocalName())) {
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (ELEM_BODY.equals(reader.getLocalName())) {
+                // Message without a header
+                return;
+            }
+            if (!Constants.NS_XRD_URL.equals(reader.getNamespaceURI())) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case Constants.NS_XRD_ELEM_CLIENT:
+                    fields.consumerType = readObjectType(reader);
+                    fields.consumer = readChildren(reader);
+                    break;
+                case Constants.NS_XRD_ELEM_SERVICE:
+                    fields.producerType = readObjectType(reader);
+                    fields.producer = readChildren(reader);
+                    break;
+                case Constants.NS_XRD_ELEM_SECURITY_SERVER:
+                    fields.securityServer = readChildren(reader);
+                    break;
+                case Constants.NS_XRD_ELEM_ID:
+                    fields.id = reader.getElementText();
+                    break;
+                case Constants.NS_XRD_ELEM_USER_ID:
+                    fields.userId = reader.getElementText();
+                    break;
+                case Constants.NS_XRD_ELEM_ISSUE:
+                    fields.issue = reader.getElementText();
+                    break;
+                case Constants.NS_XRD_ELEM_PROTOCOL_VERSION:
+                    fields.protocolVersion = reader.getElementText();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static ObjectType readObjectType(final XMLStreamReader reader) throws XRd4JException {
+        String value = reader.getAttributeValue(Constants.NS_ID_URL, Constants.NS_ID_ATTR_OBJECT_TYPE);
+        if (value == null) {
+            throw new XRd4JException("\"" + Constants.NS_ID_ATTR_OBJECT_TYPE + "\" attribute is missing from \"" + reader.getLocalName() + "\" element.");
+        }
+        try {
+            return ObjectType.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new XRd4JException("Invalid object type : \"" + value + "\".");
+        }
+    }
+
+    /**
+     * Reads the text of each child element of the current element to a map
+     * using the local name of the child as a key. The reader is left at the
+     * end of the current element.
+     *
+     * @param reader XMLStreamReader positioned at a start element
+     * @return map of child element names and texts
+     * @throws XMLStreamException if reading fails
+     */
+    private static Map<String, String> readChildren(final XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> map = new HashMap<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            map.put(name, reader.getElementText());
+        }
+        return map;
+    }
+
+    private static void closeQuietly(final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ex) {
+                logger.trace(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Raw values of the header fields.
+     */
+    private static class HeaderFields {
+
+        private Map<String, String> consumer;
+        private ObjectType consumerType;
+        private Map<String, String> producer;
+        private ObjectType producerType;
+        private Map<String, String> securityServer;
+        private String id;
+        private String userId;
+        private String issue;
+        private String protocolVersion;
+    }
+}
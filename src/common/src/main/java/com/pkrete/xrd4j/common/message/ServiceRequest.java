@@ -3,6 +3,7 @@ package com.pkrete.xrd4j.common.message;
 import com.pkrete.xrd4j.common.exception.XRd4JException;
 import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.util.MessageHelper;
 
 /**
  * This class represents X-Road service request message that is sent by a
@@ -32,6 +33,18 @@ public class ServiceRequest<T> extends AbstractMessage {
         this.addNamespaceToRequest = true;
     }
 
+    /**
+     * Constructs and initializes a new ServiceRequest object. A new unique
+     * identifier is generated for the message using MessageHelper.
+     *
+     * @param consumer client that's calling a service
+     * @param producer service provider whose service the client is calling
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public ServiceRequest(ConsumerMember consumer, ProducerMember producer) throws XRd4JException {
+        this(consumer, producer, MessageHelper.generateId());
+    }
+
     /**
      * Constructs and initializes a new ServiceRequest object.
      *
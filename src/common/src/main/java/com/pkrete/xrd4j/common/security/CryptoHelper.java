@@ -4,6 +4,7 @@ import com.pkrete.xrd4j.common.exception.XRd4JException;
 import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.KeyStore;
@@ -17,7 +18,10 @@ import java.security.SignatureException;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import javax.crypto.KeyGenerator;
 import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
@@ -31,6 +35,7 @@ import org.slf4j.LoggerFactory;
 public class CryptoHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(CryptoHelper.class);
+    private static final String DEFAULT_SIGNATURE_ALGORITHM = "SHA512withRSA";
 
     /**
      * No instances if this class should be created.
@@ -122,7 +127,7 @@ public class CryptoHelper {
      * @throws XRd4JException if there's an error
      */
     public static String createSignature(PrivateKey key, String data) throws XRd4JException {
-        return createSignature(key, data, "SHA512withRSA");
+        return createSignature(key, data, DEFAULT_SIGNATURE_ALGORITHM);
     }
 
     /**
@@ -158,7 +163,7 @@ public class CryptoHelper {
      * @return true if the signature was verified, false if not
      */
     public static boolean verifySignature(PublicKey key, String data, String signatureStr) {
-        return verifySignature(key, data, signatureStr, "SHA512withRSA");
+        return verifySignature(key, data, signatureStr, DEFAULT_SIGNATURE_ALGORITHM);
     }
 
     /**
@@ -184,6 +189,223 @@ public class CryptoHelper {
         }
     }
 
+    /**
+     * Creates digital signatures of all the given items using the given
+     * private key and SHA512withRSA algorithm. The items are signed in
+     * parallel using the common fork-join pool.
+     *
+     * @param key the private key of the identity whose signatures are going to
+     * be generated
+     * @param data items to be signed
+     * @return base 64 encoded signatures in the same order as the items
+     * @throws XRd4JException if there's an error
+     */
+    public static List<String> createSignatures(PrivateKey key, List<byte[]> data) throws XRd4JException {
+        return createSignatures(key, data, DEFAULT_SIGNATURE_ALGORITHM);
+    }
+
+    /**
+     * Creates digital signatures of all the given items using the given
+     * private key and signature algorithm. The items are signed in parallel
+     * using the common fork-join pool.
+     *
+     * @param key the private key of the identity whose signatures are going to
+     * be generated
+     * @param data items to be signed
+     * @param algorithm the algorithm that's used for generating the signatures
+     * @return base 64 encoded signatures in the same order as the items
+     * @throws XRd4JException if there's an error
+     */
+    public static List<String> createSignatures(PrivateKey key, List<byte[]> data, String algorithm) throws XRd4JException {
+        return createSignatures(key, data, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates digital signatures of all the given items using the given
+     * private key and signature algorithm. The items are split into chunks
+     * that are signed in parallel in the given fork-join pool. Each worker
+     * initializes its own Signature object and reuses it for the whole chunk.
+     *
+     * @param key the private key of the identity whose signatures are going to
+     * be generated
+     * @param data items to be signed
+     * @param algorithm the algorithm that's used for generating the signatures
+     * @param pool fork-join pool that runs the signing tasks
+     * @return base 64 encoded signatures in the same order as the items
+     * @throws XRd4JException if there's an error
+     */
+    public static List<String> createSignatures(PrivateKey key, List<byte[]> data, String algorithm, ForkJoinPool pool) throws XRd4JException {
+        return sign(key, data, algorithm, pool);
+    }
+
+    /**
+     * Creates digital signatures of the remaining bytes of all the given
+     * buffers using the given private key and signature algorithm. The
+     * positions of the given buffers are not changed. The buffers are signed
+     * in parallel using the common fork-join pool.
+     *
+     * @param key the private key of the identity whose signatures are going to
+     * be generated
+     * @param data buffers to be signed
+     * @param algorithm the algorithm that's used for generating the signatures
+     * @return base 64 encoded signatures in the same order as the buffers
+     * @throws XRd4JException if there's an error
+     */
+    public static List<String> createBufferSignatures(PrivateKey key, List<ByteBuffer> data, String algorithm) throws XRd4JException {
+        return createBufferSignatures(key, data, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates digital signatures of the remaining bytes of all the given
+     * buffers using the given private key and signature algorithm. The
+     * positions of the given buffers are not changed. The buffers are signed
+     * in parallel in the given fork-join pool.
+     *
+     * @param key the private key of the identity whose signatures are going to
+     * be generated
+     * @param data buffers to be signed
+     * @param algorithm the algorithm that's used for generating the signatures
+     * @param pool fork-join pool that runs the signing tasks
+     * @return base 64 encoded signatures in the same order as the buffers
+     * @throws XRd4JException if there's an error
+     */
+    public static List<String> createBufferSignatures(PrivateKey key, List<ByteBuffer> data, String algorithm, ForkJoinPool pool) throws XRd4JException {
+        return sign(key, data, algorithm, pool);
+    }
+
+    /**
+     * Verifies the signatures of all the given items using the public key and
+     * SHA512withRSA algorithm. The items are verified in parallel using the
+     * common fork-join pool.
+     *
+     * @param key the public key of the identity whose signatures are going to
+     * be verified
+     * @param data items for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified, in the same
+     * order as the items
+     * @return verification results in the same order as the items
+     */
+    public static List<Boolean> verifySignatures(PublicKey key, List<byte[]> data, List<String> signatures) {
+        return verifySignatures(key, data, signatures, DEFAULT_SIGNATURE_ALGORITHM);
+    }
+
+    /**
+     * Verifies the signatures of all the given items using the public key and
+     * the given algorithm. The items are verified in parallel using the common
+     * fork-join pool.
+     *
+     * @param key the public key of the identity whose signatures are going to
+     * be verified
+     * @param data items for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified, in the same
+     * order as the items
+     * @param algorithm algorithm that's used
+     * @return verification results in the same order as the items
+     */
+    public static List<Boolean> verifySignatures(PublicKey key, List<byte[]> data, List<String> signatures, String algorithm) {
+        return verifySignatures(key, data, signatures, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifies the signatures of all the given items using the public key and
+     * the given algorithm. The items are split into chunks that are verified
+     * in parallel in the given fork-join pool. Each worker initializes its own
+     * Signature object and reuses it for the whole chunk.
+     *
+     * @param key the public key of the identity whose signatures are going to
+     * be verified
+     * @param data items for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified, in the same
+     * order as the items
+     * @param algorithm algorithm that's used
+     * @param pool fork-join pool that runs the verification tasks
+     * @return verification results in the same order as the items
+     */
+    public static List<Boolean> verifySignatures(PublicKey key, List<byte[]> data, List<String> signatures, String algorithm, ForkJoinPool pool) {
+        return verify(key, data, signatures, algorithm, pool);
+    }
+
+    /**
+     * Verifies the signatures of the remaining bytes of all the given buffers
+     * using the public key and the given algorithm. The positions of the given
+     * buffers are not changed. The buffers are verified in parallel using the
+     * common fork-join pool.
+     *
+     * @param key the public key of the identity whose signatures are going to
+     * be verified
+     * @param data buffers for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified, in the same
+     * order as the buffers
+     * @param algorithm algorithm that's used
+     * @return verification results in the same order as the buffers
+     */
+    public static List<Boolean> verifyBufferSignatures(PublicKey key, List<ByteBuffer> data, List<String> signatures, String algorithm) {
+        return verifyBufferSignatures(key, data, signatures, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifies the signatures of the remaining bytes of all the given buffers
+     * using the public key and the given algorithm. The positions of the given
+     * buffers are not changed. The buffers are verified in parallel in the
+     * given fork-join pool.
+     *
+     * @param key the public key of the identity whose signatures are going to
+     * be verified
+     * @param data buffers for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified, in the same
+     * order as the buffers
+     * @param algorithm algorithm that's used
+     * @param pool fork-join pool that runs the verification tasks
+     * @return verification results in the same order as the buffers
+     */
+    public static List<Boolean> verifyBufferSignatures(PublicKey key, List<ByteBuffer> data, List<String> signatures, String algorithm, ForkJoinPool pool) {
+        return verify(key, data, signatures, algorithm, pool);
+    }
+
+    private static List<String> sign(PrivateKey key, List<?> data, String algorithm, ForkJoinPool pool) throws XRd4JException {
+        String[] results = new String[data.size()];
+        if (!data.isEmpty()) {
+            logger.debug("Create {} signatures using \"{}\" algorithm.", data.size(), algorithm);
+            try {
+                pool.invoke(new SignatureTask(key, algorithm, data, results, getThreshold(data.size(), pool)));
+            } catch (XRd4JRuntimeException ex) {
+                // The tasks can't throw checked exceptions
+                throw new XRd4JException(ex.getMessage());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static List<Boolean> verify(PublicKey key, List<?> data, List<String> signatures, String algorithm, ForkJoinPool pool) {
+        if (data.size() != signatures.size()) {
+            throw new IllegalArgumentException("The number of items and signatures must be equal.");
+        }
+        boolean[] results = new boolean[data.size()];
+        if (!data.isEmpty()) {
+            logger.debug("Verify {} signatures using \"{}\" algorithm.", data.size(), algorithm);
+            pool.invoke(new SignatureTask(key, algorithm, data, signatures, results, getThreshold(data.size(), pool)));
+        }
+        Boolean[] boxed = new Boolean[results.length];
+        for (int i = 0; i < results.length; i++) {
+            boxed[i] = results[i];
+        }
+        return Arrays.asList(boxed);
+    }
+
+    /**
+     * Returns the maximum number of items that are processed by a single
+     * task. The items are split into a few chunks per worker thread so that
+     * the load is balanced, but the initialization of Signature objects is
+     * still amortized over several items.
+     *
+     * @param size number of items
+     * @param pool fork-join pool that runs the tasks
+     * @return maximum number of items per task
+     */
+    private static int getThreshold(int size, ForkJoinPool pool) {
+        return Math.max(1, size / (pool.getParallelism() * 4));
+    }
+
     /**
      * Fetches the public key matching the given alias from the defined key
      * store.
@@ -0,0 +1,159 @@
+package com.pkrete.xrd4j.common.security;
+
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a fork-join task that signs or verifies a range of
+ * items of a list. The range is split until it's smaller than the threshold
+ * and each leaf task initializes one Signature object that's then reused for
+ * all the items in its range. Results are written to the shared result arrays
+ * using the index of the item, which means that the order of the items is
+ * preserved. The items can be byte arrays or ByteBuffers.
+ *
+ * @author Petteri Kivimäki
+ */
+class SignatureTask extends RecursiveAction {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignatureTask.class);
+    private static final long serialVersionUID = 1L;
+
+    private final transient PrivateKey privateKey;
+    private final transient PublicKey publicKey;
+    private final String algorithm;
+    private final transient List<?> data;
+    private final transient List<String> signatures;
+    private final String[] signatureResults;
+    private final boolean[] verifyResults;
+    private final int start;
+    private final int end;
+    private final int threshold;
+
+    /**
+     * Constructs and initializes a new SignatureTask object that creates
+     * signatures of the given items.
+     *
+     * @param key private key used for signing
+     * @param algorithm signature algorithm
+     * @param data items to be signed
+     * @param results array where base 64 encoded signatures are written
+     * @param threshold maximum number of items processed by one leaf task
+     */
+    SignatureTask(PrivateKey key, String algorithm, List<?> data, String[] results, int threshold) {
+        this(key, null, algorithm, data, null, results, null, 0, data.size(), threshold);
+    }
+
+    /**
+     * Constructs and initializes a new SignatureTask object that verifies
+     * signatures of the given items.
+     *
+     * @param key public key used for verification
+     * @param algorithm signature algorithm
+     * @param data items for which the signatures were generated
+     * @param signatures base 64 encoded signatures to be verified
+     * @param results array where verification results are written
+     * @param threshold maximum number of items processed by one leaf task
+     */
+    SignatureTask(PublicKey key, String algorithm, List<?> data, List<String> signatures, boolean[] results, int threshold) {
+        this(null, key, algorithm, data, signatures, null, results, 0, data.size(), threshold);
+    }
+
+    private SignatureTask(PrivateKey privateKey, PublicKey publicKey, String algorithm, List<?> data, List<String> signatures,
+            String[] signatureResults, boolean[] verifyResults, int start, int end, int threshold) {
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.algorithm = algorithm;
+        this.data = data;
+        this.signatures = signatures;
+        this.signatureResults = signatureResults;
+        this.verifyResults = verifyResults;
+        this.start = start;
+        this.end = end;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.end - this.start <= this.threshold) {
+            if (this.privateKey != null) {
+                this.sign();
+            } else {
+                this.verify();
+            }
+            return;
+        }
+        int middle = (this.start + this.end) >>> 1;
+        invokeAll(this.subTask(this.start, middle), this.subTask(middle, this.end));
+    }
+
+    private SignatureTask subTask(int from, int to) {
+        return new SignatureTask(this.privateKey, this.publicKey, this.algorithm, this.data, this.signatures,
+                this.signatureResults, this.verifyResults, from, to, this.threshold);
+    }
+
+    private void sign() {
+        try {
+            Signature signature = Signature.getInstance(this.algorithm);
+            signature.initSign(this.privateKey);
+            for (int i = this.start; i < this.end; i++) {
+                update(signature, this.data.get(i));
+                // Calling sign resets the object to the state it was in
+                // after initSign, so it can be reused for the next item
+                this.signatureResults[i] = CryptoHelper.encodeBase64(signature.sign());
+            }
+        } catch (SignatureException | InvalidKeyException | NoSuchAlgorithmException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new XRd4JRuntimeException(ex.getMessage());
+        }
+    }
+
+    private void verify() {
+        Signature signature;
+        try {
+            signature = Signature.getInstance(this.algorithm);
+            signature.initVerify(this.publicKey);
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            // Results of the range are left to false
+            logger.error(ex.getMessage(), ex);
+            return;
+        }
+        for (int i = this.start; i < this.end; i++) {
+            try {
+                update(signature, this.data.get(i));
+                this.verifyResults[i] = signature.verify(CryptoHelper.decodeBase64(this.signatures.get(i)));
+            } catch (SignatureException | IllegalArgumentException ex) {
+                logger.error(ex.getMessage(), ex);
+                this.verifyResults[i] = false;
+                this.resetVerify(signature);
+            }
+        }
+    }
+
+    private void resetVerify(Signature signature) {
+        try {
+            signature.initVerify(this.publicKey);
+        } catch (InvalidKeyException ex) {
+            logger.error(ex.getMessage(), ex);
+        }
+    }
+
+    private static void update(Signature signature, Object item) throws SignatureException {
+        if (item instanceof ByteBuffer) {
+            // Use a duplicate so that the position of the caller's buffer
+            // is not changed
+            signature.update(((ByteBuffer) item).duplicate());
+        } else {
+            signature.update((byte[]) item);
+        }
+    }
+}
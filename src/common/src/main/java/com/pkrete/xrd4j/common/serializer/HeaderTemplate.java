@@ -0,0 +1,207 @@
+package com.pkrete.xrd4j.common.serializer;
+
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ObjectType;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.message.AbstractMessage;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.MessageHelper;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class represents a pre-rendered X-Road version 6 SOAP header. The
+ * header of a message is the same for all the messages that have the same
+ * client, service, security server and protocol version - only id, userId
+ * and issue change from one message to another. The constant parts of the
+ * header are rendered once and the variable parts are filled in when the
+ * header is written.
+ *
+ * The templates are cached by the identifiers of the client, service and
+ * security server and the protocol version. The cache holds at most 1024
+ * templates and it's cleared when it gets full.
+ *
+ * The rendered header contains the same elements in the same order as the
+ * header generated by AbstractHeaderSerializer. The "id" and "xrd" namespace
+ * prefixes must be declared in the envelope.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class HeaderTemplate {
+
+    private static final int MAX_CACHE_SIZE = 1024;
+    private static final char NULL_VALUE = '-';
+    private static final char LENGTH_SEPARATOR = ':';
+    private static final ConcurrentMap<String, HeaderTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String identity;
+    private final String protocolVersion;
+
+    private HeaderTemplate(final AbstractMessage message) {
+        StringBuilder builder = new StringBuilder(512);
+        renderClient(builder, message.getConsumer());
+        renderService(builder, message.getProducer());
+        if (message.getSecurityServer() != null) {
+            renderSecurityServer(builder, message.getSecurityServer());
+        }
+        this.identity = builder.toString();
+        builder.setLength(0);
+        element(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_PROTOCOL_VERSION, message.getProtocolVersion());
+        this.protocolVersion = builder.toString();
+    }
+
+    /**
+     * Returns the template that matches the given message. The template is
+     * created and cached if it doesn't exist yet.
+     *
+     * @param message request or response message that holds the data for the
+     * header
+     * @return header template
+     */
+    public static HeaderTemplate of(final AbstractMessage message) {
+        String key = key(message);
+        HeaderTemplate template = CACHE.get(key);
+        if (template == null) {
+            template = new HeaderTemplate(message);
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * Removes all the cached templates.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Appends the children of the SOAP header of the given message to the
+     * given builder. The message must have the same client, service,
+     * security server and protocol version as the message that was used for
+     * creating this template.
+     *
+     * @param message request or response message that holds the values of
+     * id, userId and issue
+     * @param builder StringBuilder where the header is appended
+     */
+    public void render(final AbstractMessage message, final StringBuilder builder) {
+        builder.append(this.identity);
+        if (message.getUserId() != null && !message.getUserId().isEmpty()) {
+            element(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_USER_ID, message.getUserId());
+        }
+        element(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_ID, message.getId());
+        if (message.getIssue() != null && !message.getIssue().isEmpty()) {
+            element(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_ISSUE, message.getIssue());
+        }
+        builder.append(this.protocolVersion);
+    }
+
+    private static String key(final AbstractMessage message) {
+        ConsumerMember consumer = message.getConsumer();
+        ProducerMember producer = message.getProducer();
+        SecurityServer server = message.getSecurityServer();
+        StringBuilder builder = new StringBuilder(128);
+        append(builder, consumer.getXRoadInstance(), consumer.getMemberClass(), consumer.getMemberCode(), consumer.getSubsystemCode());
+        append(builder, producer.getXRoadInstance(), producer.getMemberClass(), producer.getMemberCode(), producer.getSubsystemCode(),
+                producer.getServiceCode(), producer.getServiceVersion());
+        if (server != null) {
+            append(builder, server.getXRoadInstance(), server.getMemberClass(), server.getMemberCode(), server.getServerCode());
+        }
+        append(builder, message.getProtocolVersion());
+        return builder.toString();
+    }
+
+    private static void append(final StringBuilder builder, final String... values) {
+        // Values are prefixed with their length, so that no value can be
+        // mistaken for a missing value or for the end of another value
+        for (String value : values) {
+            if (value == null) {
+                builder.append(NULL_VALUE);
+            } else {
+                builder.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+            }
+        }
+    }
+
+    private static void renderClient(final StringBuilder builder, final ConsumerMember consumer) {
+        ObjectType objectType = MessageHelper.getObjectType(consumer);
+        startElement(builder, Constants.NS_XRD_ELEM_CLIENT, objectType);
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_XROAD_INSTANCE, consumer.getXRoadInstance());
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CLASS, consumer.getMemberClass());
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CODE, consumer.getMemberCode());
+        if (objectType == ObjectType.SUBSYSTEM) {
+            element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_SUBSYSTEM_CODE, consumer.getSubsystemCode());
+        }
+        endElement(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_CLIENT);
+    }
+
+    private static void renderService(final StringBuilder builder, final ProducerMember producer) {
+        ObjectType objectType = MessageHelper.getObjectType(producer);
+        startElement(builder, Constants.NS_XRD_ELEM_SERVICE, objectType);
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_XROAD_INSTANCE, producer.getXRoadInstance());
+        if (objectType == ObjectType.SERVICE) {
+            element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CLASS, producer.getMemberClass());
+            element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CODE, producer.getMemberCode());
+        }
+        if (producer.getSubsystemCode() != null && !producer.getSubsystemCode().isEmpty()) {
+            element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_SUBSYSTEM_CODE, producer.getSubsystemCode());
+        }
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_SERVICE_CODE, producer.getServiceCode());
+        if (producer.getServiceVersion() != null && !producer.getServiceVersion().isEmpty()) {
+            element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_SERVICE_VERSION, producer.getServiceVersion());
+        }
+        endElement(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_SERVICE);
+    }
+
+    private static void renderSecurityServer(final StringBuilder builder, final SecurityServer server) {
+        startElement(builder, Constants.NS_XRD_ELEM_SECURITY_SERVER, ObjectType.SERVER);
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_XROAD_INSTANCE, server.getXRoadInstance());
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CLASS, server.getMemberClass());
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_MEMBER_CODE, server.getMemberCode());
+        element(builder, Constants.NS_ID_PREFIX, Constants.NS_ID_ELEM_SERVER_CODE, server.getServerCode());
+        endElement(builder, Constants.NS_XRD_PREFIX, Constants.NS_XRD_ELEM_SECURITY_SERVER);
+    }
+
+    private static void startElement(final StringBuilder builder, final String name, final ObjectType objectType) {
+        builder.append('<').append(Constants.NS_XRD_PREFIX).append(':').append(name).append(' ')
+                .append(Constants.NS_ID_PREFIX).append(':').append(Constants.NS_ID_ATTR_OBJECT_TYPE)
+                .append("=\"").append(objectType.toString()).append("\">");
+    }
+
+    private static void endElement(final StringBuilder builder, final String prefix, final String name) {
+        builder.append("</").append(prefix).append(':').append(name).append('>');
+    }
+
+    private static void element(final StringBuilder builder, final String prefix, final String name, final String value) {
+        builder.append('<').append(prefix).append(':').append(name).append('>');
+        escape(builder, value);
+        endElement(builder, prefix, name);
+    }
+
+    private static void escape(final StringBuilder builder, final String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+}
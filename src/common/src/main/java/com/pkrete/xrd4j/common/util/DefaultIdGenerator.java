@@ -0,0 +1,126 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class generates unique identifiers without any shared locks. An
+ * identifier consists of four parts separated by '-': node id, start time of
+ * the generator, a random instance id and a counter, e.g.
+ * "9c1e4f6a2b3d-18b3c0f1a2e-5f3a9c1d-2a". The node id makes identifiers
+ * unique across nodes, the start time makes them unique across restarts of
+ * the same node, the instance id makes them unique between generators that
+ * have the same node id and that are created at the same millisecond, and the
+ * counter makes them unique within the generator.
+ *
+ * The node id is read from "xrd4j.nodeId" system property. If the property is
+ * not set, a random node id is generated when the generator is created.
+ *
+ * Each thread reserves a block of counter values from a shared atomic counter
+ * and then uses the values of the block without any synchronization, so the
+ * shared counter is touched only once per block. The characters of the
+ * identifier are written to a per-thread buffer, which means that generating
+ * an identifier allocates only the resulting String.
+ *
+ * @author Petteri Kivimäki
+ */
+public class DefaultIdGenerator implements IdGenerator {
+
+    /**
+     * Name of the system property that defines the node id.
+     */
+    public static final String NODE_ID_PROPERTY = "xrd4j.nodeId";
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultIdGenerator.class);
+    private static final int BLOCK_SIZE = 1024;
+    private static final int MAX_COUNTER_LENGTH = 16;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final char[] prefix;
+    private final AtomicLong counter;
+    private final ThreadLocal<State> state;
+
+    /**
+     * Constructs and initializes a new DefaultIdGenerator object. The node id
+     * is read from "xrd4j.nodeId" system property or generated randomly.
+     */
+    public DefaultIdGenerator() {
+        this(System.getProperty(NODE_ID_PROPERTY));
+    }
+
+    /**
+     * Constructs and initializes a new DefaultIdGenerator object using the
+     * given node id. If the node id is null or empty, a random node id is
+     * generated.
+     *
+     * @param nodeId id of the node that generates the identifiers
+     */
+    public DefaultIdGenerator(String nodeId) {
+        if (nodeId == null || nodeId.trim().isEmpty()) {
+            nodeId = generateNodeId();
+            logger.debug("Node id is not defined. Generated random node id \"{}\".", nodeId);
+        } else {
+            nodeId = nodeId.trim();
+        }
+        this.prefix = (nodeId + "-" + Long.toHexString(System.currentTimeMillis()) + "-" + toHex(4) + "-").toCharArray();
+        this.counter = new AtomicLong();
+        this.state = ThreadLocal.withInitial(() -> new State(this.prefix));
+    }
+
+    /**
+     * Generates a new unique identifier and returns it as a string.
+     *
+     * @return unique identifier as a string
+     */
+    @Override
+    public String generateId() {
+        State current = this.state.get();
+        if (current.next == current.limit) {
+            current.next = this.counter.getAndAdd(BLOCK_SIZE);
+            current.limit = current.next + BLOCK_SIZE;
+        }
+        long value = current.next++;
+        // Write the counter as hex digits right after the prefix
+        char[] buffer = current.buffer;
+        int length = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 3) >> 2);
+        int end = this.prefix.length + length;
+        for (int i = end - 1; i >= this.prefix.length; i--) {
+            buffer[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(buffer, 0, end);
+    }
+
+    private static String generateNodeId() {
+        return toHex(6);
+    }
+
+    private static String toHex(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(DIGITS[(b >> 4) & 0xF]).append(DIGITS[b & 0xF]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Per-thread state: the reserved block of counter values and the buffer
+     * that's used for building identifiers.
+     */
+    private static class State {
+
+        private final char[] buffer;
+        private long next;
+        private long limit;
+
+        State(char[] prefix) {
+            this.buffer = new char[prefix.length + MAX_COUNTER_LENGTH];
+            System.arraycopy(prefix, 0, this.buffer, 0, prefix.length);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * This class represents an output stream that passes all the bytes through to
+ * the underlying stream and calculates a hash of the bytes at the same time.
+ * The hash of a message can be captured while the message is written to the
+ * wire and there's no need to serialize the message again for hashing.
+ *
+ * By default the MessageDigest object is borrowed from the per-thread cache of
+ * MessageHelper and it's given back to the cache of the thread that reads the
+ * hash.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HashingOutputStream extends DigestOutputStream {
+
+    private static final OutputStream NULL_STREAM = new NullOutputStream();
+    private final String algorithm;
+    private final boolean borrowed;
+    private String hash;
+
+    /**
+     * Constructs and initializes a new HashingOutputStream object that
+     * calculates a hash using the given algorithm. The MessageDigest object is
+     * borrowed from the per-thread cache of MessageHelper.
+     *
+     * @param out the underlying output stream, if null the bytes are only
+     * hashed
+     * @param algorithm name of the hash algorithm, e.g. "SHA-512"
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public HashingOutputStream(OutputStream out, String algorithm) throws NoSuchAlgorithmException {
+        this(out, MessageHelper.borrowMessageDigest(algorithm), true);
+    }
+
+    /**
+     * Constructs and initializes a new HashingOutputStream object that
+     * calculates a hash using the given MessageDigest object.
+     *
+     * @param out the underlying output stream, if null the bytes are only
+     * hashed
+     * @param digest MessageDigest object that's used for calculating the hash
+     */
+    public HashingOutputStream(OutputStream out, MessageDigest digest) {
+        this(out, digest, false);
+    }
+
+    private HashingOutputStream(OutputStream out, MessageDigest digest, boolean borrowed) {
+        super(out == null ? NULL_STREAM : out, digest);
+        this.algorithm = digest.getAlgorithm();
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * Returns the name of the hash algorithm.
+     *
+     * @return name of the hash algorithm
+     */
+    public String getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * Returns the Base64 encoded hash of all the bytes written to this stream.
+     * The hash is completed when this method is called for the first time and
+     * no more bytes should be written after that.
+     *
+     * @return Base64 encoded hash
+     */
+    public String getHash() {
+        if (this.hash == null) {
+            this.hash = Base64.getEncoder().encodeToString(this.getMessageDigest().digest());
+            if (this.borrowed) {
+                MessageHelper.releaseMessageDigest(this.getMessageDigest());
+            }
+        }
+        return this.hash;
+    }
+
+    /**
+     * Output stream that discards all the bytes written to it.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            // Discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // Discard
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.pkrete.xrd4j.common.util;
+
+/**
+ * This class defines an interface for generating unique message identifiers.
+ * The identifier generator that's used by MessageHelper can be changed by
+ * calling MessageHelper.setIdGenerator or by registering an implementation
+ * using Java's ServiceLoader mechanism, i.e. by adding a
+ * META-INF/services/com.pkrete.xrd4j.common.util.IdGenerator file to the
+ * classpath. Implementations must be thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    /**
+     * Generates a new unique identifier and returns it as a string.
+     *
+     * @return unique identifier as a string
+     */
+    String generateId();
+}
@@ -8,11 +8,20 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.UUID;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
 import javax.xml.bind.DatatypeConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +35,19 @@ import org.slf4j.LoggerFactory;
 public class MessageHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageHelper.class);
+    private static final String DEFAULT_HASH_ALGORITHM = "SHA-512";
+    private static final Map<String, String> HASH_ALGORITHM_IDS = new HashMap<>();
+    private static final Pattern SHA_NAME = Pattern.compile("(?i)SHA-?(1|224|256|384|512)");
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static volatile IdGenerator idGenerator = loadIdGenerator(Thread.currentThread().getContextClassLoader());
+
+    static {
+        HASH_ALGORITHM_IDS.put("http://www.w3.org/2000/09/xmldsig#sha1", "SHA-1");
+        HASH_ALGORITHM_IDS.put("http://www.w3.org/2001/04/xmldsig-more#sha224", "SHA-224");
+        HASH_ALGORITHM_IDS.put("http://www.w3.org/2001/04/xmlenc#sha256", "SHA-256");
+        HASH_ALGORITHM_IDS.put("http://www.w3.org/2001/04/xmldsig-more#sha384", "SHA-384");
+        HASH_ALGORITHM_IDS.put("http://www.w3.org/2001/04/xmlenc#sha512", "SHA-512");
+    }
 
     /**
      * Constructs and initializes a new MessageHelper object. Should never be
@@ -68,12 +90,56 @@ public class MessageHelper {
     }
 
     /**
-     * Generates a universally unique identifier and returns it as a string.
+     * Generates a unique identifier and returns it as a string. The identifier
+     * is generated by the current IdGenerator.
      *
-     * @return universally unique identifier as a string
+     * @return unique identifier as a string
      */
     public static String generateId() {
-        return UUID.randomUUID().toString();
+        return idGenerator.generateId();
+    }
+
+    /**
+     * Returns the IdGenerator that's used for generating message identifiers.
+     *
+     * @return current IdGenerator
+     */
+    public static IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    /**
+     * Sets the IdGenerator that's used for generating message identifiers.
+     *
+     * @param generator new IdGenerator, can't be null
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("IdGenerator can't be null.");
+        }
+        idGenerator = generator;
+    }
+
+    /**
+     * Returns the first IdGenerator implementation registered using Java's
+     * ServiceLoader mechanism. If no implementation is found or loading the
+     * implementation fails, DefaultIdGenerator is returned.
+     *
+     * @param loader class loader used for loading the implementations
+     * @return IdGenerator
+     */
+    static IdGenerator loadIdGenerator(ClassLoader loader) {
+        try {
+            Iterator<IdGenerator> generators = ServiceLoader.load(IdGenerator.class, loader).iterator();
+            if (generators.hasNext()) {
+                IdGenerator generator = generators.next();
+                logger.debug("Use IdGenerator \"{}\".", generator.getClass().getName());
+                return generator;
+            }
+        } catch (ServiceConfigurationError ex) {
+            logger.error("Loading IdGenerator failed. DefaultIdGenerator is used : {}", ex.getMessage(), ex);
+        }
+        return new DefaultIdGenerator();
     }
 
     /**
@@ -112,21 +178,114 @@ public class MessageHelper {
      * @return Base64 encoded hash of the given data string
      */
     public static String calculateHash(String data) {
-        try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-512");
+        // must specify "UTF-8" encoding
+        return calculateHash(data.getBytes(StandardCharsets.UTF_8));
+    }
 
-            // must specify "UTF-8" encoding
-            sha.update(data.getBytes("UTF-8"));
-            byte[] hashedByteArray = sha.digest();
+    /**
+     * Calculates Base64 encoded hash of the given bytes. SHA-512 algorithm is
+     * used for calculating the hash.
+     *
+     * @param data bytes to be hashed
+     * @return Base64 encoded hash of the given bytes
+     */
+    public static String calculateHash(byte[] data) {
+        try {
+            MessageDigest digest = borrowMessageDigest(DEFAULT_HASH_ALGORITHM);
+            byte[] hashedByteArray = digest.digest(data);
+            releaseMessageDigest(digest);
 
             // Use Base64 encoding here -->
             return DatatypeConverter.printBase64Binary(hashedByteArray);
-        } catch (NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+        } catch (NoSuchAlgorithmException ex) {
+            logger.error(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Calculates Base64 encoded hash of the given SOAP message using the given
+     * algorithm. The message is streamed through the hash function and it's
+     * never converted to a String or a byte array.
+     *
+     * @param message SOAP message to be hashed
+     * @param algorithm name of the hash algorithm, e.g. "SHA-512"
+     * @return Base64 encoded hash of the given message or null if the
+     * operation fails
+     */
+    public static String calculateHash(SOAPMessage message, String algorithm) {
+        try {
+            HashingOutputStream out = new HashingOutputStream(null, algorithm);
+            message.writeTo(out);
+            return out.getHash();
+        } catch (NoSuchAlgorithmException | SOAPException | IOException ex) {
             logger.error(ex.getMessage(), ex);
             return null;
         }
     }
 
+    /**
+     * Removes a MessageDigest object implementing the given algorithm from the
+     * cache of the calling thread, or creates a new one if there's none. The
+     * object is owned by the caller until it's given back using the
+     * releaseMessageDigest method.
+     *
+     * @param algorithm name of the hash algorithm
+     * @return MessageDigest object implementing the given algorithm
+     * @throws NoSuchAlgorithmException if the algorithm is not available
+     */
+    public static MessageDigest borrowMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest digest = DIGESTS.get().remove(algorithm);
+        if (digest == null) {
+            return MessageDigest.getInstance(algorithm);
+        }
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Gives the given MessageDigest object back to the cache of the calling
+     * thread.
+     *
+     * @param digest MessageDigest object to be cached
+     */
+    public static void releaseMessageDigest(MessageDigest digest) {
+        DIGESTS.get().put(digest.getAlgorithm(), digest);
+    }
+
+    /**
+     * Converts the algorithm identifier used in the algorithmId attribute of
+     * the requestHash header to the standard name of the matching hash
+     * algorithm. XML Signature algorithm URIs, SHA names with or without the
+     * hyphen, e.g. "sha512" and "SHA-512", and the names of the other hash
+     * algorithms available in the JVM are supported. If the identifier is
+     * null, null is returned.
+     *
+     * @param algorithmId algorithm identifier
+     * @return name of the hash algorithm or null
+     * @throws IllegalArgumentException if the algorithm is not known
+     */
+    public static String getHashAlgorithm(String algorithmId) {
+        if (algorithmId == null) {
+            return null;
+        }
+        String id = algorithmId.trim();
+        String algorithm = HASH_ALGORITHM_IDS.get(id);
+        if (algorithm != null) {
+            return algorithm;
+        }
+        Matcher matcher = SHA_NAME.matcher(id);
+        if (matcher.matches()) {
+            return "SHA-" + matcher.group(1);
+        }
+        for (String name : Security.getAlgorithms("MessageDigest")) {
+            if (name.equalsIgnoreCase(id)) {
+                return name;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm \"" + algorithmId + "\".");
+    }
+
     /**
      * Decodes the given base64 coded image string to image.
      *
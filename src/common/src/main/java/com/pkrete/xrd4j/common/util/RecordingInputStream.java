@@ -0,0 +1,108 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * This class represents an input stream that records all the bytes read
+ * through it until the replay method is called. The stream returned by the
+ * replay method returns the recorded bytes first and then the rest of the
+ * underlying stream, i.e. the original content of the stream from the
+ * beginning. This makes it possible to read the beginning of a message, e.g.
+ * the SOAP header, and then pass the whole message on without buffering the
+ * rest of it.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RecordingInputStream extends FilterInputStream {
+
+    private ByteArrayOutputStream recorded;
+
+    /**
+     * Constructs and initializes a new RecordingInputStream object.
+     *
+     * @param in the underlying input stream
+     */
+    public RecordingInputStream(InputStream in) {
+        super(in);
+        this.recorded = new ByteArrayOutputStream(4096);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1 && this.recorded != null) {
+            this.recorded.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0 && this.recorded != null) {
+            this.recorded.write(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes must be recorded too
+        byte[] buffer = new byte[(int) Math.min(n, 4096)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = this.read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Returns the number of bytes recorded so far.
+     *
+     * @return number of recorded bytes
+     */
+    public int getRecordedLength() {
+        return this.recorded == null ? 0 : this.recorded.size();
+    }
+
+    /**
+     * Stops recording and returns a stream that returns the recorded bytes
+     * followed by the rest of the underlying stream. This stream must not be
+     * read after this method has been called.
+     *
+     * @return stream that returns the whole content of the underlying stream
+     * @throws IllegalStateException if this method has already been called
+     */
+    public InputStream replay() {
+        if (this.recorded == null) {
+            throw new IllegalStateException("The stream has already been replayed.");
+        }
+        InputStream head = new ByteArrayInputStream(this.recorded.toByteArray());
+        this.recorded = null;
+        return new SequenceInputStream(head, this.in);
+    }
+}
@@ -0,0 +1,23 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.util.UUID;
+
+/**
+ * This class generates random universally unique identifiers. All the calls
+ * share the same SecureRandom instance, which may become a point of contention
+ * when identifiers are generated by many threads concurrently.
+ *
+ * @author Petteri Kivimäki
+ */
+public class UUIDIdGenerator implements IdGenerator {
+
+    /**
+     * Generates a universally unique identifier and returns it as a string.
+     *
+     * @return universally unique identifier as a string
+     */
+    @Override
+    public String generateId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.pkrete.xrd4j.common.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.RecordingInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for StreamingHeaderDeserializer and RecordingInputStream classes.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingHeaderDeserializerTest extends TestCase {
+
+    private static final String REQUEST = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID11234</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandom xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request></ns1:getRandom></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private final StreamingHeaderDeserializer deserializer = new StreamingHeaderDeserializer();
+
+    /**
+     * All the header fields are read.
+     *
+     * @throws Exception
+     */
+    public void testDeserialize() throws Exception {
+        ServiceRequest<?> request = this.deserializer.deserialize(new ByteArrayInputStream(REQUEST.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("FI.GOV.MEMBER1.subsystem", request.getConsumer().toString());
+        assertEquals("FI.COM.MEMBER2.subsystem.getRandom.v1", request.getProducer().toString());
+        assertEquals("getRandom", request.getProducer().getServiceCode());
+        assertEquals("ID11234", request.getId());
+        assertEquals("EE1234567890", request.getUserId());
+        assertEquals("4.0", request.getProtocolVersion());
+        assertNull(request.getIssue());
+        assertNull(request.getRequestData());
+    }
+
+    /**
+     * The replayed stream returns the original message.
+     *
+     * @throws Exception
+     */
+    public void testReplay() throws Exception {
+        byte[] bytes = REQUEST.getBytes(StandardCharsets.UTF_8);
+        RecordingInputStream recording = new RecordingInputStream(new ByteArrayInputStream(bytes));
+        assertEquals("ID11234", this.deserializer.deserialize(recording).getId());
+        assertTrue(recording.getRecordedLength() > 0);
+        InputStream replay = recording.replay();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = replay.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        assertEquals(REQUEST, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        try {
+            recording.replay();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Missing service element causes an exception.
+     *
+     * @throws Exception
+     */
+    public void testMissingService() throws Exception {
+        String soap = REQUEST.replaceAll("<xrd:service .*</xrd:service>", "");
+        try {
+            this.deserializer.deserialize(new ByteArrayInputStream(soap.getBytes(StandardCharsets.UTF_8)));
+            fail("XRd4JMissingMemberException expected");
+        } catch (XRd4JMissingMemberException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * The header of a multipart message is read from its SOAP part.
+     *
+     * @throws Exception
+     */
+    public void testMultipart() throws Exception {
+        String multipart = "preamble\r\n--MIME_boundary\r\nContent-Type: text/xml; charset=UTF-8\r\nContent-ID: <soap>\r\n\r\n" + REQUEST
+                + "\r\n--MIME_boundary\r\nContent-Type: text/plain\r\n\r\n<attachment>\r\n--MIME_boundary--\r\n";
+        ServiceRequest<?> request = this.deserializer.deserializeMultipart(new ByteArrayInputStream(multipart.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("ID11234", request.getId());
+        assertEquals("FI.COM.MEMBER2.subsystem.getRandom.v1", request.getProducer().toString());
+        try {
+            this.deserializer.deserializeMultipart(new ByteArrayInputStream("preamble\r\n\r\n".getBytes(StandardCharsets.UTF_8)));
+            fail("XRd4JException expected");
+        } catch (XRd4JException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Invalid XML causes an exception.
+     *
+     * @throws Exception
+     */
+    public void testInvalidXml() throws Exception {
+        try {
+            this.deserializer.deserialize(new ByteArrayInputStream("<SOAP-ENV:Envelope".getBytes(StandardCharsets.UTF_8)));
+            fail("XRd4JException expected");
+        } catch (XRd4JException ex) {
+            // Expected
+        }
+    }
+}
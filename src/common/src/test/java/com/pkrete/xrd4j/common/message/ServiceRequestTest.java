@@ -68,6 +68,19 @@ public class ServiceRequestTest extends TestCase {
         ServiceRequestTest.assertFalse(new ServiceRequest(consumer, producer, MessageHelper.generateId()).equals(new ServiceRequest(consumer, producer, MessageHelper.generateId())));
     }
 
+    /**
+     * Test for ServiceRequest constructor that generates the id.
+     *
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public void testGeneratedId() throws XRd4JException {
+        ServiceRequest req1 = new ServiceRequest(consumer, producer);
+        ServiceRequest req2 = new ServiceRequest(consumer, producer);
+        assertNotNull(req1.getId());
+        ServiceRequestTest.assertFalse(req1.getId().isEmpty());
+        ServiceRequestTest.assertFalse(req1.equals(req2));
+    }
+
     /**
      * Test for ServiceRequest constructor. Consumer is null.
      *
@@ -1,10 +1,16 @@
 package com.pkrete.xrd4j.common.security;
 
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import junit.framework.TestCase;
 
 /**
@@ -66,6 +72,90 @@ public class CryptoHelperTest extends TestCase {
         }
     }
 
+    /**
+     * Test batch signature with a list of byte arrays. One of the items is
+     * modified before verification.
+     *
+     * @throws XRd4JException
+     */
+    public void testBatchSignature1() throws XRd4JException {
+        PrivateKey privateKey = CryptoHelper.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, privateKeyPass);
+        PublicKey publicKey = CryptoHelper.getPublicKey(publicKeyFile, publicKeyFilePass, publicKeyAlias);
+        List<byte[]> data = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // String methods use the default charset
+            data.add(("Record " + i + " ÄäÅåÖö Каллио").getBytes());
+        }
+        List<String> signatures = CryptoHelper.createSignatures(privateKey, data);
+        assertEquals(50, signatures.size());
+        // Signatures must be in the same order as the data
+        assertEquals(CryptoHelper.createSignature(privateKey, "Record 7 ÄäÅåÖö Каллио"), signatures.get(7));
+        data.set(13, "Modified".getBytes(StandardCharsets.UTF_8));
+        List<Boolean> results = CryptoHelper.verifySignatures(publicKey, data, signatures);
+        assertEquals(50, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i != 13, results.get(i).booleanValue());
+        }
+    }
+
+    /**
+     * Test batch signature with a list of ByteBuffers and ECDSA keys that are
+     * generated during the test.
+     */
+    public void testBatchSignature2() {
+        try {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+            keyGen.initialize(256, new SecureRandom());
+            KeyPair keyPair = keyGen.generateKeyPair();
+            List<ByteBuffer> data = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                data.add(ByteBuffer.wrap(("Record " + i).getBytes(StandardCharsets.UTF_8)));
+            }
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                List<String> signatures = CryptoHelper.createBufferSignatures(keyPair.getPrivate(), data, "SHA512withECDSA", pool);
+                // Positions of the buffers must not change
+                assertEquals(0, data.get(0).position());
+                List<Boolean> results = CryptoHelper.verifyBufferSignatures(keyPair.getPublic(), data, signatures, "SHA512withECDSA", pool);
+                for (Boolean result : results) {
+                    assertEquals(true, result.booleanValue());
+                }
+            } finally {
+                pool.shutdown();
+            }
+            List<String> signatures = CryptoHelper.createBufferSignatures(keyPair.getPrivate(), data, "SHA512withECDSA");
+            assertEquals(20, signatures.size());
+            assertTrue(CryptoHelper.verifyBufferSignatures(keyPair.getPublic(), data, signatures, "SHA512withECDSA").get(19));
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test batch signature with an empty list.
+     *
+     * @throws XRd4JException
+     */
+    public void testBatchSignature3() throws XRd4JException {
+        PrivateKey privateKey = CryptoHelper.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, privateKeyPass);
+        assertEquals(0, CryptoHelper.createSignatures(privateKey, new ArrayList<byte[]>()).size());
+    }
+
+    /**
+     * Test batch signature with an invalid algorithm.
+     */
+    public void testBatchSignature4() {
+        PrivateKey privateKey = CryptoHelper.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, privateKeyPass);
+        List<byte[]> data = new ArrayList<>();
+        data.add("Record".getBytes(StandardCharsets.UTF_8));
+        try {
+            CryptoHelper.createSignatures(privateKey, data, "invalid");
+            fail("XRd4JException expected");
+        } catch (XRd4JException ex) {
+            // Expected
+        }
+    }
+
     private boolean createAndverifySignature(String data) {
         return this.createAndverifySignature(data, data);
     }
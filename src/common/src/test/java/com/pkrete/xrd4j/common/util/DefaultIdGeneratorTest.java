@@ -0,0 +1,121 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for DefaultIdGenerator class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class DefaultIdGeneratorTest extends TestCase {
+
+    /**
+     * Test the format of the generated identifiers.
+     */
+    public void testFormat() {
+        IdGenerator generator = new DefaultIdGenerator("node1");
+        String id1 = generator.generateId();
+        String id2 = generator.generateId();
+        assertTrue(id1.matches("^node1-[0-9a-f]+-[0-9a-f]{8}-0$"));
+        assertTrue(id2.matches("^node1-[0-9a-f]+-[0-9a-f]{8}-1$"));
+    }
+
+    /**
+     * Test that a random node id is generated if node id is not given.
+     */
+    public void testRandomNodeId() {
+        String id1 = new DefaultIdGenerator(null).generateId();
+        String id2 = new DefaultIdGenerator("").generateId();
+        assertTrue(id1.matches("^[0-9a-f]{12}-[0-9a-f]+-[0-9a-f]{8}-0$"));
+        assertFalse(id1.substring(0, 12).equals(id2.substring(0, 12)));
+    }
+
+    /**
+     * Test that generators with the same node id that are created at the
+     * same time generate different identifiers.
+     */
+    public void testSameNodeId() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ids.add(new DefaultIdGenerator("node1").generateId()));
+        }
+    }
+
+    /**
+     * Test that the identifiers generated by several threads are unique.
+     *
+     * @throws InterruptedException
+     */
+    public void testUniqueConcurrent() throws InterruptedException {
+        final IdGenerator generator = new DefaultIdGenerator("node1");
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 5000; j++) {
+                    ids.add(generator.generateId());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, ids.size());
+    }
+
+    /**
+     * Test changing the IdGenerator of MessageHelper.
+     */
+    public void testMessageHelperIdGenerator() {
+        IdGenerator original = MessageHelper.getIdGenerator();
+        try {
+            MessageHelper.setIdGenerator(() -> "fixed");
+            assertEquals("fixed", MessageHelper.generateId());
+            MessageHelper.setIdGenerator(new UUIDIdGenerator());
+            assertEquals(36, MessageHelper.generateId().length());
+        } finally {
+            MessageHelper.setIdGenerator(original);
+        }
+    }
+
+    /**
+     * IdGenerator registered using ServiceLoader is used and
+     * DefaultIdGenerator is used if loading the registered class fails.
+     *
+     * @throws Exception
+     */
+    public void testLoadIdGenerator() throws Exception {
+        File dir = Files.createTempDirectory("xrd4j-services").toFile();
+        File services = new File(dir, "META-INF/services/" + IdGenerator.class.getName());
+        try {
+            services.getParentFile().mkdirs();
+            Files.write(services.toPath(), Collections.singletonList(UUIDIdGenerator.class.getName()), StandardCharsets.UTF_8);
+            try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader())) {
+                assertTrue(MessageHelper.loadIdGenerator(loader) instanceof UUIDIdGenerator);
+            }
+            Files.write(services.toPath(), Collections.singletonList("com.pkrete.xrd4j.common.util.MissingIdGenerator"), StandardCharsets.UTF_8);
+            try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader())) {
+                assertTrue(MessageHelper.loadIdGenerator(loader) instanceof DefaultIdGenerator);
+            }
+        } finally {
+            services.delete();
+            services.getParentFile().delete();
+            services.getParentFile().getParentFile().delete();
+            dir.delete();
+        }
+    }
+}
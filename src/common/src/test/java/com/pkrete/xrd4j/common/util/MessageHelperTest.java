@@ -1,5 +1,8 @@
 package com.pkrete.xrd4j.common.util;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.soap.SOAPMessage;
 import junit.framework.TestCase;
 
 /**
@@ -19,4 +22,49 @@ public class MessageHelperTest extends TestCase {
         assertEquals("7iaw3Ur350mqGo7jwQrpkj9hiYB3Lkc/iBml1JQODbJ6wYX4oOHV+E+IvIh/1nsUNzLDBMxfqa2Ob1f1ACio/w==", MessageHelper.calculateHash("test"));
         assertEquals("VxRyq5GZc5xJZQFWKZsUobdzXqg8lwR9Cponu5m6XJgVMjhGVbxdbZBYEsQETnwIgsscb2h8j9rKvm40yqiuPg==", MessageHelper.calculateHash("string hash test"));
     }
+
+    /**
+     * Test for calculating Base64 encoded hash of bytes.
+     */
+    public void testCalculateHashBytes() {
+        assertEquals("7iaw3Ur350mqGo7jwQrpkj9hiYB3Lkc/iBml1JQODbJ6wYX4oOHV+E+IvIh/1nsUNzLDBMxfqa2Ob1f1ACio/w==", MessageHelper.calculateHash("test".getBytes(StandardCharsets.UTF_8)));
+        // The cached digest must be reset between calls
+        assertEquals(MessageHelper.calculateHash("string hash test"), MessageHelper.calculateHash("string hash test".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test that the hash calculated while writing a message through
+     * HashingOutputStream matches the hash of the bytes that were written.
+     *
+     * @throws Exception
+     */
+    public void testHashingOutputStream() throws Exception {
+        SOAPMessage msg = SOAPHelper.toSOAP("<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body><ns1:test xmlns:ns1=\"http://test.x-road.fi\">Каллио</ns1:test></SOAP-ENV:Body></SOAP-ENV:Envelope>");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HashingOutputStream out = new HashingOutputStream(bos, "SHA-512");
+        msg.writeTo(out);
+        assertEquals("SHA-512", out.getAlgorithm());
+        assertEquals(MessageHelper.calculateHash(bos.toByteArray()), out.getHash());
+        assertEquals(out.getHash(), MessageHelper.calculateHash(msg, "SHA-512"));
+    }
+
+    /**
+     * Test converting requestHash algorithm identifiers to algorithm names.
+     */
+    public void testGetHashAlgorithm() {
+        assertEquals("SHA-512", MessageHelper.getHashAlgorithm("http://www.w3.org/2001/04/xmlenc#sha512"));
+        assertEquals("SHA-256", MessageHelper.getHashAlgorithm("http://www.w3.org/2001/04/xmlenc#sha256"));
+        assertEquals("SHA-512", MessageHelper.getHashAlgorithm("SHA-512"));
+        assertEquals("SHA-512", MessageHelper.getHashAlgorithm("sha512"));
+        assertEquals("SHA-1", MessageHelper.getHashAlgorithm(" SHA1 "));
+        assertEquals("SHA-256", MessageHelper.getHashAlgorithm("sha-256"));
+        assertEquals("MD5", MessageHelper.getHashAlgorithm("md5"));
+        assertEquals(null, MessageHelper.getHashAlgorithm(null));
+        try {
+            MessageHelper.getHashAlgorithm("unknown");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
 }
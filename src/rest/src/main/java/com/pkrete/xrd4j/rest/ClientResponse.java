@@ -1,13 +1,32 @@
 package com.pkrete.xrd4j.rest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
 /**
  * This class represents the response returned by HTTP clients.
  *
+ * The payload of the response can be held as a String, as bytes or as a
+ * stream that's still connected to the backend. Bytes and streams are
+ * decoded to a String only when getData is called, using the charset
+ * declared in the content type or UTF-8 if no charset is declared. A stream
+ * is available only inside a ResponseBodyHandler and it can be read only
+ * once.
+ *
  * @author Petteri Kivimäki
  */
 public class ClientResponse {
 
     private String data;
+    private byte[] bytes;
+    private InputStream stream;
     private String contentType;
     private int statusCode;
     private String reasonPhrase;
@@ -27,10 +46,46 @@ public class ClientResponse {
     }
 
     /**
-     * Returns the payload of the response message.
+     * Returns a new ClientResponse object whose payload is decoded to a
+     * String only when it's needed.
+     * @param bytes response payload as bytes
+     * @param contentType response content type
+     * @param statusCode HTTP status code of the response
+     * @param reasonPhrase reason phrase of this response
+     * @return new ClientResponse object
+     */
+    public static ClientResponse ofBytes(byte[] bytes, String contentType, int statusCode, String reasonPhrase) {
+        ClientResponse response = new ClientResponse(null, contentType, statusCode, reasonPhrase);
+        response.bytes = bytes;
+        return response;
+    }
+
+    /**
+     * Returns a new ClientResponse object whose payload is read from the
+     * given stream only when it's needed.
+     * @param stream response payload as a stream
+     * @param contentType response content type
+     * @param statusCode HTTP status code of the response
+     * @param reasonPhrase reason phrase of this response
+     * @return new ClientResponse object
+     */
+    public static ClientResponse ofStream(InputStream stream, String contentType, int statusCode, String reasonPhrase) {
+        ClientResponse response = new ClientResponse(null, contentType, statusCode, reasonPhrase);
+        response.stream = stream;
+        return response;
+    }
+
+    /**
+     * Returns the payload of the response message. The payload is decoded
+     * using the charset of the response.
      * @return payload of the response message
+     * @throws UncheckedIOException if reading the payload from the stream
+     * fails
      */
     public String getData() {
+        if (this.data == null && (this.bytes != null || this.stream != null)) {
+            this.data = new String(this.getBytes(), this.getCharset());
+        }
         return data;
     }
 
@@ -40,6 +95,70 @@ public class ClientResponse {
      */
     public void setData(String data) {
         this.data = data;
+        this.bytes = null;
+        this.stream = null;
+    }
+
+    /**
+     * Returns the payload of the response message as bytes. If the payload
+     * is a stream, the whole stream is read.
+     * @return payload of the response message as bytes or null
+     * @throws UncheckedIOException if reading the payload from the stream
+     * fails
+     */
+    public byte[] getBytes() {
+        if (this.bytes == null) {
+            if (this.stream != null) {
+                try {
+                    this.bytes = readAll(this.stream);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                this.stream = null;
+            } else if (this.data != null) {
+                return this.data.getBytes(this.getCharset());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the payload of the response message as a stream. If the
+     * payload is connected to the backend, the returned stream reads it
+     * directly from the connection and it can be read only once.
+     * @return payload of the response message as a stream or null
+     */
+    public InputStream getInputStream() {
+        if (this.stream != null) {
+            InputStream in = this.stream;
+            this.stream = null;
+            return in;
+        }
+        byte[] payload = this.getBytes();
+        return payload == null ? null : new ByteArrayInputStream(payload);
+    }
+
+    /**
+     * Returns the charset declared in the content type of the response
+     * message. If the content type doesn't declare a valid charset, UTF-8 is
+     * returned.
+     * @return charset of the response message
+     */
+    public Charset getCharset() {
+        if (this.contentType != null) {
+            for (String param : this.contentType.split(";")) {
+                String trimmed = param.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = trimmed.substring(8).replace("\"", "").trim();
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
     }
 
     /**
@@ -89,4 +208,14 @@ public class ClientResponse {
     public void setReasonPhrase(String reasonPhrase) {
         this.reasonPhrase = reasonPhrase;
     }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
 }
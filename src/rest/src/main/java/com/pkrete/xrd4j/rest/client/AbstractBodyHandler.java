@@ -1,55 +1,153 @@
 package com.pkrete.xrd4j.rest.client;
 
+import com.pkrete.xrd4j.rest.ClientResponse;
+import com.pkrete.xrd4j.rest.util.ClientUtil;
+import java.io.IOException;
 import java.util.Map;
 import org.apache.http.Consts;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This abstract class offers method for adding HTTP request body to the HTTP
  * request. Classes implementing POST, PUT or DELETE requests can extend this
- * class.
+ * class. Besides strings, request bodies can be given as RequestBody objects
+ * that are written directly to the connection.
  *
  * @author Petteri Kivimäki
  */
 public abstract class AbstractBodyHandler extends AbstractClient {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractBodyHandler.class);
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String DEFAULT_CONTENT_TYPE = "application/xml";
+
+    /**
+     * Constructs and initializes a new AbstractBodyHandler object that uses
+     * the shared HTTP client of RESTClientFactory.
+     */
+    protected AbstractBodyHandler() {
+        super();
+    }
+
+    /**
+     * Constructs and initializes a new AbstractBodyHandler object that uses
+     * the given HTTP client.
+     *
+     * @param httpClient HTTP client, null means the shared client of
+     * RESTClientFactory
+     */
+    protected AbstractBodyHandler(CloseableHttpClient httpClient) {
+        super(httpClient);
+    }
+
+    /**
+     * Builds a new HTTP request with the given URL and request entity. The
+     * entity is null if the request has no body. This method is used for
+     * sending RequestBody objects and subclasses that support them must
+     * override it.
+     *
+     * @param url URL where the request is sent
+     * @param entity request body or null
+     * @return new HttpUriRequest object
+     * @throws UnsupportedOperationException if the subclass doesn't override
+     * this method
+     */
+    protected HttpUriRequest buildHttpRequest(String url, HttpEntity entity) {
+        throw new UnsupportedOperationException(this.getClass().getName() + " doesn't support RequestBody objects.");
+    }
+
+    /**
+     * Makes a HTTP request to the given URL using the given request body,
+     * parameters and HTTP headers. The body is written directly to the
+     * connection and if its length is not known, it's sent using chunked
+     * transfer encoding. Content type of the request is set according to the
+     * given headers. If the given headers do not contain Content-Type
+     * header, "application/xml" is used. If there's no request body, the
+     * value can be null.
+     *
+     * Bodies that can be written only once are not sent again, if the
+     * request is redirected.
+     *
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @return response or null, if sending the request fails
+     */
+    public ClientResponse send(String url, RequestBody requestBody, Map<String, ?> params, Map<String, String> headers) {
+        return this.execute(this.buildRequest(url, requestBody, params, headers));
+    }
+
+    /**
+     * Makes a HTTP request to the given URL using the given request body and
+     * passes the response to the given handler while the body is read from
+     * the connection. The request body is written directly to the
+     * connection, so neither the request nor the response has to be held
+     * in memory.
+     *
+     * @param <T> type of the value produced by the handler
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @param handler handler that processes the response
+     * @return value returned by the handler
+     * @throws IOException if sending the request or reading the response
+     * fails
+     */
+    public <T> T send(String url, RequestBody requestBody, Map<String, ?> params, Map<String, String> headers, ResponseBodyHandler<T> handler) throws IOException {
+        return this.execute(this.buildRequest(url, requestBody, params, headers), handler);
+    }
+
+    private HttpUriRequest buildRequest(String url, RequestBody requestBody, Map<String, ?> params, Map<String, String> headers) {
+        String targetUrl = ClientUtil.buildTargetURL(url, params);
+        HttpEntity entity = null;
+        if (requestBody != null) {
+            entity = new RequestBodyEntity(requestBody, getContentType(headers));
+        } else {
+            logger.debug("No request body found for request.");
+        }
+        return setHeaders(this.buildHttpRequest(targetUrl, entity), headers);
+    }
 
     /**
      * Builds a new StringEntity object that's used as HTTP request body.
      * Content type of the request is set according to the given headers. If the
      * given headers do not contain Content-Type header, "application/xml" is
-     * used. If the given request body is null or empty, null is returned.
+     * used. The given headers are not modified. If the given request body is
+     * null or empty, null is returned.
      *
      * @param requestBody request body
      * @param headers HTTP headers to be added to the request
      * @return new StringEntity object or null
      */
     protected StringEntity buildRequestEntity(String requestBody, Map<String, String> headers) {
-        String contentTypeHeader = "Content-Type";
         logger.debug("Build new request entity.");
 
         // If request body is not null or empty
         if (requestBody != null && !requestBody.isEmpty()) {
             logger.debug("Request body found.");
-            // Set content type of the request, default is "application/xml"
-            String reqContentType = "application/xml";
-            if (headers != null && !headers.isEmpty()) {
-                if (headers.get(contentTypeHeader) != null && !headers.get(contentTypeHeader).isEmpty()) {
-                    reqContentType = headers.get(contentTypeHeader);
-                } else {
-                    logger.warn("\"Content-Type\" header is missing. Use \"application/xml\" as default.");
-                    // No value set, use default value
-                    headers.put(contentTypeHeader, reqContentType);
-                }
-            }
             // Create request entity that's used as request body
-            return new StringEntity(requestBody, ContentType.create(reqContentType, Consts.UTF_8));
+            return new StringEntity(requestBody, ContentType.create(getContentType(headers), Consts.UTF_8));
         }
         logger.debug("No request body found for request. Null is returned");
         return null;
     }
+
+    private static String getContentType(Map<String, String> headers) {
+        String contentType = headers != null ? headers.get(CONTENT_TYPE) : null;
+        if (contentType != null && !contentType.isEmpty()) {
+            return contentType;
+        }
+        // The entity carries the default value, so the caller's headers
+        // don't have to be modified
+        logger.debug("\"Content-Type\" header is missing. Use \"application/xml\" as default.");
+        return DEFAULT_CONTENT_TYPE;
+    }
 }
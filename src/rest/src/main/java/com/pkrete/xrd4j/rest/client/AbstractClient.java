@@ -1,16 +1,26 @@
 package com.pkrete.xrd4j.rest.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,18 +29,52 @@ import com.pkrete.xrd4j.rest.util.ClientUtil;
 
 /**
  * This is an abstract base class for classes implementing GET, POST, PUT and
- * DELETE HTTP clients.
+ * DELETE HTTP clients. Requests can be sent synchronously using the shared
+ * HTTP client or asynchronously using the shared non-blocking HTTP client of
+ * RESTClientFactory. The timeouts, retries and concurrency limit of the
+ * requests are defined by a RESTClientPolicy. Asynchronous requests are not
+ * retried.
  *
  * @author Petteri Kivimäki
  */
-public abstract class AbstractClient implements RESTClient {
+public abstract class AbstractClient implements RESTClient, AsyncRESTClient {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractClient.class);
+    private final CloseableHttpClient httpClient;
+    private RESTClientPolicy policy;
+
+    /**
+     * Constructs and initializes a new AbstractClient object that uses the
+     * shared HTTP client of RESTClientFactory.
+     */
+    protected AbstractClient() {
+        this(null);
+    }
+
+    /**
+     * Constructs and initializes a new AbstractClient object that uses the
+     * given HTTP client. The client is not closed by this object.
+     *
+     * @param httpClient HTTP client, null means the shared client of
+     * RESTClientFactory
+     */
+    protected AbstractClient(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
 
     protected abstract HttpUriRequest buildtHttpRequest(String url, String requestBody, Map<String, String> headers);
 
+    /**
+     * Returns the proxy defined in "xrd4jProxy" system property or null.
+     *
+     * @param url URL where the request is sent
+     * @return proxy or null
+     * @deprecated the proxy is resolved once by RESTClientConfig and this
+     * method is not used when requests are sent
+     */
     // The proxy detection code is taken from:
     // https://stackoverflow.com/questions/4933677/detecting-windows-ie-proxy-setting-using-java
+    @Deprecated
     public HttpHost getProxyHost(String url) {
         try {
             System.setProperty("java.net.useSystemProxies", "true");
@@ -102,24 +146,207 @@ public abstract class AbstractClient implements RESTClient {
      */
     @Override
     public ClientResponse send(String url, String requestBody, Map<String, ?> params, Map<String, String> headers) {
-        // Build target URL
-        url = ClientUtil.buildTargetURL(url, params);
-
-        // Create HTTP client
-        HttpClientBuilder httpClientBuilder = HttpClients.custom();
+        return this.execute(this.buildRequest(url, requestBody, params, headers));
+    }
 
-        HttpHost proxy = getProxyHost(url);
-        if (proxy != null) {
-            DefaultProxyRoutePlanner routePlanner = new DefaultProxyRoutePlanner(proxy);
-            httpClientBuilder.setRoutePlanner(routePlanner);
+    /**
+     * Sends the given request and returns the response. The policy of this
+     * client is applied to the request. If sending the request fails, null
+     * is returned.
+     *
+     * @param request request to be sent
+     * @return response or null
+     */
+    ClientResponse execute(HttpUriRequest request) {
+        try {
+            // Nothing has been given to the caller before the whole body has
+            // been read, so the request can be retried if reading fails
+            return this.execute(request, AbstractClient::toClientResponse, true);
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            logger.warn("HTTP {} operation failed. An empty string is returned.", request.getMethod());
+            return null;
         }
-        CloseableHttpClient httpClient = httpClientBuilder.build();
+    }
+
+    /**
+     * Makes a HTTP request to the given URL and passes the response to the
+     * given handler while the body is read from the connection. Whatever the
+     * handler leaves unread is discarded and the connection is returned to
+     * the pool when the handler returns.
+     *
+     * @param <T> type of the value produced by the handler
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @param handler handler that processes the response
+     * @return value returned by the handler
+     * @throws IOException if sending the request or reading the response
+     * fails
+     */
+    @Override
+    public <T> T send(String url, String requestBody, Map<String, ?> params, Map<String, String> headers, ResponseBodyHandler<T> handler) throws IOException {
+        return this.execute(this.buildRequest(url, requestBody, params, headers), handler);
+    }
 
-        // Build request
-        HttpUriRequest request = this.buildtHttpRequest(url, requestBody, headers);
+    /**
+     * Sends the given request and passes the response to the given handler
+     * while the body is read from the connection.
+     *
+     * @param <T> type of the value produced by the handler
+     * @param request request to be sent
+     * @param handler handler that processes the response
+     * @return value returned by the handler
+     * @throws IOException if sending the request or reading the response
+     * fails
+     */
+    <T> T execute(HttpUriRequest request, ResponseBodyHandler<T> handler) throws IOException {
+        return this.execute(request, response -> {
+            HttpEntity entity = response.getEntity();
+            InputStream in = entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+            try {
+                return handler.handle(ClientResponse.ofStream(in, getContentType(response),
+                        response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase()));
+            } finally {
+                EntityUtils.consumeQuietly(entity);
+            }
+        }, false);
+    }
 
+    private <T> T execute(HttpUriRequest request, ResponseProcessor<T> processor, boolean retryBody) throws IOException {
+        RESTClientPolicy currentPolicy = this.getPolicy();
         logger.info("Starting HTTP {} operation.", request.getMethod());
+        Semaphore permit = currentPolicy.acquire(URIUtils.extractHost(request.getURI()));
+        ScheduledFuture<?> timeout = currentPolicy.scheduleTimeout(() -> {
+            logger.warn("HTTP {} operation timed out. The request is aborted.", request.getMethod());
+            request.abort();
+        });
+        currentPolicy.deposit();
+        try {
+            for (int attempt = 0;; attempt++) {
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(currentPolicy.getRequestConfig());
+                boolean received = false;
+                // The connection is returned to the pool when the response is closed
+                try (CloseableHttpResponse response = this.getHttpClient().execute(request, context)) {
+                    received = true;
+                    T result = processor.process(response);
+                    logger.info("HTTP {} operation completed.", request.getMethod());
+                    return result;
+                } catch (IOException ex) {
+                    if ((received && !retryBody) || !currentPolicy.tryRetry(request, ex, attempt)) {
+                        throw ex;
+                    }
+                    long backoff = currentPolicy.getBackoff(attempt);
+                    logger.warn("HTTP {} operation failed : {}. Retry in {} ms.", request.getMethod(), ex.getMessage(), backoff);
+                    sleep(backoff);
+                }
+            }
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry.");
+        }
+    }
+
+    /**
+     * Makes a HTTP request to the given URL using the shared non-blocking
+     * HTTP client of RESTClientFactory and returns immediately without
+     * waiting for the response. Cancelling the returned future cancels the
+     * request.
+     *
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @return future that's completed with the response or exceptionally, if
+     * the request fails
+     */
+    @Override
+    public CompletableFuture<ClientResponse> sendAsync(String url, String requestBody, Map<String, ?> params, Map<String, String> headers) {
+        HttpUriRequest request = this.buildRequest(url, requestBody, params, headers);
+        RESTClientPolicy currentPolicy = this.getPolicy();
+        logger.info("Starting asynchronous HTTP {} operation.", request.getMethod());
+        CompletableFuture<ClientResponse> result = new CompletableFuture<>();
+        Semaphore permit;
+        try {
+            permit = currentPolicy.acquire(URIUtils.extractHost(request.getURI()));
+        } catch (IOException ex) {
+            logger.warn("Asynchronous HTTP {} operation failed : {}", request.getMethod(), ex.getMessage());
+            result.completeExceptionally(ex);
+            return result;
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(currentPolicy.getRequestConfig());
+        Future<HttpResponse> future = RESTClientFactory.getHttpAsyncClient().execute(request, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    result.complete(toClientResponse(response));
+                    logger.info("Asynchronous HTTP {} operation completed.", request.getMethod());
+                } catch (IOException | RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                logger.warn("Asynchronous HTTP {} operation failed : {}", request.getMethod(), ex.getMessage());
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        ScheduledFuture<?> timeout = currentPolicy.scheduleTimeout(() -> {
+            if (result.completeExceptionally(new InterruptedIOException("Total timeout of the request exceeded."))) {
+                logger.warn("Asynchronous HTTP {} operation timed out. The request is cancelled.", request.getMethod());
+                future.cancel(true);
+            }
+        });
+        result.whenComplete((response, throwable) -> {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (permit != null) {
+                permit.release();
+            }
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
 
+    private HttpUriRequest buildRequest(String url, String requestBody, Map<String, ?> params, Map<String, String> headers) {
+        // Build target URL
+        String targetUrl = ClientUtil.buildTargetURL(url, params);
+        return setHeaders(this.buildtHttpRequest(targetUrl, requestBody, headers), headers);
+    }
+
+    /**
+     * Sets the given headers to the given request.
+     *
+     * @param request request where the headers are set
+     * @param headers HTTP headers to be added to the request
+     * @return the given request
+     */
+    static HttpUriRequest setHeaders(HttpUriRequest request, Map<String, String> headers) {
         // Add headers
         if (headers != null && !headers.isEmpty()) {
             for (Map.Entry<String, String> entry : headers.entrySet()) {
@@ -127,37 +354,81 @@ public abstract class AbstractClient implements RESTClient {
                 request.setHeader(entry.getKey(), entry.getValue());
             }
         }
+        return request;
+    }
 
+    private static ClientResponse toClientResponse(HttpResponse response) throws IOException {
+        String contentType = getContentType(response);
+        // Get Status Code
+        int statusCode = response.getStatusLine().getStatusCode();
+        // Get reason phrase
+        String reasonPhrase = response.getStatusLine().getReasonPhrase();
+
+        // Get response payload, it's decoded only when it's needed
+        byte[] body;
         try {
-            //Send the request; It will immediately return the response in HttpResponse object
-            CloseableHttpResponse response = httpClient.execute(request);
-            // Get Content-Type header
-            Header[] contentTypeHeader = response.getHeaders("Content-Type");
-            String contentType = null;
-            // Check for null and empty
-            if (contentTypeHeader != null && contentTypeHeader.length > 0) {
-                contentType = contentTypeHeader[0].getValue();
-            }
-            // Get Status Code
-            int statusCode = response.getStatusLine().getStatusCode();
-            // Get reason phrase
-            String reasonPhrase = response.getStatusLine().getReasonPhrase();
-
-            // Get response payload
-            String responseStr = ClientUtil.getResponseString(response.getEntity());
-
-            response.close();
-            httpClient.close();
-            logger.debug("REST response content type: \"{}\".", contentType);
-            logger.debug("REST response status code: \"{}\".", statusCode);
-            logger.debug("REST response reason phrase: \"{}\".", reasonPhrase);
-            logger.debug("REST response : \"{}\".", responseStr);
-            logger.info("HTTP {} operation completed.", request.getMethod());
-            return new ClientResponse(responseStr, contentType, statusCode, reasonPhrase);
-        } catch (IOException e) {
-            logger.error(e.getMessage(), e);
-            logger.warn("HTTP {} operation failed. An empty string is returned.", request.getMethod());
-            return null;
+            body = response.getEntity() != null ? EntityUtils.toByteArray(response.getEntity()) : new byte[0];
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+
+        logger.debug("REST response content type: \"{}\".", contentType);
+        logger.debug("REST response status code: \"{}\".", statusCode);
+        logger.debug("REST response reason phrase: \"{}\".", reasonPhrase);
+        logger.debug("REST response length: {} bytes.", body.length);
+        return ClientResponse.ofBytes(body, contentType, statusCode, reasonPhrase);
+    }
+
+    private static String getContentType(HttpResponse response) {
+        // Get Content-Type header
+        Header[] contentTypeHeader = response.getHeaders("Content-Type");
+        // Check for null and empty
+        if (contentTypeHeader != null && contentTypeHeader.length > 0) {
+            return contentTypeHeader[0].getValue();
         }
+        return null;
+    }
+
+    /**
+     * Returns the policy that's applied to the requests of this client. This
+     * is the default policy of RESTClientFactory configuration unless a
+     * policy has been set to this client.
+     *
+     * @return policy of this client
+     */
+    public RESTClientPolicy getPolicy() {
+        return this.policy != null ? this.policy : RESTClientFactory.getConfig().getDefaultPolicy();
+    }
+
+    /**
+     * Sets the policy that's applied to the requests of this client. Null
+     * means the default policy of RESTClientFactory configuration.
+     *
+     * @param policy new value
+     */
+    public void setPolicy(RESTClientPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the HTTP client that's used for sending the requests. This is
+     * the shared client of RESTClientFactory unless a client was given when
+     * this object was created.
+     *
+     * @return HTTP client
+     */
+    protected CloseableHttpClient getHttpClient() {
+        return this.httpClient != null ? this.httpClient : RESTClientFactory.getHttpClient();
+    }
+
+    /**
+     * Processes a response while the connection is still open.
+     *
+     * @param <T> type of the result
+     */
+    @FunctionalInterface
+    private interface ResponseProcessor<T> {
+
+        T process(CloseableHttpResponse response) throws IOException;
     }
 }
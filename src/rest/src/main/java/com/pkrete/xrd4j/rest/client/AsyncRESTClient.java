@@ -0,0 +1,37 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class defines an interface for REST clients that send the requests
+ * asynchronously using non-blocking I/O. The returned future is completed
+ * when the whole response has been received, so requests to several backends
+ * can be sent at the same time without a thread per request.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface AsyncRESTClient {
+
+    /**
+     * Makes a HTTP request to the given URL using the given request body,
+     * parameters and HTTP headers and returns immediately without waiting
+     * for the response. The parameters are used as URL parameters, but if
+     * there's a parameter "resourceId", it's added directly to the end of the
+     * URL. If there's no request body, the value can be null.
+     *
+     * The future is completed in an I/O thread of the shared HTTP client, so
+     * dependent stages that do heavy processing should be run using an
+     * executor of their own.
+     *
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @return future that's completed with the response or exceptionally, if
+     * the request fails
+     */
+    CompletableFuture<ClientResponse> sendAsync(String url, String requestBody, Map<String, ?> params, Map<String, String> headers);
+}
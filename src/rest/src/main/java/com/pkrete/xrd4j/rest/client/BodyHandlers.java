@@ -0,0 +1,126 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * This class offers implementations of ResponseBodyHandler for the most
+ * common ways of consuming a response body. Handlers that write to an
+ * OutputStream or to a Writer copy the body through a fixed size buffer, so
+ * the whole body is never held in memory.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class BodyHandlers {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Constructs and initializes a new BodyHandlers object. Should never be
+     * used.
+     */
+    private BodyHandlers() {
+    }
+
+    /**
+     * Returns a handler that reads the whole body into a byte array.
+     *
+     * @return handler that returns the body as bytes
+     */
+    public static ResponseBodyHandler<byte[]> ofByteArray() {
+        return BodyHandlers::readBytes;
+    }
+
+    /**
+     * Returns a handler that reads the whole body into a String using the
+     * charset of the response.
+     *
+     * @return handler that returns the body as a String
+     */
+    public static ResponseBodyHandler<String> ofString() {
+        return response -> {
+            byte[] bytes = readBytes(response);
+            return bytes == null ? null : new String(bytes, response.getCharset());
+        };
+    }
+
+    /**
+     * Returns a handler that reads the whole body and returns a
+     * ClientResponse that can be used after the connection has been
+     * released. The body is decoded to a String only when it's requested.
+     *
+     * @return handler that returns a buffered ClientResponse
+     */
+    public static ResponseBodyHandler<ClientResponse> ofClientResponse() {
+        return response -> ClientResponse.ofBytes(readBytes(response), response.getContentType(),
+                response.getStatusCode(), response.getReasonPhrase());
+    }
+
+    /**
+     * Returns a handler that copies the body to the given stream as it's
+     * read from the connection. The stream is not closed.
+     *
+     * @param out stream where the body is written
+     * @return handler that returns the number of bytes written
+     */
+    public static ResponseBodyHandler<Long> ofOutputStream(OutputStream out) {
+        return response -> {
+            long total = 0;
+            try (InputStream in = response.getInputStream()) {
+                if (in == null) {
+                    return total;
+                }
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    total += read;
+                }
+            }
+            out.flush();
+            return total;
+        };
+    }
+
+    /**
+     * Returns a handler that decodes the body using the charset of the
+     * response and copies the characters to the given writer as they're
+     * read from the connection. The writer is not closed.
+     *
+     * @param writer writer where the body is written
+     * @return handler that returns the number of characters written
+     */
+    public static ResponseBodyHandler<Long> ofWriter(Writer writer) {
+        return response -> {
+            long total = 0;
+            InputStream in = response.getInputStream();
+            if (in == null) {
+                return total;
+            }
+            try (Reader reader = new InputStreamReader(in, response.getCharset())) {
+                char[] buffer = new char[BUFFER_SIZE];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    writer.write(buffer, 0, read);
+                    total += read;
+                }
+            }
+            writer.flush();
+            return total;
+        };
+    }
+
+    private static byte[] readBytes(ClientResponse response) throws IOException {
+        try {
+            return response.getBytes();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.pkrete.xrd4j.rest.client;
+
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.execchain.ClientExecChain;
+
+/**
+ * This class builds caching HTTP clients that report to the cache how each
+ * request was served. The status is read from the context after the caching
+ * element of the execution chain has handled the request.
+ *
+ * @author Petteri Kivimäki
+ */
+class CacheStatsHttpClientBuilder extends CachingHttpClientBuilder {
+
+    private final HttpResponseCache cache;
+
+    /**
+     * Constructs and initializes a new CacheStatsHttpClientBuilder object.
+     *
+     * @param cache cache used by the client
+     */
+    CacheStatsHttpClientBuilder(HttpResponseCache cache) {
+        this.cache = cache;
+        this.setHttpCacheStorage(cache).setCacheConfig(cache.createCacheConfig());
+    }
+
+    @Override
+    protected ClientExecChain decorateMainExec(ClientExecChain mainExec) {
+        ClientExecChain cachingExec = super.decorateMainExec(mainExec);
+        return (route, request, context, execAware) -> {
+            CloseableHttpResponse response = cachingExec.execute(route, request, context, execAware);
+            this.cache.record(HttpCacheContext.adapt(context).getCacheResponseStatus());
+            return response;
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.pkrete.xrd4j.rest.client;
 import java.util.Map;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +16,25 @@ public class GetClient extends AbstractClient {
 
     private static final Logger logger = LoggerFactory.getLogger(GetClient.class);
 
+    /**
+     * Constructs and initializes a new GetClient object that uses the shared
+     * HTTP client of RESTClientFactory.
+     */
+    public GetClient() {
+        super();
+    }
+
+    /**
+     * Constructs and initializes a new GetClient object that uses the given
+     * HTTP client.
+     *
+     * @param httpClient HTTP client, null means the shared client of
+     * RESTClientFactory
+     */
+    public GetClient(CloseableHttpClient httpClient) {
+        super(httpClient);
+    }
+
     /**
      * Builds a new HTTP GET request with the given URL. Request body and
      * headers are omitted.
@@ -0,0 +1,414 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.http.Header;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheEntrySerializer;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.DefaultHttpCacheEntrySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a HTTP cache of REST responses. The caching rules of
+ * RFC 7234 are applied by the caching HTTP client of HttpComponents: fresh
+ * responses are served from the cache, stale responses are revalidated using
+ * If-None-Match and If-Modified-Since headers and Vary headers are honoured.
+ * This class stores the cache entries and keeps count of the hits,
+ * revalidations and misses.
+ *
+ * The total size of the entries held in memory is bounded and the least
+ * recently used entries are evicted first. If a directory is given, the
+ * entries are also written to disk and read from there when they're not
+ * found from memory. The disk storage is not bounded, but entries that are
+ * invalidated by the cache are removed from there too.
+ *
+ * The entries on disk are written using Java serialization, and reading an
+ * entry deserializes it. A file that has been planted or modified in the
+ * directory can therefore execute code when it's read. The directory must
+ * be trusted: it must be writable only by the user that runs the
+ * application, and it must not be shared with other applications. If the
+ * cache creates the directory, only the owner can read and write it.
+ *
+ * The cache is taken into use by setting it to RESTClientConfig. It's used by
+ * the synchronous clients only.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HttpResponseCache implements HttpCacheStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponseCache.class);
+    private static final String FILE_ALGORITHM = "SHA-256";
+    private static final long DEFAULT_MAX_OBJECT_SIZE = 1024 * 1024;
+    private final long maxBytes;
+    private final File directory;
+    private final HttpCacheEntrySerializer serializer;
+    private final Map<String, Entry> entries;
+    private final Object updateLock;
+    private final LongAdder hits;
+    private final LongAdder validations;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private long size;
+    private long maxObjectSize;
+    private boolean sharedCache;
+
+    /**
+     * Constructs and initializes a new HttpResponseCache object that holds
+     * the entries in memory only.
+     *
+     * @param maxBytes maximum total size of the entries held in memory
+     */
+    public HttpResponseCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Constructs and initializes a new HttpResponseCache object that holds
+     * the entries in memory and writes them to the given directory.
+     *
+     * @param maxBytes maximum total size of the entries held in memory
+     * @param directory directory where the entries are written, null means
+     * no disk storage. The directory must be writable only by the user that
+     * runs the application, because the entries are read using Java
+     * serialization.
+     */
+    public HttpResponseCache(long maxBytes, File directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null && !directory.isDirectory()) {
+            if (!directory.mkdirs()) {
+                throw new IllegalArgumentException("Unable to create directory \"" + directory + "\".");
+            }
+            restrictToOwner(directory);
+        }
+        this.serializer = new DefaultHttpCacheEntrySerializer();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.updateLock = new Object();
+        this.hits = new LongAdder();
+        this.validations = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.maxObjectSize = Math.min(DEFAULT_MAX_OBJECT_SIZE, maxBytes);
+        this.sharedCache = true;
+    }
+
+    /**
+     * Returns the maximum size of a response body that's cached.
+     *
+     * @return maximum size in bytes
+     */
+    public long getMaxObjectSize() {
+        return maxObjectSize;
+    }
+
+    /**
+     * Sets the maximum size of a response body that's cached. Must be set
+     * before the cache is set to RESTClientConfig.
+     *
+     * @param maxObjectSize new value in bytes
+     */
+    public void setMaxObjectSize(long maxObjectSize) {
+        this.maxObjectSize = maxObjectSize;
+    }
+
+    /**
+     * Returns true if the cache behaves as a shared cache. A shared cache
+     * doesn't store responses marked private or responses to requests that
+     * contain an Authorization header.
+     *
+     * @return true if the cache is shared, otherwise false
+     */
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Sets whether the cache behaves as a shared cache. The default is true,
+     * because the same cache usually serves the requests of all the clients
+     * of an adapter. Must be set before the cache is set to RESTClientConfig.
+     *
+     * @param sharedCache new value
+     */
+    public void setSharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    /**
+     * Returns the number of requests that were served from the cache without
+     * contacting the backend.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that were served from the cache after
+     * the backend had confirmed that the cached response was still valid.
+     *
+     * @return number of revalidations
+     */
+    public long getValidations() {
+        return this.validations.sum();
+    }
+
+    /**
+     * Returns the number of requests whose response was fetched from the
+     * backend.
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the number of entries that were evicted from memory because of
+     * the size limit.
+     *
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to all the requests. Revalidated responses
+     * are not counted as hits.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = this.hits.sum();
+        long total = hitCount + this.validations.sum() + this.misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the total size of the entries held in memory.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of entries held in memory. A response that varies
+     * by request headers has an entry per variant.
+     *
+     * @return number of entries
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes all the entries from memory and from disk.
+     */
+    public void clear() {
+        synchronized (this) {
+            this.entries.clear();
+            this.size = 0;
+        }
+        if (this.directory != null) {
+            File[] files = this.directory.listFiles((dir, name) -> name.endsWith(".cache"));
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        logger.warn("Unable to delete \"{}\".", file);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void putEntry(String key, HttpCacheEntry entry) throws IOException {
+        this.store(key, new Entry(entry));
+        if (this.directory != null) {
+            this.writeToDisk(key, entry);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(String key) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+        }
+        if (entry != null) {
+            return entry.entry;
+        }
+        if (this.directory == null) {
+            return null;
+        }
+        HttpCacheEntry stored = this.readFromDisk(key);
+        if (stored != null) {
+            this.store(key, new Entry(stored));
+        }
+        return stored;
+    }
+
+    @Override
+    public void removeEntry(String key) throws IOException {
+        synchronized (this) {
+            this.remove(key);
+        }
+        if (this.directory != null && !this.fileOf(key).delete()) {
+            logger.trace("No cache entry on disk. Key : \"{}\"", key);
+        }
+    }
+
+    @Override
+    public void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException {
+        // Updates are serialized, but reading the current value from disk
+        // is done outside the lock of the memory storage
+        synchronized (this.updateLock) {
+            HttpCacheEntry updated = callback.update(this.getEntry(key));
+            if (updated == null) {
+                this.removeEntry(key);
+            } else {
+                this.putEntry(key, updated);
+            }
+        }
+    }
+
+    /**
+     * Creates the configuration of the caching HTTP client.
+     *
+     * @return configuration of the caching HTTP client
+     */
+    CacheConfig createCacheConfig() {
+        // The number of entries is bounded by their size
+        return CacheConfig.custom()
+                .setMaxObjectSize(this.maxObjectSize)
+                .setMaxCacheEntries(Integer.MAX_VALUE)
+                .setSharedCache(this.sharedCache)
+                .build();
+    }
+
+    /**
+     * Records how a request was served.
+     *
+     * @param status status set by the caching HTTP client
+     */
+    void record(CacheResponseStatus status) {
+        if (status == CacheResponseStatus.CACHE_HIT) {
+            this.hits.increment();
+        } else if (status == CacheResponseStatus.VALIDATED) {
+            this.validations.increment();
+        } else if (status == CacheResponseStatus.CACHE_MISS) {
+            this.misses.increment();
+        }
+    }
+
+    private synchronized void store(String key, Entry entry) {
+        this.remove(key);
+        if (entry.size > this.maxBytes) {
+            return;
+        }
+        this.entries.put(key, entry);
+        this.size += entry.size;
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (this.size > this.maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            this.size -= eldest.size;
+            this.evictions.increment();
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = this.entries.remove(key);
+        if (old != null) {
+            this.size -= old.size;
+        }
+    }
+
+    private HttpCacheEntry readFromDisk(String key) {
+        File file = this.fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return this.serializer.readFrom(in);
+        } catch (IOException ex) {
+            logger.warn("Reading cache entry from \"{}\" failed : {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, HttpCacheEntry entry) {
+        File file = this.fileOf(key);
+        File temp = new File(this.directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            this.serializer.writeTo(entry, out);
+        } catch (IOException ex) {
+            logger.warn("Writing cache entry to \"{}\" failed : {}", file, ex.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            logger.warn("Unable to rename \"{}\".", temp);
+        }
+    }
+
+    private File fileOf(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance(FILE_ALGORITHM).digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 6);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(this.directory, name.append(".cache").toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void restrictToOwner(final File directory) {
+        boolean restricted = directory.setReadable(false, false) && directory.setReadable(true, true)
+                && directory.setWritable(false, false) && directory.setWritable(true, true)
+                && directory.setExecutable(false, false) && directory.setExecutable(true, true);
+        if (!restricted) {
+            logger.warn("Unable to restrict the permissions of directory \"{}\" to the owner.", directory);
+        }
+    }
+
+    /**
+     * Cache entry and its size in memory.
+     */
+    private static class Entry {
+
+        private final HttpCacheEntry entry;
+        private final long size;
+
+        Entry(HttpCacheEntry entry) {
+            this.entry = entry;
+            long total = entry.getResource() == null ? 0 : entry.getResource().length();
+            for (Header header : entry.getAllHeaders()) {
+                total += header.getName().length() + header.getValue().length();
+            }
+            this.size = total;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds a non-blocking HTTP client, its I/O reactor and its pool
+ * of persistent connections created according to a RESTClientConfig. The
+ * client is started when it's created.
+ *
+ * @author Petteri Kivimäki
+ */
+class PooledHttpAsyncClient implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledHttpAsyncClient.class);
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Constructs and initializes a new PooledHttpAsyncClient object.
+     *
+     * @param config configuration of the client
+     * @throws IOReactorException if creating the I/O reactor fails
+     */
+    PooledHttpAsyncClient(RESTClientConfig config) throws IOReactorException {
+        this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        HttpHost proxy = config.getProxy();
+        for (Map.Entry<HttpHost, Integer> entry : config.getRouteLimits().entrySet()) {
+            HttpHost target = entry.getKey();
+            HttpRoute route = proxy == null ? new HttpRoute(target)
+                    : new HttpRoute(target, null, proxy, "https".equalsIgnoreCase(target.getSchemeName()));
+            this.connectionManager.setMaxPerRoute(route, entry.getValue());
+        }
+        long keepAliveTime = config.getKeepAliveTime();
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAliveTime;
+                });
+        if (proxy != null) {
+            builder.setRoutePlanner(new DefaultProxyRoutePlanner(proxy));
+        }
+        this.httpClient = builder.build();
+        this.httpClient.start();
+        if (config.getIdleConnectionTimeout() > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "xrd4j-rest-async-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getIdleConnectionTimeout();
+            this.evictor.scheduleWithFixedDelay(() -> {
+                this.connectionManager.closeExpiredConnections();
+                this.connectionManager.closeIdleConnections(interval, TimeUnit.MILLISECONDS);
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+        logger.debug("Pooled async HTTP client created. Max connections per route : {}, max connections total : {}.",
+                config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal());
+    }
+
+    /**
+     * Returns the HTTP client.
+     *
+     * @return HTTP client
+     */
+    CloseableHttpAsyncClient getHttpClient() {
+        return this.httpClient;
+    }
+
+    /**
+     * Returns the statistics of the connection pool.
+     *
+     * @return statistics of all the routes
+     */
+    PoolStats getTotalStats() {
+        return this.connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.evictor != null) {
+            this.evictor.shutdownNow();
+        }
+        this.httpClient.close();
+    }
+}
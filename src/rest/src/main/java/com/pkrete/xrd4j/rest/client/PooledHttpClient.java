@@ -0,0 +1,99 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds a HTTP client and its pool of persistent connections
+ * created according to a RESTClientConfig. If the configuration has a
+ * response cache, the client is a caching client.
+ *
+ * The automatic retries of HttpClient are disabled, because all the requests
+ * sent using the client are retried according to their RESTClientPolicy.
+ *
+ * @author Petteri Kivimäki
+ */
+class PooledHttpClient implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledHttpClient.class);
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * Constructs and initializes a new PooledHttpClient object.
+     *
+     * @param config configuration of the client
+     */
+    PooledHttpClient(RESTClientConfig config) {
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        this.connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivity());
+        HttpHost proxy = config.getProxy();
+        for (Map.Entry<HttpHost, Integer> entry : config.getRouteLimits().entrySet()) {
+            HttpHost target = entry.getKey();
+            HttpRoute route = proxy == null ? new HttpRoute(target)
+                    : new HttpRoute(target, null, proxy, "https".equalsIgnoreCase(target.getSchemeName()));
+            this.connectionManager.setMaxPerRoute(route, entry.getValue());
+        }
+        HttpResponseCache cache = config.getResponseCache();
+        HttpClientBuilder builder = cache == null ? HttpClients.custom() : new CacheStatsHttpClientBuilder(cache);
+        builder.setConnectionManager(this.connectionManager)
+                .setKeepAliveStrategy(createKeepAliveStrategy(config.getKeepAliveTime()))
+                .disableAutomaticRetries();
+        if (proxy != null) {
+            builder.setRoutePlanner(new DefaultProxyRoutePlanner(proxy));
+        }
+        if (config.getIdleConnectionTimeout() > 0) {
+            builder.evictExpiredConnections().evictIdleConnections(config.getIdleConnectionTimeout(), TimeUnit.MILLISECONDS);
+        }
+        this.httpClient = builder.build();
+        logger.debug("Pooled HTTP client created. Max connections per route : {}, max connections total : {}.",
+                config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal());
+    }
+
+    private static ConnectionKeepAliveStrategy createKeepAliveStrategy(long keepAliveTime) {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAliveTime;
+        };
+    }
+
+    /**
+     * Returns the HTTP client.
+     *
+     * @return HTTP client
+     */
+    CloseableHttpClient getHttpClient() {
+        return this.httpClient;
+    }
+
+    /**
+     * Returns the statistics of the connection pool.
+     *
+     * @return statistics of all the routes
+     */
+    PoolStats getTotalStats() {
+        return this.connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.httpClient.close();
+        this.connectionManager.shutdown();
+    }
+}
@@ -1,9 +1,10 @@
 package com.pkrete.xrd4j.rest.client;
 
 import java.util.Map;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +17,25 @@ public class PostClient extends AbstractBodyHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(PostClient.class);
 
+    /**
+     * Constructs and initializes a new PostClient object that uses the shared
+     * HTTP client of RESTClientFactory.
+     */
+    public PostClient() {
+        super();
+    }
+
+    /**
+     * Constructs and initializes a new PostClient object that uses the given
+     * HTTP client.
+     *
+     * @param httpClient HTTP client, null means the shared client of
+     * RESTClientFactory
+     */
+    public PostClient(CloseableHttpClient httpClient) {
+        super(httpClient);
+    }
+
     /**
      * Builds a new HTTP POST request with the given URL and request body.
      * Content type of the request is set according to the given headers. If the
@@ -29,17 +49,23 @@ public class PostClient extends AbstractBodyHandler {
      */
     @Override
     protected HttpUriRequest buildtHttpRequest(String url, String requestBody, Map<String, String> headers) {
+        return this.buildHttpRequest(url, super.buildRequestEntity(requestBody, headers));
+    }
+
+    /**
+     * Builds a new HTTP POST request with the given URL and request entity.
+     *
+     * @param url URL where the request is sent
+     * @param entity request body or null
+     * @return new HttpUriRequest object
+     */
+    @Override
+    protected HttpUriRequest buildHttpRequest(String url, HttpEntity entity) {
         logger.debug("Build new HTTP POST request.");
-        HttpUriRequest request;
-        // Create request entity that's used as request body
-        StringEntity requestEntity = super.buildRequestEntity(requestBody, headers);
-        if (requestEntity != null) {
-            request = RequestBuilder.post().setUri(url).setEntity(requestEntity).build();
-        } else {
+        if (entity == null) {
             logger.debug("No request body found for HTTP POST request.");
-            request = RequestBuilder.post().setUri(url).build();
+            return RequestBuilder.post().setUri(url).build();
         }
-        // Return request
-        return request;
+        return RequestBuilder.post().setUri(url).setEntity(entity).build();
     }
 }
@@ -1,6 +1,7 @@
 package com.pkrete.xrd4j.rest.client;
 
 import com.pkrete.xrd4j.rest.ClientResponse;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -25,4 +26,29 @@ public interface RESTClient {
      * @return response as string
      */
     public ClientResponse send(String url, String requestBody, Map<String, ?> params, Map<String, String> headers);
+
+    /**
+     * Makes a HTTP request to the given URL and passes the response to the
+     * given handler. Implementations that have access to the connection give
+     * the handler a stream that reads the body directly from the connection,
+     * so large bodies don't have to be buffered in memory. This default
+     * implementation buffers the response using the send method.
+     *
+     * @param <T> type of the value produced by the handler
+     * @param url URL where the request is sent
+     * @param requestBody request body
+     * @param params request parameters
+     * @param headers HTTP headers to be added to the request
+     * @param handler handler that processes the response
+     * @return value returned by the handler
+     * @throws IOException if sending the request or reading the response
+     * fails
+     */
+    default <T> T send(String url, String requestBody, Map<String, ?> params, Map<String, String> headers, ResponseBodyHandler<T> handler) throws IOException {
+        ClientResponse response = this.send(url, requestBody, params, headers);
+        if (response == null) {
+            throw new IOException("HTTP request to \"" + url + "\" failed.");
+        }
+        return handler.handle(response);
+    }
 }
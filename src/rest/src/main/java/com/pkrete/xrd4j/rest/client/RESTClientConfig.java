@@ -0,0 +1,269 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents the configuration of the shared HTTP client that's
+ * used by the REST clients: the limits of the connection pool, keep-alive
+ * and idle connection eviction, the proxy and the default policy of the
+ * requests. All the times are in milliseconds.
+ *
+ * The proxy is read from "xrd4jProxy" system property ("host:port") when the
+ * configuration is created, so it's not parsed again for each request.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RESTClientConfig {
+
+    /**
+     * Name of the system property that defines the proxy.
+     */
+    public static final String PROXY_PROPERTY = "xrd4jProxy";
+
+    private static final Logger logger = LoggerFactory.getLogger(RESTClientConfig.class);
+    private int maxConnectionsPerRoute;
+    private int maxConnectionsTotal;
+    private final Map<HttpHost, Integer> routeLimits;
+    private long keepAliveTime;
+    private long idleConnectionTimeout;
+    private int validateAfterInactivity;
+    private HttpHost proxy;
+    private HttpResponseCache responseCache;
+    private RESTClientPolicy defaultPolicy;
+
+    /**
+     * Constructs and initializes a new RESTClientConfig object with default
+     * values: 20 connections per route, 200 connections in total, 30 seconds
+     * keep-alive time when the server doesn't define it, connections that
+     * have been idle for 30 seconds are evicted and connections that have
+     * been idle for 2 seconds are validated before they're reused. The proxy
+     * is read from "xrd4jProxy" system property. Responses are not cached.
+     * The default policy of the clients has no timeouts and no retries.
+     */
+    public RESTClientConfig() {
+        this.maxConnectionsPerRoute = 20;
+        this.maxConnectionsTotal = 200;
+        this.routeLimits = new HashMap<>();
+        this.keepAliveTime = 30000;
+        this.idleConnectionTimeout = 30000;
+        this.validateAfterInactivity = 2000;
+        this.proxy = parseProxy(System.getProperty(PROXY_PROPERTY));
+        this.defaultPolicy = new RESTClientPolicy();
+    }
+
+    /**
+     * Returns the default maximum number of persistent connections per
+     * route.
+     *
+     * @return maximum number of connections per route
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the default maximum number of persistent connections per route.
+     *
+     * @param maxConnectionsPerRoute new value
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of persistent connections to the host of the
+     * given URL. This overrides the default limit for that host.
+     *
+     * @param url URL of the backend, only scheme, host and port are used
+     * @param maxConnections maximum number of connections
+     */
+    public void setMaxConnectionsPerRoute(String url, int maxConnections) {
+        this.routeLimits.put(toHost(url), maxConnections);
+    }
+
+    /**
+     * Returns the route specific connection limits.
+     *
+     * @return unmodifiable map of hosts and limits
+     */
+    public Map<HttpHost, Integer> getRouteLimits() {
+        return Collections.unmodifiableMap(this.routeLimits);
+    }
+
+    /**
+     * Returns the maximum number of persistent connections in total.
+     *
+     * @return maximum number of connections
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Sets the maximum number of persistent connections in total.
+     *
+     * @param maxConnectionsTotal new value
+     */
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    /**
+     * Returns the time a connection is kept alive if the server doesn't
+     * define it in Keep-Alive header.
+     *
+     * @return keep-alive time in milliseconds
+     */
+    public long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    /**
+     * Sets the time a connection is kept alive if the server doesn't define
+     * it in Keep-Alive header. Zero or less means that the connection is kept
+     * alive indefinitely.
+     *
+     * @param keepAliveTime new value in milliseconds
+     */
+    public void setKeepAliveTime(long keepAliveTime) {
+        this.keepAliveTime = keepAliveTime;
+    }
+
+    /**
+     * Returns the time after which idle connections are closed.
+     *
+     * @return idle connection timeout in milliseconds
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Sets the time after which idle connections are closed by a background
+     * thread. Zero disables the eviction of idle and expired connections.
+     *
+     * @param idleConnectionTimeout new value in milliseconds
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    /**
+     * Returns the time of inactivity after which a pooled connection is
+     * validated before it's reused.
+     *
+     * @return time in milliseconds
+     */
+    public int getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /**
+     * Sets the time of inactivity after which a pooled connection is
+     * validated before it's reused.
+     *
+     * @param validateAfterInactivity new value in milliseconds
+     */
+    public void setValidateAfterInactivity(int validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    /**
+     * Returns the proxy or null, if proxy is not used.
+     *
+     * @return proxy or null
+     */
+    public HttpHost getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Sets the proxy. Null means that proxy is not used.
+     *
+     * @param proxy new value
+     */
+    public void setProxy(HttpHost proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Returns the cache of the responses or null, if responses are not
+     * cached.
+     *
+     * @return response cache or null
+     */
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sets the cache of the responses. Null means that responses are not
+     * cached. The cache is used by the synchronous clients only.
+     *
+     * @param responseCache new value
+     */
+    public void setResponseCache(HttpResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Returns the policy that's applied to the requests of the clients that
+     * don't have a policy of their own.
+     *
+     * @return default policy
+     */
+    public RESTClientPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    /**
+     * Sets the policy that's applied to the requests of the clients that
+     * don't have a policy of their own. Null means the policy without
+     * timeouts and retries.
+     *
+     * @param defaultPolicy new value
+     */
+    public void setDefaultPolicy(RESTClientPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy != null ? defaultPolicy : new RESTClientPolicy();
+    }
+
+    /**
+     * Parses the given "host:port" string to a HttpHost object.
+     *
+     * @param value proxy definition or null
+     * @return HttpHost object or null
+     */
+    static HttpHost parseProxy(String value) {
+        if (value == null || value.isEmpty()) {
+            logger.info("Not using proxy");
+            return null;
+        }
+        String[] parts = value.split(":");
+        HttpHost host = new HttpHost(parts[0], Integer.parseInt(parts[1]));
+        logger.info("proxy hostname : {}", host.getHostName());
+        logger.info("proxy port : {}", host.getPort());
+        return host;
+    }
+
+    /**
+     * Returns the target host of the given URL. If the URL doesn't contain
+     * a port, the default port of the scheme is used.
+     *
+     * @param url URL
+     * @return target host
+     */
+    static HttpHost toHost(String url) {
+        URI uri = URI.create(url);
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return new HttpHost(uri.getHost(), port, uri.getScheme());
+    }
+}
@@ -1,5 +1,11 @@
 package com.pkrete.xrd4j.rest.client;
 
+import java.io.Closeable;
+import java.io.IOException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,11 +13,27 @@ import org.slf4j.LoggerFactory;
  * This is a factory class that's responsible for creating REST client objects
  * according to the given parameters.
  *
+ * All the REST clients share one HTTP client that keeps a pool of persistent
+ * connections, so connections to the same backend are reused between
+ * requests. The shared client is created when it's needed for the first time
+ * using the current RESTClientConfig. Asynchronous clients share a
+ * non-blocking HTTP client with one I/O reactor in the same way.
+ *
+ * Timeouts, retries and concurrency limits are defined by RESTClientPolicy.
+ * The default policy is taken from the configuration and a client specific
+ * policy can be given when the client is created.
+ *
  * @author Petteri Kivimäki
  */
 public class RESTClientFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(RESTClientFactory.class);
+    private static final Object LOCK = new Object();
+    private static final long RETIRE_POLL_INTERVAL = 100;
+    private static final long RETIRE_TIMEOUT = 60000;
+    private static RESTClientConfig config;
+    private static volatile PooledHttpClient shared;
+    private static volatile PooledHttpAsyncClient sharedAsync;
 
     /**
      * Constructs and initializes a new RESTClientFactory object. Should never
@@ -49,4 +71,207 @@ public class RESTClientFactory {
         logger.warn("Unable to create a new REST client. Invalid HTTP verb : \"{}\". Null is returned.", httpVerb);
         return null;
     }
+
+    /**
+     * Creates a new RESTClient object matching the given HTTP verb that
+     * applies the given policy to its requests. Clients that share the same
+     * policy share also its retry budget and concurrency limits. If no
+     * matching RESTClient is found, null is returned.
+     *
+     * @param httpVerb HTTP verb (GET, POST, PUT, DELETE)
+     * @param policy policy of the client, null means the default policy of
+     * the configuration
+     * @return RESTClient object matching the given HTTP verb or null
+     */
+    public static RESTClient createRESTClient(String httpVerb, RESTClientPolicy policy) {
+        RESTClient client = createRESTClient(httpVerb);
+        if (client instanceof AbstractClient) {
+            ((AbstractClient) client).setPolicy(policy);
+        }
+        return client;
+    }
+
+    /**
+     * Creates a new AsyncRESTClient object matching the given HTTP verb. If no
+     * matching client is found, null is returned.
+     *
+     * @param httpVerb HTTP verb (GET, POST, PUT, DELETE)
+     * @return AsyncRESTClient object matching the given HTTP verb or null
+     */
+    public static AsyncRESTClient createAsyncRESTClient(String httpVerb) {
+        RESTClient client = createRESTClient(httpVerb);
+        return client instanceof AsyncRESTClient ? (AsyncRESTClient) client : null;
+    }
+
+    /**
+     * Creates a new AsyncRESTClient object matching the given HTTP verb that
+     * applies the given policy to its requests. Asynchronous requests are
+     * not retried. If no matching client is found, null is returned.
+     *
+     * @param httpVerb HTTP verb (GET, POST, PUT, DELETE)
+     * @param policy policy of the client, null means the default policy of
+     * the configuration
+     * @return AsyncRESTClient object matching the given HTTP verb or null
+     */
+    public static AsyncRESTClient createAsyncRESTClient(String httpVerb, RESTClientPolicy policy) {
+        RESTClient client = createRESTClient(httpVerb, policy);
+        return client instanceof AsyncRESTClient ? (AsyncRESTClient) client : null;
+    }
+
+    /**
+     * Returns the configuration of the shared HTTP client.
+     *
+     * @return configuration of the shared HTTP client
+     */
+    public static RESTClientConfig getConfig() {
+        synchronized (LOCK) {
+            if (config == null) {
+                config = new RESTClientConfig();
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Sets the configuration of the shared HTTP client. If the shared clients
+     * have already been created, they're replaced and new clients are created
+     * with the new configuration when they're needed next time. The old
+     * clients are closed in the background when the requests that are in
+     * progress have released their connections, or at the latest after one
+     * minute.
+     *
+     * @param newConfig new configuration
+     */
+    public static void setConfig(RESTClientConfig newConfig) {
+        PooledHttpClient oldClient;
+        PooledHttpAsyncClient oldAsyncClient;
+        synchronized (LOCK) {
+            config = newConfig;
+            oldClient = shared;
+            oldAsyncClient = sharedAsync;
+            shared = null;
+            sharedAsync = null;
+        }
+        if (oldClient != null || oldAsyncClient != null) {
+            Thread retire = new Thread(() -> retire(oldClient, oldAsyncClient), "xrd4j-rest-client-retire");
+            retire.setDaemon(true);
+            retire.start();
+        }
+    }
+
+    /**
+     * Returns the shared HTTP client. The client is created if it doesn't
+     * exist yet.
+     *
+     * @return shared HTTP client
+     */
+    public static CloseableHttpClient getHttpClient() {
+        return getShared().getHttpClient();
+    }
+
+    /**
+     * Returns the shared non-blocking HTTP client. The client is created and
+     * started if it doesn't exist yet.
+     *
+     * @return shared non-blocking HTTP client
+     * @throws IllegalStateException if creating the I/O reactor fails
+     */
+    public static CloseableHttpAsyncClient getHttpAsyncClient() {
+        PooledHttpAsyncClient current = sharedAsync;
+        if (current == null) {
+            synchronized (LOCK) {
+                current = sharedAsync;
+                if (current == null) {
+                    try {
+                        current = new PooledHttpAsyncClient(getConfig());
+                    } catch (IOReactorException ex) {
+                        logger.error(ex.getMessage(), ex);
+                        throw new IllegalStateException("Unable to create I/O reactor : " + ex.getMessage(), ex);
+                    }
+                    sharedAsync = current;
+                }
+            }
+        }
+        return current.getHttpClient();
+    }
+
+    /**
+     * Returns the statistics of the connection pool of the shared HTTP
+     * client.
+     *
+     * @return statistics of all the routes
+     */
+    public static PoolStats getPoolStats() {
+        return getShared().getTotalStats();
+    }
+
+    /**
+     * Closes the shared HTTP clients and all their connections. New clients
+     * are created if the REST clients are used after this.
+     */
+    public static void shutdown() {
+        synchronized (LOCK) {
+            closeShared();
+        }
+    }
+
+    private static PooledHttpClient getShared() {
+        PooledHttpClient current = shared;
+        if (current == null) {
+            synchronized (LOCK) {
+                current = shared;
+                if (current == null) {
+                    current = new PooledHttpClient(getConfig());
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Waits until the connection pools of the given clients have no leased
+     * connections and no pending requests, and closes the clients.
+     *
+     * @param client replaced HTTP client or null
+     * @param asyncClient replaced non-blocking HTTP client or null
+     */
+    private static void retire(PooledHttpClient client, PooledHttpAsyncClient asyncClient) {
+        long deadline = System.currentTimeMillis() + RETIRE_TIMEOUT;
+        try {
+            do {
+                // Requests that got the client just before it was replaced
+                // haven't necessarily leased a connection yet
+                Thread.sleep(RETIRE_POLL_INTERVAL);
+            } while ((isBusy(client == null ? null : client.getTotalStats())
+                    || isBusy(asyncClient == null ? null : asyncClient.getTotalStats()))
+                    && System.currentTimeMillis() < deadline);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("Closing the replaced shared HTTP clients.");
+        closeQuietly(client);
+        closeQuietly(asyncClient);
+    }
+
+    private static boolean isBusy(PoolStats stats) {
+        return stats != null && (stats.getLeased() > 0 || stats.getPending() > 0);
+    }
+
+    private static void closeShared() {
+        closeQuietly(shared);
+        shared = null;
+        closeQuietly(sharedAsync);
+        sharedAsync = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+                logger.warn("Closing the shared HTTP client failed : {}", ex.getMessage());
+            }
+        }
+    }
 }
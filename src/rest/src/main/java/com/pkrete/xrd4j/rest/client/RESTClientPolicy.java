@@ -0,0 +1,466 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents the policy that's applied to the requests of a REST
+ * client: connect, socket and total request timeouts, retries of failed
+ * requests and the maximum number of concurrent requests per route. All the
+ * times are in milliseconds.
+ *
+ * Requests with an idempotent method (GET, HEAD, OPTIONS, PUT, DELETE) are
+ * retried if sending the request or reading the response fails with an
+ * I/O error. Before each retry the client waits for a random time between
+ * zero and the exponential backoff, which is doubled after each retry and
+ * capped by the maximum backoff. Requests whose body can be written only
+ * once and requests that have exceeded the total timeout are not retried.
+ *
+ * Retries are limited by a retry budget that's shared by all the clients
+ * using the same policy. Each request adds the retry ratio to the budget and
+ * each retry takes one from it, so when a backend is down the number of
+ * retries stays at a fixed ratio of the requests instead of multiplying the
+ * load. The budget is full when the policy is created.
+ *
+ * The concurrency limit is applied per target host and requests exceeding
+ * it fail immediately, so threads don't pile up waiting for a slow backend.
+ *
+ * The default policy has no timeouts, no retries and no concurrency limit.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RESTClientPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RESTClientPolicy.class);
+    private static final long TOKEN = 1000;
+    private int connectTimeout;
+    private int socketTimeout;
+    private int connectionRequestTimeout;
+    private long totalTimeout;
+    private int maxRetries;
+    private long initialBackoff;
+    private long maxBackoff;
+    private double retryBudgetRatio;
+    private int retryBudgetCapacity;
+    private int maxConcurrentRequestsPerRoute;
+    private volatile RequestConfig requestConfig;
+    private final AtomicLong retryBudget;
+    private final Map<HttpHost, Semaphore> routePermits;
+    private volatile boolean used;
+    private final LongAdder retries;
+    private final LongAdder rejections;
+
+    /**
+     * Constructs and initializes a new RESTClientPolicy object with default
+     * values: no timeouts, no retries, 100 milliseconds initial backoff,
+     * 2 seconds maximum backoff, retry budget ratio 0.1 with capacity of 10
+     * retries and no concurrency limit.
+     */
+    public RESTClientPolicy() {
+        this.connectTimeout = -1;
+        this.socketTimeout = -1;
+        this.connectionRequestTimeout = -1;
+        this.initialBackoff = 100;
+        this.maxBackoff = 2000;
+        this.retryBudgetRatio = 0.1;
+        this.retryBudgetCapacity = 10;
+        this.retryBudget = new AtomicLong(this.retryBudgetCapacity * TOKEN);
+        this.routePermits = new ConcurrentHashMap<>();
+        this.retries = new LongAdder();
+        this.rejections = new LongAdder();
+    }
+
+    /**
+     * Returns the timeout for establishing a connection.
+     *
+     * @return connect timeout in milliseconds, zero or less means no timeout
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the timeout for establishing a connection.
+     *
+     * @param connectTimeout new value in milliseconds, zero or less means no
+     * timeout
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.requestConfig = null;
+    }
+
+    /**
+     * Returns the maximum time of inactivity between two data packets when
+     * the response is read.
+     *
+     * @return socket timeout in milliseconds, zero or less means no timeout
+     */
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * Sets the maximum time of inactivity between two data packets when the
+     * response is read.
+     *
+     * @param socketTimeout new value in milliseconds, zero or less means no
+     * timeout
+     */
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        this.requestConfig = null;
+    }
+
+    /**
+     * Returns the timeout for getting a connection from the connection pool.
+     *
+     * @return connection request timeout in milliseconds, zero or less means
+     * no timeout
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * Sets the timeout for getting a connection from the connection pool.
+     *
+     * @param connectionRequestTimeout new value in milliseconds, zero or less
+     * means no timeout
+     */
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.requestConfig = null;
+    }
+
+    /**
+     * Returns the maximum duration of a request including all the retries
+     * and reading the response.
+     *
+     * @return total timeout in milliseconds, zero or less means no timeout
+     */
+    public long getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    /**
+     * Sets the maximum duration of a request including all the retries and
+     * reading the response. The request is aborted when the time is up.
+     *
+     * @param totalTimeout new value in milliseconds, zero or less means no
+     * timeout
+     */
+    public void setTotalTimeout(long totalTimeout) {
+        this.totalTimeout = totalTimeout;
+    }
+
+    /**
+     * Returns the maximum number of retries of a request.
+     *
+     * @return maximum number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the maximum number of retries of a request. Only requests with an
+     * idempotent method are retried.
+     *
+     * @param maxRetries new value, zero disables retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns the backoff before the first retry.
+     *
+     * @return initial backoff in milliseconds
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Sets the backoff before the first retry. The backoff is doubled after
+     * each retry and the client waits for a random time between zero and
+     * the backoff.
+     *
+     * @param initialBackoff new value in milliseconds
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Returns the maximum backoff between two retries.
+     *
+     * @return maximum backoff in milliseconds
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Sets the maximum backoff between two retries.
+     *
+     * @param maxBackoff new value in milliseconds
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Returns the share of a retry that each request adds to the retry
+     * budget.
+     *
+     * @return retry budget ratio
+     */
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    /**
+     * Sets the share of a retry that each request adds to the retry budget,
+     * e.g. 0.1 allows one retry per ten requests.
+     *
+     * @param retryBudgetRatio new value
+     */
+    public void setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+    }
+
+    /**
+     * Returns the maximum number of retries that the retry budget can hold.
+     *
+     * @return capacity of the retry budget
+     */
+    public int getRetryBudgetCapacity() {
+        return retryBudgetCapacity;
+    }
+
+    /**
+     * Sets the maximum number of retries that the retry budget can hold.
+     * The budget is filled to the new capacity.
+     *
+     * @param retryBudgetCapacity new value
+     */
+    public void setRetryBudgetCapacity(int retryBudgetCapacity) {
+        this.retryBudgetCapacity = retryBudgetCapacity;
+        this.retryBudget.set(retryBudgetCapacity * TOKEN);
+    }
+
+    /**
+     * Returns the maximum number of concurrent requests per target host.
+     *
+     * @return maximum number of concurrent requests, zero or less means no
+     * limit
+     */
+    public int getMaxConcurrentRequestsPerRoute() {
+        return maxConcurrentRequestsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests per target host.
+     * Requests exceeding the limit fail immediately. The limit can't be
+     * changed after the policy has been used, because the permits of the
+     * requests in progress would be lost.
+     *
+     * @param maxConcurrentRequestsPerRoute new value, zero or less means no
+     * limit
+     * @throws IllegalStateException if the policy has already been used
+     */
+    public void setMaxConcurrentRequestsPerRoute(int maxConcurrentRequestsPerRoute) {
+        if (this.used) {
+            throw new IllegalStateException("The concurrency limit can't be changed after the policy has been used.");
+        }
+        this.maxConcurrentRequestsPerRoute = maxConcurrentRequestsPerRoute;
+    }
+
+    /**
+     * Returns the number of retries made using this policy.
+     *
+     * @return number of retries
+     */
+    public long getRetries() {
+        return this.retries.sum();
+    }
+
+    /**
+     * Returns the number of requests that were rejected because of the
+     * concurrency limit.
+     *
+     * @return number of rejected requests
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    /**
+     * Returns the configuration of the timeouts of a single attempt.
+     *
+     * @return request configuration
+     */
+    RequestConfig getRequestConfig() {
+        RequestConfig current = this.requestConfig;
+        if (current == null) {
+            current = RequestConfig.custom()
+                    .setConnectTimeout(this.connectTimeout)
+                    .setSocketTimeout(this.socketTimeout)
+                    .setConnectionRequestTimeout(this.connectionRequestTimeout)
+                    .build();
+            this.requestConfig = current;
+        }
+        return current;
+    }
+
+    /**
+     * Reserves a permit for a request to the given host. The permit must be
+     * released when the request is completed.
+     *
+     * @param host target host
+     * @return semaphore that must be released or null, if there's no limit
+     * @throws IOException if the limit of the host has been reached
+     */
+    Semaphore acquire(HttpHost host) throws IOException {
+        if (!this.used) {
+            this.used = true;
+        }
+        int limit = this.maxConcurrentRequestsPerRoute;
+        if (limit <= 0 || host == null) {
+            return null;
+        }
+        Semaphore permits = this.routePermits.computeIfAbsent(host, key -> new Semaphore(limit));
+        if (!permits.tryAcquire()) {
+            this.rejections.increment();
+            throw new IOException("Maximum number of concurrent requests to \"" + host.toURI() + "\" reached.");
+        }
+        return permits;
+    }
+
+    /**
+     * Adds the retry ratio to the retry budget. This is called once for each
+     * request.
+     */
+    void deposit() {
+        long amount = (long) (this.retryBudgetRatio * TOKEN);
+        long max = this.retryBudgetCapacity * TOKEN;
+        this.retryBudget.getAndUpdate(balance -> Math.min(max, balance + amount));
+    }
+
+    /**
+     * Checks if the given request can be retried after the given failure and
+     * takes one retry from the budget, if it can.
+     *
+     * @param request request that failed
+     * @param ex cause of the failure
+     * @param attempt number of retries made so far
+     * @return true if the request can be retried, otherwise false
+     */
+    boolean tryRetry(HttpUriRequest request, IOException ex, int attempt) {
+        if (attempt >= this.maxRetries || request.isAborted() || !isIdempotent(request.getMethod())
+                || !isRepeatable(request) || ex instanceof UnknownHostException || ex instanceof SSLException) {
+            return false;
+        }
+        long balance;
+        do {
+            balance = this.retryBudget.get();
+            if (balance < TOKEN) {
+                logger.debug("Retry budget exhausted. HTTP {} request is not retried.", request.getMethod());
+                return false;
+            }
+        } while (!this.retryBudget.compareAndSet(balance, balance - TOKEN));
+        this.retries.increment();
+        return true;
+    }
+
+    /**
+     * Returns a random backoff between zero and the exponential backoff of
+     * the given retry.
+     *
+     * @param attempt number of retries made so far
+     * @return backoff in milliseconds
+     */
+    long getBackoff(int attempt) {
+        long backoff = this.initialBackoff << Math.min(attempt, 30);
+        if (backoff <= 0 || backoff > this.maxBackoff) {
+            backoff = this.maxBackoff;
+        }
+        return backoff <= 0 ? 0 : ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     * Runs the given task when the total timeout is up.
+     *
+     * @param task task that aborts the request
+     * @return future that's cancelled when the request is completed or null,
+     * if there's no total timeout
+     */
+    ScheduledFuture<?> scheduleTimeout(Runnable task) {
+        if (this.totalTimeout <= 0) {
+            return null;
+        }
+        return TimerHolder.TIMER.schedule(task, this.totalTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isIdempotent(String method) {
+        switch (method.toUpperCase(Locale.ROOT)) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRepeatable(HttpUriRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    /**
+     * Holder of the timer thread that aborts requests, it's created when
+     * it's needed for the first time.
+     */
+    private static class TimerHolder {
+
+        private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+        private static ScheduledThreadPoolExecutor createTimer() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "xrd4j-rest-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Most of the timeouts are cancelled, so they're removed from
+            // the queue right away
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+}
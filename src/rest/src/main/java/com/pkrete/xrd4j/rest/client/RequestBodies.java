@@ -0,0 +1,215 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class offers implementations of RequestBody for the most common
+ * sources of a request body. Bodies that are read from a stream or produced
+ * by a callback are copied to the connection through a fixed size buffer and
+ * sent using chunked transfer encoding, so the whole body is never held in
+ * memory.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class RequestBodies {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Constructs and initializes a new RequestBodies object. Should never be
+     * used.
+     */
+    private RequestBodies() {
+    }
+
+    /**
+     * Returns a body that contains the given string encoded using UTF-8.
+     *
+     * @param body request body
+     * @return body that can be written more than once
+     */
+    public static RequestBody ofString(String body) {
+        return ofString(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a body that contains the given string encoded using the given
+     * charset.
+     *
+     * @param body request body
+     * @param charset charset that's used for encoding the string
+     * @return body that can be written more than once
+     */
+    public static RequestBody ofString(String body, Charset charset) {
+        return ofByteArray(body.getBytes(charset));
+    }
+
+    /**
+     * Returns a body that contains the given bytes. The array is not copied,
+     * so it must not be modified until the request has been sent.
+     *
+     * @param body request body
+     * @return body that can be written more than once
+     */
+    public static RequestBody ofByteArray(byte[] body) {
+        if (body == null) {
+            throw new IllegalArgumentException("Body can't be null.");
+        }
+        return new RequestBody() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(body);
+            }
+
+            @Override
+            public long getContentLength() {
+                return body.length;
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a body that's read from the given stream while it's written to
+     * the connection. The stream is closed when the body has been written.
+     * The body can be written only once.
+     *
+     * @param in stream where the body is read
+     * @return body that's sent in chunks
+     */
+    public static RequestBody ofInputStream(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("Stream can't be null.");
+        }
+        return out -> {
+            try (InputStream source = in) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a body that's produced by the given callback. The callback
+     * gets a writer that encodes the characters using UTF-8 and writes them
+     * to the connection, so e.g. the output of a streaming converter can be
+     * sent while it's produced. The body can be written only once.
+     *
+     * @param callback callback that writes the body
+     * @return body that's sent in chunks
+     */
+    public static RequestBody ofWriter(WriterCallback callback) {
+        return ofWriter(callback, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a body that's produced by the given callback. The callback
+     * gets a writer that encodes the characters using the given charset and
+     * writes them to the connection. The body can be written only once.
+     *
+     * @param callback callback that writes the body
+     * @param charset charset that's used for encoding the characters
+     * @return body that's sent in chunks
+     */
+    public static RequestBody ofWriter(WriterCallback callback, Charset charset) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback can't be null.");
+        }
+        return out -> {
+            // The connection must stay open, so the writer is flushed but
+            // not closed
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new NonClosingOutputStream(out), charset), BUFFER_SIZE);
+            callback.write(writer);
+            writer.flush();
+        };
+    }
+
+    /**
+     * Returns a body that compresses the given body using gzip while it's
+     * written to the connection. The request is sent with "Content-Encoding:
+     * gzip" header using chunked transfer encoding, so the backend must
+     * support compressed requests.
+     *
+     * @param body body to be compressed
+     * @return compressed body
+     */
+    public static RequestBody gzip(RequestBody body) {
+        if (body == null) {
+            throw new IllegalArgumentException("Body can't be null.");
+        }
+        return new RequestBody() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(out), BUFFER_SIZE);
+                body.writeTo(gzip);
+                // Writes the trailer without closing the connection
+                gzip.finish();
+                gzip.flush();
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return body.isRepeatable();
+            }
+
+            @Override
+            public String getContentEncoding() {
+                return "gzip";
+            }
+        };
+    }
+
+    /**
+     * This interface defines a callback that writes a request body to the
+     * given writer.
+     */
+    @FunctionalInterface
+    public interface WriterCallback {
+
+        /**
+         * Writes the body to the given writer. The writer must not be
+         * closed.
+         *
+         * @param writer writer that's connected to the backend
+         * @throws IOException if writing the body fails
+         */
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Output stream that passes everything to the underlying stream except
+     * close, so that wrappers can be closed without closing the connection.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+}
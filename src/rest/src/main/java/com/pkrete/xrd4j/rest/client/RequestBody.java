@@ -0,0 +1,59 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This interface defines the body of a HTTP request that's written directly
+ * to the connection when the request is sent. A body whose length is not
+ * known is sent using chunked transfer encoding, so it doesn't have to be
+ * held in memory before it's sent.
+ *
+ * A lambda that writes to the given stream is a valid body. Ready made
+ * bodies are available in RequestBodies class.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface RequestBody {
+
+    /**
+     * Writes the body to the given stream. The stream must not be closed.
+     *
+     * @param out stream that's connected to the backend
+     * @throws IOException if writing the body fails
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Returns the length of the body in bytes or -1 if the length is not
+     * known. Bodies with an unknown length are sent in chunks.
+     *
+     * @return length of the body in bytes or -1
+     */
+    default long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Returns true if the body can be written more than once, e.g. when the
+     * request is redirected or retried. By default a body can be written
+     * only once.
+     *
+     * @return true if the body can be written more than once, otherwise
+     * false
+     */
+    default boolean isRepeatable() {
+        return false;
+    }
+
+    /**
+     * Returns the value of the Content-Encoding header of the body or null,
+     * if the body is not encoded.
+     *
+     * @return content encoding or null
+     */
+    default String getContentEncoding() {
+        return null;
+    }
+}
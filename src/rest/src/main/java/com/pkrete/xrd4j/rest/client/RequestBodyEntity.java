@@ -0,0 +1,57 @@
+package com.pkrete.xrd4j.rest.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * This class adapts a RequestBody to an HttpEntity. The body is written
+ * directly to the connection and it's sent using chunked transfer encoding,
+ * if its length is not known.
+ *
+ * @author Petteri Kivimäki
+ */
+class RequestBodyEntity extends AbstractHttpEntity {
+
+    private final RequestBody body;
+
+    /**
+     * Constructs and initializes a new RequestBodyEntity object.
+     *
+     * @param body request body
+     * @param contentType value of the Content-Type header
+     */
+    RequestBodyEntity(RequestBody body, String contentType) {
+        this.body = body;
+        this.setContentType(contentType);
+        this.setContentEncoding(body.getContentEncoding());
+        this.setChunked(body.getContentLength() < 0);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return this.body.isRepeatable();
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.body.getContentLength();
+    }
+
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("Request body can only be written to a stream.");
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        this.body.writeTo(out);
+        out.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return !this.body.isRepeatable();
+    }
+}
@@ -0,0 +1,30 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import java.io.IOException;
+
+/**
+ * This interface defines a handler that processes the body of a HTTP
+ * response while it's read from the connection. The response given to the
+ * handler holds the status line, the content type and a stream that's
+ * connected to the backend. The stream is valid only until the handler
+ * returns, after which the rest of the body is discarded and the connection
+ * is returned to the pool.
+ *
+ * Ready made handlers are available in BodyHandlers class.
+ *
+ * @param <T> type of the value produced by the handler
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface ResponseBodyHandler<T> {
+
+    /**
+     * Processes the given response and returns the result.
+     *
+     * @param response response whose body is read from the connection
+     * @return result of the processing
+     * @throws IOException if reading the body fails
+     */
+    T handle(ClientResponse response) throws IOException;
+}
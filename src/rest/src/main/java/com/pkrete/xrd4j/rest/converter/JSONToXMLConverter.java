@@ -28,7 +28,7 @@ public class JSONToXMLConverter implements Converter {
     public String convert(String data) {
         String asXML;
         try {
-            logger.debug("CONVERTING " + data);
+            logger.debug("CONVERTING {}", data);
             if (data.startsWith("{")) {
                 JSONObject asJson = new JSONObject(data);
 
@@ -45,7 +45,7 @@ public class JSONToXMLConverter implements Converter {
             // in XML element names. Replace '@' characters with '__at__' in
             // element names.
             asXML = asXML.replaceAll("<(/{0,1})@", "<$1__at__");
-            logger.debug("RETURN XML " + asXML);
+            logger.debug("RETURN XML {}", asXML);
             return asXML;
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
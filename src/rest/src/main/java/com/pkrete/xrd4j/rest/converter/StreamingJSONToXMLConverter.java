@@ -0,0 +1,540 @@
+package com.pkrete.xrd4j.rest.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class converts JSON to XML one token at a time. JSON tokens are read
+ * using a streaming parser and the matching XML is written to the output
+ * right away, so no tree of the input or String of the output is ever built.
+ *
+ * The output follows the rules of JSONToXMLConverter: '@' at the beginning of
+ * a key is converted to '__at__', items of an array are written as repeated
+ * elements named after the key, nested arrays and items of a root array are
+ * written as "array" elements, the value of a "content" key is written as
+ * text and "array" is not allowed as a key of the root object. Unlike
+ * JSONToXMLConverter, the elements are written in the order of the input and
+ * numbers are written as they appear in the input.
+ *
+ * The XML can be written as text, as events of an XMLStreamWriter or as
+ * elements added directly under a SOAPElement, so JSON returned by a REST
+ * backend can be placed in a SOAP response without an intermediate XML
+ * string or document.
+ *
+ * Instances of this class are thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingJSONToXMLConverter implements Converter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingJSONToXMLConverter.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    private static final String ARRAY = "array";
+    private static final String CONTENT = "content";
+    private static final String AT_PREFIX = "__at__";
+    private static final String INVALID_KEY = "Invalid key \"array\"";
+
+    /**
+     * Converts the given JSON string to XML string.
+     *
+     * @param data JSON string
+     * @return XML string or an empty string if the conversion fails
+     */
+    @Override
+    public String convert(String data) {
+        StringWriter out = new StringWriter(data.length() + (data.length() >> 1));
+        try {
+            this.convert(new StringReader(data), out);
+            return out.toString();
+        } catch (InvalidKeyException ex) {
+            logger.error("Data violation: {}", INVALID_KEY);
+            return "<error>" + INVALID_KEY + "</error>";
+        } catch (IOException ex) {
+            logger.error(ex.getMessage(), ex);
+        }
+        logger.warn("Converting JSON to XML failed! An empty string is returned.");
+        return "";
+    }
+
+    /**
+     * Reads JSON from the given reader and writes XML to the given writer.
+     * Neither of them is closed. If the input is invalid, the output may
+     * already contain the XML of the input that preceded the error.
+     *
+     * @param in reader where JSON is read from
+     * @param out writer where XML is written to
+     * @throws IOException if reading or writing fails or if the input is not
+     * valid JSON
+     */
+    public void convert(Reader in, Writer out) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new WriterSink(out));
+        }
+    }
+
+    /**
+     * Reads JSON from the given stream and writes XML to the given writer.
+     * The encoding of the input is detected automatically. Neither the
+     * stream nor the writer is closed.
+     *
+     * @param in stream where JSON is read from
+     * @param out writer where XML is written to
+     * @throws IOException if reading or writing fails or if the input is not
+     * valid JSON
+     */
+    public void convert(InputStream in, Writer out) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new WriterSink(out));
+        }
+    }
+
+    /**
+     * Reads JSON from the given reader and writes XML events to the given
+     * XMLStreamWriter. Only elements and characters are written, so the
+     * caller decides where the converted elements are placed in the
+     * document.
+     *
+     * @param in reader where JSON is read from
+     * @param out XMLStreamWriter where XML events are written to
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws XMLStreamException if writing fails
+     */
+    public void convert(Reader in, XMLStreamWriter out) throws IOException, XMLStreamException {
+        this.convert(in, out, null, null);
+    }
+
+    /**
+     * Reads JSON from the given reader and writes XML events to the given
+     * XMLStreamWriter. The elements are written in the given namespace using
+     * the given prefix and the namespace is declared, if it's not in scope
+     * yet. If prefix is null or empty, the namespace is the default
+     * namespace of the elements.
+     *
+     * @param in reader where JSON is read from
+     * @param out XMLStreamWriter where XML events are written to
+     * @param namespace namespace URI of the elements or null
+     * @param prefix prefix of the elements or null
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws XMLStreamException if writing fails
+     */
+    public void convert(Reader in, XMLStreamWriter out, String namespace, String prefix) throws IOException, XMLStreamException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new StreamWriterSink(out, namespace, prefix));
+        }
+    }
+
+    /**
+     * Reads JSON from the given stream and writes XML events to the given
+     * XMLStreamWriter. The encoding of the input is detected automatically.
+     *
+     * @param in stream where JSON is read from
+     * @param out XMLStreamWriter where XML events are written to
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws XMLStreamException if writing fails
+     */
+    public void convert(InputStream in, XMLStreamWriter out) throws IOException, XMLStreamException {
+        this.convert(in, out, null, null);
+    }
+
+    /**
+     * Reads JSON from the given stream and writes XML events to the given
+     * XMLStreamWriter. The elements are written in the given namespace using
+     * the given prefix and the namespace is declared, if it's not in scope
+     * yet. The encoding of the input is detected automatically.
+     *
+     * @param in stream where JSON is read from
+     * @param out XMLStreamWriter where XML events are written to
+     * @param namespace namespace URI of the elements or null
+     * @param prefix prefix of the elements or null
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws XMLStreamException if writing fails
+     */
+    public void convert(InputStream in, XMLStreamWriter out, String namespace, String prefix) throws IOException, XMLStreamException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new StreamWriterSink(out, namespace, prefix));
+        }
+    }
+
+    /**
+     * Reads JSON from the given reader and adds the converted elements as
+     * children of the given SOAPElement, e.g. the response element of a
+     * ServiceResponse. If updateNamespaceAndPrefix is true, the namespace URI
+     * and prefix of the parent are applied to all the added elements like
+     * SOAPHelper.moveChildren does. No intermediate XML string, document or
+     * SOAP message is created.
+     *
+     * @param in reader where JSON is read from
+     * @param parent element where the converted elements are added
+     * @param updateNamespaceAndPrefix should the namespace URI and prefix of
+     * the parent be applied to the added elements
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws SOAPException if adding the elements fails
+     */
+    public void convert(Reader in, SOAPElement parent, boolean updateNamespaceAndPrefix) throws IOException, SOAPException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new SOAPElementSink(parent, updateNamespaceAndPrefix));
+        }
+    }
+
+    /**
+     * Reads JSON from the given stream and adds the converted elements as
+     * children of the given SOAPElement. The encoding of the input is
+     * detected automatically.
+     *
+     * @param in stream where JSON is read from
+     * @param parent element where the converted elements are added
+     * @param updateNamespaceAndPrefix should the namespace URI and prefix of
+     * the parent be applied to the added elements
+     * @throws IOException if reading fails or if the input is not valid JSON
+     * @throws SOAPException if adding the elements fails
+     */
+    public void convert(InputStream in, SOAPElement parent, boolean updateNamespaceAndPrefix) throws IOException, SOAPException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            convert(parser, new SOAPElementSink(parent, updateNamespaceAndPrefix));
+        }
+    }
+
+    private static <E extends Exception> void convert(JsonParser parser, XMLSink<E> sink) throws IOException, E {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            writeFields(parser, sink, true);
+        } else if (token == JsonToken.START_ARRAY) {
+            writeArray(parser, sink, ARRAY);
+        } else {
+            throw new JsonParseException(parser, "JSON object or array expected");
+        }
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the root value");
+        }
+        sink.flush();
+    }
+
+    private static <E extends Exception> void writeFields(JsonParser parser, XMLSink<E> sink, boolean root) throws IOException, E {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            // "array" behaves in a special way, best to disallow it
+            if (root && ARRAY.equals(key)) {
+                throw new InvalidKeyException();
+            }
+            JsonToken token = parser.nextToken();
+            if (CONTENT.equals(key)) {
+                writeContent(parser, sink, token);
+            } else if (token == JsonToken.START_ARRAY) {
+                String name = elementName(key);
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_ARRAY) {
+                        sink.start(name);
+                        writeArray(parser, sink, ARRAY);
+                        sink.end(name);
+                    } else {
+                        writeValue(parser, sink, name, token);
+                    }
+                }
+            } else {
+                writeValue(parser, sink, elementName(key), token);
+            }
+        }
+    }
+
+    private static <E extends Exception> void writeArray(JsonParser parser, XMLSink<E> sink, String name) throws IOException, E {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            writeValue(parser, sink, name, token);
+        }
+    }
+
+    private static <E extends Exception> void writeValue(JsonParser parser, XMLSink<E> sink, String name, JsonToken token) throws IOException, E {
+        if (token == JsonToken.START_OBJECT) {
+            sink.start(name);
+            writeFields(parser, sink, false);
+            sink.end(name);
+        } else if (token == JsonToken.START_ARRAY) {
+            writeArray(parser, sink, name);
+        } else {
+            String text = scalarText(parser, token);
+            if (text.isEmpty()) {
+                sink.empty(name);
+            } else {
+                sink.start(name);
+                sink.text(text);
+                sink.end(name);
+            }
+        }
+    }
+
+    private static <E extends Exception> void writeContent(JsonParser parser, XMLSink<E> sink, JsonToken token) throws IOException, E {
+        if (token != JsonToken.START_ARRAY) {
+            sink.text(valueText(parser, token));
+            return;
+        }
+        // Items of a content array are separated by line breaks
+        boolean first = true;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (!first) {
+                sink.text("\n");
+            }
+            sink.text(valueText(parser, token));
+            first = false;
+        }
+    }
+
+    private static String valueText(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return scalarText(parser, token);
+        }
+        // Objects and arrays inside content are written as JSON text
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return json.toString();
+    }
+
+    private static String scalarText(JsonParser parser, JsonToken token) throws IOException {
+        return token == JsonToken.VALUE_NULL ? "null" : parser.getText();
+    }
+
+    private static String elementName(String key) {
+        // JSON-LD uses '@' characters in keys and they're not allowed
+        // in XML element names
+        return key.startsWith("@") ? AT_PREFIX + key.substring(1) : key;
+    }
+
+    /**
+     * Target of the converted XML.
+     *
+     * @param <E> type of the exception thrown by the target
+     */
+    private interface XMLSink<E extends Exception> {
+
+        void start(String name) throws E;
+
+        void end(String name) throws E;
+
+        void empty(String name) throws E;
+
+        void text(String text) throws E;
+
+        void flush() throws E;
+    }
+
+    /**
+     * Writes XML as text using the same escaping as org.json.XML.
+     */
+    private static class WriterSink implements XMLSink<IOException> {
+
+        private final Writer out;
+
+        WriterSink(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start(String name) throws IOException {
+            this.out.write('<');
+            this.out.write(name);
+            this.out.write('>');
+        }
+
+        @Override
+        public void end(String name) throws IOException {
+            this.out.write("</");
+            this.out.write(name);
+            this.out.write('>');
+        }
+
+        @Override
+        public void empty(String name) throws IOException {
+            this.out.write('<');
+            this.out.write(name);
+            this.out.write("/>");
+        }
+
+        @Override
+        public void text(String text) throws IOException {
+            int start = 0;
+            for (int i = 0; i < text.length(); i++) {
+                String entity;
+                switch (text.charAt(i)) {
+                    case '&':
+                        entity = "&amp;";
+                        break;
+                    case '<':
+                        entity = "&lt;";
+                        break;
+                    case '>':
+                        entity = "&gt;";
+                        break;
+                    case '"':
+                        entity = "&quot;";
+                        break;
+                    case '\'':
+                        entity = "&apos;";
+                        break;
+                    default:
+                        continue;
+                }
+                this.out.write(text, start, i - start);
+                this.out.write(entity);
+                start = i + 1;
+            }
+            this.out.write(text, start, text.length() - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Writes XML events to an XMLStreamWriter.
+     */
+    private static class StreamWriterSink implements XMLSink<XMLStreamException> {
+
+        private final XMLStreamWriter out;
+        private final String namespace;
+        private final String prefix;
+
+        StreamWriterSink(XMLStreamWriter out, String namespace, String prefix) {
+            this.out = out;
+            this.namespace = namespace == null || namespace.isEmpty() ? null : namespace;
+            this.prefix = prefix == null ? "" : prefix;
+        }
+
+        @Override
+        public void start(String name) throws XMLStreamException {
+            if (this.namespace == null) {
+                this.out.writeStartElement(name);
+            } else {
+                boolean declare = !this.isInScope();
+                this.out.writeStartElement(this.prefix, name, this.namespace);
+                if (declare) {
+                    this.declareNamespace();
+                }
+            }
+        }
+
+        @Override
+        public void end(String name) throws XMLStreamException {
+            this.out.writeEndElement();
+        }
+
+        @Override
+        public void empty(String name) throws XMLStreamException {
+            if (this.namespace == null) {
+                this.out.writeEmptyElement(name);
+            } else {
+                boolean declare = !this.isInScope();
+                this.out.writeEmptyElement(this.prefix, name, this.namespace);
+                if (declare) {
+                    this.declareNamespace();
+                }
+            }
+        }
+
+        @Override
+        public void text(String text) throws XMLStreamException {
+            this.out.writeCharacters(text);
+        }
+
+        @Override
+        public void flush() throws XMLStreamException {
+            this.out.flush();
+        }
+
+        private boolean isInScope() {
+            // The declaration is needed only on the topmost elements
+            return this.namespace.equals(this.out.getNamespaceContext().getNamespaceURI(this.prefix));
+        }
+
+        private void declareNamespace() throws XMLStreamException {
+            if (this.prefix.isEmpty()) {
+                this.out.writeDefaultNamespace(this.namespace);
+            } else {
+                this.out.writeNamespace(this.prefix, this.namespace);
+            }
+        }
+    }
+
+    /**
+     * Adds elements under a SOAPElement.
+     */
+    private static class SOAPElementSink implements XMLSink<SOAPException> {
+
+        private final Deque<SOAPElement> stack = new ArrayDeque<>();
+        private final String namespace;
+        private final String prefix;
+
+        SOAPElementSink(SOAPElement parent, boolean updateNamespaceAndPrefix) {
+            this.stack.push(parent);
+            this.namespace = updateNamespaceAndPrefix ? parent.getNamespaceURI() : null;
+            this.prefix = updateNamespaceAndPrefix ? parent.getPrefix() : null;
+        }
+
+        @Override
+        public void start(String name) throws SOAPException {
+            this.stack.push(this.add(name));
+        }
+
+        @Override
+        public void end(String name) {
+            this.stack.pop();
+        }
+
+        @Override
+        public void empty(String name) throws SOAPException {
+            this.add(name);
+        }
+
+        @Override
+        public void text(String text) throws SOAPException {
+            this.stack.peek().addTextNode(text);
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to flush
+        }
+
+        private SOAPElement add(String name) throws SOAPException {
+            SOAPElement parent = this.stack.peek();
+            if (this.prefix != null && !this.prefix.isEmpty()) {
+                return parent.addChildElement(name, this.prefix, this.namespace);
+            } else if (this.namespace != null && !this.namespace.isEmpty()) {
+                return parent.addChildElement(new QName(this.namespace, name));
+            }
+            return parent.addChildElement(name);
+        }
+    }
+
+    /**
+     * Thrown when the root object contains "array" key.
+     */
+    private static class InvalidKeyException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        InvalidKeyException() {
+            super(INVALID_KEY);
+        }
+    }
+}
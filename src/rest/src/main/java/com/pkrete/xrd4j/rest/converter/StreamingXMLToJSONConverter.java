@@ -0,0 +1,622 @@
+package com.pkrete.xrd4j.rest.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * This class converts XML to JSON in a single pass over the input. XML is read
+ * using a StAX reader or by walking a DOM node, and the JSON is written using
+ * a streaming JSON generator.
+ *
+ * The output has the same shape as the output of XMLToJSONConverter: repeated
+ * elements become arrays, attributes become keys, text is converted to
+ * numbers, booleans and nulls when possible, mixed text is stored under
+ * "content" key, "array" children are hoisted so that their parent becomes
+ * an array and '__at__' at the beginning of a key is converted to '@'.
+ * Unlike XMLToJSONConverter, "array" children are hoisted at every level,
+ * also inside repeated elements, and the keys are written in the order of the
+ * input.
+ *
+ * JSON is written while XML is read. Whether a child becomes an array is
+ * known only when the next sibling starts, so the first element of each
+ * group of siblings with the same name is held in memory as JSON text until
+ * the next sibling or the end of the parent is read. The rest of the group,
+ * the children of "array" elements and the root element of a document are
+ * written as soon as they're read. Therefore repeated elements must be
+ * adjacent: if an element has the same name as an earlier sibling that's not
+ * its adjacent sibling, the conversion fails. Likewise "array" children can
+ * be hoisted only if they're the first children of an element that has no
+ * attributes. Text of an element that has children or attributes is written
+ * under "content" key after the other keys.
+ *
+ * When a string is converted, the whole input is in memory, so input that
+ * can't be converted in a single pass is converted using XMLToJSONConverter
+ * instead. The other methods throw an IOException.
+ *
+ * Instances of this class are thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingXMLToJSONConverter implements Converter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingXMLToJSONConverter.class);
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final String ARRAY = "array";
+    private static final String CONTENT = "content";
+    private static final String AT_PREFIX = "__at__";
+    private static final String FRAGMENT_ROOT = "xrd4j-fragment";
+    private static final XMLToJSONConverter TREE_CONVERTER = new XMLToJSONConverter();
+
+    /**
+     * Converts the given XML string to JSON string. The string may contain
+     * several root elements. If the string can't be converted in a single
+     * pass, it's converted using XMLToJSONConverter.
+     *
+     * @param data XML string
+     * @return JSON string or an empty string if the conversion fails
+     */
+    @Override
+    public String convert(String data) {
+        String xml = data;
+        // The string is wrapped in a root element, so the XML declaration
+        // must be removed
+        if (xml.startsWith("<?xml")) {
+            xml = xml.substring(xml.indexOf("?>") + 2);
+        }
+        StringWriter out = new StringWriter(data.length());
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(new StringReader("<" + FRAGMENT_ROOT + ">" + xml + "</" + FRAGMENT_ROOT + ">"));
+            // The wrapper element may contain several elements with the
+            // same name, so its children are converted
+            reader.nextTag();
+            this.convert(reader, out);
+            return out.toString();
+        } catch (NotStreamableException ex) {
+            logger.debug("{} XMLToJSONConverter is used instead.", ex.getMessage());
+            return TREE_CONVERTER.convert(data);
+        } catch (XMLStreamException | IOException | RuntimeException ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            close(reader);
+        }
+        logger.warn("Converting XML to JSON failed! An empty String is returned.");
+        return "";
+    }
+
+    /**
+     * Reads an XML document from the given stream and writes JSON to the
+     * given writer. The encoding of the input is read from the document.
+     * Neither the stream nor the writer is closed.
+     *
+     * @param in stream where XML is read from
+     * @param out writer where JSON is written to
+     * @throws IOException if writing fails
+     * @throws XMLStreamException if reading fails or if the input is not
+     * well-formed XML
+     */
+    public void convert(InputStream in, Writer out) throws IOException, XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            this.convert(reader, out);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Reads an XML document from the given reader and writes JSON to the
+     * given writer. Neither of them is closed.
+     *
+     * @param in reader where XML is read from
+     * @param out writer where JSON is written to
+     * @throws IOException if writing fails
+     * @throws XMLStreamException if reading fails or if the input is not
+     * well-formed XML
+     */
+    public void convert(Reader in, Writer out) throws IOException, XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            this.convert(reader, out);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Reads XML events from the given reader and writes JSON to the given
+     * writer. If the reader is positioned on a start element, the children of
+     * the element are converted and the reader is left on the matching end
+     * element, e.g. the response element of a SOAP message can be converted
+     * without converting the rest of the message. Otherwise the rest of the
+     * document is converted.
+     *
+     * @param reader reader where XML events are read from
+     * @param out writer where JSON is written to
+     * @throws IOException if writing fails
+     * @throws XMLStreamException if reading fails or if the input is not
+     * well-formed XML
+     */
+    public void convert(XMLStreamReader reader, Writer out) throws IOException, XMLStreamException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            Builder builder = new Builder(generator, reader.getEventType() == XMLStreamConstants.START_DOCUMENT);
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    builder.start(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        String prefix = reader.getNamespacePrefix(i);
+                        builder.attribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, reader.getNamespaceURI(i));
+                    }
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        builder.attribute(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 0) {
+                        // End of the element where the reader was positioned
+                        break;
+                    }
+                    depth--;
+                    builder.end();
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                    builder.text(reader.getText(), false);
+                } else if (event == XMLStreamConstants.CDATA) {
+                    builder.text(reader.getText(), true);
+                } else {
+                    // Comments and processing instructions separate texts
+                    builder.flushText();
+                }
+            }
+            builder.finish();
+        }
+    }
+
+    /**
+     * Converts the children of the given node and writes JSON to the given
+     * writer. A Document produces the same JSON as its string form and an
+     * element, e.g. the response element of a SOAP message, produces the
+     * JSON of its content.
+     *
+     * @param node node whose children are converted
+     * @param out writer where JSON is written to
+     * @throws IOException if writing fails
+     */
+    public void convert(Node node, Writer out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            Builder builder = new Builder(generator, node.getNodeType() == Node.DOCUMENT_NODE);
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                walk(child, builder);
+            }
+            builder.finish();
+        }
+    }
+
+    private static void walk(Node node, Builder builder) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                builder.start(node.getNodeName());
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attribute = (Attr) attributes.item(i);
+                    builder.attribute(attribute.getName(), attribute.getValue());
+                }
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    walk(child, builder);
+                }
+                builder.end();
+                break;
+            case Node.TEXT_NODE:
+                builder.text(node.getNodeValue(), false);
+                break;
+            case Node.CDATA_SECTION_NODE:
+                builder.text(node.getNodeValue(), true);
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                builder.text(node.getTextContent(), false);
+                break;
+            default:
+                builder.flushText();
+        }
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof RawValue) {
+            generator.writeRawValue(((RawValue) value).json);
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber(numberToString((Double) value));
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    /**
+     * Converts the given text to a boolean, null, integer or decimal number
+     * using the rules of org.json.XML. If the text can't be converted, or
+     * if converting it back to string wouldn't produce the same text, the
+     * text itself is returned.
+     *
+     * @param text text to be converted
+     * @return converted value or the text itself
+     */
+    static Object stringToValue(String text) {
+        if ("true".equalsIgnoreCase(text)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(text)) {
+            return Boolean.FALSE;
+        } else if ("null".equalsIgnoreCase(text)) {
+            return null;
+        } else if (text.isEmpty() || (text.charAt(0) != '-' && (text.charAt(0) < '0' || text.charAt(0) > '9'))) {
+            return text;
+        }
+        try {
+            Long value = Long.valueOf(text);
+            return value.toString().equals(text) ? value : text;
+        } catch (NumberFormatException ex) {
+            try {
+                Double value = Double.valueOf(text);
+                if (!value.isInfinite() && !value.isNaN() && value.toString().equals(text)) {
+                    return value;
+                }
+            } catch (NumberFormatException ignored) {
+                // Not a number
+            }
+        }
+        return text;
+    }
+
+    private static String numberToString(Double value) {
+        String text = value.toString();
+        if (text.indexOf('.') > 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            int end = text.length();
+            while (text.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (text.charAt(end - 1) == '.') {
+                end--;
+            }
+            text = text.substring(0, end);
+        }
+        return text;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ex) {
+                logger.trace(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // CDATA sections are not trimmed, so they must be reported
+        // separately from other text
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+        return factory;
+    }
+
+    /**
+     * Receives the XML events and writes the JSON. Each open element has a
+     * frame that writes the value of the element.
+     */
+    private static class Builder {
+
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean cdata;
+
+        /**
+         * Constructs and initializes a new Builder object.
+         *
+         * @param generator generator where JSON is written to
+         * @param document true if the events are read from a document that
+         * has only one root element
+         */
+        Builder(JsonGenerator generator, boolean document) {
+            this.stack.push(new Frame(null, generator, null, document));
+        }
+
+        void start(String name) throws IOException {
+            this.flushText();
+            this.stack.push(this.stack.peek().startChild(key(name)));
+        }
+
+        void attribute(String name, String value) throws IOException {
+            this.stack.peek().add(key(name), stringToValue(value));
+        }
+
+        void text(String chars, boolean isCdata) {
+            if (this.text.length() > 0 && this.cdata != isCdata) {
+                this.flushText();
+            }
+            this.cdata = isCdata;
+            this.text.append(chars);
+        }
+
+        void flushText() {
+            if (this.text.length() == 0) {
+                return;
+            }
+            // Text outside the elements is ignored
+            if (this.stack.size() > 1) {
+                if (this.cdata) {
+                    this.stack.peek().content(this.text.toString());
+                } else {
+                    String trimmed = this.text.toString().trim();
+                    if (!trimmed.isEmpty()) {
+                        this.stack.peek().content(stringToValue(trimmed));
+                    }
+                }
+            }
+            this.text.setLength(0);
+        }
+
+        void end() throws IOException {
+            this.flushText();
+            Frame frame = this.stack.pop();
+            frame.end();
+            this.stack.peek().endChild(frame);
+        }
+
+        void finish() throws IOException {
+            this.flushText();
+            this.stack.getLast().end();
+        }
+
+        private static String key(String name) {
+            // JSON-LD uses '@' characters in keys and they're not allowed
+            // in XML element names
+            return name.startsWith(AT_PREFIX) ? "@" + name.substring(AT_PREFIX.length()) : name;
+        }
+    }
+
+    /**
+     * An open element. The value of the element is written to the generator
+     * of the frame, which is the generator of the parent, or a buffer if the
+     * element is the first one of its group of siblings. The generator is
+     * null if the element is dropped, because it's not an "array" child of
+     * an element that has been hoisted to an array.
+     *
+     * The keys of an object are written group by group. The current group is
+     * the last key that was added. Its first value is held until a value
+     * with the same key is added, which makes the group an array, or until a
+     * value with another key is added or the element ends, which writes the
+     * group as a single value.
+     */
+    private static class Frame {
+
+        private static final int NONE = 0;
+        private static final int OBJECT = 1;
+        private static final int LIST = 2;
+        private static final int GROUP_NONE = 0;
+        private static final int GROUP_PENDING = 1;
+        private static final int GROUP_ARRAY = 2;
+        private static final int GROUP_WRITTEN = 3;
+        private final String name;
+        private final JsonGenerator generator;
+        private final StringWriter buffer;
+        private final boolean single;
+        private int state;
+        private List<Object> content;
+        private Set<String> keys;
+        private String groupKey;
+        private int groupState;
+        private Object groupValue;
+
+        /**
+         * Constructs and initializes a new Frame object.
+         *
+         * @param name key of the element
+         * @param generator generator where the value of the element is
+         * written, null if the element is dropped
+         * @param buffer buffer of the generator if the value is held in
+         * memory, otherwise null
+         * @param single true if the element has only one child element, so
+         * the child can be written directly
+         */
+        Frame(String name, JsonGenerator generator, StringWriter buffer, boolean single) {
+            this.name = name;
+            this.generator = generator;
+            this.buffer = buffer;
+            this.single = single;
+        }
+
+        Frame startChild(String key) throws IOException {
+            if (this.generator == null) {
+                return new Frame(key, null, null, false);
+            }
+            if (ARRAY.equals(key) && this.state == NONE) {
+                // "array" children make the element itself an array
+                this.generator.writeStartArray();
+                this.state = LIST;
+            } else if (ARRAY.equals(key) && this.state == OBJECT) {
+                // The keys that have already been written can't be dropped
+                throw new NotStreamableException("\"array\" can't be hoisted, because the keys of its parent have already been written.");
+            }
+            if (this.state == LIST) {
+                return ARRAY.equals(key) ? new Frame(key, this.generator, null, false) : new Frame(key, null, null, false);
+            }
+            this.startObject();
+            if (key.equals(this.groupKey)) {
+                this.startArray();
+                return new Frame(key, this.generator, null, false);
+            }
+            this.startGroup(key);
+            if (this.single) {
+                this.generator.writeFieldName(key);
+                this.groupState = GROUP_WRITTEN;
+                return new Frame(key, this.generator, null, false);
+            }
+            StringWriter childBuffer = new StringWriter();
+            return new Frame(key, JSON_FACTORY.createGenerator(childBuffer), childBuffer, false);
+        }
+
+        void endChild(Frame child) throws IOException {
+            if (child.buffer != null) {
+                child.generator.close();
+                this.groupValue = new RawValue(child.buffer.toString());
+            }
+        }
+
+        void add(String key, Object value) throws IOException {
+            if (this.generator == null || this.state == LIST) {
+                return;
+            }
+            this.startObject();
+            if (key.equals(this.groupKey)) {
+                this.startArray();
+                writeValue(this.generator, value);
+                return;
+            }
+            this.startGroup(key);
+            this.groupValue = value;
+        }
+
+        void content(Object value) {
+            if (this.content == null) {
+                this.content = new ArrayList<>(1);
+            }
+            this.content.add(value);
+        }
+
+        void end() throws IOException {
+            if (this.generator == null) {
+                return;
+            }
+            if (this.state == NONE && this.name == null) {
+                // Nothing was found
+                this.generator.writeStartObject();
+                this.generator.writeEndObject();
+            } else if (this.state == NONE) {
+                this.writeContent();
+            } else if (this.state == OBJECT) {
+                if (this.content != null) {
+                    for (Object value : this.content) {
+                        this.add(CONTENT, value);
+                    }
+                }
+                this.endGroup();
+                this.generator.writeEndObject();
+            } else {
+                this.generator.writeEndArray();
+            }
+        }
+
+        private void writeContent() throws IOException {
+            if (this.content == null) {
+                this.generator.writeString("");
+            } else if (this.content.size() == 1) {
+                writeValue(this.generator, this.content.get(0));
+            } else {
+                this.generator.writeStartArray();
+                for (Object value : this.content) {
+                    writeValue(this.generator, value);
+                }
+                this.generator.writeEndArray();
+            }
+        }
+
+        private void startObject() throws IOException {
+            if (this.state == NONE) {
+                this.generator.writeStartObject();
+                this.state = OBJECT;
+                this.keys = new HashSet<>();
+            }
+        }
+
+        private void startGroup(String key) throws IOException {
+            this.endGroup();
+            if (!this.keys.add(key)) {
+                throw new NotStreamableException("\"" + key + "\" is repeated, but it's not adjacent to the previous \"" + key + "\".");
+            }
+            this.groupKey = key;
+            this.groupState = GROUP_PENDING;
+        }
+
+        private void startArray() throws IOException {
+            if (this.groupState == GROUP_PENDING) {
+                this.generator.writeFieldName(this.groupKey);
+                this.generator.writeStartArray();
+                writeValue(this.generator, this.groupValue);
+                this.groupValue = null;
+                this.groupState = GROUP_ARRAY;
+            }
+        }
+
+        private void endGroup() throws IOException {
+            if (this.groupState == GROUP_PENDING) {
+                this.generator.writeFieldName(this.groupKey);
+                writeValue(this.generator, this.groupValue);
+                this.groupValue = null;
+            } else if (this.groupState == GROUP_ARRAY) {
+                this.generator.writeEndArray();
+            }
+            this.groupState = GROUP_NONE;
+        }
+    }
+
+    /**
+     * Thrown when the input can't be converted in a single pass.
+     */
+    private static class NotStreamableException extends IOException {
+
+        NotStreamableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * JSON text of an element that has been written to a buffer.
+     */
+    private static class RawValue {
+
+        private final String json;
+
+        RawValue(String json) {
+            this.json = json;
+        }
+    }
+}
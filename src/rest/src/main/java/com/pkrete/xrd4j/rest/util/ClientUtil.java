@@ -1,12 +1,14 @@
 package com.pkrete.xrd4j.rest.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.http.HttpEntity;
+import org.apache.http.ParseException;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,7 +19,8 @@ import org.slf4j.LoggerFactory;
  */
 public class ClientUtil {
 
-    private static final String REMOVE_WHITE_SPACE_PATTERN = "\\r\\n|\\r|\\n";
+    static final String RESOURCE_ID = "resourceId";
+    private static final Set<String> RESOURCE_ID_SET = Collections.singleton(RESOURCE_ID);
     private static final Logger logger = LoggerFactory.getLogger(ClientUtil.class);
 
     /**
@@ -27,30 +30,31 @@ public class ClientUtil {
     }
 
     /**
-     * Extracts the response string from the given HttpEntity.
+     * Extracts the response string from the given HttpEntity. The content is
+     * decoded using the charset of the entity or UTF-8, if the entity doesn't
+     * declare a charset.
      *
      * @param entity HttpEntity that contains the response
      * @return response String
      */
     public static String getResponseString(HttpEntity entity) {
-        StringBuilder builder = new StringBuilder();
-        if (entity != null) {
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(entity.getContent()))) {
-                String inputLine;
-                while ((inputLine = in.readLine()) != null) {
-                    builder.append(inputLine);
-                }
-            } catch (IOException e) {
-                logger.error(e.getMessage(), e);
-                return null;
-            }
-
+        if (entity == null) {
+            return "";
+        }
+        try {
+            return EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        } catch (IOException | ParseException e) {
+            logger.error(e.getMessage(), e);
+            return null;
         }
-        return builder.toString();
     }
 
     /**
      * Builds the target URL based on the given based URL and parameters Map.
+     * If there's a parameter "resourceId", it's added directly to the end of
+     * the URL and the other parameters are added to the query string. The
+     * given Map is not modified. UrlTemplate should be used when the same
+     * URL is built repeatedly.
      *
      * @param url base URL
      * @param params URL parameters
@@ -63,70 +67,119 @@ public class ClientUtil {
             logger.debug("URL parameters list is null or empty. Nothing to do here. Return target URL.");
             return url;
         }
+        StringBuilder builder = new StringBuilder(url.length() + 32 * params.size());
+        builder.append(url);
         // Process resource id
-        String processedUrl = processResourceId(url, params);
-
-        if (!processedUrl.contains("?") && !params.isEmpty()) {
-            processedUrl += "?";
-        } else if (processedUrl.contains("?") && !params.isEmpty() && !processedUrl.endsWith("?") && !processedUrl.endsWith("&")) {
-            processedUrl += "&";
+        Object resourceId = params.get(RESOURCE_ID);
+        if (resourceId != null) {
+            appendResourceId(builder, resourceId);
         }
         // Add query string to URL
-        String finalUrl = processedUrl + buildQueryString(params);
+        appendQueryString(builder, params, RESOURCE_ID_SET);
+        String finalUrl = builder.toString();
         logger.debug("Request parameters added to URL : \"{}\".", finalUrl);
         return finalUrl;
     }
 
-    private static String processResourceId(String url, Map<String, ?> params) {
-        String resourceIdStr = "resourceId";
-        if (params.containsKey(resourceIdStr)) {
-            String resourceId;
-            // Get resource id
-            if (params.get(resourceIdStr) instanceof List) {
-                resourceId = (String) ((List) params.get(resourceIdStr)).get(0);
-            } else {
-                resourceId = (String) params.get(resourceIdStr);
-            }
-            // Remove line breaks and omit leading and trailing whitespaces
-            resourceId = resourceId.replaceAll(REMOVE_WHITE_SPACE_PATTERN, "").trim();
-            logger.debug("Resource ID found from parameters map. Resource ID value : \"{}\".", resourceId);
-            if (!url.endsWith("/")) {
-                url += "/";
-            }
-            // Add resource id
-            url += resourceId;
-            params.remove(resourceIdStr);
-            logger.debug("Resource ID added to URL : \"{}\".", url);
+    /**
+     * Appends the given resource id to the end of the given URL. Line breaks
+     * and leading and trailing whitespace are removed from the resource id,
+     * but it's not encoded.
+     *
+     * @param url URL where the resource id is appended
+     * @param resourceId resource id as a String or a List whose first item
+     * is used
+     */
+    static void appendResourceId(StringBuilder url, Object resourceId) {
+        String value = clean(firstValue(resourceId));
+        logger.debug("Resource ID found from parameters map. Resource ID value : \"{}\".", value);
+        if (url.length() == 0 || url.charAt(url.length() - 1) != '/') {
+            url.append('/');
         }
-        return url;
+        url.append(value);
     }
 
-    private static String buildQueryString(Map<String, ?> params) {
-        StringBuilder paramsString = new StringBuilder();
+    /**
+     * Appends the given parameters to the query string of the given URL. The
+     * parameters whose name is in the skip set are not added. Values can be
+     * Strings or Lists of Strings, and a List produces a parameter per item.
+     * Line breaks and leading and trailing whitespace are removed from the
+     * values and the values are encoded in the same way as URLEncoder does
+     * using UTF-8. The parameter names are not encoded.
+     *
+     * @param url URL where the parameters are appended
+     * @param params parameters
+     * @param skip names of the parameters that are not added
+     */
+    static void appendQueryString(StringBuilder url, Map<String, ?> params, Set<String> skip) {
+        boolean first = true;
         for (Map.Entry<String, ?> entry : params.entrySet()) {
+            if (skip.contains(entry.getKey())) {
+                continue;
+            }
             if (entry.getValue() instanceof List) {
-                for (String value : (List<String>) entry.getValue()) {
-                    processParameter(paramsString, entry.getKey(), value);
+                for (Object value : (List<?>) entry.getValue()) {
+                    appendSeparator(url, first);
+                    appendParameter(url, entry.getKey(), (String) value);
+                    first = false;
                 }
             } else {
-                processParameter(paramsString, entry.getKey(), (String) entry.getValue());
+                appendSeparator(url, first);
+                appendParameter(url, entry.getKey(), (String) entry.getValue());
+                first = false;
             }
         }
-        return paramsString.toString();
     }
 
-    private static void processParameter(StringBuilder paramsString, String name, String value) {
-        if (paramsString.length() > 0) {
-            paramsString.append("&");
+    /**
+     * Returns the given value or the first item of the given List.
+     *
+     * @param value String or List of Strings
+     * @return value as a String
+     */
+    static String firstValue(Object value) {
+        if (value instanceof List) {
+            return (String) ((List<?>) value).get(0);
         }
-        // Remove line breaks and omit leading and trailing whitespace
-        value = value.replaceAll(REMOVE_WHITE_SPACE_PATTERN, "").trim();
-        try {
-            value = URLEncoder.encode(value, "UTF-8");
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        return (String) value;
+    }
+
+    /**
+     * Removes line breaks and leading and trailing whitespace from the given
+     * value.
+     *
+     * @param value value to be cleaned
+     * @return cleaned value
+     */
+    static String clean(String value) {
+        if (value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value.trim();
         }
-        paramsString.append(name).append("=").append(value);
-        logger.debug("Parameter : \"{}\"=\"{}\"", name, value);
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\n' && c != '\r') {
+                builder.append(c);
+            }
+        }
+        return builder.toString().trim();
+    }
+
+    private static void appendSeparator(StringBuilder url, boolean first) {
+        if (!first) {
+            url.append('&');
+        } else if (url.indexOf("?") < 0) {
+            url.append('?');
+        } else {
+            char last = url.charAt(url.length() - 1);
+            if (last != '?' && last != '&') {
+                url.append('&');
+            }
+        }
+    }
+
+    private static void appendParameter(StringBuilder url, String name, String value) {
+        url.append(name).append('=');
+        PercentEncoder.QUERY.encode(clean(value), url);
     }
 }
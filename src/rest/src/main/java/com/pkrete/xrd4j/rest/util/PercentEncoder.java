@@ -0,0 +1,87 @@
+package com.pkrete.xrd4j.rest.util;
+
+/**
+ * This class percent-encodes strings using a precomputed table of the
+ * characters that don't need encoding. Characters are encoded as UTF-8 bytes
+ * and the result is appended to the given StringBuilder, so encoding doesn't
+ * create any intermediate objects.
+ *
+ * @author Petteri Kivimäki
+ */
+final class PercentEncoder {
+
+    /**
+     * Encoder for query parameter names and values. The output is the same
+     * as the output of URLEncoder using UTF-8: letters, digits and ".-*_"
+     * are not encoded and space is encoded as '+'.
+     */
+    static final PercentEncoder QUERY = new PercentEncoder(".-*_", true);
+
+    /**
+     * Encoder for path segments. Unreserved characters, sub-delimiters, ':'
+     * and '@' are not encoded and space is encoded as "%20".
+     */
+    static final PercentEncoder PATH_SEGMENT = new PercentEncoder("-._~!$&'()*+,;=:@", false);
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final boolean[] safe;
+    private final boolean spaceAsPlus;
+
+    private PercentEncoder(String safeChars, boolean spaceAsPlus) {
+        this.safe = new boolean[128];
+        for (char c = 'a'; c <= 'z'; c++) {
+            this.safe[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            this.safe[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            this.safe[c] = true;
+        }
+        for (int i = 0; i < safeChars.length(); i++) {
+            this.safe[safeChars.charAt(i)] = true;
+        }
+        this.spaceAsPlus = spaceAsPlus;
+    }
+
+    /**
+     * Encodes the given value and appends the result to the given builder.
+     *
+     * @param value value to be encoded
+     * @param out builder where the encoded value is appended
+     */
+    void encode(CharSequence value, StringBuilder out) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 128 && this.safe[c]) {
+                out.append(c);
+            } else if (c == ' ' && this.spaceAsPlus) {
+                out.append('+');
+            } else if (c < 0x80) {
+                appendByte(c, out);
+            } else if (c < 0x800) {
+                appendByte(0xC0 | (c >> 6), out);
+                appendByte(0x80 | (c & 0x3F), out);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(0xF0 | (codePoint >> 18), out);
+                appendByte(0x80 | ((codePoint >> 12) & 0x3F), out);
+                appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+                appendByte(0x80 | (codePoint & 0x3F), out);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate is replaced with '?' like the UTF-8
+                // encoder of the JDK does
+                appendByte('?', out);
+            } else {
+                appendByte(0xE0 | (c >> 12), out);
+                appendByte(0x80 | ((c >> 6) & 0x3F), out);
+                appendByte(0x80 | (c & 0x3F), out);
+            }
+        }
+    }
+
+    private static void appendByte(int b, StringBuilder out) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -0,0 +1,188 @@
+package com.pkrete.xrd4j.rest.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class represents a compiled URL template. The template may contain
+ * variables in curly braces both in the path and in the query string, e.g.
+ * "http://api.test.com/cities/{city}/streets?sort={order}". The template is
+ * parsed once when it's compiled and the compiled template can be shared
+ * between threads.
+ *
+ * When the template is expanded, the variables are replaced with the values
+ * of the parameters that have the same name. Variables in the path are
+ * percent-encoded as path segments and variables in the query string are
+ * encoded in the same way as URLEncoder does. Parameters that don't match
+ * any variable are added to the query string like ClientUtil.buildTargetURL
+ * adds them, and "resourceId" parameter is added to the end of the path, if
+ * the template doesn't contain a "resourceId" variable. Unlike
+ * buildTargetURL, the resource id is added before the query string of the
+ * template. Values can be Strings
+ * or Lists of Strings. Line breaks and leading and trailing whitespace are
+ * removed from the values. The given parameters are never modified.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class UrlTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_BUFFER_SIZE = 8192;
+    private final String template;
+    private final Part path;
+    private final Part query;
+    private final boolean resourceIdVariable;
+    private final Set<String> variables;
+    private final Set<String> skip;
+
+    private UrlTemplate(String template) {
+        this.template = template;
+        int queryStart = template.indexOf('?');
+        this.path = parse(queryStart < 0 ? template : template.substring(0, queryStart));
+        this.query = queryStart < 0 ? null : parse(template.substring(queryStart));
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, this.path.variables);
+        if (this.query != null) {
+            Collections.addAll(names, this.query.variables);
+        }
+        this.variables = Collections.unmodifiableSet(names);
+        this.resourceIdVariable = names.contains(ClientUtil.RESOURCE_ID);
+        Set<String> skipped = new HashSet<>(names);
+        skipped.add(ClientUtil.RESOURCE_ID);
+        this.skip = skipped;
+    }
+
+    /**
+     * Compiles the given URL template.
+     *
+     * @param template URL template
+     * @return compiled template
+     * @throws IllegalArgumentException if the template contains an unclosed
+     * or empty variable
+     */
+    public static UrlTemplate compile(String template) {
+        return new UrlTemplate(template);
+    }
+
+    /**
+     * Returns the template string.
+     *
+     * @return template string
+     */
+    public String getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * Returns the names of the variables of the template.
+     *
+     * @return names of the variables in the order of the template
+     */
+    public Set<String> getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * Expands the template using the given parameters.
+     *
+     * @param params parameters, may be null if the template doesn't contain
+     * any variables
+     * @return URL
+     * @throws IllegalArgumentException if the value of a variable is missing
+     */
+    public String expand(Map<String, ?> params) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        String url = this.appendTo(buffer, params).toString();
+        if (buffer.capacity() > MAX_BUFFER_SIZE) {
+            // Don't hold on to exceptionally large buffers
+            BUFFER.remove();
+        }
+        return url;
+    }
+
+    /**
+     * Expands the template using the given parameters and appends the URL to
+     * the given builder.
+     *
+     * @param out builder where the URL is appended
+     * @param params parameters, may be null if the template doesn't contain
+     * any variables
+     * @return the given builder
+     * @throws IllegalArgumentException if the value of a variable is missing
+     */
+    public StringBuilder appendTo(StringBuilder out, Map<String, ?> params) {
+        Map<String, ?> values = params == null ? Collections.<String, Object>emptyMap() : params;
+        this.path.appendTo(out, values, PercentEncoder.PATH_SEGMENT);
+        if (!this.resourceIdVariable) {
+            Object resourceId = values.get(ClientUtil.RESOURCE_ID);
+            if (resourceId != null) {
+                ClientUtil.appendResourceId(out, resourceId);
+            }
+        }
+        if (this.query != null) {
+            this.query.appendTo(out, values, PercentEncoder.QUERY);
+        }
+        ClientUtil.appendQueryString(out, values, this.skip);
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return this.template;
+    }
+
+    private static Part parse(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = template.indexOf('{', start)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in URL template \"" + template + "\".");
+            }
+            String name = template.substring(open + 1, close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty variable in URL template \"" + template + "\".");
+            }
+            literals.add(template.substring(start, open));
+            names.add(name);
+            start = close + 1;
+        }
+        literals.add(template.substring(start));
+        return new Part(literals.toArray(new String[literals.size()]), names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Path or query string of a template: literals and the variables between
+     * them.
+     */
+    private static class Part {
+
+        private final String[] literals;
+        private final String[] variables;
+
+        Part(String[] literals, String[] variables) {
+            this.literals = literals;
+            this.variables = variables;
+        }
+
+        void appendTo(StringBuilder out, Map<String, ?> values, PercentEncoder encoder) {
+            for (int i = 0; i < this.variables.length; i++) {
+                out.append(this.literals[i]);
+                Object value = values.get(this.variables[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("No value for URL template variable \"" + this.variables[i] + "\".");
+                }
+                encoder.encode(ClientUtil.clean(ClientUtil.firstValue(value)), out);
+            }
+            out.append(this.literals[this.variables.length]);
+        }
+    }
+}
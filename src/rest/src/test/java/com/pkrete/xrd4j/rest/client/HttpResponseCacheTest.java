@@ -0,0 +1,167 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HttpResponseCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HttpResponseCacheTest extends TestCase {
+
+    private HttpServer server;
+    private String url;
+    private AtomicInteger requests;
+    private HttpResponseCache cache;
+
+    /**
+     * Starts a server that returns cacheable responses and sets up a shared
+     * client that uses a cache.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.requests = new AtomicInteger();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            this.requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            String body = path;
+            if (path.startsWith("/etag")) {
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=0");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            } else if (path.startsWith("/vary")) {
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+                exchange.getResponseHeaders().add("Vary", "Accept");
+                body = exchange.getRequestHeaders().getFirst("Accept");
+            } else {
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.cache = new HttpResponseCache(1024 * 1024);
+        this.useCache(this.cache);
+    }
+
+    /**
+     * Stops the server and closes the shared client.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        RESTClientFactory.setConfig(new RESTClientConfig());
+        RESTClientFactory.shutdown();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * Fresh response is served from the cache.
+     */
+    public void testFreshHit() {
+        RESTClient client = new GetClient();
+        assertEquals("/fresh", client.send(this.url + "/fresh", null, null, null).getData());
+        ClientResponse response = client.send(this.url + "/fresh", null, null, null);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("/fresh", response.getData());
+        assertEquals(1, this.requests.get());
+        assertEquals(1, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+        assertEquals(0.5, this.cache.getHitRate());
+        assertEquals(1, this.cache.getEntryCount());
+        assertTrue(this.cache.getSize() > 0);
+    }
+
+    /**
+     * Stale response is revalidated using If-None-Match header.
+     */
+    public void testRevalidation() {
+        RESTClient client = new GetClient();
+        assertEquals("/etag", client.send(this.url + "/etag", null, null, null).getData());
+        ClientResponse response = client.send(this.url + "/etag", null, null, null);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("/etag", response.getData());
+        assertEquals(2, this.requests.get());
+        assertEquals(1, this.cache.getValidations());
+        assertEquals(0, this.cache.getHits());
+    }
+
+    /**
+     * Variants of a response are cached separately.
+     */
+    public void testVary() {
+        RESTClient client = new GetClient();
+        assertEquals("application/json", client.send(this.url + "/vary", null, null, Collections.singletonMap("Accept", "application/json")).getData());
+        assertEquals("text/xml", client.send(this.url + "/vary", null, null, Collections.singletonMap("Accept", "text/xml")).getData());
+        assertEquals("application/json", client.send(this.url + "/vary", null, null, Collections.singletonMap("Accept", "application/json")).getData());
+        assertEquals(2, this.requests.get());
+        assertEquals(1, this.cache.getHits());
+    }
+
+    /**
+     * Entries evicted from memory are read from disk.
+     *
+     * @throws Exception
+     */
+    public void testDiskTier() throws Exception {
+        File directory = Files.createTempDirectory("xrd4j-rest-cache").toFile();
+        try {
+            HttpResponseCache diskCache = new HttpResponseCache(1024, directory);
+            this.useCache(diskCache);
+            RESTClient client = new GetClient();
+            for (int i = 0; i < 20; i++) {
+                client.send(this.url + "/fresh" + i, null, null, null);
+            }
+            assertTrue(diskCache.getEvictions() > 0);
+            assertTrue(diskCache.getSize() <= 1024);
+            // New cache that uses the same directory
+            HttpResponseCache restarted = new HttpResponseCache(1024, directory);
+            this.useCache(restarted);
+            assertEquals("/fresh0", new GetClient().send(this.url + "/fresh0", null, null, null).getData());
+            assertEquals(20, this.requests.get());
+            assertEquals(1, restarted.getHits());
+            restarted.clear();
+            assertEquals(0, restarted.getEntryCount());
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private void useCache(HttpResponseCache responseCache) {
+        RESTClientConfig config = new RESTClientConfig();
+        config.setResponseCache(responseCache);
+        RESTClientFactory.setConfig(config);
+    }
+}
@@ -0,0 +1,238 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.pool.PoolStats;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for RESTClientFactory class and the shared HTTP client.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RESTClientFactoryTest extends TestCase {
+
+    private static final String TEXT = "first line\nsecond line \u00e4\u00f6\n";
+    private HttpServer server;
+    private String url;
+
+    /**
+     * Starts a server that returns a fixed response. Requests to "/empty"
+     * are answered without a body.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (exchange.getRequestURI().getPath().startsWith("/empty")) {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = "{\"value\":1}".getBytes(StandardCharsets.UTF_8);
+            String contentType = "application/json";
+            if (exchange.getRequestURI().getPath().startsWith("/text")) {
+                body = TEXT.getBytes(StandardCharsets.ISO_8859_1);
+                contentType = "text/plain; charset=ISO-8859-1";
+            }
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/resource";
+        RESTClientFactory.setConfig(new RESTClientConfig());
+    }
+
+    /**
+     * Stops the server and closes the shared client.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        RESTClientFactory.shutdown();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * Consecutive requests reuse the same pooled connection.
+     */
+    public void testConnectionReuse() {
+        RESTClient client = RESTClientFactory.createRESTClient("get");
+        for (int i = 0; i < 3; i++) {
+            ClientResponse response = client.send(this.url, null, null, null);
+            assertEquals(200, response.getStatusCode());
+            assertEquals("{\"value\":1}", response.getData());
+        }
+        assertSame(RESTClientFactory.getHttpClient(), RESTClientFactory.getHttpClient());
+        PoolStats stats = RESTClientFactory.getPoolStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    /**
+     * Setting a new configuration replaces the shared client.
+     */
+    public void testSetConfig() {
+        RESTClientConfig config = new RESTClientConfig();
+        config.setMaxConnectionsPerRoute(this.url, 1);
+        assertEquals(Integer.valueOf(1), config.getRouteLimits().get(new HttpHost("127.0.0.1", this.server.getAddress().getPort(), "http")));
+        Object old = RESTClientFactory.getHttpClient();
+        RESTClientFactory.setConfig(config);
+        assertSame(config, RESTClientFactory.getConfig());
+        assertNotSame(old, RESTClientFactory.getHttpClient());
+        assertEquals(200, new GetClient().send(this.url, null, null, null).getStatusCode());
+    }
+
+    /**
+     * Requests that are in progress when a new configuration is set are
+     * completed using the replaced client.
+     *
+     * @throws Exception
+     */
+    public void testSetConfigInFlight() throws Exception {
+        RESTClient client = RESTClientFactory.createRESTClient("get");
+        String slow = this.url.replace("/resource", "/slow");
+        CompletableFuture<ClientResponse> future = CompletableFuture.supplyAsync(() -> client.send(slow, null, null, null));
+        Thread.sleep(100);
+        RESTClientFactory.setConfig(new RESTClientConfig());
+        ClientResponse response = future.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.getStatusCode());
+        assertEquals("{\"value\":1}", response.getData());
+    }
+
+    /**
+     * Asynchronous requests to several backends are sent at the same time.
+     *
+     * @throws Exception
+     */
+    public void testAsyncFanOut() throws Exception {
+        AsyncRESTClient client = RESTClientFactory.createAsyncRESTClient("get");
+        String slowUrl = this.url.replace("/resource", "/slow");
+        long start = System.nanoTime();
+        List<CompletableFuture<ClientResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(client.sendAsync(slowUrl, null, null, null));
+        }
+        for (CompletableFuture<ClientResponse> future : futures) {
+            ClientResponse response = future.get(5, TimeUnit.SECONDS);
+            assertEquals(200, response.getStatusCode());
+            assertEquals("{\"value\":1}", response.getData());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(850));
+        assertNull(RESTClientFactory.createAsyncRESTClient("patch"));
+    }
+
+    /**
+     * Failed asynchronous request completes the future exceptionally.
+     *
+     * @throws Exception
+     */
+    public void testAsyncFailure() throws Exception {
+        CompletableFuture<ClientResponse> future = new GetClient().sendAsync("http://127.0.0.1:1/resource", null, null, null);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Response body is decoded using the declared charset and newlines are
+     * preserved.
+     */
+    public void testResponseCharset() {
+        String textUrl = this.url.replace("/resource", "/text");
+        ClientResponse response = new GetClient().send(textUrl, null, null, null);
+        assertEquals(TEXT, response.getData());
+        assertEquals(StandardCharsets.ISO_8859_1, response.getCharset());
+        assertEquals(TEXT.length(), response.getBytes().length);
+    }
+
+    /**
+     * Response without a body has an empty payload.
+     */
+    public void testEmptyResponse() {
+        ClientResponse response = new GetClient().send(this.url.replace("/resource", "/empty"), null, null, null);
+        assertEquals(204, response.getStatusCode());
+        assertEquals("", response.getData());
+        assertEquals(0, response.getBytes().length);
+    }
+
+    /**
+     * Body handlers consume the response while it's read from the
+     * connection and the connection is released afterwards.
+     *
+     * @throws Exception
+     */
+    public void testBodyHandlers() throws Exception {
+        RESTClient client = new GetClient();
+        String textUrl = this.url.replace("/resource", "/text");
+        assertEquals(TEXT, client.send(textUrl, null, null, null, BodyHandlers.ofString()));
+        assertTrue(Arrays.equals(TEXT.getBytes(StandardCharsets.ISO_8859_1), client.send(textUrl, null, null, null, BodyHandlers.ofByteArray())));
+        StringWriter writer = new StringWriter();
+        assertEquals(Long.valueOf(TEXT.length()), client.send(textUrl, null, null, null, BodyHandlers.ofWriter(writer)));
+        assertEquals(TEXT, writer.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.send(this.url, null, null, null, BodyHandlers.ofOutputStream(out));
+        assertEquals("{\"value\":1}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        ClientResponse response = client.send(this.url, null, null, null, BodyHandlers.ofClientResponse());
+        assertEquals("{\"value\":1}", response.getData());
+        // Handler that doesn't read the body
+        assertEquals(Integer.valueOf(200), client.send(this.url, null, null, null, ClientResponse::getStatusCode));
+        assertEquals(0, RESTClientFactory.getPoolStats().getLeased());
+    }
+
+    /**
+     * Failed request is reported to the caller of a body handler.
+     */
+    public void testBodyHandlerFailure() {
+        try {
+            new GetClient().send("http://127.0.0.1:1/resource", null, null, null, BodyHandlers.ofString());
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Proxy definition is parsed from "host:port".
+     */
+    public void testParseProxy() {
+        assertNull(RESTClientConfig.parseProxy(null));
+        HttpHost proxy = RESTClientConfig.parseProxy("proxy.example.com:8080");
+        assertEquals("proxy.example.com", proxy.getHostName());
+        assertEquals(8080, proxy.getPort());
+        assertEquals(443, RESTClientConfig.toHost("https://example.com/path").getPort());
+    }
+}
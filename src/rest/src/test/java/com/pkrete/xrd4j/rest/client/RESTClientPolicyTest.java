@@ -0,0 +1,245 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for RESTClientPolicy class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RESTClientPolicyTest extends TestCase {
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failures;
+    private volatile CountDownLatch received;
+
+    /**
+     * Starts a server that closes the connection without a response for the
+     * given number of requests and then returns a fixed response. Requests
+     * to "/slow" are answered after a delay.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            int count = this.requests.incrementAndGet();
+            if (count <= this.failures) {
+                exchange.close();
+                return;
+            }
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                if (this.received != null) {
+                    this.received.countDown();
+                }
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "{\"value\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+        // Retries of HttpClient are disabled so that only the retries of the
+        // policy are counted
+        this.httpClient = HttpClients.custom().disableAutomaticRetries().build();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server and closes the client.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.httpClient.close();
+        this.server.stop(0);
+        RESTClientFactory.setConfig(new RESTClientConfig());
+        super.tearDown();
+    }
+
+    /**
+     * Idempotent request is retried until it succeeds.
+     */
+    public void testRetry() {
+        this.failures = 2;
+        RESTClientPolicy policy = createPolicy(3);
+        ClientResponse response = this.createClient(new GetClient(this.httpClient), policy).send(this.url + "/resource", null, null, null);
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(3, this.requests.get());
+        assertEquals(2, policy.getRetries());
+    }
+
+    /**
+     * Request fails when the retries are used up.
+     */
+    public void testMaxRetries() {
+        this.failures = 10;
+        RESTClientPolicy policy = createPolicy(2);
+        assertNull(this.createClient(new PutClient(this.httpClient), policy).send(this.url + "/resource", "<a/>", null, null));
+        assertEquals(3, this.requests.get());
+    }
+
+    /**
+     * Non-idempotent request and request whose body can be written only once
+     * are not retried.
+     */
+    public void testNoRetry() {
+        this.failures = 10;
+        RESTClientPolicy policy = createPolicy(3);
+        assertNull(this.createClient(new PostClient(this.httpClient), policy).send(this.url + "/resource", "<a/>", null, null));
+        assertEquals(1, this.requests.get());
+        PutClient client = new PutClient(this.httpClient);
+        client.setPolicy(policy);
+        assertNull(client.send(this.url + "/resource", RequestBodies.ofWriter(writer -> writer.write("<a/>")), null, null));
+        assertEquals(2, this.requests.get());
+        assertEquals(0, policy.getRetries());
+    }
+
+    /**
+     * Retries stop when the retry budget is exhausted.
+     */
+    public void testRetryBudget() {
+        this.failures = 10;
+        RESTClientPolicy policy = createPolicy(3);
+        policy.setRetryBudgetRatio(0);
+        policy.setRetryBudgetCapacity(2);
+        RESTClient client = this.createClient(new GetClient(this.httpClient), policy);
+        assertNull(client.send(this.url + "/resource", null, null, null));
+        assertNull(client.send(this.url + "/resource", null, null, null));
+        assertEquals(2, policy.getRetries());
+        assertEquals(4, this.requests.get());
+    }
+
+    /**
+     * Request is aborted when the socket timeout or the total timeout is
+     * exceeded.
+     */
+    public void testTimeouts() {
+        RESTClientPolicy policy = new RESTClientPolicy();
+        policy.setSocketTimeout(100);
+        long start = System.currentTimeMillis();
+        assertNull(this.createClient(new GetClient(this.httpClient), policy).send(this.url + "/slow", null, null, null));
+        assertTrue(System.currentTimeMillis() - start < 900);
+
+        policy = new RESTClientPolicy();
+        policy.setTotalTimeout(200);
+        start = System.currentTimeMillis();
+        assertNull(this.createClient(new GetClient(this.httpClient), policy).send(this.url + "/slow", null, null, null));
+        assertTrue(System.currentTimeMillis() - start < 900);
+    }
+
+    /**
+     * Requests exceeding the concurrency limit of the route fail
+     * immediately and the limit can't be changed after the policy has been
+     * used.
+     *
+     * @throws Exception
+     */
+    public void testConcurrencyLimit() throws Exception {
+        this.received = new CountDownLatch(1);
+        RESTClientPolicy policy = new RESTClientPolicy();
+        policy.setMaxConcurrentRequestsPerRoute(1);
+        RESTClient client = this.createClient(new GetClient(this.httpClient), policy);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ClientResponse> first = executor.submit(() -> client.send(this.url + "/slow", null, null, null));
+            assertTrue(this.received.await(5, TimeUnit.SECONDS));
+            assertNull(client.send(this.url + "/resource", null, null, null));
+            assertEquals(1, policy.getRejections());
+            assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatusCode());
+            assertNotNull(client.send(this.url + "/resource", null, null, null));
+        } finally {
+            executor.shutdownNow();
+        }
+        try {
+            policy.setMaxConcurrentRequestsPerRoute(2);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * The shared client doesn't retry requests, the retries are made only
+     * according to the policy.
+     */
+    public void testSharedClientRetries() {
+        this.failures = 10;
+        assertNull(this.createClient(new GetClient(), new RESTClientPolicy()).send(this.url + "/resource", null, null, null));
+        assertEquals(1, this.requests.get());
+        RESTClientPolicy policy = createPolicy(2);
+        assertNull(this.createClient(new GetClient(), policy).send(this.url + "/resource", null, null, null));
+        assertEquals(4, this.requests.get());
+    }
+
+    /**
+     * Backoff is between zero and the capped exponential backoff.
+     */
+    public void testBackoff() {
+        RESTClientPolicy policy = new RESTClientPolicy();
+        policy.setInitialBackoff(100);
+        policy.setMaxBackoff(1000);
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.getBackoff(i % 10);
+            assertTrue(backoff >= 0);
+            assertTrue(backoff <= Math.min(1000, 100L << (i % 10)));
+        }
+        assertTrue(policy.getBackoff(100) <= 1000);
+    }
+
+    /**
+     * Clients created by the factory use the given policy or the default
+     * policy of the configuration.
+     */
+    public void testFactoryPolicy() {
+        RESTClientConfig config = new RESTClientConfig();
+        RESTClientPolicy defaultPolicy = new RESTClientPolicy();
+        config.setDefaultPolicy(defaultPolicy);
+        RESTClientFactory.setConfig(config);
+        RESTClientPolicy policy = new RESTClientPolicy();
+        assertSame(policy, ((AbstractClient) RESTClientFactory.createRESTClient("get", policy)).getPolicy());
+        assertSame(defaultPolicy, ((AbstractClient) RESTClientFactory.createRESTClient("post")).getPolicy());
+        assertSame(policy, ((AbstractClient) RESTClientFactory.createAsyncRESTClient("put", policy)).getPolicy());
+        assertNull(RESTClientFactory.createRESTClient("patch", policy));
+    }
+
+    private RESTClient createClient(AbstractClient client, RESTClientPolicy policy) {
+        client.setPolicy(policy);
+        return client;
+    }
+
+    private static RESTClientPolicy createPolicy(int maxRetries) {
+        RESTClientPolicy policy = new RESTClientPolicy();
+        policy.setMaxRetries(maxRetries);
+        policy.setInitialBackoff(10);
+        return policy;
+    }
+}
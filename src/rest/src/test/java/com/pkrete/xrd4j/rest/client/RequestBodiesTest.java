@@ -0,0 +1,216 @@
+package com.pkrete.xrd4j.rest.client;
+
+import com.pkrete.xrd4j.rest.ClientResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for RequestBodies class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RequestBodiesTest extends TestCase {
+
+    private static final String BODY = "<request><value>äö</value></request>";
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private String url;
+    private final Map<String, String> request = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a server that echoes the request body and stores the headers
+     * of the request.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            InputStream in = exchange.getRequestBody();
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if ("gzip".equals(encoding)) {
+                in = new GZIPInputStream(in);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/xml; charset=UTF-8");
+            this.request.put("method", exchange.getRequestMethod());
+            this.request.put("contentType", String.valueOf(exchange.getRequestHeaders().getFirst("Content-Type")));
+            this.request.put("transferEncoding", String.valueOf(exchange.getRequestHeaders().getFirst("Transfer-Encoding")));
+            this.request.put("contentEncoding", String.valueOf(encoding));
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        });
+        this.server.start();
+        this.httpClient = HttpClients.createDefault();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/resource";
+    }
+
+    /**
+     * Stops the server and closes the client.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.httpClient.close();
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * Byte array body is sent with Content-Length and default content type.
+     *
+     * @throws Exception
+     */
+    public void testByteArray() throws Exception {
+        PostClient client = new PostClient(this.httpClient);
+        String body = client.send(this.url, RequestBodies.ofByteArray(BODY.getBytes(StandardCharsets.UTF_8)),
+                null, null, BodyHandlers.ofString());
+        assertEquals(BODY, body);
+        assertEquals("POST", this.request.get("method"));
+        assertEquals("application/xml", this.request.get("contentType"));
+        assertEquals("null", this.request.get("transferEncoding"));
+    }
+
+    /**
+     * Stream body is sent in chunks and the stream is closed.
+     *
+     * @throws Exception
+     */
+    public void testInputStream() throws Exception {
+        PutClient client = new PutClient(this.httpClient);
+        boolean[] closed = new boolean[1];
+        InputStream in = new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "text/xml; charset=UTF-8");
+        String body = client.send(this.url, RequestBodies.ofInputStream(in), null, headers, BodyHandlers.ofString());
+        assertEquals(BODY, body);
+        assertEquals("PUT", this.request.get("method"));
+        assertEquals("text/xml; charset=UTF-8", this.request.get("contentType"));
+        assertEquals("chunked", this.request.get("transferEncoding"));
+        assertTrue(closed[0]);
+    }
+
+    /**
+     * Writer callback body is sent in chunks and the headers are not
+     * modified.
+     */
+    public void testWriter() {
+        PostClient client = new PostClient(this.httpClient);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/xml");
+        ClientResponse response = client.send(this.url, RequestBodies.ofWriter(writer -> {
+            writer.write("<request><value>");
+            writer.write("äö");
+            writer.write("</value></request>");
+        }), null, headers);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(BODY, response.getData());
+        assertEquals(1, headers.size());
+    }
+
+    /**
+     * Compressed body is sent with Content-Encoding header.
+     *
+     * @throws Exception
+     */
+    public void testGzip() throws Exception {
+        PostClient client = new PostClient(this.httpClient);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(BODY);
+        }
+        String body = client.send(this.url, RequestBodies.gzip(RequestBodies.ofString(builder.toString())),
+                null, null, BodyHandlers.ofString());
+        assertEquals(builder.toString(), body);
+        assertEquals("gzip", this.request.get("contentEncoding"));
+        assertEquals("chunked", this.request.get("transferEncoding"));
+    }
+
+    /**
+     * String body doesn't modify the headers.
+     */
+    public void testStringBodyHeaders() {
+        PostClient client = new PostClient(this.httpClient);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/xml");
+        ClientResponse response = client.send(this.url, BODY, null, headers);
+        assertEquals(BODY, response.getData());
+        assertEquals(1, headers.size());
+        assertFalse(headers.containsKey("Content-Type"));
+    }
+
+    /**
+     * Subclass that implements only buildtHttpRequest can send string
+     * bodies, but not RequestBody objects.
+     *
+     * @throws Exception
+     */
+    public void testLegacySubclass() throws Exception {
+        AbstractBodyHandler client = new AbstractBodyHandler(this.httpClient) {
+            @Override
+            protected HttpUriRequest buildtHttpRequest(String url, String requestBody, Map<String, String> headers) {
+                return RequestBuilder.put().setUri(url).setEntity(this.buildRequestEntity(requestBody, headers)).build();
+            }
+        };
+        assertEquals(BODY, client.send(this.url, BODY, null, null).getData());
+        assertEquals("PUT", this.request.get("method"));
+        assertEquals("application/xml; charset=UTF-8", this.request.get("contentType"));
+        try {
+            client.send(this.url, RequestBodies.ofString(BODY), null, null, BodyHandlers.ofString());
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Null values are rejected.
+     */
+    public void testNull() {
+        try {
+            RequestBodies.ofByteArray(null);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        try {
+            RequestBodies.ofInputStream(null);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+}
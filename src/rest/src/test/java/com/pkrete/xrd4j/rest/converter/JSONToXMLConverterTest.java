@@ -18,7 +18,7 @@ import org.w3c.dom.NodeList;
  */
 public class JSONToXMLConverterTest extends TestCase {
 
-    private Converter converter;
+    protected Converter converter;
 
     /**
      * Set up instance variables used in test cases.
@@ -0,0 +1,131 @@
+package com.pkrete.xrd4j.rest.converter;
+
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import org.w3c.dom.Node;
+
+/**
+ * Test cases for StreamingJSONToXMLConverter class. All the test cases of
+ * JSONToXMLConverter are run against the streaming converter too.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingJSONToXMLConverterTest extends JSONToXMLConverterTest {
+
+    private StreamingJSONToXMLConverter streaming;
+
+    /**
+     * Set up instance variables used in test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.streaming = new StreamingJSONToXMLConverter();
+        this.converter = this.streaming;
+    }
+
+    /**
+     * Elements are written in the order of the input.
+     */
+    public void testOrder() {
+        String json = "{\"b\":{\"@id\":\"x\",\"a\":[1,{\"c\":null}],\"e\":\"\"},\"a\":[[1,2]]}";
+        assertEquals("<b><__at__id>x</__at__id><a>1</a><a><c>null</c></a><e/></b><a><array>1</array><array>2</array></a>",
+                this.converter.convert(json));
+    }
+
+    /**
+     * Text is escaped and content key is written as text.
+     */
+    public void testContent() {
+        String json = "{\"item\":{\"content\":[\"a&b\",\"<c>\"],\"attr\":\"'q'\"}}";
+        assertEquals("<item>a&amp;b\n&lt;c&gt;<attr>&apos;q&apos;</attr></item>", this.converter.convert(json));
+    }
+
+    /**
+     * Invalid JSON returns an empty string.
+     */
+    public void testInvalidJSON() {
+        assertEquals("", this.converter.convert("{\"key\":"));
+        assertEquals("", this.converter.convert("\"value\""));
+        assertEquals("", this.converter.convert("{\"key\":1} {}"));
+    }
+
+    /**
+     * Input is read from a stream and output is written to an
+     * XMLStreamWriter.
+     *
+     * @throws Exception
+     */
+    public void testStreamWriter() throws Exception {
+        String json = "{\"name\":\"äö\",\"list\":[\"a<b\",\"\"]}";
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("response");
+        this.streaming.convert(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), writer);
+        writer.writeEndElement();
+        writer.flush();
+        assertEquals("<response><name>äö</name><list>a&lt;b</list><list/></response>", out.toString());
+    }
+
+    /**
+     * Elements are added under a SOAPElement using the namespace and prefix
+     * of the element.
+     *
+     * @throws Exception
+     */
+    public void testSOAPElement() throws Exception {
+        String json = "{\"data\":{\"value\":5,\"list\":[\"a&b\",\"\"]}}";
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+        SOAPElement response = message.getSOAPBody().addChildElement("response", "ts1", "http://test.x-road.fi/producer");
+        this.streaming.convert(new StringReader(json), response, true);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ts1:response xmlns:ts1=\"http://test.x-road.fi/producer\"><ts1:data><ts1:value>5</ts1:value><ts1:list>a&amp;b</ts1:list><ts1:list/></ts1:data></ts1:response>",
+                SOAPHelper.toString(response));
+        Node value = response.getFirstChild().getFirstChild();
+        assertEquals("http://test.x-road.fi/producer", value.getNamespaceURI());
+        assertEquals("value", value.getLocalName());
+
+        response = message.getSOAPBody().addChildElement("response2", "ts1", "http://test.x-road.fi/producer");
+        this.streaming.convert(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), response, false);
+        assertNull(response.getFirstChild().getNamespaceURI());
+    }
+
+    /**
+     * Elements are written to an XMLStreamWriter in the given namespace.
+     *
+     * @throws Exception
+     */
+    public void testStreamWriterNamespace() throws Exception {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("ts1", "response", "urn:x");
+        writer.writeNamespace("ts1", "urn:x");
+        this.streaming.convert(new StringReader("{\"a\":{\"b\":\"\"}}"), writer, "urn:x", "ts1");
+        this.streaming.convert(new StringReader("{\"c\":1}"), writer, "urn:y", null);
+        writer.writeEndElement();
+        writer.flush();
+        assertEquals("<ts1:response xmlns:ts1=\"urn:x\"><ts1:a><ts1:b/></ts1:a><c xmlns=\"urn:y\">1</c></ts1:response>", out.toString());
+    }
+
+    /**
+     * Invalid key of the root object is reported as an exception.
+     */
+    public void testInvalidKeyStream() {
+        try {
+            this.streaming.convert(new StringReader("{\"array\":[1]}"), new StringWriter());
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertEquals("Invalid key \"array\"", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.pkrete.xrd4j.rest.converter;
+
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import org.json.XML;
+import org.w3c.dom.Node;
+
+/**
+ * Test cases for StreamingXMLToJSONConverter class. All the test cases of
+ * XMLToJSONConverter are run against the streaming converter too.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingXMLToJSONConverterTest extends XMLToJSONConverterTest {
+
+    private StreamingXMLToJSONConverter streaming;
+
+    /**
+     * Set up instance variables used in test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.streaming = new StreamingXMLToJSONConverter();
+        this.converter = this.streaming;
+    }
+
+    /**
+     * Keys are written in the order of the input and the text of an element
+     * that has children is written after the children.
+     */
+    public void testOrder() {
+        String xml = "<b x=\"007\"><__at__id>1</__at__id><c/><c>2</c><d>y</d></b><a>t<e/>u<![CDATA[ v ]]></a>";
+        assertEquals("{\"b\":{\"x\":\"007\",\"@id\":1,\"c\":[\"\",2],\"d\":\"y\"},\"a\":{\"e\":\"\",\"content\":[\"t\",\"u\",\" v \"]}}",
+                this.converter.convert(xml));
+    }
+
+    /**
+     * Repeated elements that are not adjacent fail the streaming conversion,
+     * so strings are converted using XMLToJSONConverter.
+     *
+     * @throws Exception
+     */
+    public void testNotAdjacent() throws Exception {
+        String xml = "<b><c/><d>y</d><c>2</c></b>";
+        assertEquals(new XMLToJSONConverter().convert(xml), this.converter.convert(xml));
+        assertEquals("{\"b\":{\"c\":[\"\",2],\"d\":\"y\"}}", this.converter.convert(xml));
+        try {
+            this.streaming.convert(new StringReader(xml), new StringWriter());
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("not adjacent"));
+        }
+    }
+
+    /**
+     * "array" children that can't be hoisted while streaming are converted
+     * using XMLToJSONConverter.
+     *
+     * @throws Exception
+     */
+    public void testArrayNotFirst() throws Exception {
+        String xml = "<b><c>1</c><array>2</array><array>3</array></b>";
+        assertEquals(new XMLToJSONConverter().convert(xml), this.converter.convert(xml));
+        assertEquals("{\"b\":[2,3]}", this.converter.convert(xml));
+        xml = "<b x=\"1\"><array>2</array><array>3</array></b>";
+        assertEquals(new XMLToJSONConverter().convert(xml), this.converter.convert(xml));
+        try {
+            this.streaming.convert(new StringReader(xml), new StringWriter());
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("\"array\""));
+        }
+    }
+
+    /**
+     * Repeated elements are written before the rest of the input is read.
+     * Only the first element of a group is held in memory.
+     *
+     * @throws Exception
+     */
+    public void testStreaming() throws Exception {
+        final StringWriter out = new StringWriter();
+        final int count = 100000;
+        Reader in = new Reader() {
+            private final StringBuilder pending = new StringBuilder("<a>");
+            private int item;
+            private int writtenBeforeEnd = -1;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                while (this.pending.length() < length && this.item <= count) {
+                    if (this.item == count) {
+                        // All the items have been read, so most of them
+                        // must have been written
+                        this.writtenBeforeEnd = out.getBuffer().length();
+                        this.pending.append("</a>");
+                    } else {
+                        this.pending.append("<item><value>").append(this.item).append("</value></item>");
+                    }
+                    this.item++;
+                }
+                if (this.pending.length() == 0) {
+                    assertTrue(this.writtenBeforeEnd > count * 10);
+                    return -1;
+                }
+                int read = Math.min(length, this.pending.length());
+                this.pending.getChars(0, read, buffer, offset);
+                this.pending.delete(0, read);
+                return read;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to close
+            }
+        };
+        this.streaming.convert(in, out);
+        assertTrue(out.toString().startsWith("{\"a\":{\"item\":[{\"value\":0},{\"value\":1},"));
+        assertTrue(out.toString().endsWith("{\"value\":99999}]}}"));
+    }
+
+    /**
+     * Text is converted to values the same way as org.json does it.
+     */
+    public void testValues() {
+        String[] values = {"007", "1.50", "1e5", "-0", "00", "True", "NULL", "12345678901", "0.0", "-", "0", "-01", "1.0", "+5", " 5 ", "abc", "&lt;"};
+        for (String value : values) {
+            String xml = "<a>" + value + "</a>";
+            assertEquals(value, XML.toJSONObject(xml).toString(), this.converter.convert(xml));
+        }
+    }
+
+    /**
+     * Arrays are hoisted inside repeated elements and at the root.
+     */
+    public void testNestedArrays() {
+        String xml = "<a><b><array>1</array><array>2</array></b><b><array>3</array></b></a>";
+        assertEquals("{\"a\":{\"b\":[[1,2],[3]]}}", this.converter.convert(xml));
+        assertEquals("[1]", this.converter.convert("<?xml version=\"1.0\"?><array>1</array>"));
+    }
+
+    /**
+     * Invalid XML returns an empty string.
+     */
+    public void testInvalidXML() {
+        assertEquals("", this.converter.convert("<a><b></a>"));
+        assertEquals("{}", this.converter.convert(""));
+    }
+
+    /**
+     * Content of a SOAP response element is converted from the DOM and from
+     * a StAX reader.
+     *
+     * @throws Exception
+     */
+    public void testResponseElement() throws Exception {
+        String soap = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Body>"
+                + "<ts1:getRandomResponse xmlns:ts1=\"http://test.x-road.fi/producer\"><ts1:response>"
+                + "<data>5</data><item>a</item><item>b</item></ts1:response></ts1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        String expected = "{\"data\":5,\"item\":[\"a\",\"b\"]}";
+
+        SOAPMessage message = SOAPHelper.toSOAP(new ByteArrayInputStream(soap.getBytes(StandardCharsets.UTF_8)));
+        Node response = SOAPHelper.getNode(SOAPHelper.getNode(message.getSOAPBody(), "getRandomResponse"), "response");
+        StringWriter out = new StringWriter();
+        this.streaming.convert(response, out);
+        assertEquals(expected, out.toString());
+
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(soap));
+        while (!reader.isStartElement() || !"response".equals(reader.getLocalName())) {
+            reader.next();
+        }
+        out = new StringWriter();
+        this.streaming.convert(reader, out);
+        assertEquals(expected, out.toString());
+        assertTrue(reader.isEndElement());
+
+        out = new StringWriter();
+        this.streaming.convert(new ByteArrayInputStream("<a xmlns=\"urn:x\"><p:b xmlns:p=\"urn:y\">1</p:b></a>".getBytes(StandardCharsets.UTF_8)), out);
+        assertEquals("{\"a\":{\"xmlns\":\"urn:x\",\"p:b\":{\"xmlns:p\":\"urn:y\",\"content\":1}}}", out.toString());
+    }
+}
@@ -14,7 +14,7 @@ import junit.framework.TestCase;
  */
 public class XMLToJSONConverterTest extends TestCase {
 
-    private Converter converter;
+    protected Converter converter;
 
     /**
      * Set up instance variables used in test cases.
@@ -459,4 +459,19 @@ public class ClientUtilTest extends TestCase {
         String resultURL = ClientUtil.buildTargetURL(baseURL, params);
         assertEquals(correctURL, resultURL);
     }
+
+    /**
+     * Parameters map is not modified and the same map gives the same URL
+     * every time.
+     */
+    public void testBuildClientURL29() {
+        String baseURL = "http://api.test.com";
+        String correctURL = baseURL + "/10?key=value+%C3%A4";
+        Map<String, String> params = new TreeMap<>();
+        params.put("resourceId", "10");
+        params.put("key", "value \u00e4");
+        assertEquals(correctURL, ClientUtil.buildTargetURL(baseURL, params));
+        assertEquals(correctURL, ClientUtil.buildTargetURL(baseURL, params));
+        assertEquals(2, params.size());
+    }
 }
@@ -0,0 +1,136 @@
+package com.pkrete.xrd4j.rest.util;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for UrlTemplate and PercentEncoder classes.
+ *
+ * @author Petteri Kivimäki
+ */
+public class UrlTemplateTest extends TestCase {
+
+    /**
+     * Path and query variables are replaced and the other parameters are
+     * added to the query string.
+     */
+    public void testExpand() {
+        UrlTemplate template = UrlTemplate.compile("http://api.test.com/cities/{city}/streets?sort={order}");
+        assertEquals(Arrays.asList("city", "order"), new ArrayList<>(template.getVariables()));
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("city", " New York\n");
+        params.put("order", "a b");
+        params.put("limit", Arrays.asList("1", "2"));
+        assertEquals("http://api.test.com/cities/New%20York/streets?sort=a+b&limit=1&limit=2", template.expand(params));
+        assertEquals(3, params.size());
+    }
+
+    /**
+     * Template without variables produces the same URL as buildTargetURL,
+     * except that resource id is added before the query string.
+     */
+    public void testSameAsBuildTargetURL() {
+        String[] urls = {"http://api.test.com", "http://api.test.com/"};
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("resourceId", "\r\n10 ");
+        params.put("param1", "value 1");
+        params.put("param2", Arrays.asList("ä", "€"));
+        for (String url : urls) {
+            assertEquals(ClientUtil.buildTargetURL(url, params), UrlTemplate.compile(url).expand(params));
+        }
+        assertEquals("http://api.test.com/10", UrlTemplate.compile("http://api.test.com").expand(Collections.singletonMap("resourceId", "10")));
+        assertEquals("http://api.test.com/10?a=1&param1=value+1&param2=%C3%A4&param2=%E2%82%AC", UrlTemplate.compile("http://api.test.com?a=1").expand(params));
+        assertEquals(3, params.size());
+    }
+
+    /**
+     * Variable named resourceId is replaced like the other variables.
+     */
+    public void testResourceIdVariable() {
+        UrlTemplate template = UrlTemplate.compile("http://api.test.com/{resourceId}/details");
+        Map<String, Object> params = new HashMap<>();
+        params.put("resourceId", "a/b");
+        assertEquals("http://api.test.com/a%2Fb/details", template.expand(params));
+    }
+
+    /**
+     * Missing values and invalid templates are rejected.
+     */
+    public void testErrors() {
+        try {
+            UrlTemplate.compile("http://api.test.com/{city").expand(null);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        try {
+            UrlTemplate.compile("http://api.test.com/{}");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        try {
+            UrlTemplate.compile("http://api.test.com/{city}").expand(new HashMap<String, String>());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Query encoder produces the same output as URLEncoder.
+     *
+     * @throws Exception
+     */
+    public void testQueryEncoder() throws Exception {
+        String[] values = {"abc", "a b+c", "ä€😀", "~!*'();:@&=+$,/?#[]", "\u0000\u007F", "x\uD800y"};
+        for (String value : values) {
+            StringBuilder out = new StringBuilder();
+            PercentEncoder.QUERY.encode(value, out);
+            assertEquals(URLEncoder.encode(value, "UTF-8"), out.toString());
+        }
+        StringBuilder out = new StringBuilder();
+        PercentEncoder.PATH_SEGMENT.encode("a b/c:d~ä", out);
+        assertEquals("a%20b%2Fc:d~%C3%A4", out.toString());
+    }
+
+    /**
+     * Compiled template can be shared between threads.
+     *
+     * @throws Exception
+     */
+    public void testConcurrentExpand() throws Exception {
+        UrlTemplate template = UrlTemplate.compile("http://api.test.com/items/{id}");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(pool.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        Map<String, String> params = new HashMap<>();
+                        params.put("id", Integer.toString(j));
+                        if (!("http://api.test.com/items/" + j).equals(template.expand(params))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
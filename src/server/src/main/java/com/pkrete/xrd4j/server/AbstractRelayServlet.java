@@ -0,0 +1,171 @@
+package com.pkrete.xrd4j.server;
+
+import com.pkrete.xrd4j.common.deserializer.StreamingHeaderDeserializer;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.RecordingInputStream;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
+import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This an abstract base class for Servlets that relay SOAP messages without
+ * parsing them. Only the X-Road header of the request is read using StAX and
+ * the body is never parsed. The header is passed to the isAllowed method for
+ * access checks and then the original bytes of the request are passed to the
+ * relay method, which typically streams them to a security server, e.g.
+ * using SOAPRelay of the client module, and copies the response back
+ * unchanged.
+ *
+ * The header of a multipart request is read from its SOAP part, which must be
+ * the first part of the message.
+ *
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractRelayServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractRelayServlet.class);
+    private static final String FAULT_CODE_CLIENT = "SOAP-ENV:Client";
+    private final StreamingHeaderDeserializer headerDeserializer = new StreamingHeaderDeserializer();
+    private ServiceResponseSerializer serializer;
+
+    /**
+     * Relays the given request and writes the response to the servlet
+     * response.
+     *
+     * @param header X-Road header of the request
+     * @param request stream that contains the whole request message
+     * @param servletRequest servlet request
+     * @param servletResponse servlet response
+     * @throws IOException if an I/O error occurs
+     * @throws SOAPException if relaying the request fails
+     */
+    protected abstract void relay(ServiceRequest<?> header, InputStream request, HttpServletRequest servletRequest,
+            HttpServletResponse servletResponse) throws IOException, SOAPException;
+
+    /**
+     * Checks if the request with the given header can be relayed. By default
+     * all the requests are allowed.
+     *
+     * @param header X-Road header of the request
+     * @param servletRequest servlet request
+     * @return true if the request can be relayed, otherwise false
+     */
+    protected boolean isAllowed(ServiceRequest<?> header, HttpServletRequest servletRequest) {
+        return true;
+    }
+
+    /**
+     * Initializes AbstractRelayServlet.
+     */
+    @Override
+    public void init() {
+        this.serializer = new DummyServiceResponseSerializer();
+        logger.debug("AbstractRelayServlet initialized.");
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String contentType = request.getContentType() == null ? "" : request.getContentType().toLowerCase();
+        boolean multipart = contentType.startsWith(Constants.MULTIPART_RELATED);
+        if (!multipart && !contentType.startsWith(Constants.TEXT_XML)) {
+            logger.warn("Invalid content type : \"{}\".", request.getContentType());
+            this.writeFault("Invalid content type : \"" + request.getContentType() + "\".", response);
+            return;
+        }
+        RecordingInputStream recording = new RecordingInputStream(request.getInputStream());
+        ServiceRequest<?> header;
+        try {
+            header = multipart ? this.headerDeserializer.deserializeMultipart(recording) : this.headerDeserializer.deserialize(recording);
+        } catch (XRd4JException | XRd4JMissingMemberException ex) {
+            logger.warn("Reading SOAP header failed. SOAP Fault is returned : {}", ex.getMessage());
+            this.writeFault("Invalid X-Road SOAP message. Unable to parse the request.", response);
+            return;
+        }
+        InputStream body = recording.replay();
+        if (!this.isAllowed(header, request)) {
+            logger.warn("Request is not allowed. Request id : \"{}\"", header.getId());
+            this.writeFault("Access denied.", response);
+            return;
+        }
+        try {
+            this.relay(header, body, request, response);
+            logger.debug("Request was succesfully relayed.");
+        } catch (SOAPException ex) {
+            logger.error(ex.getMessage(), ex);
+            if (!response.isCommitted()) {
+                response.reset();
+                this.writeFault("500 Internal Server Error", response);
+            }
+        }
+    }
+
+    /**
+     * Copies all the bytes from the given input stream to the given output
+     * stream. This can be used for copying the response of the relayed
+     * request to the servlet response.
+     *
+     * @param in input stream
+     * @param out output stream
+     * @return number of bytes copied
+     * @throws IOException if an I/O error occurs
+     */
+    protected static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private void writeFault(String faultString, HttpServletResponse response) throws IOException {
+        ServiceResponse serviceResponse = new ServiceResponse();
+        serviceResponse.setErrorMessage(new ErrorMessage(FAULT_CODE_CLIENT, faultString, "", ""));
+        String fault = SOAPHelper.toString(this.serializer.serialize(serviceResponse, null));
+        response.setContentType(Constants.TEXT_XML + "; charset=UTF-8");
+        try (PrintWriter out = response.getWriter()) {
+            out.println(fault);
+        }
+    }
+
+    /**
+     * This is a dummy implementation of the AbstractServiceResponseSerializer
+     * class. It's needed only for generating SOAP Fault messages.
+     */
+    private class DummyServiceResponseSerializer extends AbstractServiceResponseSerializer {
+
+        @Override
+        public void serializeResponse(ServiceResponse response, SOAPElement soapResponse, SOAPEnvelope envelope) throws SOAPException {
+            // Never called, only SOAP Faults are serialized
+        }
+    }
+}